@@ -94,6 +94,7 @@ public class AgentHTTPClientController extends AgentController {
                 LOG.trace("{} is pinging server [{}]", agent, server);
 
                 getAgentRuntimeInfo().refreshUsableSpace();
+                manipulator.reportFetchArtifactCacheUsage(getAgentRuntimeInfo());
 
                 agentInstruction = server.ping(getAgentRuntimeInfo());
                 pingSuccess();
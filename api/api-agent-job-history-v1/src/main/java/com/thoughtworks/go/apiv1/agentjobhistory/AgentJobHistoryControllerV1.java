@@ -23,6 +23,7 @@ import com.thoughtworks.go.config.exceptions.BadRequestException;
 import com.thoughtworks.go.config.exceptions.EntityType;
 import com.thoughtworks.go.config.exceptions.RecordNotFoundException;
 import com.thoughtworks.go.domain.AgentInstance;
+import com.thoughtworks.go.domain.JobInstances;
 import com.thoughtworks.go.server.service.AgentService;
 import com.thoughtworks.go.server.service.JobInstanceService;
 import com.thoughtworks.go.server.ui.JobInstancesModel;
@@ -83,6 +84,9 @@ public class AgentJobHistoryControllerV1 extends ApiController implements SparkS
     public String index(Request request, Response response) throws IOException {
 
         String uuid = request.params(":uuid");
+        if (isCursorRequest(request)) {
+            return indexViaCursor(uuid, request, response);
+        }
 
         Integer offset = getOffset(request);
         Integer pageSize = getPageSize(request);
@@ -100,6 +104,25 @@ public class AgentJobHistoryControllerV1 extends ApiController implements SparkS
         return writerForTopLevelObject(request, response, outputWriter -> AgentJobHistoryRepresenter.toJSON(outputWriter, uuid, jobInstances));
     }
 
+    /**
+     * Pages through the jobs newest first by job id, without an offset or a count of all the jobs run on the agent.
+     * An empty `after` or `before` asks for the latest page.
+     */
+    private String indexViaCursor(String uuid, Request request, Response response) throws IOException {
+        long after = getCursor(request, "after");
+        long before = getCursor(request, "before");
+        Integer pageSize = getPageSize(request);
+
+        AgentInstance agent = agentService.findAgent(uuid);
+        if (agent.isNullAgent()) {
+            throw new RecordNotFoundException(EntityType.Agent, uuid);
+        }
+        JobInstances jobInstances = jobInstanceService.completedJobsOnAgentViaCursor(uuid, after, before, pageSize);
+        boolean fullPage = jobInstances.size() == pageSize;
+        boolean hasNewer = after != 0 || (before != 0 && fullPage);
+        return writerForTopLevelObject(request, response, outputWriter -> AgentJobHistoryRepresenter.toJSON(outputWriter, uuid, jobInstances, hasNewer, fullPage));
+    }
+
     private SortOrder getSortOrder(Request request) {
         try {
             return SortOrder.valueOf(request.queryParamOrDefault("sort_order", "DESC"));
@@ -18,6 +18,7 @@ package com.thoughtworks.go.apiv1.agentjobhistory.representers;
 import com.thoughtworks.go.api.base.OutputWriter;
 import com.thoughtworks.go.api.representers.PaginationRepresenter;
 import com.thoughtworks.go.domain.JobInstance;
+import com.thoughtworks.go.domain.JobInstances;
 import com.thoughtworks.go.domain.JobStateTransition;
 import com.thoughtworks.go.server.ui.JobInstancesModel;
 import com.thoughtworks.go.spark.Routes;
@@ -41,6 +42,27 @@ public class AgentJobHistoryRepresenter {
                 .addChild("pagination", PaginationRepresenter.toJSON(jobInstances.getPagination()));
     }
 
+    public static void toJSON(OutputWriter outputWriter, String uuid, JobInstances jobInstances, boolean hasNewer, boolean hasOlder) {
+        outputWriter
+                .addLinks(outputLinkWriter -> {
+                    outputLinkWriter
+                            .addAbsoluteLink("doc", Routes.AgentJobHistory.DOC)
+                            .addLink("self", Routes.AgentJobHistory.forAgent(uuid))
+                            .addLink("find", Routes.AgentsAPI.find());
+                    if (!jobInstances.isEmpty()) {
+                        outputLinkWriter
+                                .addLinkIfPresent("previous", hasNewer ? Routes.AgentJobHistory.previous(uuid, jobInstances.first().getId()) : null)
+                                .addLinkIfPresent("next", hasOlder ? Routes.AgentJobHistory.next(uuid, jobInstances.last().getId()) : null);
+                    }
+                })
+                .add("uuid", uuid)
+                .addChildList("jobs", jobsOutputWriter -> {
+                    jobInstances.forEach(jobInstance -> {
+                        jobsOutputWriter.addChild(jobOutputWriter -> toJSON(jobInstance, jobOutputWriter));
+                    });
+                });
+    }
+
     private static void toJSON(JobInstance jobInstance, OutputWriter jobOutputWriter) {
         jobOutputWriter
                 .addChildList("job_state_transitions", outputListWriter -> {
@@ -91,6 +91,48 @@ class AgentJobHistoryControllerV1Test implements SecurityServiceTrait, Controlle
       verifyNoMoreInteractions(jobInstanceService)
     }
 
+    @Test
+    void 'should render a page fetched by cursor without counting the jobs'() {
+      def uuid = "some-agent"
+      def jobInstance = JobInstanceMother.completed("blah", JobResult.Passed)
+      jobInstance.setId(41)
+      def jobInstances = new JobInstances(jobInstance)
+
+      when(agentService.findAgent(uuid)).thenReturn(AgentInstanceMother.idleWith(uuid))
+      when(jobInstanceService.completedJobsOnAgentViaCursor(uuid, 42, 0, 50)).thenReturn(jobInstances)
+
+      getWithApiHeader(Routes.AgentJobHistory.next(uuid, 42))
+      assertThatResponse()
+        .isOk()
+        .hasContentType(controller.mimeType)
+        .hasBodyWithJsonObject(AgentJobHistoryRepresenter, uuid, jobInstances, true, false)
+
+      verify(jobInstanceService).completedJobsOnAgentViaCursor(uuid, 42, 0, 50)
+      verifyNoMoreInteractions(jobInstanceService)
+    }
+
+    @Test
+    void 'should render the latest page when the cursor is empty'() {
+      def uuid = "some-agent"
+      def jobInstances = new JobInstances()
+
+      when(agentService.findAgent(uuid)).thenReturn(AgentInstanceMother.idleWith(uuid))
+      when(jobInstanceService.completedJobsOnAgentViaCursor(uuid, 0, 0, 50)).thenReturn(jobInstances)
+
+      getWithApiHeader(Routes.AgentJobHistory.forAgent(uuid) + "?before=")
+      assertThatResponse()
+        .isOk()
+        .hasBodyWithJsonObject(AgentJobHistoryRepresenter, uuid, jobInstances, false, false)
+    }
+
+    @Test
+    void 'should disallow a negative cursor'() {
+      getWithApiHeader(Routes.AgentJobHistory.forAgent("some-agent") + "?after=-1")
+      assertThatResponse()
+        .isBadRequest()
+        .hasJsonMessage("The query parameter 'after', if specified, must be a positive integer.")
+    }
+
     @Nested
     class QueryParamValidation {
       @Nested
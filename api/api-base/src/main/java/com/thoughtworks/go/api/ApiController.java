@@ -19,6 +19,7 @@ import com.google.common.collect.Sets;
 import com.google.gson.reflect.TypeToken;
 import com.thoughtworks.go.api.util.GsonTransformer;
 import com.thoughtworks.go.api.util.MessageJson;
+import com.thoughtworks.go.config.exceptions.BadRequestException;
 import com.thoughtworks.go.server.util.RequestUtils;
 import com.thoughtworks.go.spark.SparkController;
 import org.springframework.util.InvalidMimeTypeException;
@@ -32,6 +33,8 @@ import java.util.*;
 
 import static com.thoughtworks.go.api.util.HaltApiResponses.haltBecauseConfirmHeaderMissing;
 import static com.thoughtworks.go.api.util.HaltApiResponses.haltBecauseJsonContentTypeExpected;
+import static com.thoughtworks.go.server.service.ServiceConstants.History.BAD_CURSOR_MSG;
+import static java.lang.String.format;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 public abstract class ApiController implements ControllerMethods, SparkController {
@@ -114,6 +117,29 @@ public abstract class ApiController implements ControllerMethods, SparkControlle
         return map;
     }
 
+    protected boolean isCursorRequest(Request req) {
+        return req.queryParams().contains("after") || req.queryParams().contains("before");
+    }
+
+    /**
+     * @return the id in the `after` or `before` query parameter of a page requested by cursor, 0 when it is empty
+     */
+    protected long getCursor(Request req, String key) {
+        String value = req.queryParams(key);
+        if (isBlank(value)) {
+            return 0;
+        }
+        try {
+            long cursor = Long.parseLong(value);
+            if (cursor < 0) {
+                throw new BadRequestException(format(BAD_CURSOR_MSG, key));
+            }
+            return cursor;
+        } catch (NumberFormatException e) {
+            throw new BadRequestException(format(BAD_CURSOR_MSG, key));
+        }
+    }
+
     protected static Filter onlyOn(Filter filter, String... allowedMethods) {
         return (request, response) -> {
             if (Sets.newHashSet(allowedMethods).contains(request.requestMethod())) {
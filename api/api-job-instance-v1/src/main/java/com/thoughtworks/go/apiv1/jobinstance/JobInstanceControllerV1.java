@@ -35,10 +35,8 @@ import spark.Response;
 
 import java.io.IOException;
 
-import static com.thoughtworks.go.server.service.ServiceConstants.History.BAD_CURSOR_MSG;
 import static com.thoughtworks.go.server.service.ServiceConstants.History.BAD_PAGE_SIZE_MSG;
 import static java.lang.String.format;
-import static org.apache.commons.lang3.StringUtils.isBlank;
 import static spark.Spark.*;
 
 @Component
@@ -125,18 +123,4 @@ public class JobInstanceControllerV1 extends ApiController implements SparkSprin
         }
         return value;
     }
-
-    private long getCursor(Request request, String key) {
-        long cursor = 0;
-        try {
-            String value = request.queryParams(key);
-            if (isBlank(value)) {
-                return cursor;
-            }
-            cursor = Long.parseLong(value);
-        } catch (NumberFormatException nfe) {
-            throw new BadRequestException(String.format(BAD_CURSOR_MSG, key));
-        }
-        return cursor;
-    }
 }
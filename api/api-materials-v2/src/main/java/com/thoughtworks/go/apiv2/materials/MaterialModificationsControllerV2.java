@@ -38,6 +38,7 @@ import static spark.Spark.*;
 
 @Component
 public class MaterialModificationsControllerV2 extends ApiController implements SparkSpringController {
+    private static final int PAGE_SIZE = 10;
 
     private final ApiAuthenticationHelper apiAuthenticationHelper;
     private final MaterialConfigService materialConfigService;
@@ -76,9 +77,16 @@ public class MaterialModificationsControllerV2 extends ApiController implements
         Integer offset = req.params("offset") == null ? null : Integer.parseInt(req.params("offset"));
         HttpOperationResult result = new HttpOperationResult();
         MaterialConfig materialConfig = materialConfigService.getMaterialConfig(currentUsernameString(), fingerprint, result);
-        if (result.canContinue()) {
+        if (result.canContinue() && isCursorRequest(req)) {
+            long after = getCursor(req, "after");
+            long before = getCursor(req, "before");
+            Modifications modifications = materialService.getModificationsFor(materialConfig, after, before, PAGE_SIZE);
+            boolean fullPage = modifications.size() == PAGE_SIZE;
+            boolean hasNewer = after != 0 || (before != 0 && fullPage);
+            return writerForTopLevelObject(req, res, writer -> ModificationsRepresenter.toJSON(writer, modifications, fingerprint, hasNewer, fullPage));
+        } else if (result.canContinue()) {
             Long modificationsCount = materialService.getTotalModificationsFor(materialConfig);
-            Pagination pagination = Pagination.pageStartingAt(offset, modificationsCount.intValue(), 10);
+            Pagination pagination = Pagination.pageStartingAt(offset, modificationsCount.intValue(), PAGE_SIZE);
             Modifications modifications = materialService.getModificationsFor(materialConfig, pagination);
             return writerForTopLevelObject(req, res, writer -> ModificationsRepresenter.toJSON(writer, modifications, pagination, fingerprint));
         } else {
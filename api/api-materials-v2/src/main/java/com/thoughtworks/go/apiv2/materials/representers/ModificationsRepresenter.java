@@ -32,6 +32,19 @@ public class ModificationsRepresenter {
                 .addEmbedded(embedded(modifications, pagination));
     }
 
+    /**
+     * A page of modifications fetched by cursor, which links to the neighbouring pages rather than counting them
+     */
+    public static void toJSON(OutputWriter outputWriter, Modifications modifications, String fingerprint, boolean hasNewer, boolean hasOlder) {
+        outputWriter.addLinks(links(fingerprint).andThen(outputLinkWriter -> {
+            if (!modifications.isEmpty()) {
+                outputLinkWriter
+                        .addLinkIfPresent("previous", hasNewer ? Routes.MaterialModifications.previous(fingerprint, modifications.first().getId()) : null)
+                        .addLinkIfPresent("next", hasOlder ? Routes.MaterialModifications.next(fingerprint, modifications.last().getId()) : null);
+            }
+        })).addEmbedded(embeddedWriter -> embeddedWriter.addChildList("modifications", modifications(modifications)));
+    }
+
     private static Consumer<OutputWriter> embedded(Modifications modifications, Pagination pagination) {
         return outputWriter -> outputWriter
                 .addChildList("modifications", modifications(modifications))
@@ -38,6 +38,8 @@ import org.mockito.Mock
 
 import static org.mockito.ArgumentMatchers.any
 import static org.mockito.ArgumentMatchers.eq
+import static org.mockito.Mockito.never
+import static org.mockito.Mockito.verify
 import static org.mockito.Mockito.when
 import static org.mockito.MockitoAnnotations.initMocks
 
@@ -112,6 +114,41 @@ class MaterialModificationsControllerV2Test implements SecurityServiceTrait, Con
             ModificationsRepresenter.toJSON(it, modifications, pagination, "fingerprint")
           }))
       }
+
+      @Test
+      void 'should list material modifications by cursor without counting them'() {
+        def modification = new Modification("user1", "comment1", "email@ediblefrog", new Date(), "revision1")
+        modification.id = 41
+        def modifications = new Modifications(modification)
+        def materialConfig = new GitMaterialConfig()
+        materialConfig.url = "http://example.git/"
+
+        when(materialConfigService.getMaterialConfig(eq(currentUsernameString()), eq("fingerprint"), any(HttpOperationResult.class)))
+          .thenReturn(materialConfig)
+        when(materialService.getModificationsFor(materialConfig, 42L, 0L, 10)).thenReturn(modifications)
+
+        getWithApiHeader(Routes.MaterialModifications.next("fingerprint", 42))
+
+        assertThatResponse()
+          .isOk()
+          .hasContentType(controller.mimeType)
+          .hasBodyWithJson(JsonUtils.toObjectString({
+            ModificationsRepresenter.toJSON(it, modifications, "fingerprint", true, false)
+          }))
+        verify(materialService, never()).getTotalModificationsFor(materialConfig)
+      }
+
+      @Test
+      void 'should reject a negative cursor'() {
+        when(materialConfigService.getMaterialConfig(eq(currentUsernameString()), eq("fingerprint"), any(HttpOperationResult.class)))
+          .thenReturn(new GitMaterialConfig())
+
+        getWithApiHeader(Routes.MaterialModifications.previous("fingerprint", -1))
+
+        assertThatResponse()
+          .isBadRequest()
+          .hasJsonMessage("The query parameter 'before', if specified, must be a positive integer.")
+      }
     }
   }
 }
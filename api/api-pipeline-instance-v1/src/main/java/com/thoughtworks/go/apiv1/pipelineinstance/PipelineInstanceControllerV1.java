@@ -38,9 +38,7 @@ import spark.Response;
 
 import java.io.IOException;
 
-import static com.thoughtworks.go.server.service.ServiceConstants.History.BAD_CURSOR_MSG;
 import static com.thoughtworks.go.server.service.ServiceConstants.History.BAD_PAGE_SIZE_MSG;
-import static org.apache.commons.lang3.StringUtils.isBlank;
 import static spark.Spark.*;
 
 @Component
@@ -121,20 +119,6 @@ public class PipelineInstanceControllerV1 extends ApiController implements Spark
         return offset;
     }
 
-    private long getCursor(Request request, String key) {
-        long cursor = 0;
-        try {
-            String value = request.queryParams(key);
-            if (isBlank(value)) {
-                return cursor;
-            }
-            cursor = Long.parseLong(value);
-        } catch (NumberFormatException nfe) {
-            throw new BadRequestException(String.format(BAD_CURSOR_MSG, key));
-        }
-        return cursor;
-    }
-
     private Integer getCounterValue(Request request) {
         try {
             int counter = Integer.parseInt(request.params("pipeline_counter"));
@@ -63,6 +63,7 @@ public class GoConstants {
     public static final long MEGABYTES_IN_GIGABYTE = 1024;
     public static final long MEGA_BYTE = 1024 * 1024;
     public static final long GIGA_BYTE = MEGABYTES_IN_GIGABYTE * MEGA_BYTE;
+    public static final long ARTIFACT_DEDUP_MIN_SIZE = MEGA_BYTE;
     public static final String USE_COMPRESSED_JAVASCRIPT = "rails.use.compressed.js";
     public static final String I18N_CACHE_LIFE = "cruise.i18n.cache.life";
     public static final String GO_URL_CONTEXT = "/go";
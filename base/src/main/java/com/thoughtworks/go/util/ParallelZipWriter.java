@@ -0,0 +1,491 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.util;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * @understands streaming a folder as a zip while its files are compressed in parallel on a shared pool of threads.
+ * Entries are named and ordered the same way as {@link ZipUtil#zip(File, OutputStream, int)} names them. Files which
+ * are already compressed are stored as they are.
+ */
+public class ParallelZipWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelZipWriter.class);
+
+    static final int IN_MEMORY_LIMIT = 1024 * 1024;
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP32_MAX_ENTRIES = 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int DATA_DESCRIPTOR_FLAG = 0x0008;
+    private static final int UTF8_FLAG = 0x0800;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "zip", "jar", "war", "ear", "apk", "nupkg", "whl", "gem", "rpm", "deb",
+            "gz", "tgz", "bz2", "xz", "txz", "7z", "rar", "zst", "lz4",
+            "png", "jpg", "jpeg", "gif", "webp", "mp3", "mp4", "woff", "woff2"));
+
+    private final ExecutorService executor;
+    private final int level;
+    private final int maxEntriesInFlight;
+
+    public ParallelZipWriter(ExecutorService executor, int level, int maxEntriesInFlight) {
+        this.executor = executor;
+        this.level = level;
+        this.maxEntriesInFlight = Math.max(1, maxEntriesInFlight);
+    }
+
+    /**
+     * Writes the zip to the output as its entries become ready. Files larger than {@link #IN_MEMORY_LIMIT} are
+     * deflated in chunks of that size, each chunk on its own thread, and the chunks are written out one after the
+     * other as a single deflate stream. At most maxEntriesInFlight files or chunks are being compressed (and held in
+     * memory) ahead of the writer at any time. The output is flushed, but not closed.
+     */
+    public void zip(File source, OutputStream output) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        collect("", source, sources);
+        if (!fitsWithoutZip64(sources)) {
+            LOGGER.debug("Zip of [{}] may need zip64 extensions, zipping it sequentially.", source);
+            new ZipUtil().zip(source, output, level);
+            return;
+        }
+
+        ZipStreamWriter writer = new ZipStreamWriter(output);
+        Deque<Future<Piece>> inFlight = new ArrayDeque<>();
+        Iterator<Callable<Piece>> pending = pieces(sources).iterator();
+        try {
+            while (pending.hasNext() || !inFlight.isEmpty()) {
+                while (pending.hasNext() && inFlight.size() < maxEntriesInFlight) {
+                    inFlight.add(submit(pending.next()));
+                }
+                writer.write(await(inFlight.poll()));
+            }
+            writer.finish();
+        } finally {
+            for (Future<Piece> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void collect(String parentPath, File file, List<Source> sources) {
+        String name = parentPath + file.getName();
+        if (!file.isDirectory()) {
+            sources.add(new Source(name, file, false));
+            return;
+        }
+        sources.add(new Source(name + "/", file, true));
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                collect(name + "/", child, sources);
+            }
+        }
+    }
+
+    private boolean fitsWithoutZip64(List<Source> sources) {
+        if (sources.size() >= ZIP32_MAX_ENTRIES) {
+            return false;
+        }
+        long estimate = 22;
+        for (Source source : sources) {
+            long size = source.directory ? 0 : source.file.length();
+            estimate += 92 + 2L * source.name.getBytes(UTF_8).length + size + size / 100;
+        }
+        return estimate < ZIP32_LIMIT;
+    }
+
+    private List<Callable<Piece>> pieces(List<Source> sources) {
+        List<Callable<Piece>> pieces = new ArrayList<>();
+        for (Source source : sources) {
+            long size = source.directory ? 0 : source.file.length();
+            if (source.directory) {
+                pieces.add(() -> new Piece(source, ZipEntry.STORED, 0, 0, 0, new byte[0], true, true));
+            } else if (size > IN_MEMORY_LIMIT && !shouldStore(source)) {
+                long chunks = (size + IN_MEMORY_LIMIT - 1) / IN_MEMORY_LIMIT;
+                for (long chunk = 0; chunk < chunks; chunk++) {
+                    long offset = chunk * IN_MEMORY_LIMIT;
+                    int length = (int) Math.min(IN_MEMORY_LIMIT, size - offset);
+                    boolean last = chunk == chunks - 1;
+                    pieces.add(() -> deflateChunk(source, offset, length, last));
+                }
+            } else {
+                pieces.add(() -> prepare(source));
+            }
+        }
+        return pieces;
+    }
+
+    private Future<Piece> submit(Callable<Piece> piece) throws IOException {
+        try {
+            return executor.submit(piece);
+        } catch (RejectedExecutionException e) {
+            // the pool is saturated, compress on the calling thread instead of queueing without bounds
+            try {
+                return CompletableFuture.completedFuture(piece.call());
+            } catch (IOException | RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    private Piece await(Future<Piece> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while zipping");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private boolean shouldStore(Source source) {
+        return level == Deflater.NO_COMPRESSION || isAlreadyCompressed(source.name);
+    }
+
+    private Piece prepare(Source source) throws IOException {
+        boolean store = shouldStore(source);
+        long size = source.file.length();
+        if (size > IN_MEMORY_LIMIT) {
+            return new Piece(source, ZipEntry.STORED, crcOf(source.file), size, size, null, true, true);
+        }
+
+        byte[] content = Files.readAllBytes(source.file.toPath());
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if (!store) {
+            byte[] deflated = deflate(content, null, true);
+            if (deflated.length < content.length) {
+                return new Piece(source, ZipEntry.DEFLATED, crc.getValue(), content.length, deflated.length, deflated, true, true);
+            }
+        }
+        return new Piece(source, ZipEntry.STORED, crc.getValue(), content.length, content.length, content, true, true);
+    }
+
+    /**
+     * Deflates a chunk of a file primed with the data before it, the way pigz does, so that the chunks compress about
+     * as well as the file would have in one go. Every chunk but the last ends on a byte boundary, so that the chunks
+     * can be written one after the other.
+     */
+    private Piece deflateChunk(Source source, long offset, int length, boolean last) throws IOException {
+        byte[] dictionary = new byte[(int) Math.min(DICTIONARY_SIZE, offset)];
+        byte[] content = new byte[length];
+        try (RandomAccessFile file = new RandomAccessFile(source.file, "r")) {
+            file.seek(offset - dictionary.length);
+            file.readFully(dictionary);
+            file.readFully(content);
+        } catch (EOFException e) {
+            throw new IOException("File " + source.file + " changed while it was being zipped", e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        byte[] deflated = deflate(content, dictionary.length == 0 ? null : dictionary, last);
+        return new Piece(source, ZipEntry.DEFLATED, crc.getValue(), length, deflated.length, deflated, offset == 0, last);
+    }
+
+    private boolean isAlreadyCompressed(String name) {
+        return COMPRESSED_EXTENSIONS.contains(FilenameUtils.getExtension(name).toLowerCase());
+    }
+
+    private byte[] deflate(byte[] content, byte[] dictionary, boolean finish) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(content);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            if (finish) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int length = deflater.deflate(buffer);
+                    out.write(buffer, 0, length);
+                }
+            } else {
+                int length;
+                do {
+                    length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, length);
+                } while (length == buffer.length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static long crcOf(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, length);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * The CRC32 of two pieces of data one after the other, from the CRC32 of each of them. Ported from zlib's
+     * crc32_combine.
+     */
+    static long crc32Combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            length2 >>= 1;
+            if (length2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            length2 >>= 1;
+        } while (length2 != 0);
+        return (crc1 ^ crc2) & 0xffffffffL;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    private static class Source {
+        private final String name;
+        private final File file;
+        private final boolean directory;
+
+        private Source(String name, File file, boolean directory) {
+            this.name = name;
+            this.file = file;
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * A whole entry, or a chunk of an entry which is deflated in chunks
+     */
+    private static class Piece {
+        private final Source source;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final byte[] data;
+        private final boolean first;
+        private final boolean last;
+
+        private Piece(Source source, int method, long crc, long size, long compressedSize, byte[] data, boolean first, boolean last) {
+            this.source = source;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.data = data;
+            this.first = first;
+            this.last = last;
+        }
+
+        private boolean chunked() {
+            return !(first && last);
+        }
+    }
+
+    private class ZipStreamWriter {
+        private final CountingOutputStream out;
+        private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+        private int entries;
+
+        private long offset;
+        private long dosTime;
+        private long crc;
+        private long size;
+        private long compressedSize;
+
+        private ZipStreamWriter(OutputStream output) {
+            this.out = new CountingOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        }
+
+        private void write(Piece piece) throws IOException {
+            int flags = UTF8_FLAG | (piece.chunked() ? DATA_DESCRIPTOR_FLAG : 0);
+            byte[] name = piece.source.name.getBytes(UTF_8);
+            if (piece.first) {
+                offset = out.getByteCount();
+                dosTime = dosTime(piece.source.file.lastModified());
+                crc = 0;
+                size = 0;
+                compressedSize = 0;
+
+                writeInt(out, LOCAL_HEADER_SIGNATURE);
+                writeShort(out, VERSION);
+                writeShort(out, flags);
+                writeShort(out, piece.method);
+                writeInt(out, dosTime);
+                writeInt(out, piece.chunked() ? 0 : piece.crc);
+                writeInt(out, piece.chunked() ? 0 : piece.compressedSize);
+                writeInt(out, piece.chunked() ? 0 : piece.size);
+                writeShort(out, name.length);
+                writeShort(out, 0);
+                out.write(name);
+            }
+
+            if (piece.data != null) {
+                out.write(piece.data);
+            } else {
+                copyInto(piece);
+            }
+            crc = crc32Combine(crc, piece.crc, piece.size);
+            size += piece.size;
+            compressedSize += piece.compressedSize;
+            if (out.getByteCount() >= ZIP32_LIMIT) {
+                throw new IOException("Zip grew beyond " + ZIP32_LIMIT + " bytes while adding " + piece.source.name);
+            }
+            if (!piece.last) {
+                return;
+            }
+
+            if (piece.chunked()) {
+                writeInt(out, DATA_DESCRIPTOR_SIGNATURE);
+                writeInt(out, crc);
+                writeInt(out, compressedSize);
+                writeInt(out, size);
+            }
+
+            writeInt(centralDirectory, CENTRAL_HEADER_SIGNATURE);
+            writeShort(centralDirectory, VERSION);
+            writeShort(centralDirectory, VERSION);
+            writeShort(centralDirectory, flags);
+            writeShort(centralDirectory, piece.method);
+            writeInt(centralDirectory, dosTime);
+            writeInt(centralDirectory, crc);
+            writeInt(centralDirectory, compressedSize);
+            writeInt(centralDirectory, size);
+            writeShort(centralDirectory, name.length);
+            writeShort(centralDirectory, 0);
+            writeShort(centralDirectory, 0);
+            writeShort(centralDirectory, 0);
+            writeShort(centralDirectory, 0);
+            writeInt(centralDirectory, 0);
+            writeInt(centralDirectory, offset);
+            centralDirectory.write(name);
+            entries++;
+        }
+
+        private void copyInto(Piece piece) throws IOException {
+            try (InputStream in = new FileInputStream(piece.source.file)) {
+                long copied = IOUtils.copyLarge(in, out, 0, piece.size);
+                if (copied != piece.size) {
+                    throw new IOException("File " + piece.source.file + " changed while it was being zipped");
+                }
+            }
+        }
+
+        private void finish() throws IOException {
+            long offset = out.getByteCount();
+            centralDirectory.writeTo(out);
+            writeInt(out, END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            writeShort(out, 0);
+            writeShort(out, 0);
+            writeShort(out, entries);
+            writeShort(out, entries);
+            writeInt(out, centralDirectory.size());
+            writeInt(out, offset);
+            writeShort(out, 0);
+            out.flush();
+        }
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+    }
+
+    private static void writeInt(OutputStream out, long value) throws IOException {
+        writeShort(out, (int) (value & 0xffff));
+        writeShort(out, (int) ((value >>> 16) & 0xffff));
+    }
+
+    static long dosTime(long time) {
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if (dateTime.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (dateTime.getYear() - 1980) << 25)
+                | (dateTime.getMonthValue() << 21)
+                | (dateTime.getDayOfMonth() << 16)
+                | (dateTime.getHour() << 11)
+                | (dateTime.getMinute() << 5)
+                | (dateTime.getSecond() >> 1);
+    }
+}
@@ -145,6 +145,20 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
     public static final GoSystemProperty<Integer> JMS_LISTENER_BACKOFF_TIME = new GoIntSystemProperty("go.jms.listener.backoff.time.in.milliseconds", 5000);
 
     public static final GoSystemProperty<Integer> GO_SERVER_AUTHORIZATION_EXTENSION_CALLS_CACHE_TIMEOUT_IN_SECONDS = new GoIntSystemProperty("go.server.authorization.extension.calls.cache.timeout.in.secs", 60 * 30);
+    public static final GoSystemProperty<Integer> GO_SERVER_SECRETS_CACHE_TTL_IN_SECONDS = new GoIntSystemProperty("go.server.secrets.cache.ttl.in.secs", 0);
+    public static final GoSystemProperty<Long> GO_SERVER_SECRETS_CACHE_MAX_ENTRIES = new GoLongSystemProperty("go.server.secrets.cache.max.entries", 10000L);
+    public static final GoSystemProperty<Boolean> GO_SERVER_ARTIFACTS_ZIP_CACHE_ENABLED = new GoBooleanSystemProperty("go.server.artifacts.zip.cache.enabled", false);
+    public static final GoSystemProperty<Long> GO_SERVER_ARTIFACTS_ZIP_CACHE_MAX_SIZE_IN_MB = new GoLongSystemProperty("go.server.artifacts.zip.cache.max.size.mb", 0L);
+    public static final GoSystemProperty<Boolean> GO_AGENT_STREAMING_ARTIFACT_UPLOAD = new GoBooleanSystemProperty("go.agent.artifacts.streaming.upload", false);
+    public static final GoSystemProperty<Integer> GO_SERVER_ARTIFACTS_ZIP_THREADS = new GoIntSystemProperty("go.server.artifacts.zip.threads", Runtime.getRuntime().availableProcessors());
+    public static final GoSystemProperty<Integer> GO_SERVER_ARTIFACTS_CACHE_WORKERS = new GoIntSystemProperty("go.server.artifacts.cache.workers", 2);
+    public static final GoSystemProperty<Integer> GO_SERVER_ARTIFACTS_CACHE_MAX_QUEUE_DEPTH = new GoIntSystemProperty("go.server.artifacts.cache.max.queue.depth", 100);
+    public static final GoSystemProperty<Boolean> GO_SERVER_INCREMENTAL_BACKUP = new GoBooleanSystemProperty("go.server.backup.incremental", false);
+    public static final GoSystemProperty<Boolean> GO_SERVER_ARTIFACTS_DEDUP_ENABLED = new GoBooleanSystemProperty("go.server.artifacts.dedup.enabled", false);
+    public static final GoSystemProperty<Boolean> GO_AGENT_ARTIFACTS_DEDUP = new GoBooleanSystemProperty("go.agent.artifacts.dedup", false);
+    public static final GoSystemProperty<Long> GO_AGENT_FETCH_ARTIFACT_CACHE_MAX_SIZE_IN_MB = new GoLongSystemProperty("go.agent.fetch.artifact.cache.max.size.mb", 0L);
+    public static final GoSystemProperty<String> GO_AGENT_FETCH_ARTIFACT_CACHE_DIR = new GoStringSystemProperty("go.agent.fetch.artifact.cache.dir", null);
+    public static final GoSystemProperty<Integer> GO_SERVER_PIPELINE_ARCHIVE_AFTER_DAYS = new GoIntSystemProperty("go.server.pipeline.archive.after.days", 0);
 
     /* DATABASE CONFIGURATION - Defaults are of H2 */
     public static GoSystemProperty<String> GO_DATABASE_HOST = new GoStringSystemProperty("db.host", "localhost");
@@ -154,6 +168,12 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
     public static GoSystemProperty<String> GO_DATABASE_PASSWORD = new GoStringSystemProperty("db.password", "");
     public static GoIntSystemProperty GO_DATABASE_MAX_ACTIVE = new GoIntSystemProperty("db.maxActive", 32);
     public static GoIntSystemProperty GO_DATABASE_MAX_IDLE = new GoIntSystemProperty("db.maxIdle", 32);
+    public static GoSystemProperty<String> GO_DATABASE_REPLICA_URL = new GoStringSystemProperty("db.replica.url", "");
+    public static GoIntSystemProperty GO_DATABASE_REPLICA_MAX_LAG_SECONDS = new GoIntSystemProperty("db.replica.max.lag.seconds", 5);
+    public static final GoSystemProperty<Boolean> GO_DATABASE_INSTRUMENTATION_ENABLED = new GoBooleanSystemProperty("go.database.instrumentation.enabled", true);
+    public static final GoSystemProperty<Integer> GO_DATABASE_SLOW_QUERY_THRESHOLD_MILLIS = new GoIntSystemProperty("go.database.slow.query.threshold.millis", 1000);
+    public static final GoSystemProperty<Boolean> GO_SERVER_JOB_STATUS_BATCHING_ENABLED = new GoBooleanSystemProperty("go.server.job.status.batching.enabled", false);
+    public static final GoSystemProperty<Integer> GO_SERVER_JOB_DURATION_SAMPLES = new GoIntSystemProperty("go.server.job.duration.samples", 20);
     public static final String H2_DATABASE = "com.thoughtworks.go.server.database.H2Database";
     public static GoStringSystemProperty GO_DATABASE_PROVIDER = new GoStringSystemProperty("go.database.provider", H2_DATABASE);
     public static GoSystemProperty<String> JETTY_XML_FILE_NAME = new GoStringSystemProperty("jetty.xml.file.name", JETTY_XML);
@@ -179,6 +199,8 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
     public static GoSystemProperty<Long> GO_CONFIG_REPO_GC_EXPIRE = new GoLongSystemProperty("go.config.repo.gc.expire", 24L);
     public static GoSystemProperty<Long> GO_CONFIG_REPO_GC_LOOSE_OBJECT_WARNING_THRESHOLD = new GoLongSystemProperty("go.config.repo.gc.warning.looseobject.threshold", 10000L);
     public static GoSystemProperty<Boolean> GO_CONFIG_REPO_PERIODIC_GC = new GoBooleanSystemProperty("go.config.repo.gc.periodic", false);
+    public static GoSystemProperty<Boolean> GO_CONFIG_REPO_INCREMENTAL_PARSE = new GoBooleanSystemProperty("go.config.repo.incremental.parse", true);
+    public static GoSystemProperty<Boolean> GO_CONFIG_XML_FRAGMENT_CACHE = new GoBooleanSystemProperty("go.config.xml.fragment.cache", false);
 
     public static GoSystemProperty<String> GO_UPDATE_SERVER_PUBLIC_KEY_FILE_NAME = new GoStringSystemProperty("go.update.server.public.key.file.name", "go_update_server.pub");
     public static GoSystemProperty<String> GO_UPDATE_SERVER_URL = new GoStringSystemProperty("go.update.server.url", "https://update.gocd.org/channels/supported/latest.json");
@@ -188,6 +210,7 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
     public static GoSystemProperty<String> GO_DATA_SHARING_GET_ENCRYPTION_KEYS_URL = new GoStringSystemProperty("go.datasharing.get.encryption.keys.url", "https://datasharing.gocd.org/encryption_keys");
 
     public static GoSystemProperty<Integer> GO_ELASTIC_PLUGIN_CREATE_AGENT_THREADS = new GoIntSystemProperty("go.elasticplugin.createagent.threads", 5);
+    public static GoSystemProperty<Integer> GO_ELASTIC_PLUGIN_CREATE_AGENT_REQUESTS_PER_MINUTE = new GoIntSystemProperty("go.elasticplugin.createagent.requests.per.minute", 0);
     public static GoSystemProperty<Integer> GO_ELASTIC_PLUGIN_SERVER_PING_THREADS = new GoIntSystemProperty("go.elasticplugin.serverping.threads", 1);
     public static GoSystemProperty<Integer> GO_ENCRYPTION_API_MAX_REQUESTS = new GoIntSystemProperty("go.encryption.api.max.requests", 30);
 
@@ -715,6 +738,69 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
         return GO_SERVER_AUTHORIZATION_EXTENSION_CALLS_CACHE_TIMEOUT_IN_SECONDS.getValue();
     }
 
+    public int getSecretsCacheTtlInSeconds() {
+        return GO_SERVER_SECRETS_CACHE_TTL_IN_SECONDS.getValue();
+    }
+
+    public long getSecretsCacheMaxEntries() {
+        return GO_SERVER_SECRETS_CACHE_MAX_ENTRIES.getValue();
+    }
+
+    public boolean isArtifactsZipCacheEnabled() {
+        return GO_SERVER_ARTIFACTS_ZIP_CACHE_ENABLED.getValue();
+    }
+
+    public long getArtifactsZipCacheMaxSizeInMb() {
+        return GO_SERVER_ARTIFACTS_ZIP_CACHE_MAX_SIZE_IN_MB.getValue();
+    }
+
+    public int getArtifactsZipThreads() {
+        return GO_SERVER_ARTIFACTS_ZIP_THREADS.getValue();
+    }
+
+    public int getArtifactsCacheWorkers() {
+        return GO_SERVER_ARTIFACTS_CACHE_WORKERS.getValue();
+    }
+
+    public int getArtifactsCacheMaxQueueDepth() {
+        return GO_SERVER_ARTIFACTS_CACHE_MAX_QUEUE_DEPTH.getValue();
+    }
+
+    public boolean isIncrementalBackupEnabled() {
+        return GO_SERVER_INCREMENTAL_BACKUP.getValue();
+    }
+
+    public boolean isStreamingArtifactUploadEnabled() {
+        return GO_AGENT_STREAMING_ARTIFACT_UPLOAD.getValue();
+    }
+
+    public boolean isArtifactsDedupEnabled() {
+        return GO_SERVER_ARTIFACTS_DEDUP_ENABLED.getValue();
+    }
+
+    public boolean isArtifactDedupUploadEnabled() {
+        return GO_AGENT_ARTIFACTS_DEDUP.getValue();
+    }
+
+    public long getFetchArtifactCacheMaxSizeInMb() {
+        return GO_AGENT_FETCH_ARTIFACT_CACHE_MAX_SIZE_IN_MB.getValue();
+    }
+
+    /**
+     * @return the folder of the agent's fetch artifact cache, by default next to the agent's config folder
+     */
+    public File getFetchArtifactCacheDir() {
+        String cacheDir = GO_AGENT_FETCH_ARTIFACT_CACHE_DIR.getValue();
+        if (cacheDir != null) {
+            return new File(cacheDir);
+        }
+        return new File(new File(getConfigDir()).getAbsoluteFile().getParentFile(), "fetch-artifact-cache");
+    }
+
+    public int getPipelineArchiveAfterDays() {
+        return GO_SERVER_PIPELINE_ARCHIVE_AFTER_DAYS.getValue();
+    }
+
     public String getBundledPluginAbsolutePath() {
         return new File(get(PLUGIN_GO_PROVIDED_PATH)).getAbsolutePath();
     }
@@ -734,6 +820,30 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
         return GO_DATABASE_PROVIDER.getValue().equals(H2_DATABASE);
     }
 
+    public String getDatabaseReplicaUrl() {
+        return GO_DATABASE_REPLICA_URL.getValue();
+    }
+
+    public int getDatabaseReplicaMaxLagSeconds() {
+        return GO_DATABASE_REPLICA_MAX_LAG_SECONDS.getValue();
+    }
+
+    public boolean isDatabaseInstrumentationEnabled() {
+        return GO_DATABASE_INSTRUMENTATION_ENABLED.getValue();
+    }
+
+    public int getDatabaseSlowQueryThresholdMillis() {
+        return GO_DATABASE_SLOW_QUERY_THRESHOLD_MILLIS.getValue();
+    }
+
+    public boolean isJobStatusBatchingEnabled() {
+        return GO_SERVER_JOB_STATUS_BATCHING_ENABLED.getValue();
+    }
+
+    public int getJobDurationSamples() {
+        return GO_SERVER_JOB_DURATION_SAMPLES.getValue();
+    }
+
     public String getDatabaseProvider() {
         return GO_DATABASE_PROVIDER.getValue();
     }
@@ -799,6 +909,14 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
         return hour * 60 * 60 * 1000;
     }
 
+    public boolean isConfigRepoIncrementalParseEnabled() {
+        return GO_CONFIG_REPO_INCREMENTAL_PARSE.getValue();
+    }
+
+    public boolean isConfigXmlFragmentCacheEnabled() {
+        return GO_CONFIG_XML_FRAGMENT_CACHE.getValue();
+    }
+
     public boolean isApiSafeModeEnabled() {
         return GO_API_WITH_SAFE_MODE.getValue();
     }
@@ -875,6 +993,14 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
         return Integer.parseInt(getPropertyImpl("plugin." + pluginId + ".notifications.listener.count", "1"));
     }
 
+    public int getNotificationMaxPendingForPlugin(String pluginId) {
+        return Integer.parseInt(getPropertyImpl("plugin." + pluginId + ".notifications.max.pending", "0"));
+    }
+
+    public String getNotificationOverflowPolicyForPlugin(String pluginId) {
+        return getPropertyImpl("plugin." + pluginId + ".notifications.overflow.policy", "drop-oldest");
+    }
+
     public boolean enableAnalyticsOnlyForAdmins() {
         return ENABLE_ANALYTICS_ONLY_FOR_ADMINS.getValue();
     }
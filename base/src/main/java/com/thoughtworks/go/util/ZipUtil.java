@@ -19,6 +19,7 @@ import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -137,6 +138,8 @@ public class ZipUtil {
         }
         try {
             outputFile.getParentFile().mkdirs();
+            // replace rather than overwrite, so that other hard links to an existing file keep their content
+            Files.deleteIfExists(outputFile.toPath());
             try (FileOutputStream os = new FileOutputStream(outputFile)) {
                 IOUtils.copyLarge(entryInputStream, os);
                 if (zipEntryHandler != null) {
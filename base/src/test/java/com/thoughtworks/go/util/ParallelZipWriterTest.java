@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelZipWriterTest {
+    private ExecutorService executor;
+    private File srcDir;
+    private File zipFile;
+
+    @BeforeEach
+    void setUp(@TempDir Path tempDir) throws IOException {
+        executor = Executors.newFixedThreadPool(2);
+        srcDir = new File(tempDir.toFile(), "dir");
+        FileUtils.writeStringToFile(new File(srcDir, "a.txt"), "hello hello hello hello hello", UTF_8);
+        FileUtils.writeStringToFile(new File(srcDir, "sub/b.jar"), "already compressed already compressed", UTF_8);
+        FileUtils.writeByteArrayToFile(new File(srcDir, "sub/big.log"), new byte[ParallelZipWriter.IN_MEMORY_LIMIT * 2]);
+        byte[] random = new byte[ParallelZipWriter.IN_MEMORY_LIMIT + 1];
+        new Random(42).nextBytes(random);
+        FileUtils.writeByteArrayToFile(new File(srcDir, "sub/deeper/random.gz"), random);
+        new File(srcDir, "empty").mkdirs();
+        zipFile = new File(tempDir.toFile(), "out.zip");
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldZipFolderWithTheSameEntryNamesAsZipUtil() throws IOException {
+        zip();
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertThat(zip.stream().map(ZipEntry::getName)).containsExactlyInAnyOrder(
+                    "dir/", "dir/a.txt", "dir/empty/", "dir/sub/", "dir/sub/b.jar", "dir/sub/big.log", "dir/sub/deeper/", "dir/sub/deeper/random.gz");
+            assertThat(IOUtils.toString(zip.getInputStream(zip.getEntry("dir/a.txt")), UTF_8)).isEqualTo("hello hello hello hello hello");
+            assertThat(IOUtils.toByteArray(zip.getInputStream(zip.getEntry("dir/sub/big.log")))).hasSize(ParallelZipWriter.IN_MEMORY_LIMIT * 2);
+            assertThat(IOUtils.toByteArray(zip.getInputStream(zip.getEntry("dir/sub/deeper/random.gz"))))
+                    .isEqualTo(FileUtils.readFileToByteArray(new File(srcDir, "sub/deeper/random.gz")));
+        }
+    }
+
+    @Test
+    void shouldStoreAlreadyCompressedFilesAndDeflateTheRest() throws IOException {
+        zip();
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertThat(zip.getEntry("dir/sub/b.jar").getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(zip.getEntry("dir/sub/deeper/random.gz").getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(zip.getEntry("dir/a.txt").getMethod()).isEqualTo(ZipEntry.DEFLATED);
+            assertThat(zip.getEntry("dir/sub/big.log").getMethod()).isEqualTo(ZipEntry.DEFLATED);
+        }
+    }
+
+    @Test
+    void shouldBeReadableByZipUtil() throws IOException {
+        zip();
+        File destDir = new File(zipFile.getParentFile(), "unzipped");
+
+        new ZipUtil().unzip(zipFile, destDir);
+
+        assertThat(FileUtils.readFileToString(new File(destDir, "dir/a.txt"), UTF_8)).isEqualTo("hello hello hello hello hello");
+        assertThat(new File(destDir, "dir/sub/big.log")).hasSize(ParallelZipWriter.IN_MEMORY_LIMIT * 2);
+        assertThat(new File(destDir, "dir/empty")).isDirectory();
+    }
+
+    @Test
+    void shouldDeflateLargeFilesInChunksThatReadBackAsOneEntry() throws IOException {
+        StringBuilder log = new StringBuilder();
+        Random random = new Random(7);
+        while (log.length() < ParallelZipWriter.IN_MEMORY_LIMIT * 3 + 123) {
+            log.append("[go] line ").append(random.nextInt(10000)).append(" of a long build log\n");
+        }
+        File large = new File(srcDir, "sub/large.log");
+        FileUtils.writeStringToFile(large, log.toString(), UTF_8);
+
+        zip();
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            ZipEntry entry = zip.getEntry("dir/sub/large.log");
+            assertThat(entry.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+            assertThat(entry.getCompressedSize()).isLessThan(large.length() / 2);
+            assertThat(IOUtils.toString(zip.getInputStream(entry), UTF_8)).isEqualTo(log.toString());
+            CRC32 crc = new CRC32();
+            crc.update(FileUtils.readFileToByteArray(large));
+            assertThat(entry.getCrc()).isEqualTo(crc.getValue());
+        }
+        try (ZipInputStream zip = new ZipInputStream(new FileInputStream(zipFile))) {
+            // the streaming reader checks each entry against the crc in its data descriptor
+            while (zip.getNextEntry() != null) {
+                IOUtils.toByteArray(zip);
+            }
+        }
+    }
+
+    @Test
+    void shouldCombineTheCrcsOfConsecutivePieces() {
+        byte[] first = "hello ".getBytes(UTF_8);
+        byte[] second = "world, hello again".getBytes(UTF_8);
+        CRC32 whole = new CRC32();
+        whole.update(first);
+        whole.update(second);
+
+        assertThat(ParallelZipWriter.crc32Combine(crcOf(first), crcOf(second), second.length)).isEqualTo(whole.getValue());
+        assertThat(ParallelZipWriter.crc32Combine(0, crcOf(first), first.length)).isEqualTo(crcOf(first));
+    }
+
+    private static long crcOf(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private void zip() throws IOException {
+        try (OutputStream out = new FileOutputStream(zipFile)) {
+            new ParallelZipWriter(executor, Deflater.DEFAULT_COMPRESSION, 2).zip(srcDir, out);
+        }
+    }
+}
@@ -15,11 +15,15 @@
  */
 package com.thoughtworks.go.domain;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.Properties;
+import java.util.TreeMap;
 
 public class ArtifactMd5Checksums implements Serializable {
 
@@ -86,4 +90,23 @@ public class ArtifactMd5Checksums implements Serializable {
     public String md5For(String artifactPath) {
         return checksumProperties.getProperty(artifactPath);
     }
+
+    /**
+     * @return a checksum which changes whenever the content of the artifact file or folder changes, null if the
+     * checksums of its files are not known
+     */
+    public String contentChecksum(String artifactPath) {
+        String path = StringUtils.removeEnd(StringUtils.removeStart(FilenameUtils.separatorsToUnix(artifactPath), "./"), "/");
+        String md5 = md5For(path);
+        if (md5 != null) {
+            return md5;
+        }
+        TreeMap<String, String> filesInFolder = new TreeMap<>();
+        for (String file : checksumProperties.stringPropertyNames()) {
+            if (file.startsWith(path + "/")) {
+                filesInFolder.put(file, checksumProperties.getProperty(file));
+            }
+        }
+        return filesInFolder.isEmpty() ? null : DigestUtils.md5Hex(filesInFolder.toString());
+    }
 }
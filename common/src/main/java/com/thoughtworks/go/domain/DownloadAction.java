@@ -22,6 +22,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 public class DownloadAction {
 
@@ -63,6 +67,16 @@ public class DownloadAction {
         }
     }
 
+    /**
+     * Hands a previously downloaded copy of a resource to the handler, as if it was just fetched from the server
+     */
+    public boolean replay(File downloaded, FetchHandler handler) throws IOException {
+        try (InputStream stream = new FileInputStream(downloaded)) {
+            handler.handle(stream);
+        }
+        return handler.handleResult(HttpServletResponse.SC_OK, goPublisher);
+    }
+
     private void publishDownloadError(String url, String cause, long backout) {
         String message = String.format("Could not fetch artifact %s. Pausing %s seconds to retry. Error was : %s", url, backout, cause);
         goPublisher.taggedConsumeLineWithPrefix(GoPublisher.ERR, message);
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import com.thoughtworks.go.work.GoPublisher;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @understands keeping the artifacts an agent fetched, so that jobs fetching the same artifact again are served from
+ * disk instead of the server. Entries are keyed by the job, the path of the artifact and the checksum of its content,
+ * written atomically and evicted least recently used first once the cache outgrows its size.
+ */
+public class FetchArtifactCache {
+    private static final Logger LOG = LoggerFactory.getLogger(FetchArtifactCache.class);
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File cacheDir;
+    private final long maxSizeInBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Set<String> downloading = ConcurrentHashMap.newKeySet();
+
+    public FetchArtifactCache(File cacheDir, long maxSizeInBytes) {
+        this.cacheDir = cacheDir;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxSizeInBytes > 0;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public void fetch(DownloadAction downloadAction, String url, FetchHandler handler, String jobLocator, String path, String checksum) throws Exception {
+        String key = DigestUtils.sha256Hex(jobLocator + "\0" + path + "\0" + checksum);
+        File entry = new File(cacheDir, key);
+        if (entry.isFile() && replay(downloadAction, handler, entry)) {
+            hits.incrementAndGet();
+            LOG.info("[Agent Fetch Artifact] Served '{}' of '{}' from the fetch artifact cache", path, jobLocator);
+            return;
+        }
+
+        misses.incrementAndGet();
+        if (!downloading.add(key)) {
+            // another job is downloading it into the cache, rather than wait for it download it again without caching
+            downloadAction.perform(url, handler);
+            return;
+        }
+        try {
+            FileUtils.forceMkdir(cacheDir);
+            File temp = File.createTempFile(key.substring(0, 8), TEMP_SUFFIX, cacheDir);
+            try {
+                CachingFetchHandler cachingHandler = new CachingFetchHandler(handler, temp);
+                downloadAction.perform(url, cachingHandler);
+                if (cachingHandler.downloaded()) {
+                    Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    evict();
+                }
+            } finally {
+                FileUtils.deleteQuietly(temp);
+            }
+        } finally {
+            downloading.remove(key);
+        }
+    }
+
+    /**
+     * @return false if the cached entry could not be used, in which case it is dropped and the artifact is downloaded
+     */
+    private boolean replay(DownloadAction downloadAction, FetchHandler handler, File entry) {
+        entry.setLastModified(System.currentTimeMillis());
+        try {
+            if (downloadAction.replay(entry, handler)) {
+                return true;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("[Agent Fetch Artifact] Failed to use the fetch artifact cache entry '{}', downloading the artifact instead", entry, e);
+        }
+        FileUtils.deleteQuietly(entry);
+        return false;
+    }
+
+    private synchronized void evict() {
+        File[] entries = cacheDir.listFiles(file -> file.isFile() && !file.getName().endsWith(TEMP_SUFFIX));
+        if (entries == null) {
+            return;
+        }
+        long size = Arrays.stream(entries).mapToLong(File::length).sum();
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < entries.length && size > maxSizeInBytes; i++) {
+            long length = entries[i].length();
+            if (entries[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Saves the response to the cache folder before handing it to the actual handler
+     */
+    private static class CachingFetchHandler implements FetchHandler {
+        private final FetchHandler handler;
+        private final File temp;
+        private int lastResponseCode;
+
+        CachingFetchHandler(FetchHandler handler, File temp) {
+            this.handler = handler;
+            this.temp = temp;
+        }
+
+        @Override
+        public String url(String remoteHost, String workingUrl) throws IOException {
+            return handler.url(remoteHost, workingUrl);
+        }
+
+        @Override
+        public void handle(InputStream stream) throws IOException {
+            FileUtils.copyInputStreamToFile(stream, temp);
+            try (InputStream downloaded = new FileInputStream(temp)) {
+                handler.handle(downloaded);
+            }
+        }
+
+        @Override
+        public boolean handleResult(int returncode, GoPublisher goPublisher) {
+            lastResponseCode = returncode;
+            return handler.handleResult(returncode, goPublisher);
+        }
+
+        @Override
+        public void useArtifactMd5Checksums(ArtifactMd5Checksums artifactMd5Checksums) {
+            handler.useArtifactMd5Checksums(artifactMd5Checksums);
+        }
+
+        boolean downloaded() {
+            return lastResponseCode == HttpServletResponse.SC_OK;
+        }
+    }
+}
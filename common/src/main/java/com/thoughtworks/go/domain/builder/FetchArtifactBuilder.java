@@ -47,13 +47,24 @@ public class FetchArtifactBuilder extends Builder {
     }
 
     public void fetch(DownloadAction downloadAction, URLService urlService) throws Exception {
+        fetch(downloadAction, urlService, null);
+    }
+
+    public void fetch(DownloadAction downloadAction, URLService urlService, FetchArtifactCache cache) throws Exception {
         downloadChecksumFile(downloadAction, urlService.baseRemoteURL());
-        downloadArtifact(downloadAction, urlService.baseRemoteURL());
+        downloadArtifact(downloadAction, urlService.baseRemoteURL(), cache);
     }
 
-    private void downloadArtifact(DownloadAction downloadAction, String baseRemoteUrl) throws Exception {
-        handler.useArtifactMd5Checksums(checksumFileHandler.getArtifactMd5Checksums());
-        pullArtifact(downloadAction, handler.url(baseRemoteUrl, artifactLocator()), handler);
+    private void downloadArtifact(DownloadAction downloadAction, String baseRemoteUrl, FetchArtifactCache cache) throws Exception {
+        ArtifactMd5Checksums checksums = checksumFileHandler.getArtifactMd5Checksums();
+        handler.useArtifactMd5Checksums(checksums);
+        String url = handler.url(baseRemoteUrl, artifactLocator());
+        String contentChecksum = checksums == null ? null : checksums.contentChecksum(getSrc());
+        if (cache == null || !cache.isEnabled() || contentChecksum == null) {
+            pullArtifact(downloadAction, url, handler);
+            return;
+        }
+        cache.fetch(downloadAction, url, handler, jobIdentifier.buildLocator(), getSrc(), contentChecksum);
     }
 
     private void downloadChecksumFile(DownloadAction downloadAction, String baseRemoteUrl) throws Exception {
@@ -16,13 +16,17 @@
 package com.thoughtworks.go.publishers;
 
 import com.thoughtworks.go.domain.DownloadAction;
+import com.thoughtworks.go.domain.FetchArtifactCache;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.domain.builder.FetchArtifactBuilder;
 import com.thoughtworks.go.remote.AgentIdentifier;
 import com.thoughtworks.go.remote.work.ConsoleOutputTransmitter;
 import com.thoughtworks.go.remote.work.RemoteConsoleAppender;
+import com.thoughtworks.go.server.service.AgentRuntimeInfo;
 import com.thoughtworks.go.util.*;
 import com.thoughtworks.go.work.DefaultGoPublisher;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -35,8 +39,9 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Properties;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.*;
 import java.util.zip.Deflater;
 
 import static com.thoughtworks.go.util.ArtifactLogUtil.getConsoleOutputFolderAndFileNameUrl;
@@ -52,13 +57,21 @@ public class GoArtifactsManipulator {
     private final HttpService httpService;
     private final URLService urlService;
     private final ZipUtil zipUtil;
+    private final SystemEnvironment systemEnvironment;
+    private final FetchArtifactCache fetchArtifactCache;
     private static final Logger LOGGER = LoggerFactory.getLogger(GoArtifactsManipulator.class);
 
     @Autowired
     public GoArtifactsManipulator(HttpService httpService, URLService urlService, ZipUtil zipUtil) {
+        this(httpService, urlService, zipUtil, new SystemEnvironment());
+    }
+
+    GoArtifactsManipulator(HttpService httpService, URLService urlService, ZipUtil zipUtil, SystemEnvironment systemEnvironment) {
         this.httpService = httpService;
         this.urlService = urlService;
         this.zipUtil = zipUtil;
+        this.systemEnvironment = systemEnvironment;
+        this.fetchArtifactCache = new FetchArtifactCache(systemEnvironment.getFetchArtifactCacheDir(), systemEnvironment.getFetchArtifactCacheMaxSizeInMb() * GoConstants.MEGA_BYTE);
     }
 
     public void publish(DefaultGoPublisher goPublisher, String destPath, File source, JobIdentifier jobIdentifier) {
@@ -70,15 +83,12 @@ public class GoArtifactsManipulator {
 
         int publishingAttempts = 0;
         Throwable lastException = null;
+        Map<String, String> linkedFiles = null;
         while (publishingAttempts < PUBLISH_MAX_RETRIES) {
             File tmpDir = null;
             try {
                 publishingAttempts++;
 
-                tmpDir = FileUtil.createTempFolder();
-                File dataToUpload = new File(tmpDir, source.getName() + ".zip");
-                zipUtil.zip(source, dataToUpload, Deflater.BEST_SPEED);
-
                 long size = 0;
                 if (source.isDirectory()) {
                     size = FileUtils.sizeOfDirectory(source);
@@ -91,7 +101,19 @@ public class GoArtifactsManipulator {
                 String normalizedDestPath = FilenameUtils.separatorsToUnix(destPath);
                 String url = urlService.getUploadUrlOfAgent(jobIdentifier, normalizedDestPath, publishingAttempts);
 
-                int statusCode = httpService.upload(url, size, dataToUpload, artifactChecksums(source, normalizedDestPath));
+                int statusCode;
+                if (systemEnvironment.isStreamingArtifactUploadEnabled()) {
+                    if (linkedFiles == null) {
+                        linkedFiles = linkDeduplicatedFiles(goPublisher, source, url);
+                    }
+                    int resumeFrom = publishingAttempts > 1 ? httpService.streamedUploadProgress(url) : 0;
+                    statusCode = httpService.uploadStreaming(url, size, new StreamingArtifactZipEntity(source, normalizedDestPath, resumeFrom, linkedFiles), resumeFrom);
+                } else {
+                    tmpDir = FileUtil.createTempFolder();
+                    File dataToUpload = new File(tmpDir, source.getName() + ".zip");
+                    zipUtil.zip(source, dataToUpload, Deflater.BEST_SPEED);
+                    statusCode = httpService.upload(url, size, dataToUpload, artifactChecksums(source, normalizedDestPath));
+                }
 
                 if (statusCode == HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE) {
                     String message = String.format("Artifact upload for file %s (Size: %s) was denied by the server. This usually happens when server runs out of disk space.",
@@ -119,6 +141,57 @@ public class GoArtifactsManipulator {
         }
     }
 
+    /**
+     * Offers the hashes of the large files of an artifact to the server, which links the ones it already has
+     *
+     * @return md5 checksums of the files which need not be uploaded, by their entry name in the artifact zip
+     */
+    private Map<String, String> linkDeduplicatedFiles(DefaultGoPublisher goPublisher, File source, String url) throws IOException {
+        if (!systemEnvironment.isArtifactDedupUploadEnabled()) {
+            return Collections.emptyMap();
+        }
+        Collection<File> files = source.isDirectory() ? FileUtils.listFiles(source, null, true) : Collections.singletonList(source);
+        Map<String, String> md5s = new HashMap<>();
+        List<String> blobs = new ArrayList<>();
+        for (File file : files) {
+            if (file.length() < GoConstants.ARTIFACT_DEDUP_MIN_SIZE) {
+                continue;
+            }
+            MessageDigest md5 = DigestUtils.getMd5Digest();
+            MessageDigest sha256 = DigestUtils.getSha256Digest();
+            try (InputStream in = new FileInputStream(file)) {
+                byte[] buffer = new byte[32 * 1024];
+                int length;
+                while ((length = in.read(buffer)) > 0) {
+                    md5.update(buffer, 0, length);
+                    sha256.update(buffer, 0, length);
+                }
+            }
+            String name = FilenameUtils.separatorsToUnix(removeStart(file.getAbsolutePath(), source.getParentFile().getAbsolutePath() + File.separator));
+            md5s.put(name, Hex.encodeHexString(md5.digest()));
+            blobs.add(Hex.encodeHexString(sha256.digest()) + "\t" + name);
+        }
+        if (blobs.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> linked = new HashMap<>();
+        try {
+            for (String name : httpService.linkDeduplicatedFiles(url, blobs)) {
+                if (md5s.containsKey(name)) {
+                    linked.put(name, md5s.get(name));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("[Artifact Upload] Could not de-duplicate files of {}, uploading all of them", source.getAbsolutePath(), e);
+            return Collections.emptyMap();
+        }
+        if (!linked.isEmpty()) {
+            goPublisher.taggedConsumeLineWithPrefix(PUBLISH, String.format("Server already has %s of %s large files of %s, skipping their upload", linked.size(), blobs.size(), source.getAbsolutePath()));
+        }
+        return linked;
+    }
+
     private Properties artifactChecksums(File source, String destPath) throws IOException {
         if (source.isDirectory()) {
             return computeChecksumForContentsOfDirectory(source, destPath);
@@ -137,25 +210,28 @@ public class GoArtifactsManipulator {
         for (File file : fileStructure) {
             String filePath = removeStart(file.getAbsolutePath(), directory.getParentFile().getAbsolutePath());
             try (FileInputStream inputStream = new FileInputStream(file)) {
-                checksumProperties.setProperty(getEffectiveFileName(destPath, FilenameUtils.separatorsToUnix(filePath)), md5Hex(inputStream));
+                checksumProperties.setProperty(effectiveFileName(destPath, FilenameUtils.separatorsToUnix(filePath)), md5Hex(inputStream));
             }
         }
         return checksumProperties;
     }
 
     private Properties computeChecksumForFile(String sourceName, String md5, String destPath) {
-        String effectiveFileName = getEffectiveFileName(destPath, sourceName);
+        String effectiveFileName = effectiveFileName(destPath, sourceName);
         Properties properties = new Properties();
         properties.setProperty(effectiveFileName, md5);
         return properties;
     }
 
-    private String getEffectiveFileName(String computedDestPath, String filePath) {
+    /**
+     * @return the path of the artifact as it is recorded in the md5 checksum file of the job
+     */
+    public static String effectiveFileName(String computedDestPath, String filePath) {
         File artifactDest = computedDestPath.isEmpty() ? new File(filePath) : new File(computedDestPath, filePath);
         return removeLeadingSlash(artifactDest);
     }
 
-    private String removeLeadingSlash(File artifactDest) {
+    private static String removeLeadingSlash(File artifactDest) {
         return removeStart(FilenameUtils.separatorsToUnix(artifactDest.getPath()), "/");
     }
 
@@ -165,7 +241,7 @@ public class GoArtifactsManipulator {
             String fetchMsg = String.format("Fetching artifact [%s] from [%s]", fetchArtifactBuilder.getSrc(),
                     fetchArtifactBuilder.jobLocatorForDisplay());
             goPublisher.taggedConsumeLineWithPrefix(DefaultGoPublisher.OUT, fetchMsg);
-            fetchArtifactBuilder.fetch(new DownloadAction(httpService, goPublisher, new SystemTimeClock()), urlService);
+            fetchArtifactBuilder.fetch(new DownloadAction(httpService, goPublisher, new SystemTimeClock()), urlService, fetchArtifactCache);
         } catch (Exception e) {
             String fetchMsg = String.format("Failed to save artifact [%s] to [%s]",
                     fetchArtifactBuilder.getSrc(), fetchArtifactBuilder.getDest());
@@ -175,6 +251,12 @@ public class GoArtifactsManipulator {
         }
     }
 
+    public void reportFetchArtifactCacheUsage(AgentRuntimeInfo agentRuntimeInfo) {
+        if (fetchArtifactCache.isEnabled()) {
+            agentRuntimeInfo.setFetchArtifactCacheUsage(fetchArtifactCache.hits(), fetchArtifactCache.misses());
+        }
+    }
+
     private String getDestPath(String file) {
         if (StringUtils.isEmpty(file)) {
             return "[defaultRoot]";
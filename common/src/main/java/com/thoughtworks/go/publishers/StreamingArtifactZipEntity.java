@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.publishers;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @understands zipping an artifact straight into the body of an upload request, computing the md5 checksum of every
+ * file in the same pass. The checksums follow the artifact as the last entry of the zip. Entries which the server
+ * already received in an earlier attempt are only checksummed, not sent again. Files which the server linked from its
+ * de-duplicated store are not sent at all, they only contribute their checksum.
+ */
+public class StreamingArtifactZipEntity extends AbstractHttpEntity {
+    public static final String CHECKSUMS_ENTRY_NAME = ".go-artifact-checksums";
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final File source;
+    private final String destPath;
+    private final int resumeFrom;
+    private final Map<String, String> linkedFiles;
+
+    public StreamingArtifactZipEntity(File source, String destPath, int resumeFrom) {
+        this(source, destPath, resumeFrom, Collections.emptyMap());
+    }
+
+    /**
+     * @param linkedFiles md5 checksums of the files already on the server, by entry name
+     */
+    public StreamingArtifactZipEntity(File source, String destPath, int resumeFrom, Map<String, String> linkedFiles) {
+        this.source = source;
+        this.destPath = destPath;
+        this.resumeFrom = resumeFrom;
+        this.linkedFiles = linkedFiles;
+        setContentType("application/zip");
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public InputStream getContent() {
+        throw new UnsupportedOperationException("Artifact is zipped while it is being written, it can not be read back");
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+        zip.setLevel(Deflater.BEST_SPEED);
+        Properties checksums = new Properties();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        List<File> files = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        collect("", source, files, names);
+        int entry = 0;
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            String name = names.get(i);
+            String linkedMd5 = linkedFiles.get(name);
+            if (linkedMd5 != null && file.isFile()) {
+                checksums.setProperty(GoArtifactsManipulator.effectiveFileName(destPath, name), linkedMd5);
+                continue;
+            }
+            boolean send = entry++ >= resumeFrom;
+            if (send) {
+                ZipEntry zipEntry = new ZipEntry(name);
+                zipEntry.setTime(file.lastModified());
+                zip.putNextEntry(zipEntry);
+            }
+            if (file.isFile()) {
+                MessageDigest md5 = DigestUtils.getMd5Digest();
+                try (InputStream in = new FileInputStream(file)) {
+                    int length;
+                    while ((length = in.read(buffer)) > 0) {
+                        md5.update(buffer, 0, length);
+                        if (send) {
+                            zip.write(buffer, 0, length);
+                        }
+                    }
+                }
+                checksums.setProperty(GoArtifactsManipulator.effectiveFileName(destPath, name), Hex.encodeHexString(md5.digest()));
+            }
+            if (send) {
+                zip.closeEntry();
+            }
+        }
+
+        zip.putNextEntry(new ZipEntry(CHECKSUMS_ENTRY_NAME));
+        checksums.store(zip, "");
+        zip.closeEntry();
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Lists entries in a stable order, so that an upload can be resumed by position
+     */
+    private static void collect(String parentPath, File file, List<File> files, List<String> names) {
+        if (!file.isDirectory()) {
+            files.add(file);
+            names.add(parentPath + file.getName());
+            return;
+        }
+        String name = parentPath + file.getName() + "/";
+        files.add(file);
+        names.add(name);
+        File[] children = file.listFiles();
+        if (children != null) {
+            Arrays.sort(children, Comparator.comparing(File::getName));
+            for (File child : children) {
+                collect(name, child, files, names);
+            }
+        }
+    }
+}
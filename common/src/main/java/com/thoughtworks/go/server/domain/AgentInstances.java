@@ -31,21 +31,32 @@ import org.springframework.util.LinkedMultiValueMap;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import static com.thoughtworks.go.domain.AgentInstance.createFromAgent;
 import static com.thoughtworks.go.util.SystemEnvironment.MAX_PENDING_AGENTS_ALLOWED;
 import static java.lang.String.format;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.StreamSupport.stream;
+import static java.util.stream.Collectors.toSet;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.join;
 
+/**
+ * @understands the agents known to the server, by uuid. Elastic agents are also indexed by their plugin and elastic
+ * agent id, so that looking them up does not go through every agent. The elastic ids of an agent come with its runtime
+ * info, so the index is brought up to date whenever an agent is added, updated or removed through this class.
+ */
 public class AgentInstances implements Iterable<AgentInstance> {
     private SystemEnvironment systemEnvironment;
 
     private Map<String, AgentInstance> uuidToAgentInstanceMap = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, AgentInstance>> elasticPluginIdToAgentInstances = new ConcurrentHashMap<>();
+    private final Map<List<String>, Set<String>> elasticAgentToUuids = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> uuidToElasticAgent = new ConcurrentHashMap<>();
 
     private AgentStatusChangeListener agentStatusChangeListener;
 
@@ -64,7 +75,10 @@ public class AgentInstances implements Iterable<AgentInstance> {
     }
 
     public void add(AgentInstance agent) {
-        uuidToAgentInstanceMap.put(agent.getAgent().getUuid(), agent);
+        uuidToAgentInstanceMap.compute(agent.getAgent().getUuid(), (uuid, existing) -> {
+            indexElasticAgent(uuid, agent);
+            return agent;
+        });
     }
 
     public void updateAgentAboutCancelledBuild(String uuid, boolean isCancelled) {
@@ -93,30 +107,26 @@ public class AgentInstances implements Iterable<AgentInstance> {
     }
 
     public void removeAgent(String uuid) {
-        uuidToAgentInstanceMap.remove(uuid);
+        uuidToAgentInstanceMap.compute(uuid, (k, existing) -> {
+            removeFromElasticIndex(uuid);
+            return null;
+        });
     }
 
     public void clearAll() {
         uuidToAgentInstanceMap.clear();
+        elasticPluginIdToAgentInstances.clear();
+        elasticAgentToUuids.clear();
+        uuidToElasticAgent.clear();
     }
 
     public AgentInstances getAllAgents() {
-        AgentInstances allAgentInstances = new AgentInstances(agentStatusChangeListener);
-        currentInstances().forEach(allAgentInstances::add);
-        return allAgentInstances;
+        return copyOf(agentInstance -> true);
     }
 
     public AgentInstances findRegisteredAgents() {
         this.refresh();
-        AgentInstances registeredInstances = new AgentInstances(agentStatusChangeListener);
-
-        synchronized (uuidToAgentInstanceMap) {
-            stream(this.spliterator(), false)
-                    .filter(agentInstance -> agentInstance.getStatus().isRegistered())
-                    .forEach(registeredInstances::add);
-        }
-
-        return registeredInstances;
+        return copyOf(this::isRegistered);
     }
 
     @Override
@@ -133,7 +143,7 @@ public class AgentInstances implements Iterable<AgentInstance> {
     }
 
     public void refresh() {
-        currentInstances().forEach(AgentInstance::refresh);
+        uuidToAgentInstanceMap.values().forEach(AgentInstance::refresh);
         getRemovableAgents().forEach(agentInstance -> removeAgent(agentInstance.getAgent().getUuid()));
     }
 
@@ -141,25 +151,28 @@ public class AgentInstances implements Iterable<AgentInstance> {
         for (Agent agentFromDB : agentsFromDB) {
             String uuid = agentFromDB.getUuid();
             if (uuidToAgentInstanceMap.containsKey(uuid)) {
-                uuidToAgentInstanceMap.get(uuid).syncAgentFrom(agentFromDB);
+                syncAgentFrom(agentFromDB);
             } else {
-                AgentInstance newAgent = createFromAgent(agentFromDB, new SystemEnvironment(), agentStatusChangeListener);
-                uuidToAgentInstanceMap.put(uuid, newAgent);
+                add(createFromAgent(agentFromDB, new SystemEnvironment(), agentStatusChangeListener));
             }
         }
 
-        synchronized (uuidToAgentInstanceMap) {
-            List<String> uuids = new ArrayList<>();
-            for (String uuid : uuidToAgentInstanceMap.keySet()) {
-                AgentInstance instance = uuidToAgentInstanceMap.get(uuid);
-                if (!(instance.getStatus() == AgentStatus.Pending)) {
-                    if (!agentsFromDB.hasAgent(uuid)) {
-                        uuids.add(uuid);
-                    }
-                }
+        Set<String> uuidsFromDB = agentsFromDB.stream().map(Agent::getUuid).collect(toSet());
+        List<String> uuids = new ArrayList<>();
+        for (AgentInstance instance : uuidToAgentInstanceMap.values()) {
+            if (instance.getStatus() != AgentStatus.Pending && !uuidsFromDB.contains(instance.getUuid())) {
+                uuids.add(instance.getUuid());
             }
-            uuids.forEach(uuidToAgentInstanceMap::remove);
         }
+        uuids.forEach(this::removeAgent);
+    }
+
+    public void syncAgentFrom(Agent agent) {
+        uuidToAgentInstanceMap.computeIfPresent(agent.getUuid(), (uuid, agentInstance) -> {
+            agentInstance.syncAgentFrom(agent);
+            indexElasticAgent(uuid, agentInstance);
+            return agentInstance;
+        });
     }
 
     public boolean hasAgent(String uuid) {
@@ -177,12 +190,14 @@ public class AgentInstances implements Iterable<AgentInstance> {
             this.add(agentInstance);
         }
         agentInstance.update(runtimeInfo);
+        reindexElasticAgent(agentInstance);
         return agentInstance;
     }
 
     public void updateAgentRuntimeInfo(AgentRuntimeInfo runtimeInfo) {
         AgentInstance agentInstance = this.findAgentAndRefreshStatus(runtimeInfo.getUUId());
         agentInstance.update(runtimeInfo);
+        reindexElasticAgent(agentInstance);
     }
 
     public void building(String uuid, AgentBuildingInfo agentBuildingInfo) {
@@ -194,32 +209,32 @@ public class AgentInstances implements Iterable<AgentInstance> {
             return emptyList();
         }
 
-        return stream(this.spliterator(), false)
-                .filter(agentInstance -> uuids.contains(agentInstance.getUuid()))
+        return uuids.stream()
+                .distinct()
+                .map(uuidToAgentInstanceMap::get)
+                .filter(Objects::nonNull)
+                .sorted()
                 .collect(toList());
     }
 
     public LinkedMultiValueMap<String, ElasticAgentMetadata> getAllElasticAgentsGroupedByPluginId() {
         LinkedMultiValueMap<String, ElasticAgentMetadata> map = new LinkedMultiValueMap<>();
 
-        for (Map.Entry<String, AgentInstance> entry : uuidToAgentInstanceMap.entrySet()) {
-            AgentInstance agentInstance = entry.getValue();
-            if (agentInstance.isElastic()) {
-                ElasticAgentMetadata metadata = agentInstance.elasticAgentMetadata();
-                map.add(metadata.elasticPluginId(), metadata);
+        elasticPluginIdToAgentInstances.forEach((elasticPluginId, agentInstances) -> agentInstances.forEach((uuid, agentInstance) -> {
+            if (uuidToAgentInstanceMap.get(uuid) == agentInstance) {
+                map.add(elasticPluginId, agentInstance.elasticAgentMetadata());
             }
-        }
+        }));
 
         return map;
     }
 
     public AgentInstance findElasticAgent(final String elasticAgentId, final String elasticPluginId) {
-        Collection<AgentInstance> agentInstances = uuidToAgentInstanceMap.values();
+        Set<String> uuidsOfElasticAgent = elasticAgentToUuids.getOrDefault(elasticAgentKey(elasticPluginId, elasticAgentId), emptySet());
 
-        List<AgentInstance> matchingElasticInstances = agentInstances.stream()
-                .filter(agentInstance -> agentInstance.isElastic()
-                        && agentInstance.elasticAgentMetadata().elasticAgentId().equals(elasticAgentId)
-                        && agentInstance.elasticAgentMetadata().elasticPluginId().equals(elasticPluginId))
+        List<AgentInstance> matchingElasticInstances = uuidsOfElasticAgent.stream()
+                .map(uuidToAgentInstanceMap::get)
+                .filter(Objects::nonNull)
                 .collect(toList());
 
         if (CollectionUtils.isEmpty(matchingElasticInstances)) {
@@ -252,23 +267,97 @@ public class AgentInstances implements Iterable<AgentInstance> {
                 .collect(toList());
     }
 
+    private void reindexElasticAgent(AgentInstance agentInstance) {
+        uuidToAgentInstanceMap.computeIfPresent(agentInstance.getUuid(), (uuid, current) -> {
+            if (current == agentInstance) {
+                indexElasticAgent(uuid, current);
+            }
+            return current;
+        });
+    }
+
+    // must run inside a compute on uuidToAgentInstanceMap for the same uuid
+    private void indexElasticAgent(String uuid, AgentInstance agentInstance) {
+        List<String> key = null;
+        if (agentInstance.isElastic()) {
+            ElasticAgentMetadata metadata = agentInstance.elasticAgentMetadata();
+            key = elasticAgentKey(metadata.elasticPluginId(), metadata.elasticAgentId());
+        }
+        if (!Objects.equals(key, uuidToElasticAgent.get(uuid))) {
+            removeFromElasticIndex(uuid);
+        }
+        if (key != null) {
+            uuidToElasticAgent.put(uuid, key);
+            elasticPluginIdToAgentInstances.computeIfAbsent(key.get(0), pluginId -> new ConcurrentHashMap<>()).put(uuid, agentInstance);
+            elasticAgentToUuids.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(uuid);
+        }
+    }
+
+    private void removeFromElasticIndex(String uuid) {
+        List<String> key = uuidToElasticAgent.remove(uuid);
+        if (key == null) {
+            return;
+        }
+        elasticPluginIdToAgentInstances.computeIfPresent(key.get(0), (pluginId, agentInstances) -> {
+            agentInstances.remove(uuid);
+            return agentInstances.isEmpty() ? null : agentInstances;
+        });
+        elasticAgentToUuids.computeIfPresent(key, (k, uuids) -> {
+            uuids.remove(uuid);
+            return uuids.isEmpty() ? null : uuids;
+        });
+    }
+
+    private static List<String> elasticAgentKey(String elasticPluginId, String elasticAgentId) {
+        return asList(elasticPluginId, elasticAgentId);
+    }
+
     private boolean isPendingAndNotNullInstance(AgentInstance agentInstance) {
         return agentInstance.isPending() && !agentInstance.isNullAgent();
     }
 
     private List<AgentInstance> getRemovableAgents() {
-        return stream(this.spliterator(), false)
+        return uuidToAgentInstanceMap.values().stream()
                 .filter(AgentInstance::canRemove)
                 .collect(toList());
     }
 
     private Collection<AgentInstance> currentInstances() {
-        return new TreeSet<>(uuidToAgentInstanceMap.values());
+        List<AgentInstance> instances = new ArrayList<>(uuidToAgentInstanceMap.values());
+        Collections.sort(instances);
+        return instances;
+    }
+
+    /**
+     * Copies the matching agents along with their entries in the elastic agent index, instead of adding them one by
+     * one, which would work the index out again for each of them.
+     */
+    private AgentInstances copyOf(Predicate<AgentInstance> filter) {
+        AgentInstances copy = new AgentInstances(agentStatusChangeListener);
+        copy.systemEnvironment = systemEnvironment;
+        uuidToAgentInstanceMap.forEach((uuid, agentInstance) -> {
+            if (!filter.test(agentInstance)) {
+                return;
+            }
+            copy.uuidToAgentInstanceMap.put(uuid, agentInstance);
+            List<String> key = uuidToElasticAgent.get(uuid);
+            if (key != null) {
+                copy.uuidToElasticAgent.put(uuid, key);
+                copy.elasticPluginIdToAgentInstances.computeIfAbsent(key.get(0), pluginId -> new ConcurrentHashMap<>()).put(uuid, agentInstance);
+                copy.elasticAgentToUuids.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(uuid);
+            }
+        });
+        return copy;
+    }
+
+    private boolean isRegistered(AgentInstance agentInstance) {
+        return agentInstance.getStatus().isRegistered();
     }
 
     private boolean isMaxPendingAgentsLimitReached() {
         Integer maxPendingAgentsAllowed = systemEnvironment.get(MAX_PENDING_AGENTS_ALLOWED);
-        int pendingAgentsCount = this.size() - findRegisteredAgents().size();
+        refresh();
+        long pendingAgentsCount = uuidToAgentInstanceMap.values().stream().filter(agentInstance -> !isRegistered(agentInstance)).count();
         return pendingAgentsCount >= maxPendingAgentsAllowed;
     }
 }
@@ -54,6 +54,10 @@ public class AgentRuntimeInfo implements Serializable {
     private volatile String operatingSystemName;
     @Expose
     private volatile String cookie;
+    @Expose
+    private volatile Long fetchArtifactCacheHits;
+    @Expose
+    private volatile Long fetchArtifactCacheMisses;
 
     public AgentRuntimeInfo(AgentIdentifier identifier, AgentRuntimeStatus runtimeStatus, String location, String cookie) {
         this.identifier = identifier;
@@ -221,6 +225,32 @@ public class AgentRuntimeInfo implements Serializable {
         this.usableSpace = usableSpace;
     }
 
+    public void setFetchArtifactCacheUsage(long hits, long misses) {
+        this.fetchArtifactCacheHits = hits;
+        this.fetchArtifactCacheMisses = misses;
+    }
+
+    public Long getFetchArtifactCacheHits() {
+        return fetchArtifactCacheHits;
+    }
+
+    public Long getFetchArtifactCacheMisses() {
+        return fetchArtifactCacheMisses;
+    }
+
+    /**
+     * @return share of artifact fetches served from the agent's fetch artifact cache, null if the agent has no cache
+     * or has not fetched anything yet
+     */
+    public Double getFetchArtifactCacheHitRatio() {
+        Long hits = fetchArtifactCacheHits;
+        Long misses = fetchArtifactCacheMisses;
+        if (hits == null || misses == null || hits + misses == 0) {
+            return null;
+        }
+        return (double) hits / (hits + misses);
+    }
+
     public void clearBuildingInfo() {
         this.buildingInfo = NOT_BUILDING;
     }
@@ -280,6 +310,8 @@ public class AgentRuntimeInfo implements Serializable {
         this.location = newRuntimeInfo.getLocation();
         this.usableSpace = newRuntimeInfo.getUsableSpace();
         this.operatingSystemName = newRuntimeInfo.getOperatingSystem();
+        this.fetchArtifactCacheHits = newRuntimeInfo.getFetchArtifactCacheHits();
+        this.fetchArtifactCacheMisses = newRuntimeInfo.getFetchArtifactCacheMisses();
     }
 
     public boolean isElastic() {
@@ -112,6 +112,14 @@ public class HealthStateScope implements Comparable<HealthStateScope> {
         return new HealthStateScope(ScopeType.SCHEDULED_BACKUP, "Scheduled backup");
     }
 
+    public static HealthStateScope forBackgroundConfigValidation() {
+        return new HealthStateScope(ScopeType.GLOBAL, "BackgroundConfigValidation");
+    }
+
+    public static HealthStateScope forReadReplica() {
+        return new HealthStateScope(ScopeType.GLOBAL, "ReadReplica");
+    }
+
     public boolean isSame(String scope) {
         return StringUtils.endsWithIgnoreCase(this.scope, scope);
     }
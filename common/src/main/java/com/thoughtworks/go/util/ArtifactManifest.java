@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.util;
+
+import com.thoughtworks.go.domain.ArtifactMd5Checksums;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.thoughtworks.go.util.ArtifactLogUtil.CRUISE_OUTPUT_FOLDER;
+import static com.thoughtworks.go.util.ArtifactLogUtil.MD5_CHECKSUM_FILENAME;
+
+/**
+ * @understands a compact, pre-sorted listing of the artifacts of a job, so that the artifacts tree can be rendered
+ * without walking the file system.
+ */
+public class ArtifactManifest {
+    private static final int MAGIC = 0x474f414d;
+    private static final int VERSION = 1;
+
+    private final List<Entry> entries;
+
+    ArtifactManifest(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return entries in the order they are listed in the artifacts tree: depth first, folders before files, by name
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    public static ArtifactManifest build(File rootFolder) {
+        List<Entry> entries = new ArrayList<>();
+        File checksumFile = new File(new File(rootFolder, CRUISE_OUTPUT_FOLDER), MD5_CHECKSUM_FILENAME);
+        ArtifactMd5Checksums checksums = checksumFile.isFile() ? new ArtifactMd5Checksums(checksumFile) : null;
+        collect(rootFolder, "", checksums, entries);
+        return new ArtifactManifest(entries);
+    }
+
+    private static void collect(File folder, String parentPath, ArtifactMd5Checksums checksums, List<Entry> entries) {
+        File[] files = folder.listFiles(DirectoryReader.VISIBLE_NON_SERIALIZED_FILES);
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new FileComparator());
+        for (File file : files) {
+            String path = parentPath + file.getName();
+            if (file.isDirectory()) {
+                entries.add(new Entry(path, true, 0, null));
+                collect(file, path + "/", checksums, entries);
+            } else {
+                entries.add(new Entry(path, false, file.length(), checksums == null ? null : checksums.md5For(path)));
+            }
+        }
+    }
+
+    public static ArtifactManifest readFrom(File manifestFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown artifact manifest format: " + manifestFile);
+            }
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                boolean directory = in.readBoolean();
+                long size = in.readLong();
+                String md5 = in.readUTF();
+                entries.add(new Entry(path, directory, size, md5.isEmpty() ? null : md5));
+            }
+            return new ArtifactManifest(entries);
+        }
+    }
+
+    /**
+     * Writes to a temporary file first, so that concurrent readers never see a partially written manifest
+     */
+    public void writeTo(File manifestFile) throws IOException {
+        File parent = manifestFile.getParentFile();
+        FileUtils.forceMkdir(parent);
+        File temp = File.createTempFile(manifestFile.getName(), ".tmp", parent);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.path);
+                out.writeBoolean(entry.directory);
+                out.writeLong(entry.size);
+                out.writeUTF(entry.md5 == null ? "" : entry.md5);
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(temp);
+            throw e;
+        }
+        Files.move(temp.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static class Entry {
+        private final String path;
+        private final boolean directory;
+        private final long size;
+        private final String md5;
+
+        public Entry(String path, boolean directory, long size, String md5) {
+            this.path = path;
+            this.directory = directory;
+            this.size = size;
+            this.md5 = md5;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getName() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getMd5() {
+            return md5;
+        }
+    }
+}
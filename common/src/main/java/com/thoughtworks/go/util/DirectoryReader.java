@@ -18,6 +18,8 @@ package com.thoughtworks.go.util;
 import java.io.File;
 import java.io.FileFilter;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.thoughtworks.go.domain.DirectoryEntries;
 import com.thoughtworks.go.domain.FileDirectoryEntry;
@@ -28,7 +30,7 @@ public class DirectoryReader {
     private URLService urlService;
     private final JobIdentifier jobIdentifier;
 
-    private static final FileFilter VISIBLE_NON_SERIALIZED_FILES = new FileFilter() {
+    static final FileFilter VISIBLE_NON_SERIALIZED_FILES = new FileFilter() {
         @Override
         public boolean accept(File file) {
             return !(file.isHidden() || isSerializedObjectFile(file.getName()));
@@ -72,6 +74,57 @@ public class DirectoryReader {
         return entries;
     }
 
+    /**
+     * Builds the same tree as {@link #listEntries(File, String)} from a manifest of the whole job, without touching
+     * the file system. The relativePath is the path of the folder to be listed, relative to the job artifacts root.
+     */
+    public DirectoryEntries listEntriesFromManifest(ArtifactManifest manifest, String relativePath) {
+        DirectoryEntries entries = new DirectoryEntries();
+        String folder = normalize(relativePath);
+        String prefix = getCurrentPath(folder);
+
+        Map<String, DirectoryEntries> folders = new HashMap<>();
+        folders.put(folder, entries);
+        boolean inFolder = false;
+        for (ArtifactManifest.Entry entry : manifest.entries()) {
+            String path = entry.getPath();
+            if (!path.startsWith(prefix) || path.equals(folder)) {
+                if (inFolder) {
+                    // entries are listed depth first, nothing after the end of the folder belongs to it
+                    break;
+                }
+                continue;
+            }
+            inFolder = true;
+            int lastSlash = path.lastIndexOf('/');
+            DirectoryEntries parent = folders.get(lastSlash < 0 ? "" : path.substring(0, lastSlash));
+            if (parent == null) {
+                continue;
+            }
+            String url = getUrl(folder, path.substring(prefix.length()));
+            if (entry.isDirectory()) {
+                DirectoryEntries subDirectory = new DirectoryEntries();
+                folders.put(path, subDirectory);
+                parent.add(new FolderDirectoryEntry(entry.getName(), url, subDirectory));
+            } else {
+                parent.add(new FileDirectoryEntry(entry.getName(), url));
+            }
+        }
+
+        return entries;
+    }
+
+    private String normalize(String relativePath) {
+        String path = relativePath == null ? "" : relativePath.replace('\\', '/');
+        while (path.startsWith("./")) {
+            path = path.substring(2);
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return ".".equals(path) ? "" : path;
+    }
+
     private String getUrl(String currentPath, String name) {
         return urlService.getRestfulArtifactUrl(jobIdentifier, getCurrentPath(currentPath) + name);
     }
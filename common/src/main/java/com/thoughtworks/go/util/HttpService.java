@@ -19,14 +19,18 @@ import com.thoughtworks.go.agent.common.ssl.GoAgentServerHttpClient;
 import com.thoughtworks.go.agent.common.ssl.GoAgentServerHttpClientBuilder;
 import com.thoughtworks.go.config.AgentRegistry;
 import com.thoughtworks.go.domain.FetchHandler;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,8 +38,13 @@ import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 @Component
 public class HttpService {
     private final AgentRegistry agentRegistry;
@@ -45,6 +54,11 @@ public class HttpService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpService.class);
 
     public static final String GO_ARTIFACT_PAYLOAD_SIZE = "X-GO-ARTIFACT-SIZE";
+    public static final String GO_ARTIFACT_STREAMING = "X-GO-ARTIFACT-STREAMING";
+    public static final String GO_ARTIFACT_STREAMING_PROBE = "probe";
+    public static final String GO_ARTIFACT_RESUME_FROM = "X-GO-ARTIFACT-RESUME-FROM";
+    public static final String GO_ARTIFACT_ENTRIES_RECEIVED = "X-GO-ARTIFACT-ENTRIES-RECEIVED";
+    public static final String GO_ARTIFACT_DEDUP = "X-GO-ARTIFACT-DEDUP";
 
     public HttpService() {
         this(new GoAgentServerHttpClient(new GoAgentServerHttpClientBuilder(new SystemEnvironment())), null);
@@ -81,6 +95,75 @@ public class HttpService {
         }
     }
 
+    /**
+     * Uploads a zip which is produced while it is being sent, so it is never staged on disk. The server unzips it as
+     * it arrives. resumeFrom is the number of leading entries the server already has, which the entity does not send.
+     */
+    public int uploadStreaming(String url, long size, HttpEntity artifactZip, int resumeFrom) throws IOException {
+        LOGGER.info("Streaming upload to url [{}], resuming from entry {}", url, resumeFrom);
+        HttpPost filePost = httpClientFactory.createPost(url);
+        setSizeHeader(filePost, size);
+        filePost.setHeader("Confirm", "true");
+        filePost.setHeader(GO_ARTIFACT_STREAMING, "true");
+        filePost.setHeader(GO_ARTIFACT_RESUME_FROM, String.valueOf(resumeFrom));
+        filePost.setEntity(artifactZip);
+        try (CloseableHttpResponse response = execute(filePost)) {
+            return response.getStatusLine().getStatusCode();
+        } catch (IOException e) {
+            LOGGER.error("Error while streaming upload to [{}]", url, e);
+            throw e;
+        } finally {
+            filePost.releaseConnection();
+        }
+    }
+
+    /**
+     * @return number of entries of an interrupted streaming upload which the server has already written, 0 if unknown
+     */
+    public int streamedUploadProgress(String url) throws IOException {
+        HttpPost probe = httpClientFactory.createPost(url);
+        probe.setHeader("Confirm", "true");
+        probe.setHeader(GO_ARTIFACT_STREAMING, GO_ARTIFACT_STREAMING_PROBE);
+        try (CloseableHttpResponse response = execute(probe)) {
+            Header received = response.getFirstHeader(GO_ARTIFACT_ENTRIES_RECEIVED);
+            if (response.getStatusLine().getStatusCode() != HttpServletResponse.SC_OK || received == null) {
+                return 0;
+            }
+            return Integer.parseInt(received.getValue());
+        } catch (NumberFormatException e) {
+            return 0;
+        } finally {
+            probe.releaseConnection();
+        }
+    }
+
+    /**
+     * Asks the server to link files it already has into the artifact being uploaded
+     *
+     * @param blobs lines of "sha256&lt;TAB&gt;entry name"
+     * @return names of the entries the server linked, which need not be uploaded
+     */
+    public List<String> linkDeduplicatedFiles(String url, List<String> blobs) throws IOException {
+        HttpPost post = httpClientFactory.createPost(url);
+        post.setHeader("Confirm", "true");
+        post.setHeader(GO_ARTIFACT_DEDUP, "true");
+        post.setEntity(new StringEntity(String.join("\n", blobs), ContentType.create("text/plain", UTF_8)));
+        try (CloseableHttpResponse response = execute(post)) {
+            if (response.getStatusLine().getStatusCode() != HttpServletResponse.SC_OK || response.getEntity() == null) {
+                return Collections.emptyList();
+            }
+            List<String> linked = new ArrayList<>();
+            for (String line : EntityUtils.toString(response.getEntity(), UTF_8).split("\n")) {
+                if (!line.isEmpty()) {
+                    linked.add(line);
+                }
+            }
+            return linked;
+        } finally {
+            post.releaseConnection();
+        }
+    }
+
     private HttpPost createHttpPostForUpload(String url, long size, File artifactFile, Properties artifactChecksums) throws IOException {
         HttpPost filePost = httpClientFactory.createPost(url);
         setSizeHeader(filePost, size);
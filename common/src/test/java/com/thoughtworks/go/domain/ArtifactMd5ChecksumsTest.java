@@ -52,6 +52,23 @@ public class ArtifactMd5ChecksumsTest {
         assertThat(artifactMd5Checksums.md5For("first/path"), is("md5"));
     }
 
+    @Test
+    public void shouldComputeContentChecksumOfAFolderFromTheChecksumsOfItsFiles() {
+        Properties properties = new Properties();
+        properties.setProperty("dist/a.jar", "md5-a");
+        properties.setProperty("dist/lib/b.jar", "md5-b");
+        properties.setProperty("other/c.jar", "md5-c");
+        ArtifactMd5Checksums checksums = new ArtifactMd5Checksums(properties);
+
+        assertThat(checksums.contentChecksum("dist/a.jar"), is("md5-a"));
+        assertThat(checksums.contentChecksum("./dist/"), is(checksums.contentChecksum("dist")));
+        assertThat(checksums.contentChecksum("missing"), is(nullValue()));
+
+        String before = checksums.contentChecksum("dist");
+        properties.setProperty("dist/lib/b.jar", "changed");
+        assertThat(checksums.contentChecksum("dist").equals(before), is(false));
+    }
+
     @Test
     public void shouldReturnNullIfTheChecksumFileDoesNotContainsAGivenPath() throws IOException {
         Properties properties = new Properties();
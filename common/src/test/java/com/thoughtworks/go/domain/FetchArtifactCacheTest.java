@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import com.thoughtworks.go.util.HttpService;
+import com.thoughtworks.go.util.TestingClock;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class FetchArtifactCacheTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpService httpService;
+    private DownloadAction downloadAction;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        httpService = mock(HttpService.class);
+        downloadAction = new DownloadAction(httpService, new StubGoPublisher(), new TestingClock());
+        cacheDir = temporaryFolder.newFolder("cache");
+        when(httpService.download(eq("url"), any(FetchHandler.class))).thenAnswer(invocation -> {
+            FetchHandler handler = invocation.getArgument(1);
+            handler.handle(new ByteArrayInputStream("artifact".getBytes(UTF_8)));
+            return SC_OK;
+        });
+    }
+
+    @Test
+    public void shouldServeTheSameArtifactFromTheCacheTheSecondTimeAround() throws Exception {
+        FetchArtifactCache cache = new FetchArtifactCache(cacheDir, 1024);
+        File first = new File(temporaryFolder.getRoot(), "first/a.txt");
+        File second = new File(temporaryFolder.getRoot(), "second/a.txt");
+
+        cache.fetch(downloadAction, "url", new FileHandler(first, "a.txt"), "up/1/stage/1/job", "a.txt", "md5");
+        cache.fetch(downloadAction, "url", new FileHandler(second, "a.txt"), "up/1/stage/1/job", "a.txt", "md5");
+
+        assertThat(FileUtils.readFileToString(first, UTF_8), is("artifact"));
+        assertThat(FileUtils.readFileToString(second, UTF_8), is("artifact"));
+        verify(httpService, times(1)).download(eq("url"), any(FetchHandler.class));
+        assertThat(cache.hits(), is(1L));
+        assertThat(cache.misses(), is(1L));
+    }
+
+    @Test
+    public void shouldDownloadAgainWhenTheChecksumOfTheArtifactChanged() throws Exception {
+        FetchArtifactCache cache = new FetchArtifactCache(cacheDir, 1024);
+        File dest = new File(temporaryFolder.getRoot(), "dest/a.txt");
+
+        cache.fetch(downloadAction, "url", new FileHandler(dest, "a.txt"), "up/1/stage/1/job", "a.txt", "md5");
+        cache.fetch(downloadAction, "url", new FileHandler(dest, "a.txt"), "up/1/stage/1/job", "a.txt", "other-md5");
+
+        verify(httpService, times(2)).download(eq("url"), any(FetchHandler.class));
+        assertThat(cache.misses(), is(2L));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntriesOnceTheCacheIsFull() throws Exception {
+        FetchArtifactCache cache = new FetchArtifactCache(cacheDir, "artifact".length() * 2);
+        File dest = new File(temporaryFolder.getRoot(), "dest/a.txt");
+
+        cache.fetch(downloadAction, "url", new FileHandler(dest, "a.txt"), "up/1/stage/1/job", "a.txt", "1");
+        for (File entry : cacheDir.listFiles()) {
+            entry.setLastModified(System.currentTimeMillis() - 60000);
+        }
+        cache.fetch(downloadAction, "url", new FileHandler(dest, "a.txt"), "up/2/stage/1/job", "a.txt", "2");
+        cache.fetch(downloadAction, "url", new FileHandler(dest, "a.txt"), "up/3/stage/1/job", "a.txt", "3");
+        assertThat(cacheDir.listFiles().length, is(2));
+
+        cache.fetch(downloadAction, "url", new FileHandler(dest, "a.txt"), "up/1/stage/1/job", "a.txt", "1");
+        assertThat(cache.misses(), is(4L));
+        assertThat(cache.hits(), is(0L));
+    }
+
+    @Test
+    public void shouldDownloadTheArtifactWhenTheCachedEntryCanNotBeUsed() throws Exception {
+        FetchArtifactCache cache = new FetchArtifactCache(cacheDir, 1024);
+        cache.fetch(downloadAction, "url", new FileHandler(new File(temporaryFolder.getRoot(), "first/a.txt"), "a.txt"), "up/1/stage/1/job", "a.txt", "md5");
+        FetchHandler handler = mock(FetchHandler.class);
+        doThrow(new IOException("disk full")).doNothing().when(handler).handle(any());
+        when(handler.handleResult(eq(SC_OK), any())).thenReturn(true);
+
+        cache.fetch(downloadAction, "url", handler, "up/1/stage/1/job", "a.txt", "md5");
+
+        verify(handler, times(2)).handle(any());
+        verify(httpService, times(2)).download(eq("url"), any(FetchHandler.class));
+        assertThat(cache.hits(), is(0L));
+        assertThat(cache.misses(), is(2L));
+    }
+
+    @Test
+    public void shouldNotCacheResponsesOtherThanTheArtifact() throws Exception {
+        FetchArtifactCache cache = new FetchArtifactCache(cacheDir, 1024);
+        FetchHandler handler = mock(FetchHandler.class);
+        when(httpService.download(eq("not-modified"), any(FetchHandler.class))).thenReturn(304);
+        when(handler.handleResult(eq(304), any())).thenReturn(true);
+
+        cache.fetch(downloadAction, "not-modified", handler, "up/1/stage/1/job", "a.txt", "md5");
+
+        assertThat(cacheDir.listFiles().length, is(0));
+    }
+}
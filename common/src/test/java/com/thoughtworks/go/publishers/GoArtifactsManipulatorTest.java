@@ -24,6 +24,9 @@ import com.thoughtworks.go.server.service.AgentRuntimeInfo;
 import com.thoughtworks.go.util.CachedDigestUtils;
 import com.thoughtworks.go.util.HttpService;
 import com.thoughtworks.go.util.ReflectionUtil;
+import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.URLService;
+import com.thoughtworks.go.util.ZipUtil;
 import com.thoughtworks.go.work.DefaultGoPublisher;
 import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.apache.commons.io.FileUtils;
@@ -96,6 +99,21 @@ public class GoArtifactsManipulatorTest {
         }
     }
 
+    @Test
+    public void shouldStreamArtifactWhenEnabledAndResumeFromWhatTheServerHasOnRetry() throws IOException {
+        SystemEnvironment systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.isStreamingArtifactUploadEnabled()).thenReturn(true);
+        GoArtifactsManipulator manipulator = new GoArtifactsManipulator(httpService, new URLService(), new ZipUtil(), systemEnvironment);
+        when(httpService.uploadStreaming(any(String.class), eq(tempFile.length()), any(StreamingArtifactZipEntity.class), eq(0))).thenThrow(new IOException("Connection reset"));
+        when(httpService.streamedUploadProgress(any(String.class))).thenReturn(1);
+        when(httpService.uploadStreaming(any(String.class), eq(tempFile.length()), any(StreamingArtifactZipEntity.class), eq(1))).thenReturn(HttpServletResponse.SC_CREATED);
+
+        manipulator.publish(goPublisher, "dest", tempFile, jobIdentifier);
+
+        verify(httpService).uploadStreaming(any(String.class), eq(tempFile.length()), any(StreamingArtifactZipEntity.class), eq(1));
+        verify(httpService, never()).upload(any(String.class), anyLong(), any(File.class), any(Properties.class));
+    }
+
     @Test
     public void shouldUploadArtifactChecksumAlongWithArtifact() throws IOException {
         String data = "Some text whose checksum can be asserted";
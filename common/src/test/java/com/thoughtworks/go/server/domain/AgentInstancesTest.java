@@ -191,6 +191,17 @@ class AgentInstancesTest {
             assertThat(agents.findAgentAndRefreshStatus(elastic.getUuid()), is(elastic));
         }
 
+        @Test
+        void shouldCarryTheElasticAgentIndexOverToTheRegisteredAgents() {
+            AgentInstances agentInstances = createAgentInstancesWithAgentInstanceInVariousState();
+            Agent agent = elastic.getAgent();
+
+            AgentInstances agents = agentInstances.findRegisteredAgents();
+
+            assertThat(agents.findElasticAgent(agent.getElasticAgentId(), agent.getElasticPluginId()), is(elastic));
+            assertThat(agents.getAllElasticAgentsGroupedByPluginId().get(agent.getElasticPluginId()).size(), is(1));
+        }
+
         @Test
         void shouldReturnEmptyAgentInstancesWhenThereAreNoRegisteredAgents() {
             AgentInstances agentInstances = new AgentInstances(mock(AgentStatusChangeListener.class));
@@ -414,6 +425,69 @@ class AgentInstancesTest {
             assertThat(map.get(pluginId2).size(), is(2));
         }
 
+        @Test
+        void shouldNotFindElasticAgentOnceItIsRemoved() {
+            AgentInstances agentInstances = createAgentInstancesWithElasticAgents();
+            AgentInstance elasticAgentInstance = agentInstances.findElasticAgent("elastic-agent-id-4", "cd.go.contrib.elasticagent.kubernetes");
+
+            agentInstances.removeAgent(elasticAgentInstance.getUuid());
+
+            assertThat(agentInstances.findElasticAgent("elastic-agent-id-4", "cd.go.contrib.elasticagent.kubernetes"), is(nullValue()));
+            assertThat(agentInstances.getAllElasticAgentsGroupedByPluginId().get("cd.go.contrib.elasticagent.kubernetes").size(), is(1));
+        }
+
+        @Test
+        void shouldFindElasticAgentByTheElasticAgentIdItLastReported() {
+            AgentInstances agentInstances = createAgentInstancesWithElasticAgents();
+            AgentInstance elasticAgentInstance = agentInstances.findElasticAgent("elastic-agent-id-1", "go.cd.elastic-agent-plugin.docker");
+            AgentIdentifier identifier = new AgentIdentifier("localhost", "127.0.0.1", elasticAgentInstance.getUuid());
+
+            agentInstances.updateAgentRuntimeInfo(new ElasticAgentRuntimeInfo(identifier, Idle, "/foo/one", null, "elastic-agent-id-42", "cd.go.contrib.elasticagent.kubernetes"));
+
+            assertThat(agentInstances.findElasticAgent("elastic-agent-id-1", "go.cd.elastic-agent-plugin.docker"), is(nullValue()));
+            assertThat(agentInstances.findElasticAgent("elastic-agent-id-42", "cd.go.contrib.elasticagent.kubernetes"), is(elasticAgentInstance));
+            assertThat(agentInstances.getAllElasticAgentsGroupedByPluginId().get("go.cd.elastic-agent-plugin.docker").size(), is(2));
+            assertThat(agentInstances.getAllElasticAgentsGroupedByPluginId().get("cd.go.contrib.elasticagent.kubernetes").size(), is(3));
+        }
+
+        @Test
+        void shouldReindexElasticAgentWhenItIsSyncedFromAnUpdatedAgent() {
+            AgentInstances agentInstances = createAgentInstancesWithElasticAgents();
+            AgentInstance elasticAgentInstance = agentInstances.findElasticAgent("elastic-agent-id-1", "go.cd.elastic-agent-plugin.docker");
+
+            agentInstances.syncAgentFrom(createElasticAgent(elasticAgentInstance.getUuid(), "127.0.0.1", "elastic-agent-id-42", "cd.go.contrib.elasticagent.kubernetes"));
+
+            assertThat(agentInstances.findElasticAgent("elastic-agent-id-1", "go.cd.elastic-agent-plugin.docker"), is(nullValue()));
+            assertThat(agentInstances.findElasticAgent("elastic-agent-id-42", "cd.go.contrib.elasticagent.kubernetes"), is(elasticAgentInstance));
+            assertThat(agentInstances.getAllElasticAgentsGroupedByPluginId().get("cd.go.contrib.elasticagent.kubernetes").size(), is(3));
+        }
+
+        @Test
+        void shouldNotIndexAnElasticAgentSyncedAfterItWasRemoved() {
+            AgentInstances agentInstances = createAgentInstancesWithElasticAgents();
+            AgentInstance elasticAgentInstance = agentInstances.findElasticAgent("elastic-agent-id-4", "cd.go.contrib.elasticagent.kubernetes");
+
+            agentInstances.removeAgent(elasticAgentInstance.getUuid());
+            agentInstances.syncAgentFrom(elasticAgentInstance.getAgent());
+
+            assertThat(agentInstances.findAgent(elasticAgentInstance.getUuid()), is(instanceOf(NullAgentInstance.class)));
+            assertThat(agentInstances.findElasticAgent("elastic-agent-id-4", "cd.go.contrib.elasticagent.kubernetes"), is(nullValue()));
+            assertThat(agentInstances.getAllElasticAgentsGroupedByPluginId().get("cd.go.contrib.elasticagent.kubernetes").size(), is(1));
+        }
+
+        @Test
+        void shouldIndexTheInstanceWhichReplacedAnElasticAgentWithTheSameUUID() {
+            AgentInstances agentInstances = createAgentInstancesWithElasticAgents();
+            AgentInstance elasticAgentInstance = agentInstances.findElasticAgent("elastic-agent-id-1", "go.cd.elastic-agent-plugin.docker");
+            AgentInstance replacement = createFromAgent(new Agent(elasticAgentInstance.getUuid(), "localhost", "127.0.0.1"), new SystemEnvironment(), mock(AgentStatusChangeListener.class));
+
+            agentInstances.add(replacement);
+
+            assertThat(agentInstances.findElasticAgent("elastic-agent-id-1", "go.cd.elastic-agent-plugin.docker"), is(nullValue()));
+            assertThat(agentInstances.getAllElasticAgentsGroupedByPluginId().get("go.cd.elastic-agent-plugin.docker").size(), is(2));
+            assertThat(agentInstances.findAgent(elasticAgentInstance.getUuid()), is(replacement));
+        }
+
         @Test
         void shouldReturnEmptyMapOfElasticAgentsGroupedByElasticPluginIdKeyWhenThereAreNoElasticAgents(){
             AgentInstances agentInstances = new AgentInstances(mock(AgentStatusChangeListener.class));
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ArtifactManifestTest {
+    private File testFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        testFolder = TestFileUtil.createTempFolder("manifest");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(testFolder);
+    }
+
+    @Test
+    public void shouldListFoldersBeforeFilesDepthFirst() throws Exception {
+        TestFileUtil.createTestFile(testFolder, "build.html");
+        File subFolder = TestFileUtil.createTestFolder(testFolder, "testoutput");
+        TestFileUtil.createTestFile(subFolder, "baboon.html");
+        TestFileUtil.createTestFile(subFolder, "apple.html");
+
+        List<ArtifactManifest.Entry> entries = ArtifactManifest.build(testFolder).entries();
+
+        assertThat(entries.size(), is(4));
+        assertThat(entries.get(0).getPath(), is("testoutput"));
+        assertThat(entries.get(0).isDirectory(), is(true));
+        assertThat(entries.get(1).getPath(), is("testoutput/apple.html"));
+        assertThat(entries.get(1).getName(), is("apple.html"));
+        assertThat(entries.get(2).getPath(), is("testoutput/baboon.html"));
+        assertThat(entries.get(3).getPath(), is("build.html"));
+        assertThat(entries.get(3).isDirectory(), is(false));
+    }
+
+    @Test
+    public void shouldRecordSizesAndChecksumsOfFiles() throws Exception {
+        FileUtils.writeStringToFile(new File(testFolder, "foo.txt"), "hello", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(testFolder, "cruise-output/md5.checksum"), "foo.txt=abc123\n", StandardCharsets.UTF_8);
+
+        ArtifactManifest manifest = ArtifactManifest.build(testFolder);
+        ArtifactManifest.Entry foo = manifest.entries().get(manifest.entries().size() - 1);
+
+        assertThat(foo.getPath(), is("foo.txt"));
+        assertThat(foo.getSize(), is(5L));
+        assertThat(foo.getMd5(), is("abc123"));
+        assertThat(manifest.entries().get(0).getMd5(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldReadBackWhatWasWritten() throws Exception {
+        FileUtils.writeStringToFile(new File(testFolder, "dist/app.jar"), "jar", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(testFolder, "cruise-output/md5.checksum"), "dist/app.jar=cafe\n", StandardCharsets.UTF_8);
+        ArtifactManifest manifest = ArtifactManifest.build(testFolder);
+        File manifestFile = new File(TestFileUtil.createTempFolder("manifest-out"), ".artifacts.manifest");
+
+        try {
+            manifest.writeTo(manifestFile);
+            ArtifactManifest read = ArtifactManifest.readFrom(manifestFile);
+
+            assertThat(read.entries().size(), is(manifest.entries().size()));
+            for (int i = 0; i < manifest.entries().size(); i++) {
+                ArtifactManifest.Entry expected = manifest.entries().get(i);
+                ArtifactManifest.Entry actual = read.entries().get(i);
+                assertThat(actual.getPath(), is(expected.getPath()));
+                assertThat(actual.isDirectory(), is(expected.isDirectory()));
+                assertThat(actual.getSize(), is(expected.getSize()));
+                assertThat(actual.getMd5(), is(expected.getMd5()));
+            }
+        } finally {
+            FileUtils.deleteQuietly(manifestFile.getParentFile());
+        }
+    }
+}
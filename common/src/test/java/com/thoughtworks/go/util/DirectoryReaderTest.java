@@ -146,4 +146,20 @@ public class DirectoryReaderTest {
         assertThat(entries.get(0).getUrl(), is(expectedUrl));
     }
 
+    @Test
+    public void shouldListTheSameEntriesFromManifestAsFromTheFileSystem() throws Exception {
+        TestFileUtil.createTestFile(testFolder, "build.html");
+        File subFolder = TestFileUtil.createTestFolder(testFolder, "testoutput");
+        TestFileUtil.createTestFile(subFolder, "baboon.html");
+        File primate = TestFileUtil.createTestFolder(subFolder, "primate");
+        TestFileUtil.createTestFile(primate, "apple.html");
+        TestFileUtil.createTestFile(TestFileUtil.createTestFolder(testFolder, "testoutput2"), "zebra.html");
+        ArtifactManifest manifest = ArtifactManifest.build(testFolder);
+        DirectoryReader reader = new DirectoryReader(jobIdentifier);
+
+        assertThat(reader.listEntriesFromManifest(manifest, ""), is(reader.listEntries(testFolder, "")));
+        assertThat(reader.listEntriesFromManifest(manifest, "testoutput"), is(reader.listEntries(subFolder, "testoutput")));
+        assertThat(reader.listEntriesFromManifest(manifest, "testoutput/primate"), is(reader.listEntries(primate, "testoutput/primate")));
+    }
+
 }
@@ -18,23 +18,20 @@ package com.thoughtworks.go.config.validation;
 import com.thoughtworks.go.config.registry.ConfigElementImplementationRegistry;
 import com.thoughtworks.go.util.ConfigUtil;
 import org.jdom2.Element;
+import org.jdom2.Namespace;
 import org.jdom2.filter.Filters;
-import org.jdom2.xpath.XPathFactory;
 
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 public class UniqueOnCancelValidator implements GoConfigXMLValidator {
     @Override
     public void validate(Element element, ConfigElementImplementationRegistry registry) throws Exception {
-        XPathFactory xPathFactory = XPathFactory.instance();
-        List<String> tasks = ConfigUtil.allTasks(registry);
-        for (String task : tasks) {
-            List<Element> taskNodes = xPathFactory.compile("//" + task, Filters.element()).evaluate(element);
-            for (Element taskNode : taskNodes) {
-                List<Element> list = xPathFactory.compile("oncancel", Filters.element()).evaluate(taskNode);
-                if (list.size() > 1) {
-                    throw new Exception("Task [" + task + "] should not contain more than 1 oncancel task");
-                }
+        Set<String> tasks = new HashSet<>(ConfigUtil.allTasks(registry));
+        // one walk over the config, rather than one per kind of task
+        for (Element taskNode : element.getDescendants(Filters.element(Namespace.NO_NAMESPACE))) {
+            if (tasks.contains(taskNode.getName()) && taskNode.getChildren("oncancel").size() > 1) {
+                throw new Exception("Task [" + taskNode.getName() + "] should not contain more than 1 oncancel task");
             }
         }
     }
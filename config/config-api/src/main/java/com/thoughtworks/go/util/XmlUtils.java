@@ -15,15 +15,17 @@
  */
 package com.thoughtworks.go.util;
 
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.JDOMException;
+import org.jdom2.*;
 import org.jdom2.input.SAXBuilder;
+import org.jdom2.input.sax.SAXHandler;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 import java.io.*;
 import java.net.URL;
+import java.util.Iterator;
 import java.util.regex.Pattern;
 
 public class XmlUtils {
@@ -49,11 +51,25 @@ public class XmlUtils {
         return buildXmlDocument(new ByteArrayInputStream(xmlContent.getBytes()), new ValidatingSaxBuilder(resource));
     }
 
+    /**
+     * Validates and builds a document without the whitespace between elements, for readers which never look at it.
+     * On a pretty printed config that whitespace is a good part of the nodes of the document.
+     */
+    public static Document buildXmlDocumentWithoutElementWhitespace(Reader reader, URL resource, String xsds) throws Exception {
+        SAXBuilder builder = new ValidatingSaxBuilder(resource, xsds);
+        builder.setSAXHandlerFactory(ElementWhitespaceDroppingHandler::new);
+        return buildXmlDocument(new InputSource(reader), builder);
+    }
+
     private static Document buildXmlDocument(InputStream inputStream, SAXBuilder builder) throws JDOMException, IOException {
+        return buildXmlDocument(new InputSource(inputStream), builder);
+    }
+
+    private static Document buildXmlDocument(InputSource inputSource, SAXBuilder builder) throws JDOMException, IOException {
         XsdErrorTranslator errorHandler = new XsdErrorTranslator();
         builder.setErrorHandler(errorHandler);
 
-        Document cruiseRoot = builder.build(inputStream);
+        Document cruiseRoot = builder.build(inputSource);
         if (errorHandler.hasValidationError()) {
             throw new XsdValidationException(errorHandler.translate());
         }
@@ -67,4 +83,29 @@ public class XmlUtils {
     public static boolean matchUsingRegex(Pattern pattern, String textToMatch) {
         return pattern.matcher(textToMatch).matches();
     }
+
+    /**
+     * Drops whitespace only text from an element once it is built, if the element has child elements
+     */
+    private static class ElementWhitespaceDroppingHandler extends SAXHandler {
+        ElementWhitespaceDroppingHandler(JDOMFactory factory) {
+            super(factory);
+        }
+
+        @Override
+        public void endElement(String namespaceURI, String localName, String qName) throws SAXException {
+            Element element = getCurrentElement();
+            super.endElement(namespaceURI, localName, qName);
+            if (element.getChildren().isEmpty()) {
+                return;
+            }
+            Iterator<Content> content = element.getContent().iterator();
+            while (content.hasNext()) {
+                Content node = content.next();
+                if (node.getCType() == Content.CType.Text && Verifier.isAllXMLWhitespace(((Text) node).getText())) {
+                    content.remove();
+                }
+            }
+        }
+    }
 }
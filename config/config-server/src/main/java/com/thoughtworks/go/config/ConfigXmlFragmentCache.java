@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config;
+
+import org.jdom2.Element;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static com.thoughtworks.go.util.ExceptionUtils.bomb;
+
+/**
+ * @understands keeping the XML written for pipelines, templates and environments, so that writing a config again only
+ * builds the elements of the ones which changed. An element is reused only when the object is, field by field, the
+ * same as the snapshot taken when the element was built.
+ * <p>
+ * Cached elements are moved into the document being written, so two writes must never run at the same time. This
+ * relies on every {@link MagicalGoConfigXmlWriter#write} of a caching writer running under the lock of
+ * GoFileConfigDataSource, the only place which creates one.
+ */
+class ConfigXmlFragmentCache {
+    private final ConfigCache configCache;
+    private final GoConfigCloner cloner = new GoConfigCloner();
+    private final Map<String, Fragment> fragments = new HashMap<>();
+    private final Set<String> usedInThisWrite = new HashSet<>();
+    private long hits;
+    private long misses;
+
+    ConfigXmlFragmentCache(ConfigCache configCache) {
+        this.configCache = configCache;
+    }
+
+    boolean isCacheable(Object item) {
+        return (item instanceof PipelineConfig && ((PipelineConfig) item).name() != null)
+                || (item instanceof PipelineTemplateConfig && ((PipelineTemplateConfig) item).name() != null)
+                || (item instanceof BasicEnvironmentConfig && ((BasicEnvironmentConfig) item).name() != null);
+    }
+
+    synchronized void startWrite() {
+        usedInThisWrite.clear();
+    }
+
+    /**
+     * Forgets the elements of the entities which are not part of the config any more
+     */
+    synchronized void finishWrite() {
+        fragments.keySet().retainAll(usedInThisWrite);
+    }
+
+    synchronized Element elementFor(Object item, Supplier<Element> writer) {
+        String key = keyFor(item);
+        if (!usedInThisWrite.add(key)) {
+            // an invalid config can have the same name twice, a cached element can only be in one place
+            return writer.get();
+        }
+        Fragment fragment = fragments.get(key);
+        if (fragment != null && sameXml(fragment.snapshot, item)) {
+            hits++;
+            // the previous document is thrown away once written, so the element can move to the new one
+            return fragment.element.detach();
+        }
+        misses++;
+        Element element = writer.get();
+        fragments.put(key, new Fragment(cloner.deepClone(item), element));
+        return element;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized int size() {
+        return fragments.size();
+    }
+
+    private String keyFor(Object item) {
+        if (item instanceof PipelineConfig) {
+            return "pipeline:" + ((PipelineConfig) item).name().toLower();
+        }
+        if (item instanceof PipelineTemplateConfig) {
+            return "template:" + ((PipelineTemplateConfig) item).name().toLower();
+        }
+        return "environment:" + ((BasicEnvironmentConfig) item).name().toLower();
+    }
+
+    /**
+     * True when both objects are written as the same XML: same classes, equal values and equal text for every
+     * attribute and value, and the same sub tags and collection items in the same order.
+     */
+    boolean sameXml(Object previous, Object current) {
+        if (previous == current) {
+            return true;
+        }
+        if (previous == null || current == null || previous.getClass() != current.getClass()) {
+            return false;
+        }
+        if (!Objects.equals(previous, current)) {
+            return false;
+        }
+        Class<?> aClass = current.getClass();
+        if (!ConfigCache.isAnnotationPresent(aClass, ConfigTag.class)
+                && !ConfigCache.isAnnotationPresent(aClass, AttributeAwareConfigTag.class)
+                && !ConfigCache.isAnnotationPresent(aClass, ConfigCollection.class)) {
+            return MagicalGoConfigXmlWriter.valueString(previous).equals(MagicalGoConfigXmlWriter.valueString(current));
+        }
+        for (Field field : configCache.getFieldCache().valuesFor(aClass)) {
+            if (!ConfigCache.isAnnotationPresent(field, ConfigSubtag.class)
+                    && !ConfigCache.isAnnotationPresent(field, ConfigAttribute.class)
+                    && !ConfigCache.isAnnotationPresent(field, ConfigValue.class)) {
+                continue;
+            }
+            try {
+                field.setAccessible(true);
+                if (!sameXml(field.get(previous), field.get(current))) {
+                    return false;
+                }
+            } catch (IllegalAccessException e) {
+                throw bomb(e);
+            }
+        }
+        if (ConfigCache.isAnnotationPresent(aClass, ConfigCollection.class) && current instanceof Collection) {
+            Iterator<?> previousItems = ((Collection<?>) previous).iterator();
+            Iterator<?> currentItems = ((Collection<?>) current).iterator();
+            while (previousItems.hasNext() && currentItems.hasNext()) {
+                if (!sameXml(previousItems.next(), currentItems.next())) {
+                    return false;
+                }
+            }
+            return !previousItems.hasNext() && !currentItems.hasNext();
+        }
+        return true;
+    }
+
+    private static class Fragment {
+        private final Object snapshot;
+        private final Element element;
+
+        private Fragment(Object snapshot, Element element) {
+            this.snapshot = snapshot;
+            this.element = element;
+        }
+    }
+}
@@ -19,17 +19,17 @@ import com.thoughtworks.go.config.registry.ConfigElementImplementationRegistry;
 import com.thoughtworks.go.domain.GoConfigRevision;
 import com.thoughtworks.go.util.TimeProvider;
 import org.apache.commons.io.FileUtils;
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.input.SAXBuilder;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.*;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.*;
@@ -37,6 +37,8 @@ import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.thoughtworks.go.util.ExceptionUtils.bomb;
 import static com.thoughtworks.go.util.ExceptionUtils.bombIfNull;
@@ -44,10 +46,14 @@ import static com.thoughtworks.go.util.XmlUtils.buildXmlDocument;
 
 /**
  * @understands how to migrate from a previous version of config
+ * <p/>
+ * The upgrade scripts are compiled once and kept for the lifetime of the server. All the scripts needed by an upgrade
+ * are chained into a single pass over the config, so the intermediate versions are never serialized and parsed again.
  */
 @Component
 public class GoConfigMigration {
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(GoConfigMigration.class.getName());
+    private static final ConcurrentMap<Integer, Templates> UPGRADE_SCRIPTS = new ConcurrentHashMap<>();
     private final String schemaVersion = "schemaVersion";
     private final TimeProvider timeProvider;
     private final ConfigElementImplementationRegistry registry;
@@ -71,7 +77,12 @@ public class GoConfigMigration {
     }
 
     public String upgradeIfNecessary(String content) {
-        return upgrade(content, getCurrentSchemaVersion(content));
+        int currentVersion = getCurrentSchemaVersion(content);
+        if (currentVersion == GoConfigSchema.currentSchemaVersion()) {
+            // config is loaded against the current schema right after, no need to validate it here as well
+            return content;
+        }
+        return upgrade(content, currentVersion);
     }
 
     private void backup(File configFile, File backupFile) throws IOException {
@@ -91,14 +102,30 @@ public class GoConfigMigration {
 
     public String upgrade(String content, int currentVersion, int targetVersion) {
         LOG.info("Upgrading config file from version {} to version {}", currentVersion, targetVersion);
-        List<URL> upgradeScripts = upgradeScripts(currentVersion, targetVersion);
+        List<Integer> upgradeVersions = upgradeVersions(currentVersion, targetVersion);
 
-        for (URL upgradeScript : upgradeScripts) {
-            validate(content);
-            content = upgrade(content, upgradeScript);
-        }
         validate(content);
+        if (upgradeVersions.isEmpty()) {
+            return content;
+        }
+        String upgraded = upgradeInOnePass(content, upgradeVersions);
+        if (!isValid(upgraded)) {
+            // only the step by step upgrade can tell which of the scripts produced an invalid config
+            LOG.info("Config file upgraded in one pass is invalid, upgrading one version at a time");
+            upgraded = upgradeOneVersionAtATime(content, upgradeVersions);
+            validate(upgraded);
+        }
         LOG.info("Finished upgrading config file");
+        return upgraded;
+    }
+
+    private String upgradeOneVersionAtATime(String content, List<Integer> upgradeVersions) {
+        for (int i = 0; i < upgradeVersions.size(); i++) {
+            if (i > 0) {
+                validate(content);
+            }
+            content = upgradeInOnePass(content, upgradeVersions.subList(i, i + 1));
+        }
         return content;
     }
 
@@ -111,49 +138,75 @@ public class GoConfigMigration {
         }
     }
 
-    private String upgrade(String originalContent, URL upgradeScript) {
-        try (InputStream xslt = upgradeScript.openStream()) {
+    private boolean isValid(String content) {
+        try {
+            validate(content);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private String upgradeInOnePass(String originalContent, List<Integer> upgradeVersions) {
+        try {
+            SAXTransformerFactory factory = (SAXTransformerFactory) TransformerFactory.newInstance();
             ByteArrayOutputStream convertedConfig = new ByteArrayOutputStream();
-            transformer(upgradeScript.getPath(), xslt)
-                    .transform(new StreamSource(new ByteArrayInputStream(originalContent.getBytes())), new StreamResult(convertedConfig));
+            Result result = new StreamResult(convertedConfig);
+            for (int i = upgradeVersions.size() - 1; i >= 0; i--) {
+                TransformerHandler upgradeScript = factory.newTransformerHandler(upgradeScript(upgradeVersions.get(i)));
+                upgradeScript.setResult(result);
+                SAXResult saxResult = new SAXResult(upgradeScript);
+                saxResult.setLexicalHandler(upgradeScript);
+                result = saxResult;
+            }
+            factory.newTransformer().transform(new StreamSource(new ByteArrayInputStream(originalContent.getBytes())), result);
             return convertedConfig.toString();
         } catch (TransformerException e) {
-            throw bomb("Couldn't transform configuration file using upgrade script " + upgradeScript.getPath(), e);
-        } catch (IOException e) {
-            throw bomb("Couldn't write converted config file", e);
+            throw bomb("Couldn't transform configuration file using upgrade scripts " + upgradeVersions, e);
         }
     }
 
-    private List<URL> upgradeScripts(int currentVersion, int targetVersion) {
-        ArrayList<URL> xsls = new ArrayList<>();
+    private List<Integer> upgradeVersions(int currentVersion, int targetVersion) {
+        List<Integer> versions = new ArrayList<>();
         for (int i = currentVersion + 1; i <= targetVersion; i++) {
-            URL xsl = getResource("/upgrades/" + i + ".xsl");
-            bombIfNull(xsl, "Config File upgrade script named " + i + ".xsl is missing. Unable to perform upgrade.");
-            xsls.add(xsl);
+            bombIfNull(getResource("/upgrades/" + i + ".xsl"), "Config File upgrade script named " + i + ".xsl is missing. Unable to perform upgrade.");
+            versions.add(i);
         }
-        return xsls;
+        return versions;
     }
 
     private URL getResource(String script) {
         return GoConfigMigration.class.getResource(script);
     }
 
-    private Transformer transformer(String xsltName, InputStream xslt) {
-        try {
-            return TransformerFactory.newInstance().newTransformer(new StreamSource(xslt));
-        } catch (TransformerConfigurationException tce) {
-            throw bomb("Couldn't parse XSL template " + xsltName, tce);
-        }
+    private Templates upgradeScript(int version) {
+        return UPGRADE_SCRIPTS.computeIfAbsent(version, v -> {
+            URL xsl = getResource("/upgrades/" + v + ".xsl");
+            try (InputStream xslt = xsl.openStream()) {
+                return TransformerFactory.newInstance().newTemplates(new StreamSource(xslt, xsl.toExternalForm()));
+            } catch (TransformerConfigurationException tce) {
+                throw bomb("Couldn't parse XSL template " + xsl.getPath(), tce);
+            } catch (IOException e) {
+                throw bomb("Couldn't read XSL template " + xsl.getPath(), e);
+            }
+        });
     }
 
     private int getCurrentSchemaVersion(String content) {
         try {
-            SAXBuilder builder = new SAXBuilder();
-            Document document = builder.build(new ByteArrayInputStream(content.getBytes()));
-            Element root = document.getRootElement();
-
-            String currentVersion = root.getAttributeValue(schemaVersion) == null ? "0" : root.getAttributeValue(schemaVersion);
-            return Integer.parseInt(currentVersion);
+            XMLInputFactory factory = XMLInputFactory.newFactory();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(content.getBytes()));
+            try {
+                // only the root element is needed, the rest of the config is never read
+                while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                }
+                String currentVersion = reader.getAttributeValue(null, schemaVersion) == null ? "0" : reader.getAttributeValue(null, schemaVersion);
+                return Integer.parseInt(currentVersion);
+            } finally {
+                reader.close();
+            }
         } catch (Exception e) {
             throw bomb(e);
         }
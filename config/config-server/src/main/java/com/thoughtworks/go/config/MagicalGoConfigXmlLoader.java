@@ -33,15 +33,15 @@ import org.jdom2.input.SAXBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import static com.thoughtworks.go.config.parser.GoConfigClassLoader.classParser;
-import static com.thoughtworks.go.util.XmlUtils.buildXmlDocument;
+import static com.thoughtworks.go.util.XmlUtils.buildXmlDocumentWithoutElementWhitespace;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.commons.io.IOUtils.toInputStream;
 
@@ -110,7 +110,7 @@ public class MagicalGoConfigXmlLoader {
 
     public CruiseConfig deserializeConfig(String content) throws Exception {
         String md5 = CachedDigestUtils.md5Hex(content);
-        Element element = parseInputStream(new ByteArrayInputStream(content.getBytes()));
+        Element element = parse(content);
         LOGGER.debug("[Config Save] Updating config cache with new XML");
 
         CruiseConfig configForEdit = classParser(element, BasicCruiseConfig.class, configCache, new GoCipher(), registry, new ConfigReferenceElements()).parse();
@@ -148,8 +148,8 @@ public class MagicalGoConfigXmlLoader {
         return config;
     }
 
-    private Element parseInputStream(InputStream inputStream) throws Exception {
-        Element rootElement = buildXmlDocument(inputStream, GoConfigSchema.getCurrentSchema(), registry.xsds()).getRootElement();
+    private Element parse(String content) throws Exception {
+        Element rootElement = buildXmlDocumentWithoutElementWhitespace(new StringReader(content), GoConfigSchema.getCurrentSchema(), registry.xsds()).getRootElement();
         validateDom(rootElement, registry);
         return rootElement;
     }
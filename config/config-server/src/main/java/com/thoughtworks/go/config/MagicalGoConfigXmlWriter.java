@@ -33,6 +33,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.thoughtworks.go.config.ConfigCache.annotationFor;
 import static com.thoughtworks.go.config.ConfigCache.isAnnotationPresent;
@@ -44,12 +47,24 @@ import static java.text.MessageFormat.format;
 public class MagicalGoConfigXmlWriter {
     private static final Logger LOGGER = LoggerFactory.getLogger(MagicalGoConfigXmlWriter.class);
     public static final String XML_NS = "http://www.w3.org/2001/XMLSchema-instance";
+    private static final ConcurrentMap<Class<?>, Optional<Object>> DEFAULT_INSTANCES = new ConcurrentHashMap<>();
     private ConfigCache configCache;
     private final ConfigElementImplementationRegistry registry;
+    private final ConfigXmlFragmentCache fragmentCache;
 
     public MagicalGoConfigXmlWriter(ConfigCache configCache, ConfigElementImplementationRegistry registry) {
+        this(configCache, registry, false);
+    }
+
+    /**
+     * @param cacheFragments keep the XML of pipelines, templates and environments between writes of a config. Only
+     *                       worth it for a writer which writes the config over and over. Such a writer must not be
+     *                       used by two threads at once, see {@link ConfigXmlFragmentCache}.
+     */
+    public MagicalGoConfigXmlWriter(ConfigCache configCache, ConfigElementImplementationRegistry registry, boolean cacheFragments) {
         this.configCache = configCache;
         this.registry = registry;
+        this.fragmentCache = cacheFragments ? new ConfigXmlFragmentCache(configCache) : null;
     }
 
     private Document createEmptyCruiseConfigDocument() {
@@ -77,19 +92,37 @@ public class MagicalGoConfigXmlWriter {
             LOGGER.debug("[Serializing Config] Done with cruise config validators.");
         }
         Document document = createEmptyCruiseConfigDocument();
-        write(configForEdit, document.getRootElement(), configCache, registry);
+        if (fragmentCache != null) {
+            fragmentCache.startWrite();
+        }
+        write(configForEdit, document.getRootElement(), configCache, registry, fragmentCache);
 
         LOGGER.debug("[Serializing Config] XSD and DOM validation.");
-        verifyXsdValid(document);
-        MagicalGoConfigXmlLoader.validateDom(document.getRootElement(), registry);
-        LOGGER.info("[Serializing Config] Generating config partial.");
-        XmlUtils.writeXml(document, output);
+        try (ByteArrayOutputStream buffer = new ByteArrayOutputStream(32 * 1024)) {
+            // serialized once, for both the XSD validation and the output
+            XmlUtils.writeXml(document, buffer);
+            verifyXsdValid(buffer);
+            MagicalGoConfigXmlLoader.validateDom(document.getRootElement(), registry);
+            LOGGER.info("[Serializing Config] Generating config partial.");
+            buffer.writeTo(output);
+        }
+        if (fragmentCache != null) {
+            fragmentCache.finishWrite();
+        }
         LOGGER.debug("[Serializing Config] Finished writing config partial.");
     }
 
+    public long fragmentCacheHits() {
+        return fragmentCache == null ? 0 : fragmentCache.hits();
+    }
+
+    public long fragmentCacheMisses() {
+        return fragmentCache == null ? 0 : fragmentCache.misses();
+    }
+
     public Document documentFrom(CruiseConfig config) {
         Document document = createEmptyCruiseConfigDocument();
-        write(config, document.getRootElement(), configCache, registry);
+        write(config, document.getRootElement(), configCache, registry, null);
         return document;
     }
 
@@ -103,23 +136,27 @@ public class MagicalGoConfigXmlWriter {
     public void verifyXsdValid(Document document) throws Exception {
         try (ByteArrayOutputStream buffer = new ByteArrayOutputStream(32 * 1024)) {
             XmlUtils.writeXml(document, buffer);
-            buildXmlDocument(buffer.toInputStream(), GoConfigSchema.getCurrentSchema(), registry.xsds());
+            verifyXsdValid(buffer);
         }
     }
 
+    private void verifyXsdValid(ByteArrayOutputStream serializedDocument) throws Exception {
+        buildXmlDocument(serializedDocument.toInputStream(), GoConfigSchema.getCurrentSchema(), registry.xsds());
+    }
+
     public String toXmlPartial(Object domainObject) {
         bombIf(!isAnnotationPresent(domainObject.getClass(), ConfigTag.class), "Object " + domainObject + " does not have a ConfigTag");
         Element element = elementFor(domainObject.getClass(), configCache);
-        write(domainObject, element, configCache, registry);
+        write(domainObject, element, configCache, registry, null);
         if (isAnnotationPresent(domainObject.getClass(), ConfigCollection.class) && domainObject instanceof Collection) {
             for (Object item : (Collection) domainObject) {
                 if (isAnnotationPresent(item.getClass(), ConfigCollection.class) && item instanceof Collection) {
-                    new ExplicitCollectionXmlFieldWithValue(domainObject.getClass(), null, (Collection) item, configCache, registry).populate(element);
+                    new ExplicitCollectionXmlFieldWithValue(domainObject.getClass(), null, (Collection) item, configCache, registry, null).populate(element);
                     continue;
                 }
                 Element childElement = elementFor(item.getClass(), configCache);
                 element.addContent(childElement);
-                write(item, childElement, configCache, registry);
+                write(item, childElement, configCache, registry, null);
             }
         }
 
@@ -139,8 +176,8 @@ public class MagicalGoConfigXmlWriter {
         return Namespace.getNamespace(annotation.namespacePrefix(), annotation.namespaceURI());
     }
 
-    private static void write(Object o, Element element, ConfigCache configCache, final ConfigElementImplementationRegistry registry) {
-        for (XmlFieldWithValue xmlFieldWithValue : allFields(o, configCache, registry)) {
+    private static void write(Object o, Element element, ConfigCache configCache, final ConfigElementImplementationRegistry registry, ConfigXmlFragmentCache fragments) {
+        for (XmlFieldWithValue xmlFieldWithValue : allFields(o, configCache, registry, fragments)) {
             if (xmlFieldWithValue.isDefault() && !xmlFieldWithValue.alwaysWrite()) {
                 continue;
             }
@@ -148,19 +185,19 @@ public class MagicalGoConfigXmlWriter {
         }
     }
 
-    private static List<XmlFieldWithValue> allFields(Object o, ConfigCache configCache, final ConfigElementImplementationRegistry registry) {
+    private static List<XmlFieldWithValue> allFields(Object o, ConfigCache configCache, final ConfigElementImplementationRegistry registry, ConfigXmlFragmentCache fragments) {
         List<XmlFieldWithValue> list = new ArrayList<>();
         Class originalClass = o.getClass();
         for (GoConfigFieldWriter field : allFieldsWithInherited(originalClass, o, configCache, registry)) {
             Field configField = field.getConfigField();
             if (field.isImplicitCollection()) {
                 list.add(new ImplicitCollectionXmlFieldWithValue(originalClass, configField,
-                        (Collection) field.getValue(), configCache, registry));
+                        (Collection) field.getValue(), configCache, registry, fragments));
             } else if (field.isConfigCollection()) {
                 list.add(new ExplicitCollectionXmlFieldWithValue(originalClass, configField,
-                        (Collection) field.getValue(), configCache, registry));
+                        (Collection) field.getValue(), configCache, registry, fragments));
             } else if (field.isSubtag()) {
-                list.add(new SubTagXmlFieldWithValue(originalClass, configField, field.getValue(), configCache, registry));
+                list.add(new SubTagXmlFieldWithValue(originalClass, configField, field.getValue(), configCache, registry, fragments));
             } else if (field.isAttribute()) {
                 final Object value = field.getValue();
                 list.add(new AttributeXmlFieldWithValue(originalClass, configField, value, configCache, registry));
@@ -181,18 +218,23 @@ public class MagicalGoConfigXmlWriter {
         protected final T value;
         protected final ConfigCache configCache;
         protected final ConfigElementImplementationRegistry registry;
+        protected final ConfigXmlFragmentCache fragments;
 
-        private XmlFieldWithValue(Class originalClass, Field field, T value, ConfigCache configCache, ConfigElementImplementationRegistry registry) {
+        private XmlFieldWithValue(Class originalClass, Field field, T value, ConfigCache configCache, ConfigElementImplementationRegistry registry, ConfigXmlFragmentCache fragments) {
             this.originalClass = originalClass;
             this.value = value;
             this.field = field;
             this.configCache = configCache;
             this.registry = registry;
+            this.fragments = fragments;
         }
 
         public boolean isDefault() {
             try {
-                Object defaultObject = ConfigElementInstantiator.instantiateConfigElement(new GoCipher(), originalClass);
+                Object defaultObject = defaultInstanceOf(originalClass);
+                if (defaultObject == null) {
+                    return false;
+                }
                 Object defaultValue = field.get(defaultObject);
                 return Objects.equals(value, defaultValue);
             } catch (Exception e) {
@@ -205,33 +247,50 @@ public class MagicalGoConfigXmlWriter {
         public abstract boolean alwaysWrite();
 
         protected String valueString() {
-            String valueString = null;
-            ConfigAttributeValue attributeValue = value.getClass().getAnnotation(ConfigAttributeValue.class);
-            if (attributeValue != null) {
-                try {
-                    Field field = getField(value.getClass(), attributeValue);
-                    field.setAccessible(true);
-                    valueString = field.get(value).toString();
-                } catch (NoSuchFieldException | IllegalAccessException e) {
-                    //noinspection ThrowableResultOfMethodCallIgnored
-                    bomb(e);
-                }
-            } else {
-                valueString = value.toString();
-            }
-            return valueString;
+            return MagicalGoConfigXmlWriter.valueString(value);
         }
+    }
 
-        private Field getField(Class clazz, ConfigAttributeValue attributeValue) throws NoSuchFieldException {
+    /**
+     * The instance holding the default values of a class, which are left out of the XML. It is only ever read.
+     */
+    private static Object defaultInstanceOf(Class<?> aClass) {
+        return DEFAULT_INSTANCES.computeIfAbsent(aClass, type -> {
             try {
-                return clazz.getDeclaredField(attributeValue.fieldName());
-            } catch (NoSuchFieldException e) {
-                Class klass = clazz.getSuperclass();
-                if (klass == null) {
-                    throw e;
-                }
-                return getField(klass, attributeValue);
+                return Optional.of(ConfigElementInstantiator.instantiateConfigElement(new GoCipher(), type));
+            } catch (Exception e) {
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    static String valueString(Object value) {
+        String valueString = null;
+        ConfigAttributeValue attributeValue = value.getClass().getAnnotation(ConfigAttributeValue.class);
+        if (attributeValue != null) {
+            try {
+                Field field = getField(value.getClass(), attributeValue);
+                field.setAccessible(true);
+                valueString = field.get(value).toString();
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                //noinspection ThrowableResultOfMethodCallIgnored
+                bomb(e);
+            }
+        } else {
+            valueString = value.toString();
+        }
+        return valueString;
+    }
+
+    private static Field getField(Class clazz, ConfigAttributeValue attributeValue) throws NoSuchFieldException {
+        try {
+            return clazz.getDeclaredField(attributeValue.fieldName());
+        } catch (NoSuchFieldException e) {
+            Class klass = clazz.getSuperclass();
+            if (klass == null) {
+                throw e;
             }
+            return getField(klass, attributeValue);
         }
     }
 
@@ -252,15 +311,15 @@ public class MagicalGoConfigXmlWriter {
 
     private static class SubTagXmlFieldWithValue extends XmlFieldWithValue<Object> {
 
-        public SubTagXmlFieldWithValue(Class oringinalClass, Field field, Object value, ConfigCache configCache, final ConfigElementImplementationRegistry registry) {
-            super(oringinalClass, field, value, configCache, registry);
+        public SubTagXmlFieldWithValue(Class oringinalClass, Field field, Object value, ConfigCache configCache, final ConfigElementImplementationRegistry registry, ConfigXmlFragmentCache fragments) {
+            super(oringinalClass, field, value, configCache, registry, fragments);
         }
 
         @Override
         public void populate(Element parent) {
             Element child = elementFor(value.getClass(), configCache);
             parent.addContent(child);
-            write(value, child, configCache, registry);
+            write(value, child, configCache, registry, fragments);
         }
 
         @Override
@@ -272,7 +331,7 @@ public class MagicalGoConfigXmlWriter {
     private static class AttributeXmlFieldWithValue extends XmlFieldWithValue<Object> {
 
         public AttributeXmlFieldWithValue(Class oringinalClass, Field field, Object current, ConfigCache configCache, final ConfigElementImplementationRegistry registry) {
-            super(oringinalClass, field, current, configCache, registry);
+            super(oringinalClass, field, current, configCache, registry, null);
         }
 
         @Override
@@ -298,13 +357,13 @@ public class MagicalGoConfigXmlWriter {
 
     private static class ImplicitCollectionXmlFieldWithValue extends XmlFieldWithValue<Collection> {
         public ImplicitCollectionXmlFieldWithValue(
-                Class oringinalClass, Field field, Collection value, ConfigCache configCache, final ConfigElementImplementationRegistry registry) {
-            super(oringinalClass, field, value, configCache, registry);
+                Class oringinalClass, Field field, Collection value, ConfigCache configCache, final ConfigElementImplementationRegistry registry, ConfigXmlFragmentCache fragments) {
+            super(oringinalClass, field, value, configCache, registry, fragments);
         }
 
         @Override
         public void populate(Element parent) {
-            new CollectionXmlFieldWithValue(value, parent, originalClass, configCache, registry).populate();
+            new CollectionXmlFieldWithValue(value, parent, originalClass, configCache, registry, fragments).populate();
         }
 
         @Override
@@ -319,18 +378,20 @@ public class MagicalGoConfigXmlWriter {
         private final Class originalClass;
         private final ConfigCache configCache;
         private final ConfigElementImplementationRegistry registry;
+        private final ConfigXmlFragmentCache fragments;
 
-        public CollectionXmlFieldWithValue(Collection value, Element parent, Class originalClass, ConfigCache configCache, final ConfigElementImplementationRegistry registry) {
+        public CollectionXmlFieldWithValue(Collection value, Element parent, Class originalClass, ConfigCache configCache, final ConfigElementImplementationRegistry registry, ConfigXmlFragmentCache fragments) {
             this.value = value;
             this.parent = parent;
             this.originalClass = originalClass;
             this.configCache = configCache;
             this.registry = registry;
+            this.fragments = fragments;
         }
 
         public void populate() {
             Collection defaultCollection = generateDefaultCollection();
-            for (XmlFieldWithValue xmlFieldWithValue : allFields(value, configCache, registry)) {
+            for (XmlFieldWithValue xmlFieldWithValue : allFields(value, configCache, registry, fragments)) {
                 if (!xmlFieldWithValue.isDefault()) {
                     xmlFieldWithValue.populate(parent);
                 }
@@ -341,15 +402,23 @@ public class MagicalGoConfigXmlWriter {
                     continue;
                 }
                 if (item.getClass().isAnnotationPresent(ConfigCollection.class) && item instanceof Collection) {
-                    new ExplicitCollectionXmlFieldWithValue(originalClass, null, (Collection) item, configCache, registry).populate(parent);
+                    new ExplicitCollectionXmlFieldWithValue(originalClass, null, (Collection) item, configCache, registry, fragments).populate(parent);
                     continue;
                 }
-                Element childElement = elementFor(item.getClass(), configCache);
-                parent.addContent(childElement);
-                write(item, childElement, configCache, registry);
+                if (fragments != null && fragments.isCacheable(item)) {
+                    parent.addContent(fragments.elementFor(item, () -> elementWrittenFor(item)));
+                    continue;
+                }
+                parent.addContent(elementWrittenFor(item));
             }
         }
 
+        private Element elementWrittenFor(Object item) {
+            Element childElement = elementFor(item.getClass(), configCache);
+            write(item, childElement, configCache, registry, fragments);
+            return childElement;
+        }
+
         protected Collection generateDefaultCollection() {
             Class<? extends Collection> clazz = value.getClass();
             try {
@@ -361,14 +430,14 @@ public class MagicalGoConfigXmlWriter {
     }
 
     private static class ExplicitCollectionXmlFieldWithValue extends XmlFieldWithValue<Collection> {
-        public ExplicitCollectionXmlFieldWithValue(Class oringinalClass, Field field, Collection value, ConfigCache configCache, final ConfigElementImplementationRegistry registry) {
-            super(oringinalClass, field, value, configCache, registry);
+        public ExplicitCollectionXmlFieldWithValue(Class oringinalClass, Field field, Collection value, ConfigCache configCache, final ConfigElementImplementationRegistry registry, ConfigXmlFragmentCache fragments) {
+            super(oringinalClass, field, value, configCache, registry, fragments);
         }
 
         @Override
         public void populate(Element parent) {
             Element containerElement = elementFor(value.getClass(), configCache);
-            new CollectionXmlFieldWithValue(value, containerElement, originalClass, configCache, registry).populate();
+            new CollectionXmlFieldWithValue(value, containerElement, originalClass, configCache, registry, fragments).populate();
             parent.addContent(containerElement);
         }
 
@@ -382,7 +451,7 @@ public class MagicalGoConfigXmlWriter {
         private boolean requireCdata;
 
         public ValueXmlFieldWithValue(Field field, Object value, Class oringinalClass, ConfigCache configCache, final ConfigElementImplementationRegistry registry) {
-            super(oringinalClass, field, value, configCache, registry);
+            super(oringinalClass, field, value, configCache, registry, null);
             ConfigValue configValue = field.getAnnotation(ConfigValue.class);
             requireCdata = configValue.requireCdata();
         }
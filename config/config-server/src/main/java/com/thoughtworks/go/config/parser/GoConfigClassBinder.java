@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config.parser;
+
+import com.thoughtworks.go.config.*;
+import com.thoughtworks.go.config.preprocessor.ClassAttributeCache;
+import com.thoughtworks.go.security.GoCipher;
+
+import javax.annotation.PostConstruct;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.thoughtworks.go.config.ConfigCache.isAnnotationPresent;
+import static com.thoughtworks.go.util.ExceptionUtils.bomb;
+
+/**
+ * @understands the reflection needed to bind elements to a config class: its constructor, how each of its fields is
+ * loaded and its post construct methods. It is worked out once per class rather than for every element of a config.
+ */
+class GoConfigClassBinder {
+    private static final ConcurrentMap<Class<?>, GoConfigClassBinder> BINDERS = new ConcurrentHashMap<>();
+    private static final ClassAttributeCache.FieldCache FIELD_CACHE = new ClassAttributeCache.FieldCache();
+
+    private final Class<?> type;
+    private final Constructor<?> constructor;
+    private final boolean passwordEncrypter;
+    private final List<FieldBinding> fields;
+    private final List<Method> postConstructMethods;
+
+    static GoConfigClassBinder binderFor(Class<?> type) {
+        return BINDERS.computeIfAbsent(type, aClass -> new GoConfigClassBinder(aClass, FIELD_CACHE.valuesFor(aClass)));
+    }
+
+    private GoConfigClassBinder(Class<?> type, List<Field> allFields) {
+        this.type = type;
+        this.passwordEncrypter = PasswordEncrypter.class.isAssignableFrom(type);
+        this.constructor = constructor(type, passwordEncrypter);
+        List<FieldBinding> fields = new ArrayList<>();
+        for (Field field : allFields) {
+            fields.add(FieldBinding.of(field));
+        }
+        this.fields = Collections.unmodifiableList(fields);
+        List<Method> postConstructMethods = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (isAnnotationPresent(method, PostConstruct.class)) {
+                postConstructMethods.add(method);
+            }
+        }
+        this.postConstructMethods = Collections.unmodifiableList(postConstructMethods);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T newInstance(GoCipher goCipher) {
+        try {
+            if (constructor == null) {
+                throw new NoSuchMethodException(type.getName() + ".<init>()");
+            }
+            return (T) (passwordEncrypter ? constructor.newInstance(goCipher) : constructor.newInstance());
+        } catch (Exception e) {
+            throw bomb("Error creating new instance of class " + type.getName(), e);
+        }
+    }
+
+    List<FieldBinding> fields() {
+        return fields;
+    }
+
+    List<Method> postConstructMethods() {
+        return postConstructMethods;
+    }
+
+    private static Constructor<?> constructor(Class<?> type, boolean passwordEncrypter) {
+        try {
+            Constructor<?> constructor = passwordEncrypter ? type.getDeclaredConstructor(GoCipher.class) : type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            // reported when an instance is asked for, in the same way as ConfigElementInstantiator does
+            return null;
+        }
+    }
+
+    enum FieldKind {
+        IMPLICIT_COLLECTION, SUBTAG, ATTRIBUTE, VALUE, REFERENCE, NONE
+    }
+
+    /**
+     * @understands how a single field of a config class is loaded
+     */
+    static class FieldBinding {
+        private final Field field;
+        private final FieldKind kind;
+        private final ConfigAttributeValue attributeValue;
+        private final Constructor<?> attributeValueConstructor;
+
+        static FieldBinding of(Field field) {
+            return new FieldBinding(field);
+        }
+
+        private FieldBinding(Field field) {
+            this.field = field;
+            this.kind = kindOf(field);
+            if (kind != FieldKind.NONE) {
+                field.setAccessible(true);
+            }
+            this.attributeValue = field.getType().getAnnotation(ConfigAttributeValue.class);
+            this.attributeValueConstructor = attributeValue == null ? null : stringConstructor(field.getType());
+        }
+
+        Field field() {
+            return field;
+        }
+
+        FieldKind kind() {
+            return kind;
+        }
+
+        ConfigAttributeValue attributeValue() {
+            return attributeValue;
+        }
+
+        Constructor<?> attributeValueConstructor() throws NoSuchMethodException {
+            if (attributeValueConstructor == null) {
+                throw new NoSuchMethodException(field.getType().getName() + ".<init>(java.lang.String)");
+            }
+            return attributeValueConstructor;
+        }
+
+        private static FieldKind kindOf(Field field) {
+            if (isAnnotationPresent(field, ConfigSubtag.class) && GoConfigClassLoader.isImplicitCollection(field.getType(), null)) {
+                return FieldKind.IMPLICIT_COLLECTION;
+            }
+            if (isAnnotationPresent(field, ConfigSubtag.class)) {
+                return FieldKind.SUBTAG;
+            }
+            if (isAnnotationPresent(field, ConfigAttribute.class)) {
+                return FieldKind.ATTRIBUTE;
+            }
+            if (isAnnotationPresent(field, ConfigValue.class)) {
+                return FieldKind.VALUE;
+            }
+            if (isAnnotationPresent(field, ConfigReferenceElement.class)) {
+                return FieldKind.REFERENCE;
+            }
+            return FieldKind.NONE;
+        }
+
+        private static Constructor<?> stringConstructor(Class<?> type) {
+            try {
+                return type.getConstructor(String.class);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.thoughtworks.go.config.parser;
 
 import com.thoughtworks.go.config.*;
+import com.thoughtworks.go.config.parser.GoConfigClassBinder.FieldBinding;
 import com.thoughtworks.go.config.registry.ConfigElementImplementationRegistry;
 import com.thoughtworks.go.security.GoCipher;
 import com.thoughtworks.go.util.ConfigUtil;
@@ -23,8 +24,6 @@ import org.jdom2.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.PostConstruct;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -85,15 +84,12 @@ public static <T> GoConfigClassLoader<T> classParser(Element e, Class<T> aClass,
     }
 
     private void postConstruct(T o) {
-        Method[] methods = o.getClass().getMethods();
-        for (Method method : methods) {
-            if (isAnnotationPresent(method, PostConstruct.class)) {
-                try {
-                    method.invoke(o);
-                } catch (Exception e) {
-                    LOGGER.error("Failed to save config: ", e);
-                    throw bomb(e);
-                }
+        for (Method method : GoConfigClassBinder.binderFor(o.getClass()).postConstructMethods()) {
+            try {
+                method.invoke(o);
+            } catch (Exception e) {
+                LOGGER.error("Failed to save config: ", e);
+                throw bomb(e);
             }
         }
     }
@@ -109,9 +105,9 @@ private void parseCollection(Collection collection) {
         Class<?> elementType = collectionAnnotation.value();
 
         for (Element childElement : (List<Element>) e.getChildren()) {
-            if (isInCollection(childElement, elementType)) {
-                Class<?> collectionType = findConcreteType(childElement, elementType);
-                collection.add(classParser(childElement, collectionType, configCache, new GoCipher(), registry, configReferenceElements).parse());
+            Class<?> collectionType = findConcreteType(childElement, elementType);
+            if (collectionType != null) {
+                collection.add(classParser(childElement, collectionType, configCache, goCipher, registry, configReferenceElements).parse());
             }
         }
         int minimumSize = collectionAnnotation.minimum();
@@ -122,9 +118,8 @@ private void parseCollection(Collection collection) {
 
     private <I> List<GoConfigFieldLoader> allFields(I o) {
         List<GoConfigFieldLoader> fields = new ArrayList<>();
-        List<Field> allFields = configCache.getFieldCache().valuesFor(o.getClass());
-        for (Field field : allFields) {
-            fields.add(fieldParser(e, o, field, configCache, registry, configReferenceElements));
+        for (FieldBinding field : GoConfigClassBinder.binderFor(o.getClass()).fields()) {
+            fields.add(fieldParser(e, o, field, configCache, registry, configReferenceElements, goCipher));
         }
         return fields;
     }
@@ -153,7 +148,7 @@ private void parseCollection(Collection collection) {
     }
 
     private T createInstance() {
-        return ConfigElementInstantiator.instantiateConfigElement(this.goCipher, typeToGenerate(e));
+        return GoConfigClassBinder.binderFor(typeToGenerate(e)).newInstance(this.goCipher);
     }
 
 private Class<T> typeToGenerate(Element e) {
@@ -198,10 +193,6 @@ private Class<T> typeToGenerate(Element e) {
         return isAnnotationPresent(aClass, ConfigCollection.class);
     }
 
-    private boolean isInCollection(Element e, Class<?> type) {
-        return findConcreteType(e, type) != null;
-    }
-
     private Class<?> findConcreteType(Element e, Class<?> type) {
         if (type.isInterface() && isAnnotationPresent(type, ConfigInterface.class)) {
             for (Class<?> implementation : registry.implementersOf(type)) {
@@ -15,17 +15,14 @@
  */
 package com.thoughtworks.go.config.parser;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
 
 import com.thoughtworks.go.config.ConfigAttributeValue;
 import com.thoughtworks.go.config.ConfigCache;
 import com.thoughtworks.go.config.ConfigReferenceElement;
-import com.thoughtworks.go.config.ConfigSubtag;
-import com.thoughtworks.go.config.ConfigValue;
+import com.thoughtworks.go.config.parser.GoConfigClassBinder.FieldBinding;
+import com.thoughtworks.go.config.parser.GoConfigClassBinder.FieldKind;
 import com.thoughtworks.go.config.registry.ConfigElementImplementationRegistry;
 import com.thoughtworks.go.security.GoCipher;
 import org.jdom2.Attribute;
@@ -33,80 +30,74 @@ import org.jdom2.Element;
 import org.springframework.beans.SimpleTypeConverter;
 import org.springframework.beans.TypeMismatchException;
 
-import static com.thoughtworks.go.config.ConfigCache.isAnnotationPresent;
 import static com.thoughtworks.go.config.parser.GoConfigAttributeLoader.attributeParser;
-import static com.thoughtworks.go.config.parser.GoConfigAttributeLoader.isAttribute;
-import static com.thoughtworks.go.config.parser.GoConfigSubtagLoader.isSubtag;
 import static com.thoughtworks.go.config.parser.GoConfigSubtagLoader.subtagParser;
 import static com.thoughtworks.go.util.ExceptionUtils.bomb;
 import static java.text.MessageFormat.format;
 
 public class GoConfigFieldLoader<T> {
-    private static Map<Field, Boolean> implicts = new HashMap<>();
     private static final SimpleTypeConverter typeConverter = new GoConfigFieldTypeConverter();
 
     private final Element e;
     private final T instance;
+    private final FieldBinding binding;
     private final Field field;
     private ConfigCache configCache;
     private final ConfigReferenceElements configReferenceElements;
     private final ConfigElementImplementationRegistry registry;
+    private final GoCipher goCipher;
 
-    public static <T> GoConfigFieldLoader<T> fieldParser(Element e, T instance, Field field, ConfigCache configCache, final ConfigElementImplementationRegistry registry,
-                                                             ConfigReferenceElements configReferenceElements) {
-        return new GoConfigFieldLoader<>(e, instance, field, configCache, registry, configReferenceElements);
+    static <T> GoConfigFieldLoader<T> fieldParser(Element e, T instance, FieldBinding binding, ConfigCache configCache, final ConfigElementImplementationRegistry registry,
+                                                  ConfigReferenceElements configReferenceElements, GoCipher goCipher) {
+        return new GoConfigFieldLoader<>(e, instance, binding, configCache, registry, configReferenceElements, goCipher);
     }
 
-    private GoConfigFieldLoader(Element e, T instance, Field field, ConfigCache configCache, final ConfigElementImplementationRegistry registry, ConfigReferenceElements configReferenceElements) {
+    private GoConfigFieldLoader(Element e, T instance, FieldBinding binding, ConfigCache configCache, final ConfigElementImplementationRegistry registry,
+                                ConfigReferenceElements configReferenceElements, GoCipher goCipher) {
         this.e = e;
         this.instance = instance;
-        this.field = field;
+        this.binding = binding;
+        this.field = binding.field();
         this.configCache = configCache;
         this.configReferenceElements = configReferenceElements;
-        field.setAccessible(true);
         this.registry = registry;
+        this.goCipher = goCipher;
     }
 
     public void parse() {
-        if (isImplicitCollection()) {
-            Object val = GoConfigClassLoader.classParser(e, field.getType(), configCache, new GoCipher(), registry, configReferenceElements).parseImplicitCollection();
-            setValue(val);
-        } else if (isSubtag(field)) {
-            Object val = subtagParser(e, field, configCache, registry, configReferenceElements).parse();
-            setValue(val);
-        } else if (isAttribute(field)) {
-            Object val = attributeParser(e, field).parse(defaultValue());
-            setValue(val);
-        } else if (isConfigValue()) {
-            Object val = e.getText();
-            setValue(val);
-        } else if (isAnnotationPresent(field, ConfigReferenceElement.class)) {
-            ConfigReferenceElement referenceField = field.getAnnotation(ConfigReferenceElement.class);
-            Attribute attribute = e.getAttribute(referenceField.referenceAttribute());
-            if (attribute == null) {
-                bomb(String.format("Expected attribute `%s` to be present for %s.", referenceField.referenceAttribute(), e.getName()));
-            }
-            String refId = attribute.getValue();
-            Object referredObject = configReferenceElements.get(referenceField.referenceCollection(), refId);
-            setValue(referredObject);
-        }
-    }
-
-    private boolean isImplicitCollection() {
-        if (!implicts.containsKey(field)) {
-            implicts.put(field, ConfigCache.isAnnotationPresent(field, ConfigSubtag.class)
-                    && GoConfigClassLoader.isImplicitCollection(field.getType(), configCache));
+        switch (binding.kind()) {
+            case IMPLICIT_COLLECTION:
+                setValue(GoConfigClassLoader.classParser(e, field.getType(), configCache, goCipher, registry, configReferenceElements).parseImplicitCollection());
+                break;
+            case SUBTAG:
+                setValue(subtagParser(e, field, configCache, registry, configReferenceElements, goCipher).parse());
+                break;
+            case ATTRIBUTE:
+                setValue(attributeParser(e, field).parse(defaultValue()));
+                break;
+            case VALUE:
+                setValue(e.getText());
+                break;
+            case REFERENCE:
+                ConfigReferenceElement referenceField = field.getAnnotation(ConfigReferenceElement.class);
+                Attribute attribute = e.getAttribute(referenceField.referenceAttribute());
+                if (attribute == null) {
+                    bomb(String.format("Expected attribute `%s` to be present for %s.", referenceField.referenceAttribute(), e.getName()));
+                }
+                String refId = attribute.getValue();
+                Object referredObject = configReferenceElements.get(referenceField.referenceCollection(), refId);
+                setValue(referredObject);
+                break;
+            default:
         }
-        return implicts.get(field);
     }
 
     private void setValue(Object val) {
         try {
-            ConfigAttributeValue configAttributeValue = field.getType().getAnnotation(ConfigAttributeValue.class);
+            ConfigAttributeValue configAttributeValue = binding.attributeValue();
             if (configAttributeValue != null) {
                 if (val != null || configAttributeValue.createForNull()) {
-                    Constructor<?> constructor = field.getType().getConstructor(String.class);
-                    field.set(instance, constructor.newInstance(new Object[]{val}));
+                    field.set(instance, binding.attributeValueConstructor().newInstance(new Object[]{val}));
                 }
             } else if (val != null) {
                 Object convertedValue = typeConverter.convertIfNecessary(val, field.getType());
@@ -134,6 +125,6 @@ public class GoConfigFieldLoader<T> {
     }
 
     public boolean isConfigValue() {
-        return isAnnotationPresent(field, ConfigValue.class);
+        return binding.kind() == FieldKind.VALUE;
     }
 }
@@ -42,6 +42,7 @@ public class GoConfigSubtagLoader {
     private ConfigCache configCache;
     private final ConfigElementImplementationRegistry registry;
     private final ConfigReferenceElements configReferenceElements;
+    private final GoCipher goCipher;
 
     public static boolean isSubtag(Field field) {
         return findSubTag(field) != null;
@@ -56,16 +57,17 @@ public class GoConfigSubtagLoader {
     }
 
     public static GoConfigSubtagLoader subtagParser(Element e, Field field, ConfigCache configCache, final ConfigElementImplementationRegistry registry,
-                                                        ConfigReferenceElements configReferenceElements) {
-        return new GoConfigSubtagLoader(e, field, configCache, registry, configReferenceElements);
+                                                        ConfigReferenceElements configReferenceElements, GoCipher goCipher) {
+        return new GoConfigSubtagLoader(e, field, configCache, registry, configReferenceElements, goCipher);
     }
 
-    private GoConfigSubtagLoader(Element e, Field field, ConfigCache configCache, final ConfigElementImplementationRegistry registry, ConfigReferenceElements configReferenceElements) {
+    private GoConfigSubtagLoader(Element e, Field field, ConfigCache configCache, final ConfigElementImplementationRegistry registry, ConfigReferenceElements configReferenceElements, GoCipher goCipher) {
         this.e = e;
         this.field = field;
         this.configCache = configCache;
         this.registry = registry;
         this.configReferenceElements = configReferenceElements;
+        this.goCipher = goCipher;
     }
 
     public Object parse() {
@@ -77,7 +79,7 @@ public class GoConfigSubtagLoader {
             return null;
         }
 
-        return GoConfigClassLoader.classParser(configUtil.getChild(e, tag), type, configCache, new GoCipher(), registry, configReferenceElements).parse();
+        return GoConfigClassLoader.classParser(configUtil.getChild(e, tag), type, configCache, goCipher, registry, configReferenceElements).parse();
     }
 
     private Class<?> findTypeOfField() {
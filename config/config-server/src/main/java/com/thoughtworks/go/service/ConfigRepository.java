@@ -111,7 +111,7 @@ public class ConfigRepository {
 
     public void checkin(final GoConfigRevision rev) throws Exception {
         try {
-            if (rev.equals(getCurrentRevision())) {
+            if (rev.equals(getCurrentRevisionWithoutContent())) {
                 return;
             }
             final File file = new File(workingDir, CRUISE_CONFIG_XML);
@@ -187,6 +187,23 @@ public class ConfigRepository {
 
     }
 
+    /**
+     * The revision at head as recorded in its commit message, without reading the config out of the repository.
+     * Enough to compare revisions, which only compares the md5.
+     */
+    private GoConfigRevision getCurrentRevisionWithoutContent() {
+        return doLocked(() -> {
+            try {
+                return new GoConfigRevision((byte[]) null, getCurrentRevCommit().getFullMessage());
+            } catch (NoHeadException e) {
+                return null;
+            } catch (GitAPIException e) {
+                LOGGER.info("[CONFIG REPOSITORY] Unable retrieve current cruise config revision", e);
+                return null;
+            }
+        });
+    }
+
     public RevCommit getCurrentRevCommit() throws GitAPIException {
         try {
             return revisions().iterator().next();
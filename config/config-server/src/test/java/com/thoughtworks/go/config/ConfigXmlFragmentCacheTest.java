@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config;
+
+import com.thoughtworks.go.helper.GoConfigMother;
+import com.thoughtworks.go.security.ResetCipher;
+import com.thoughtworks.go.util.ConfigElementImplementationRegistryMother;
+import org.jdom2.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ConfigXmlFragmentCacheTest {
+    @Rule
+    public final ResetCipher resetCipher = new ResetCipher();
+
+    private ConfigCache configCache;
+    private ConfigXmlFragmentCache cache;
+
+    @Before
+    public void setUp() {
+        configCache = new ConfigCache();
+        cache = new ConfigXmlFragmentCache(configCache);
+    }
+
+    @Test
+    public void shouldReuseTheElementOfAnUnchangedPipeline() {
+        PipelineConfig pipeline = GoConfigMother.configWithPipelines("p1").pipelineConfigByName(new CaseInsensitiveString("p1"));
+        Element element = new Element("pipeline");
+
+        cache.startWrite();
+        assertThat(cache.elementFor(pipeline, () -> element), is(sameInstance(element)));
+        cache.finishWrite();
+        cache.startWrite();
+        assertThat(cache.elementFor(pipeline, () -> new Element("pipeline")), is(sameInstance(element)));
+        cache.finishWrite();
+
+        assertThat(cache.hits(), is(1L));
+        assertThat(cache.misses(), is(1L));
+    }
+
+    @Test
+    public void shouldBuildTheElementAgainOnceThePipelineChanged() {
+        PipelineConfig pipeline = GoConfigMother.configWithPipelines("p1").pipelineConfigByName(new CaseInsensitiveString("p1"));
+        Element element = new Element("pipeline");
+
+        cache.startWrite();
+        cache.elementFor(pipeline, () -> element);
+        cache.finishWrite();
+        pipeline.addEnvironmentVariable("foo", "bar");
+        cache.startWrite();
+
+        assertThat(cache.elementFor(pipeline, () -> new Element("pipeline")), is(not(sameInstance(element))));
+        assertThat(cache.misses(), is(2L));
+    }
+
+    @Test
+    public void shouldForgetEntitiesWhichAreNoLongerInTheConfig() {
+        CruiseConfig config = GoConfigMother.configWithPipelines("p1", "p2");
+
+        cache.startWrite();
+        cache.elementFor(config.pipelineConfigByName(new CaseInsensitiveString("p1")), () -> new Element("pipeline"));
+        cache.elementFor(config.pipelineConfigByName(new CaseInsensitiveString("p2")), () -> new Element("pipeline"));
+        cache.finishWrite();
+        cache.startWrite();
+        cache.elementFor(config.pipelineConfigByName(new CaseInsensitiveString("p1")), () -> new Element("pipeline"));
+        cache.finishWrite();
+
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void shouldWriteTheSameXmlAsTheWriterWithoutTheCache() throws Exception {
+        MagicalGoConfigXmlWriter cachingWriter = new MagicalGoConfigXmlWriter(configCache, ConfigElementImplementationRegistryMother.withNoPlugins(), true);
+        MagicalGoConfigXmlWriter writer = new MagicalGoConfigXmlWriter(configCache, ConfigElementImplementationRegistryMother.withNoPlugins());
+        BasicCruiseConfig config = GoConfigMother.configWithPipelines("p1", "p2");
+        config.addEnvironment("uat");
+
+        assertThat(xml(cachingWriter, config), is(xml(writer, config)));
+        assertThat(xml(cachingWriter, config), is(xml(writer, config)));
+
+        config.pipelineConfigByName(new CaseInsensitiveString("p2")).setLabelTemplate("${COUNT}-changed");
+        config.getEnvironments().named(new CaseInsensitiveString("uat")).addEnvironmentVariable("foo", "bar");
+        assertThat(xml(cachingWriter, config), is(xml(writer, config)));
+    }
+
+    @Test
+    public void shouldCountTheHitsAndMissesOfTheWriter() throws Exception {
+        MagicalGoConfigXmlWriter cachingWriter = new MagicalGoConfigXmlWriter(configCache, ConfigElementImplementationRegistryMother.withNoPlugins(), true);
+        BasicCruiseConfig config = GoConfigMother.configWithPipelines("p1", "p2");
+
+        xml(cachingWriter, config);
+        config.pipelineConfigByName(new CaseInsensitiveString("p2")).setLabelTemplate("${COUNT}-changed");
+        xml(cachingWriter, config);
+
+        assertThat(cachingWriter.fragmentCacheHits(), is(1L));
+        assertThat(cachingWriter.fragmentCacheMisses(), is(3L));
+        assertThat(new MagicalGoConfigXmlWriter(configCache, ConfigElementImplementationRegistryMother.withNoPlugins()).fragmentCacheHits(), is(0L));
+    }
+
+    private static String xml(MagicalGoConfigXmlWriter writer, CruiseConfig config) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(config, output, true);
+        return output.toString("UTF-8");
+    }
+}
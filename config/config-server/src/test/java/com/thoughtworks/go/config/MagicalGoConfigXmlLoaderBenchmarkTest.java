@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config;
+
+import com.thoughtworks.go.util.ConfigElementImplementationRegistryMother;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures how long loading a large config takes and how much heap it needs. Run it by hand, with a fixed heap size,
+ * to compare changes to the config loader.
+ */
+@Disabled("Benchmark, run by hand")
+class MagicalGoConfigXmlLoaderBenchmarkTest {
+    private static final int WARM_UP = 5;
+    private static final int ITERATIONS = 20;
+
+    @Test
+    void shouldMeasureLoadTimeAndAllocationsOfALargeConfig() throws Exception {
+        String content = ConfigMigrator.migrate(IOUtils.toString(getClass().getResourceAsStream("/data/big-cruise-config.xml"), UTF_8));
+        MagicalGoConfigXmlLoader loader = new MagicalGoConfigXmlLoader(new ConfigCache(), ConfigElementImplementationRegistryMother.withNoPlugins());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < WARM_UP; i++) {
+            loader.deserializeConfig(content);
+        }
+
+        long elapsed = 0;
+        long allocated = 0;
+        long peakHeap = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            System.gc();
+            long usedBefore = resetPeakHeapUsage();
+            long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long start = System.nanoTime();
+
+            CruiseConfig config = loader.deserializeConfig(content);
+
+            elapsed += System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+            peakHeap = Math.max(peakHeap, peakHeapUsage() - usedBefore);
+            assertThat(config.getAllPipelineConfigs()).isNotEmpty();
+        }
+
+        System.out.printf("Loaded a config of %d KB in %d ms, allocating %d MB, with a peak heap growth of at most %d MB%n",
+                content.length() / 1024, elapsed / ITERATIONS / 1_000_000, allocated / ITERATIONS / (1024 * 1024), peakHeap / (1024 * 1024));
+    }
+
+    private static long resetPeakHeapUsage() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
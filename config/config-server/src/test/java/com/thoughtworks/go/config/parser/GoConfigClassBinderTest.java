@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config.parser;
+
+import com.thoughtworks.go.config.Argument;
+import com.thoughtworks.go.config.ExecTask;
+import com.thoughtworks.go.config.parser.GoConfigClassBinder.FieldBinding;
+import com.thoughtworks.go.config.parser.GoConfigClassBinder.FieldKind;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class GoConfigClassBinderTest {
+    @Test
+    public void shouldWorkOutTheBindingOfAClassOnlyOnce() {
+        assertThat(GoConfigClassBinder.binderFor(ExecTask.class), is(sameInstance(GoConfigClassBinder.binderFor(ExecTask.class))));
+    }
+
+    @Test
+    public void shouldKnowHowEachFieldOfAClassIsLoaded() {
+        Map<String, FieldKind> execTask = kindsOfFields(ExecTask.class);
+
+        assertThat(execTask.get("command"), is(FieldKind.ATTRIBUTE));
+        assertThat(execTask.get("argList"), is(FieldKind.IMPLICIT_COLLECTION));
+        assertThat(execTask.get("CUSTOM_COMMAND"), is(FieldKind.NONE));
+        assertThat(kindsOfFields(Argument.class).get("value"), is(FieldKind.VALUE));
+    }
+
+    @Test
+    public void shouldCreateInstancesOfTheClass() {
+        ExecTask task = GoConfigClassBinder.binderFor(ExecTask.class).newInstance(null);
+
+        assertThat(task, is(notNullValue()));
+    }
+
+    private static Map<String, FieldKind> kindsOfFields(Class<?> type) {
+        Map<String, FieldKind> kinds = new HashMap<>();
+        for (FieldBinding field : GoConfigClassBinder.binderFor(type).fields()) {
+            kinds.put(field.field().getName(), field.kind());
+        }
+        return kinds;
+    }
+}
@@ -29,7 +29,7 @@ public class GoConfigFieldLoaderTest {
     public void shouldOnlyCreateOneInstanceOfSimpleTypeConverterAndUseIt() throws Exception {
         Integer dummyValue = 0;
         Field randomField = dummyValue.getClass().getDeclaredFields()[0]; // Random field because I can't mock java.lang.reflect.Field (Sachin)
-        GoConfigFieldLoader loader = GoConfigFieldLoader.fieldParser(null, null, randomField, null, null, new ConfigReferenceElements());
+        GoConfigFieldLoader loader = GoConfigFieldLoader.fieldParser(null, null, GoConfigClassBinder.FieldBinding.of(randomField), null, null, new ConfigReferenceElements(), null);
         Field expectedField = loader.getClass().getDeclaredField("typeConverter");
         int modifier = expectedField.getModifiers();
         assertThat(Modifier.isStatic(modifier), is(true));
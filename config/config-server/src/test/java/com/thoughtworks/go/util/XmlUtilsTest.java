@@ -18,7 +18,11 @@ package com.thoughtworks.go.util;
 import com.thoughtworks.go.config.GoConfigSchema;
 import com.thoughtworks.go.config.registry.ConfigElementImplementationRegistry;
 import com.thoughtworks.go.config.registry.NoPluginsInstalled;
+import com.thoughtworks.go.helper.ConfigFileFixture;
 import org.apache.commons.io.FileUtils;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.filter.Filters;
 import org.jdom2.input.JDOMParseException;
 import org.junit.Before;
 import org.junit.Rule;
@@ -29,8 +33,10 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 
 import static com.thoughtworks.go.util.XmlUtils.buildXmlDocument;
+import static com.thoughtworks.go.util.XmlUtils.buildXmlDocumentWithoutElementWhitespace;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
@@ -82,6 +88,23 @@ public class XmlUtilsTest {
         buildXmlDocument(new ByteArrayInputStream(xxeFileContent().getBytes()), GoConfigSchema.getCurrentSchema(), configElementImplementationRegistry.xsds());
     }
 
+    @Test
+    public void shouldLeaveOutWhitespaceBetweenElementsButKeepTextOfElements() throws Exception {
+        Document document = buildXmlDocumentWithoutElementWhitespace(new StringReader(ConfigFileFixture.ONE_PIPELINE), GoConfigSchema.getCurrentSchema(), configElementImplementationRegistry.xsds());
+
+        Element server = document.getRootElement().getChild("server");
+        assertThat(server.getContentSize(), is(1));
+        assertThat(server.getChild("artifacts").getContentSize(), is(1));
+        assertThat(server.getChild("artifacts").getChildText("artifactsDir"), is("other-artifacts"));
+        assertThat(document.getRootElement().getDescendants(Filters.text()).iterator().next().getText(), is("other-artifacts"));
+    }
+
+    @Test
+    public void shouldDisableDocTypeDeclarationsWhenBuildingXmlDocumentsWithoutElementWhitespace() throws Exception {
+        expectDOCTYPEDisallowedException();
+        buildXmlDocumentWithoutElementWhitespace(new StringReader(xxeFileContent()), GoConfigSchema.getCurrentSchema(), configElementImplementationRegistry.xsds());
+    }
+
     private void expectDOCTYPEDisallowedException() {
         expectedException.expect(JDOMParseException.class);
         expectedException.expectMessage(containsString("DOCTYPE is disallowed when the feature \"http://apache.org/xml/features/disallow-doctype-decl\" set to true"));
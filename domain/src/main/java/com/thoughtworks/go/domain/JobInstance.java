@@ -372,14 +372,6 @@ public class JobInstance extends PersistentObject implements Serializable, Compa
         return identifier;
     }
 
-    public String getBuildDurationKey(String pipelineName, String stageName) {
-        return String.format("BUILD_DURATION: %s_%s_%s_%s",
-                pipelineName,
-                stageName,
-                getName(),
-                getAgentUuid());
-    }
-
     public boolean isAssignedToAgent() {
         return getAgentUuid() != null;
     }
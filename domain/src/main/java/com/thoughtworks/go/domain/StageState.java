@@ -63,6 +63,13 @@ public enum StageState {
                 anyUnknown = true;
             }
         }
+        return of(anyBuilding, anyFailed, anyCancelled, anyUnknown);
+    }
+
+    /**
+     * The state of a stage with at least one job, from what its jobs add up to
+     */
+    public static StageState of(boolean anyBuilding, boolean anyFailed, boolean anyCancelled, boolean anyUnknown) {
         if (anyBuilding && anyFailed) {
             return Failing;
         }
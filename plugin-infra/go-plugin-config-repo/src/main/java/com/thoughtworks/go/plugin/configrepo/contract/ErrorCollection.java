@@ -104,4 +104,10 @@ public class ErrorCollection {
             this.addError(error.getLocation(), error.getMessage());
         }
     }
+
+    public void addErrors(ErrorCollection other) {
+        for (Map.Entry<String, List<String>> entry : other.errors.entrySet()) {
+            getOrCreateErrorList(entry.getKey()).addAll(entry.getValue());
+        }
+    }
 }
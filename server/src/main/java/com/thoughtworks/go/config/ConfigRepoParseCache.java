@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config;
+
+import com.thoughtworks.go.plugin.configrepo.contract.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * @understands what the config files of a config repository parsed to, by the hash of their content, so that a new
+ * revision of the repository only needs the files that changed to be parsed again. The changed files are parsed
+ * together. When the plugin gives the location of everything it parsed, the result is remembered file by file,
+ * otherwise the files parsed together are remembered, and parsed again, together.
+ */
+public class ConfigRepoParseCache {
+    private final Map<String, ParsedRepository> repositories = new ConcurrentHashMap<>();
+
+    /**
+     * Parses a config repository, reusing the results of the files whose content did not change since the repository
+     * was last parsed successfully by the same plugin
+     *
+     * @param repository    identifies the config repository, see {@link #repositoryKey(String, String)}
+     * @param pluginVersion identifies the version of the plugin, results of any other version are not reused
+     * @param hashes        the hash of the content of each config file of the repository, by file name
+     * @param parser        parses the given files in one go, called at most once
+     * @return the results of all the files, merged
+     */
+    public CRParseResult parse(String repository, String pluginVersion, Map<String, String> hashes, Function<Set<String>, CRParseResult> parser) {
+        ParsedRepository previous = repositories.get(repository);
+        List<ParsedFiles> current = new ArrayList<>();
+        Set<String> changed = new TreeSet<>(hashes.keySet());
+        if (previous != null && previous.pluginVersion.equals(pluginVersion)) {
+            for (ParsedFiles parsed : previous.files) {
+                if (parsed.isUnchangedIn(hashes)) {
+                    current.add(parsed);
+                    changed.removeAll(parsed.hashes.keySet());
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            Map<String, String> changedHashes = new TreeMap<>();
+            changed.forEach(file -> changedHashes.put(file, hashes.get(file)));
+            current.addAll(byFile(changedHashes, parser.apply(changed)));
+        }
+
+        CRParseResult merged = new CRParseResult(new ArrayList<>(), new ArrayList<>(), new ErrorCollection());
+        for (ParsedFiles parsed : current) {
+            merged.getEnvironments().addAll(parsed.result.getEnvironments());
+            merged.getPipelines().addAll(parsed.result.getPipelines());
+            if (parsed.result.getErrors() != null) {
+                merged.getErrors().addErrors(parsed.result.getErrors());
+            }
+        }
+        if (!merged.hasErrors()) {
+            repositories.put(repository, new ParsedRepository(pluginVersion, current));
+        }
+        return merged;
+    }
+
+    private static List<ParsedFiles> byFile(Map<String, String> hashes, CRParseResult result) {
+        if (result.hasErrors()) {
+            return Collections.singletonList(new ParsedFiles(hashes, result));
+        }
+        Map<String, CRParseResult> results = new TreeMap<>();
+        hashes.keySet().forEach(file -> results.put(file, new CRParseResult(new ArrayList<>(), new ArrayList<>(), new ErrorCollection())));
+        for (CREnvironment environment : result.getEnvironments()) {
+            CRParseResult parsed = results.get(fileOf(environment, hashes.keySet()));
+            if (parsed == null) {
+                return Collections.singletonList(new ParsedFiles(hashes, result));
+            }
+            parsed.getEnvironments().add(environment);
+        }
+        for (CRPipeline pipeline : result.getPipelines()) {
+            CRParseResult parsed = results.get(fileOf(pipeline, hashes.keySet()));
+            if (parsed == null) {
+                return Collections.singletonList(new ParsedFiles(hashes, result));
+            }
+            parsed.getPipelines().add(pipeline);
+        }
+        List<ParsedFiles> byFile = new ArrayList<>();
+        results.forEach((file, parsed) -> byFile.add(new ParsedFiles(Collections.singletonMap(file, hashes.get(file)), parsed)));
+        return byFile;
+    }
+
+    private static String fileOf(CRBase element, Set<String> files) {
+        String location = element.getLocation();
+        if (location == null) {
+            return null;
+        }
+        for (String file : files) {
+            if (location.equals(file) || location.endsWith("/" + file) || file.endsWith("/" + location)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    public static String repositoryKey(String pluginId, String materialFingerprint) {
+        return materialFingerprint + ":" + pluginId;
+    }
+
+    public void removeRepositoriesOf(String materialFingerprint) {
+        repositories.keySet().removeIf(key -> key.startsWith(materialFingerprint + ":"));
+    }
+
+    int size(String repository) {
+        ParsedRepository parsed = repositories.get(repository);
+        return parsed == null ? 0 : parsed.files.stream().mapToInt(files -> files.hashes.size()).sum();
+    }
+
+    private static class ParsedRepository {
+        private final String pluginVersion;
+        private final List<ParsedFiles> files;
+
+        private ParsedRepository(String pluginVersion, List<ParsedFiles> files) {
+            this.pluginVersion = pluginVersion;
+            this.files = files;
+        }
+    }
+
+    private static class ParsedFiles {
+        private final Map<String, String> hashes;
+        private final CRParseResult result;
+
+        private ParsedFiles(Map<String, String> hashes, CRParseResult result) {
+            this.hashes = hashes;
+            this.result = result;
+        }
+
+        private boolean isUnchangedIn(Map<String, String> current) {
+            for (Map.Entry<String, String> file : hashes.entrySet()) {
+                if (!file.getValue().equals(current.get(file.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.thoughtworks.go.config;
 
+import com.google.common.collect.Maps;
 import com.thoughtworks.go.config.remote.PartialConfig;
 import com.thoughtworks.go.domain.config.Configuration;
 import com.thoughtworks.go.domain.config.ConfigurationProperty;
@@ -25,21 +26,33 @@ import com.thoughtworks.go.plugin.access.configrepo.InvalidPartialConfigExceptio
 import com.thoughtworks.go.plugin.configrepo.contract.CRConfigurationProperty;
 import com.thoughtworks.go.plugin.configrepo.contract.CRParseResult;
 import com.thoughtworks.go.plugin.configrepo.contract.CRPipeline;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 import static com.thoughtworks.go.util.CachedDigestUtils.sha256Hex;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class ConfigRepoPlugin implements PartialConfigProvider {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigRepoPlugin.class);
     private ConfigConverter configConverter;
     private ConfigRepoExtension crExtension;
     private String pluginId;
+    private ConfigRepoParseCache parseCache;
 
     public ConfigRepoPlugin(ConfigConverter configConverter, ConfigRepoExtension crExtension, String pluginId) {
+        this(configConverter, crExtension, pluginId, null);
+    }
+
+    public ConfigRepoPlugin(ConfigConverter configConverter, ConfigRepoExtension crExtension, String pluginId, ConfigRepoParseCache parseCache) {
         this.configConverter = configConverter;
         this.crExtension = crExtension;
         this.pluginId = pluginId;
+        this.parseCache = parseCache;
     }
 
     public static List<CRConfigurationProperty> getCrConfigurations(Configuration configuration) {
@@ -59,10 +72,47 @@ public class ConfigRepoPlugin implements PartialConfigProvider {
     @Override
     public PartialConfig load(File configRepoCheckoutDirectory, PartialConfigLoadContext context) {
         Collection<CRConfigurationProperty> cRconfigurations = getCrConfigurations(context.configuration());
-        CRParseResult crPartialConfig = parseDirectory(configRepoCheckoutDirectory, cRconfigurations);
+        CRParseResult crPartialConfig = canParseIncrementally(context) ? parseIncrementally(configRepoCheckoutDirectory, cRconfigurations, context) : null;
+        if (crPartialConfig == null) {
+            crPartialConfig = parseDirectory(configRepoCheckoutDirectory, cRconfigurations);
+        }
         return configConverter.toPartialConfig(crPartialConfig, context);
     }
 
+    private boolean canParseIncrementally(PartialConfigLoadContext context) {
+        // the content of a file is parsed without the configuration of the repository, which could change its meaning
+        return parseCache != null && context.configMaterial() != null
+                && (context.configuration() == null || context.configuration().isEmpty());
+    }
+
+    private CRParseResult parseIncrementally(File configRepoCheckoutDirectory, Collection<CRConfigurationProperty> cRconfigurations, PartialConfigLoadContext context) {
+        ConfigFileList configFiles = getConfigFiles(configRepoCheckoutDirectory, cRconfigurations);
+        if (configFiles.hasErrors() || configFiles.getFiles() == null) {
+            LOGGER.debug("Plugin {} could not list its config files, parsing the whole of {}", pluginId, configRepoCheckoutDirectory);
+            return null;
+        }
+        Map<String, String> contents = new TreeMap<>();
+        Map<String, String> hashes = new TreeMap<>();
+        try {
+            for (String file : configFiles.getFiles()) {
+                File configFile = new File(file).isAbsolute() ? new File(file) : new File(configRepoCheckoutDirectory, file);
+                String content = FileUtils.readFileToString(configFile, UTF_8);
+                contents.put(file, content);
+                hashes.put(file, sha256Hex(content));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the config files of {}, parsing the whole of it", configRepoCheckoutDirectory, e);
+            return null;
+        }
+        // an upgraded plugin may parse the same files differently
+        String pluginVersion = String.valueOf(Objects.hashCode(crExtension.pluginDescriptorFor(pluginId)));
+        CRParseResult crParseResult = parseCache.parse(ConfigRepoParseCache.repositoryKey(pluginId, context.configMaterial().getFingerprint()), pluginVersion, hashes,
+                changed -> crExtension.parseContent(pluginId, new TreeMap<>(Maps.filterKeys(contents, changed::contains))));
+        if (crParseResult.hasErrors())
+            throw new InvalidPartialConfigException(crParseResult, crParseResult.getErrors().getErrorsAsText());
+        return crParseResult;
+    }
+
     public String id() {
         return this.pluginId;
     }
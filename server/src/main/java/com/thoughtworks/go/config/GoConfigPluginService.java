@@ -21,7 +21,9 @@ import com.thoughtworks.go.config.remote.ConfigRepoConfig;
 import com.thoughtworks.go.plugin.access.configrepo.ConfigRepoExtension;
 import com.thoughtworks.go.plugin.access.configrepo.ConfigRepoMetadataStore;
 import com.thoughtworks.go.security.GoCipher;
+import com.thoughtworks.go.plugin.domain.configrepo.ConfigRepoPluginInfo;
 import com.thoughtworks.go.server.service.AgentService;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -34,12 +36,14 @@ public class GoConfigPluginService {
     private final ConfigRepoExtension crExtension;
     private final XmlPartialConfigProvider embeddedXmlPlugin;
     private ConfigConverter configConverter;
+    private final ConfigRepoParseCache parseCache;
 
     @Autowired
     public GoConfigPluginService(ConfigRepoExtension configRepoExtension, ConfigCache configCache,
                                  ConfigElementImplementationRegistry configElementImplementationRegistry,
-                                 CachedGoConfig cachedGoConfig, AgentService agentService) {
+                                 CachedGoConfig cachedGoConfig, AgentService agentService, SystemEnvironment systemEnvironment) {
         this.crExtension = configRepoExtension;
+        this.parseCache = systemEnvironment.isConfigRepoIncrementalParseEnabled() ? new ConfigRepoParseCache() : null;
         MagicalGoConfigXmlLoader loader = new MagicalGoConfigXmlLoader(configCache, configElementImplementationRegistry);
         embeddedXmlPlugin = new XmlPartialConfigProvider(loader);
         configConverter = new ConfigConverter(new GoCipher(), cachedGoConfig, agentService);
@@ -54,7 +58,13 @@ public class GoConfigPluginService {
         if (pluginId == null || pluginId.equals(XmlPartialConfigProvider.providerName))
             return embeddedXmlPlugin;
 
-        return new ConfigRepoPlugin(configConverter, crExtension, pluginId);
+        return new ConfigRepoPlugin(configConverter, crExtension, pluginId, supportsParseContent(pluginId) ? parseCache : null);
+    }
+
+    public void forgetParsedFilesOf(String materialFingerprint) {
+        if (parseCache != null) {
+            parseCache.removeRepositoriesOf(materialFingerprint);
+        }
     }
 
     public boolean isConfigRepoPlugin(String pluginId) {
@@ -64,4 +74,9 @@ public class GoConfigPluginService {
     public boolean supportsPipelineExport(String pluginId) {
         return ConfigRepoMetadataStore.instance().getPluginInfo(pluginId).getCapabilities().isSupportsPipelineExport();
     }
+
+    private boolean supportsParseContent(String pluginId) {
+        ConfigRepoPluginInfo pluginInfo = ConfigRepoMetadataStore.instance().getPluginInfo(pluginId);
+        return pluginInfo != null && pluginInfo.getCapabilities() != null && pluginInfo.getCapabilities().isSupportsParseContent();
+    }
 }
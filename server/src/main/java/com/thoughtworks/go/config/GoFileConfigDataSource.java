@@ -79,7 +79,7 @@ public class GoFileConfigDataSource {
                                   FullConfigSaveMergeFlow fullConfigSaveMergeFlow, FullConfigSaveNormalFlow fullConfigSaveNormalFlow) {
         this(upgrader, configRepository, systemEnvironment, timeProvider,
                 new MagicalGoConfigXmlLoader(configCache, configElementImplementationRegistry),
-                new MagicalGoConfigXmlWriter(configCache, configElementImplementationRegistry), serverHealthService,
+                new MagicalGoConfigXmlWriter(configCache, configElementImplementationRegistry, systemEnvironment.isConfigXmlFragmentCacheEnabled()), serverHealthService,
                 cachedGoPartials, fullConfigSaveMergeFlow, fullConfigSaveNormalFlow,
                 new GoConfigFileReader(systemEnvironment), new GoConfigFileWriter(systemEnvironment));
     }
@@ -527,11 +527,13 @@ public class GoFileConfigDataSource {
         cachedGoPartials.markAsValid(partials);
     }
 
-    public String configAsXml(CruiseConfig config, boolean skipPreprocessingAndValidation) throws Exception {
+    // the writer's fragment cache is not thread safe, every write goes through this lock
+    public synchronized String configAsXml(CruiseConfig config, boolean skipPreprocessingAndValidation) throws Exception {
         LOGGER.debug("[Config Save] === Converting config to XML");
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         magicalGoConfigXmlWriter.write(config, outputStream, skipPreprocessingAndValidation);
-        LOGGER.debug("[Config Save] === Done converting config to XML");
+        LOGGER.debug("[Config Save] === Done converting config to XML. Fragment cache hits: {}, misses: {}",
+                magicalGoConfigXmlWriter.fragmentCacheHits(), magicalGoConfigXmlWriter.fragmentCacheMisses());
         return outputStream.toString();
     }
 
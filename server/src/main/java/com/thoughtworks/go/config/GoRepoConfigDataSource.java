@@ -116,6 +116,7 @@ public class GoRepoConfigDataSource implements ChangedRepoConfigWatchListListene
         for (String fingerprint : this.configReposMaterialParseResultManager.allFingerprints()) {
             if (!newConfigRepos.hasMaterialWithFingerprint(fingerprint)) {
                 this.configReposMaterialParseResultManager.remove(fingerprint);
+                this.configPluginService.forgetParsedFilesOf(fingerprint);
             }
         }
     }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config.validation;
+
+import com.thoughtworks.go.config.CruiseConfig;
+import com.thoughtworks.go.config.GoConfigCloner;
+import com.thoughtworks.go.config.exceptions.GoConfigInvalidException;
+import com.thoughtworks.go.server.service.GoConfigService;
+import com.thoughtworks.go.serverhealth.HealthStateScope;
+import com.thoughtworks.go.serverhealth.HealthStateType;
+import com.thoughtworks.go.serverhealth.ServerHealthService;
+import com.thoughtworks.go.serverhealth.ServerHealthState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * @understands validating the whole of the current configuration in the background.
+ * <p/>
+ * Entity updates only validate the entity they change and the entities depending on it, so that an update does not
+ * hold the config write lock while every pipeline is validated. This is the safety net for anything that scoped
+ * validation misses: the complete merged configuration is validated, outside of the lock, whenever it changed.
+ */
+@Component
+public class BackgroundConfigValidator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundConfigValidator.class);
+    public static final String INVALID_CONFIG_FOUND = "Invalid configuration found by background validation";
+    private static final HealthStateScope SCOPE = HealthStateScope.forBackgroundConfigValidation();
+
+    private final GoConfigService goConfigService;
+    private final ServerHealthService serverHealthService;
+    private final GoConfigCloner cloner = new GoConfigCloner();
+    private CruiseConfig lastValidatedConfig;
+
+    @Autowired
+    public BackgroundConfigValidator(GoConfigService goConfigService, ServerHealthService serverHealthService) {
+        this.goConfigService = goConfigService;
+        this.serverHealthService = serverHealthService;
+    }
+
+    //NOTE: This method is called on a thread from Spring
+    public synchronized void onTimer() {
+        // every save replaces the config for edit, so an unchanged instance has been validated already
+        CruiseConfig configForEdit = goConfigService.getConfigForEditing();
+        if (configForEdit == null || configForEdit == lastValidatedConfig) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            goConfigService.validateCruiseConfig(cloner.deepClone(configForEdit));
+            serverHealthService.removeByScope(SCOPE);
+        } catch (GoConfigInvalidException e) {
+            LOGGER.warn("[Config Validation] Background validation found errors in the configuration: {}", e.getAllErrorMessages());
+            serverHealthService.update(ServerHealthState.warning(INVALID_CONFIG_FOUND, e.getAllErrorMessages(), HealthStateType.general(SCOPE)));
+        } catch (Exception e) {
+            LOGGER.warn("[Config Validation] Background validation failed", e);
+            serverHealthService.update(ServerHealthState.warning(INVALID_CONFIG_FOUND, e.getMessage(), HealthStateType.general(SCOPE)));
+        }
+        lastValidatedConfig = configForEdit;
+        LOGGER.debug("[Config Validation] Background validation took {}ms", System.currentTimeMillis() - start);
+    }
+}
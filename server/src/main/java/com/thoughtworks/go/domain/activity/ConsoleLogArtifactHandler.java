@@ -18,6 +18,7 @@ package com.thoughtworks.go.domain.activity;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.domain.JobInstance;
 import com.thoughtworks.go.server.domain.JobStatusListener;
+import com.thoughtworks.go.server.service.ArtifactsService;
 import com.thoughtworks.go.server.service.ConsoleService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -25,10 +26,12 @@ import org.springframework.stereotype.Component;
 @Component
 public class ConsoleLogArtifactHandler implements JobStatusListener {
     private ConsoleService consoleService;
+    private ArtifactsService artifactsService;
 
     @Autowired
-    public ConsoleLogArtifactHandler(ConsoleService consoleService) {
+    public ConsoleLogArtifactHandler(ConsoleService consoleService, ArtifactsService artifactsService) {
         this.consoleService = consoleService;
+        this.artifactsService = artifactsService;
     }
 
     @Override
@@ -42,6 +45,8 @@ public class ConsoleLogArtifactHandler implements JobStatusListener {
             try {
                 JobIdentifier identifier = job.getIdentifier();
                 consoleService.moveConsoleArtifacts(identifier);
+                // a completed job has uploaded all of its artifacts, so its listing will not change any more
+                artifactsService.scheduleArtifactManifest(identifier);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -18,6 +18,7 @@ package com.thoughtworks.go.domain.activity;
 import java.util.Hashtable;
 import java.util.Map;
 
+import com.thoughtworks.go.domain.JobInstance;
 import com.thoughtworks.go.domain.NullStage;
 import com.thoughtworks.go.domain.Stage;
 import com.thoughtworks.go.domain.StageConfigIdentifier;
@@ -44,6 +45,14 @@ public class StageStatusCache implements StageStatusListener {
         stages.put(configIdentifier, stage);
     }
 
+    /**
+     * Forgets the stage of a job which changed without the stage being written, it is loaded again when asked for
+     */
+    public void jobStatusChanged(JobInstance job) {
+        StageConfigIdentifier configIdentifier = job.getIdentifier().getStageIdentifier().stageConfigIdentifier();
+        stages.computeIfPresent(configIdentifier, (identifier, stage) -> stage.getId() == job.getStageId() ? null : stage);
+    }
+
     public Stage currentStage(StageConfigIdentifier identifier) {
         Stage instance = stages.get(identifier);
         if (instance == null) {
@@ -17,74 +17,188 @@ package com.thoughtworks.go.server.cache;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.thoughtworks.go.server.service.ArtifactsDirHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @understands serving prepared artifacts and preparing artifact offline
  */
 public abstract class ArtifactCache<T> {
-    protected final ArtifactsDirHolder artifactsDirHolder;
-    protected ConcurrentSkipListSet<T> pendingCacheFiles = new ConcurrentSkipListSet<>();
-    protected ConcurrentMap<T, Exception> pendingExceptions = new ConcurrentHashMap<>();
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactCache.class);
     public static final String CACHE_ARTIFACTS_FOLDER = "cache/artifacts/";
+    // rough throughput of a cache creator, used to let small artifacts overtake large ones without starving them
+    private static final long ESTIMATED_BYTES_PER_MILLISECOND = 50 * 1024;
+    private static final int RECENT_CREATIONS = 20;
+
+    protected final ArtifactsDirHolder artifactsDirHolder;
+    private final ConcurrentMap<String, CacheCreation> pendingCacheFiles = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Exception> pendingExceptions = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final int maxQueueDepth;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Deque<Map<String, Object>> recentCreations = new ArrayDeque<>();
 
-    public ArtifactCache(ArtifactsDirHolder artifactsDirHolder) {
+    public ArtifactCache(ArtifactsDirHolder artifactsDirHolder, int workers, int maxQueueDepth) {
         this.artifactsDirHolder = artifactsDirHolder;
+        this.maxQueueDepth = maxQueueDepth;
+        int threads = Math.max(1, workers);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "cache-creator-thread-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
     }
 
     public boolean cacheCreated(T artifactLocation) throws Exception {
-        if (currentlyCreatingCache(artifactLocation)) { return false; }
-        if (exceptionCreatingCache(artifactLocation)) {
-            Exception e = pendingExceptions.get(artifactLocation);
-            if (e != null && pendingExceptions.remove(artifactLocation, e)) {
-                throw e;
-            } else {
-                return false;
-            }
+        String key = key(artifactLocation);
+        if (pendingCacheFiles.containsKey(key)) { return false; }
+        Exception e = pendingExceptions.remove(key);
+        if (e != null) {
+            throw e;
         }
-        if (cacheAlreadyCreated(artifactLocation)) { return true; }
+        if (cachedFile(artifactLocation).exists()) { return true; }
 
         startCacheCreationThread(artifactLocation);
         return false;
     }
 
-    private boolean exceptionCreatingCache(T artifactLocation) {
-        return pendingExceptions.containsKey(artifactLocation);
-    }
-
-    private boolean cacheAlreadyCreated(T artifactLocation) {
-        return cachedFile(artifactLocation).exists();
+    /**
+     * Queues the creation of the cache. Requests for the same cached file, however the artifact was located, share a
+     * single creation. When the queue is full the request is dropped, callers keep polling {@link #cacheCreated} and
+     * will queue it again.
+     */
+    protected void startCacheCreationThread(final T artifactLocation) {
+        String key = key(artifactLocation);
+        if (maxQueueDepth > 0 && executor.getQueue().size() >= maxQueueDepth) {
+            rejected.incrementAndGet();
+            LOGGER.warn("Too many artifact caches being created, not queueing '{}' for now", key);
+            return;
+        }
+        CacheCreation creation = new CacheCreation(artifactLocation, key);
+        if (pendingCacheFiles.putIfAbsent(key, creation) == null) {
+            executor.execute(creation);
+        }
     }
 
-    private boolean currentlyCreatingCache(T artifactLocation) {
-        return pendingCacheFiles.contains(artifactLocation);
+    public Map<String, Object> asJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Workers", executor.getMaximumPoolSize());
+        json.put("Active workers", executor.getActiveCount());
+        json.put("Queue depth", executor.getQueue().size());
+        json.put("Max queue depth", maxQueueDepth);
+        json.put("In flight", pendingCacheFiles.size());
+        json.put("In flight bytes", inFlightBytes.get());
+        json.put("Completed", completed.get());
+        json.put("Rejected", rejected.get());
+        synchronized (recentCreations) {
+            json.put("Recently completed", new ArrayList<>(recentCreations));
+        }
+        return json;
     }
 
-    protected void startCacheCreationThread(final T artifactLocation) {
-        boolean inserted = pendingCacheFiles.add(artifactLocation);
-        if (inserted) {
-            Thread cacheCreatorThread = new Thread("cache-creator-thread-" + UUID.randomUUID().toString()) {
-                @Override
-                public void run() {
-                    try {
-                        createCachedFile(artifactLocation);
-                    } catch (Exception e) {
-                        pendingExceptions.putIfAbsent(artifactLocation, e);
-                    } finally {
-                        pendingCacheFiles.remove(artifactLocation);
-                    }
-                }
-            };
-            cacheCreatorThread.start();
-        }
+    private String key(T artifactLocation) {
+        return cachedFile(artifactLocation).getAbsolutePath();
     }
 
     public abstract File cachedFile(T artifactLocation);
 
     abstract void createCachedFile(T artifactLocation) throws IOException;
+
+    /**
+     * @return an estimate of how many bytes creating the cache has to read. Called on a cache creator thread, as it may
+     * have to walk the artifacts.
+     */
+    abstract long sizeOf(T artifactLocation);
+
+    private class CacheCreation implements Runnable, Comparable<CacheCreation> {
+        private final T artifactLocation;
+        private final String key;
+        // unknown until the creation first comes off the queue, so that requests never wait for the artifacts to be measured
+        private volatile long bytes;
+        private volatile boolean measured;
+        private final long queuedAt = System.currentTimeMillis();
+        private final long order = sequence.incrementAndGet();
+
+        CacheCreation(T artifactLocation, String key) {
+            this.artifactLocation = artifactLocation;
+            this.key = key;
+        }
+
+        private long expectedCompletion() {
+            return queuedAt + bytes / ESTIMATED_BYTES_PER_MILLISECOND;
+        }
+
+        @Override
+        public int compareTo(CacheCreation other) {
+            int byCompletion = Long.compare(expectedCompletion(), other.expectedCompletion());
+            return byCompletion != 0 ? byCompletion : Long.compare(order, other.order);
+        }
+
+        @Override
+        public void run() {
+            if (!measured && measureAndRequeue()) {
+                return;
+            }
+            long startedAt = System.currentTimeMillis();
+            inFlightBytes.addAndGet(bytes);
+            Exception failure = null;
+            try {
+                createCachedFile(artifactLocation);
+            } catch (Exception e) {
+                failure = e;
+                pendingExceptions.putIfAbsent(key, e);
+            } finally {
+                inFlightBytes.addAndGet(-bytes);
+                completed.incrementAndGet();
+                record(startedAt, failure);
+                pendingCacheFiles.remove(key);
+            }
+        }
+
+        /**
+         * @return true if the creation was queued again behind a creation which is expected to finish earlier
+         */
+        @SuppressWarnings("unchecked")
+        private boolean measureAndRequeue() {
+            try {
+                bytes = sizeOf(artifactLocation);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not measure the artifacts of '{}', creating its cache anyway", key, e);
+            }
+            measured = true;
+            Runnable next = executor.getQueue().peek();
+            if (next != null && ((CacheCreation) next).compareTo(this) < 0) {
+                executor.execute(this);
+                return true;
+            }
+            return false;
+        }
+
+        private void record(long startedAt, Exception failure) {
+            long now = System.currentTimeMillis();
+            Map<String, Object> creation = new LinkedHashMap<>();
+            creation.put("Cached file", key);
+            creation.put("Bytes", bytes);
+            creation.put("Queued (ms)", startedAt - queuedAt);
+            creation.put("Took (ms)", now - startedAt);
+            creation.put("Failed", failure != null);
+            synchronized (recentCreations) {
+                recentCreations.addFirst(creation);
+                while (recentCreations.size() > RECENT_CREATIONS) {
+                    recentCreations.removeLast();
+                }
+            }
+        }
+    }
 }
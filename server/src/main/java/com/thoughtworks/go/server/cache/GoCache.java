@@ -17,6 +17,7 @@ package com.thoughtworks.go.server.cache;
 
 import com.thoughtworks.go.domain.NullUser;
 import com.thoughtworks.go.domain.PersistentObject;
+import com.thoughtworks.go.server.database.ReadReplicaDataSource;
 import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
@@ -101,6 +102,9 @@ public class GoCache {
             LOGGER.debug("transaction active during cache put for {} = {}", key, value, new IllegalStateException());
             return;
         }
+        if (ReadReplicaDataSource.isReadingFromReplica()) {
+            return;
+        }
         ehCache.put(new Element(key, value));
     }
 
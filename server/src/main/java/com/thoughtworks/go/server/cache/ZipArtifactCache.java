@@ -16,27 +16,87 @@
 package com.thoughtworks.go.server.cache;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.Deflater;
 
 import com.thoughtworks.go.server.service.ArtifactsDirHolder;
 import com.thoughtworks.go.server.web.ArtifactFolder;
-import com.thoughtworks.go.util.ZipUtil;
+import com.thoughtworks.go.util.ParallelZipWriter;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import static com.thoughtworks.go.util.StringUtil.removeTrailingSlash;
+import static java.util.Comparator.comparingLong;
 
 @Component
 public class ZipArtifactCache extends ArtifactCache<ArtifactFolder> {
-    private final ZipUtil zipUtil;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZipArtifactCache.class);
+    private final SystemEnvironment systemEnvironment;
+    private final ParallelZipWriter zipWriter;
+    // cached zips by last use, loaded from disk the first time a zip is created
+    private final LinkedHashMap<File, Long> cachedZips = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean cachedZipsLoaded;
+    private long cachedZipsSize;
 
     @Autowired
-    public ZipArtifactCache(ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil) {
-        super(artifactsDirHolder);
-        this.zipUtil = zipUtil;
+    public ZipArtifactCache(ArtifactsDirHolder artifactsDirHolder, SystemEnvironment systemEnvironment) {
+        super(artifactsDirHolder, systemEnvironment.getArtifactsCacheWorkers(), systemEnvironment.getArtifactsCacheMaxQueueDepth());
+        this.systemEnvironment = systemEnvironment;
+        int threads = Math.max(1, systemEnvironment.getArtifactsZipThreads());
+        this.zipWriter = new ParallelZipWriter(zipExecutor(threads), Deflater.DEFAULT_COMPRESSION, 2 * threads);
+    }
+
+    /**
+     * The queue is bounded, once it is full the zip writers compress on their own threads instead
+     */
+    private static ThreadPoolExecutor zipExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(4 * threads), runnable -> {
+            Thread thread = new Thread(runnable, "artifact-zip-thread-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public boolean isOnDiskCacheEnabled() {
+        return systemEnvironment.isArtifactsZipCacheEnabled();
+    }
+
+    @Override
+    public boolean cacheCreated(ArtifactFolder artifactFolder) throws Exception {
+        boolean created = super.cacheCreated(artifactFolder);
+        if (created) {
+            // eviction goes by last use, not by when the zip was created
+            File cachedZip = cachedFile(artifactFolder);
+            cachedZip.setLastModified(System.currentTimeMillis());
+            used(cachedZip);
+        }
+        return created;
+    }
+
+    /**
+     * Streams the folder as a zip without going through the on-disk cache
+     */
+    public void stream(ArtifactFolder artifactFolder, OutputStream output) throws IOException {
+        zipWriter.zip(artifactFolder.getRootFolder(), output);
     }
 
     @Override void createCachedFile(ArtifactFolder artifactFolder) throws IOException {
@@ -44,20 +104,75 @@ public class ZipArtifactCache extends ArtifactCache<ArtifactFolder> {
         File cachedZip = cachedFile(artifactFolder);
         File cachedTempZip = zipToTempFile(cachedZip);
         cachedTempZip.getParentFile().mkdirs();
-        try {
-            zipUtil.zip(originalFolder, cachedTempZip, Deflater.DEFAULT_COMPRESSION);
+        try (OutputStream output = new FileOutputStream(cachedTempZip)) {
+            zipWriter.zip(originalFolder, output);
         } catch (IOException e) {
             cachedTempZip.delete();
             throw e;
         }
         FileUtils.moveFile(cachedTempZip, cachedZip);
+        evictIfNeeded(cachedZip);
+    }
+
+    @Override
+    long sizeOf(ArtifactFolder artifactFolder) {
+        File folder = artifactFolder.getRootFolder();
+        try {
+            return folder.isDirectory() ? FileUtils.sizeOfDirectory(folder) : 0;
+        } catch (IllegalArgumentException e) {
+            // folder went away while it was being measured
+            return 0;
+        }
+    }
+
+    private synchronized void used(File cachedZip) {
+        cachedZips.get(cachedZip);
+    }
+
+    private synchronized void evictIfNeeded(File justCreated) {
+        long maxSize = systemEnvironment.getArtifactsZipCacheMaxSizeInMb() * FileUtils.ONE_MB;
+        if (maxSize <= 0) {
+            return;
+        }
+        if (!cachedZipsLoaded) {
+            loadCachedZips();
+        }
+        Long replaced = cachedZips.put(justCreated, justCreated.length());
+        cachedZipsSize += justCreated.length() - (replaced == null ? 0 : replaced);
+
+        Iterator<Map.Entry<File, Long>> leastRecentlyUsedFirst = cachedZips.entrySet().iterator();
+        while (cachedZipsSize > maxSize && leastRecentlyUsedFirst.hasNext()) {
+            Map.Entry<File, Long> cached = leastRecentlyUsedFirst.next();
+            File zip = cached.getKey();
+            if (zip.equals(justCreated)) {
+                continue;
+            }
+            if (FileUtils.deleteQuietly(zip) || !zip.exists()) {
+                LOGGER.debug("Evicted cached artifact zip [{}]", zip);
+                cachedZipsSize -= cached.getValue();
+                leastRecentlyUsedFirst.remove();
+            }
+        }
+    }
+
+    private void loadCachedZips() {
+        File cacheRoot = new File(artifactsDirHolder.getArtifactsDir(), CACHE_ARTIFACTS_FOLDER);
+        if (cacheRoot.isDirectory()) {
+            List<File> leastRecentlyUsedFirst = new ArrayList<>(FileUtils.listFiles(cacheRoot, new String[]{"zip"}, true));
+            leastRecentlyUsedFirst.sort(comparingLong(File::lastModified));
+            for (File zip : leastRecentlyUsedFirst) {
+                long size = zip.length();
+                cachedZips.put(zip, size);
+                cachedZipsSize += size;
+            }
+        }
+        cachedZipsLoaded = true;
     }
 
     private File zipToTempFile(File cachedZip) {
         File parent = cachedZip.getParentFile();
         return new File(parent, cachedZip.getName() + ".tmp");
     }
-
     @Override
     public File cachedFile(ArtifactFolder artifactFolder) {
         File root = artifactsDirHolder.getArtifactsDir();
@@ -25,6 +25,7 @@ import com.thoughtworks.go.server.service.ArtifactsService;
 import com.thoughtworks.go.server.service.ConsoleActivityMonitor;
 import com.thoughtworks.go.server.service.ConsoleService;
 import com.thoughtworks.go.server.service.RestfulService;
+import com.thoughtworks.go.server.service.StreamedArtifactUpload;
 import com.thoughtworks.go.server.util.ErrorHandler;
 import com.thoughtworks.go.server.view.artifacts.ArtifactsView;
 import com.thoughtworks.go.server.view.artifacts.LocalArtifactsView;
@@ -32,7 +33,10 @@ import com.thoughtworks.go.server.web.ArtifactFolderViewFactory;
 import com.thoughtworks.go.server.web.FileModelAndView;
 import com.thoughtworks.go.server.web.ResponseCodeView;
 import com.thoughtworks.go.util.ArtifactLogUtil;
+import com.thoughtworks.go.util.HttpService;
+import com.thoughtworks.go.util.IllegalPathException;
 import com.thoughtworks.go.util.SystemEnvironment;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,17 +50,22 @@ import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.thoughtworks.go.server.web.ZipArtifactFolderViewFactory.zipViewFactory;
 import static com.thoughtworks.go.util.ArtifactLogUtil.isConsoleOutput;
 import static com.thoughtworks.go.util.GoConstants.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
 @Controller
 public class ArtifactsController {
@@ -176,7 +185,9 @@ public class ArtifactsController {
                 return FileModelAndView.errorSavingFile(filePath);
             }
 
+            artifactsService.deduplicate(jobIdentifier, artifact);
             success = updateChecksumFile(request, jobIdentifier, filePath);
+            artifactsService.invalidateArtifactManifest(jobIdentifier);
 
             if (!success) {
                 return FileModelAndView.errorSavingChecksumFile(filePath);
@@ -189,20 +200,116 @@ public class ArtifactsController {
         }
     }
 
+    @RequestMapping(value = "/repository/restful/artifact/POST/*", method = RequestMethod.POST, headers = HttpService.GO_ARTIFACT_STREAMING)
+    public ModelAndView postStreamedArtifact(@RequestParam("pipelineName") String pipelineName,
+                                             @RequestParam("pipelineCounter") String pipelineCounter,
+                                             @RequestParam("stageName") String stageName,
+                                             @RequestParam(value = "stageCounter", required = false) String stageCounter,
+                                             @RequestParam("buildName") String buildName,
+                                             @RequestParam(value = "buildId", required = false) Long buildId,
+                                             @RequestParam("filePath") String filePath,
+                                             HttpServletRequest request,
+                                             HttpServletResponse response) throws Exception {
+        if (!headerConstraint.isSatisfied(request)) {
+            return ResponseCodeView.create(HttpServletResponse.SC_BAD_REQUEST, "Missing required header 'Confirm'");
+        }
+        JobIdentifier jobIdentifier;
+        try {
+            jobIdentifier = restfulService.findJob(pipelineName, pipelineCounter, stageName, stageCounter, buildName, buildId);
+        } catch (Exception e) {
+            return buildNotFound(pipelineName, pipelineCounter, stageName, stageCounter, buildName);
+        }
+
+        try {
+            File artifact = artifactsService.findArtifact(jobIdentifier, filePath);
+            if (artifact.exists() && artifact.isFile()) {
+                return FileModelAndView.fileAlreadyExists(filePath);
+            }
+
+            StreamedArtifactUpload upload = artifactsService.streamedUpload(jobIdentifier, filePath);
+            if (HttpService.GO_ARTIFACT_STREAMING_PROBE.equals(request.getHeader(HttpService.GO_ARTIFACT_STREAMING))) {
+                response.setHeader(HttpService.GO_ARTIFACT_ENTRIES_RECEIVED, String.valueOf(upload.entriesReceived()));
+                return ResponseCodeView.create(HttpServletResponse.SC_OK, upload.entriesReceived() + " entries of " + filePath + " received");
+            }
+
+            String resumeFrom = request.getHeader(HttpService.GO_ARTIFACT_RESUME_FROM);
+            StreamedArtifactUpload.Result result = upload.receive(request.getInputStream(), isBlank(resumeFrom) ? 0 : Integer.parseInt(resumeFrom));
+            response.setHeader(HttpService.GO_ARTIFACT_ENTRIES_RECEIVED, String.valueOf(upload.entriesReceived()));
+            switch (result) {
+                case OUT_OF_SYNC:
+                    return ResponseCodeView.create(HttpServletResponse.SC_CONFLICT, "Upload of " + filePath + " can not be resumed from entry " + resumeFrom);
+                case IN_PROGRESS:
+                    return ResponseCodeView.create(HttpServletResponse.SC_CONFLICT, "Upload of " + filePath + " is already being received");
+                case INCOMPLETE:
+                    return FileModelAndView.errorSavingFile(filePath);
+                case CHECKSUM_MISMATCH:
+                    return ResponseCodeView.create(HttpServletResponse.SC_BAD_REQUEST, "Checksum of an entry of " + filePath + " did not match");
+                default:
+                    break;
+            }
+
+            artifactsService.deduplicate(jobIdentifier, artifact);
+            ByteArrayOutputStream checksums = new ByteArrayOutputStream();
+            upload.checksums().store(checksums, "");
+            boolean success = appendToChecksumFile(jobIdentifier, new ByteArrayInputStream(checksums.toByteArray()));
+            artifactsService.invalidateArtifactManifest(jobIdentifier);
+            if (!success) {
+                return FileModelAndView.errorSavingChecksumFile(filePath);
+            }
+            return FileModelAndView.fileCreated(filePath);
+        } catch (IllegalArtifactLocationException | IllegalPathException e) {
+            return FileModelAndView.forbiddenUrl(filePath);
+        } catch (IOException e) {
+            LOGGER.error("[Artifacts Upload] Streamed upload of '{}' for '{}' was interrupted", filePath, jobIdentifier, e);
+            return FileModelAndView.errorSavingFile(filePath);
+        }
+    }
+
+    @RequestMapping(value = "/repository/restful/artifact/POST/*", method = RequestMethod.POST, headers = HttpService.GO_ARTIFACT_DEDUP)
+    public ModelAndView postDeduplicatedArtifact(@RequestParam("pipelineName") String pipelineName,
+                                                 @RequestParam("pipelineCounter") String pipelineCounter,
+                                                 @RequestParam("stageName") String stageName,
+                                                 @RequestParam(value = "stageCounter", required = false) String stageCounter,
+                                                 @RequestParam("buildName") String buildName,
+                                                 @RequestParam(value = "buildId", required = false) Long buildId,
+                                                 @RequestParam("filePath") String filePath,
+                                                 HttpServletRequest request) throws Exception {
+        if (!headerConstraint.isSatisfied(request)) {
+            return ResponseCodeView.create(HttpServletResponse.SC_BAD_REQUEST, "Missing required header 'Confirm'");
+        }
+        JobIdentifier jobIdentifier;
+        try {
+            jobIdentifier = restfulService.findJob(pipelineName, pipelineCounter, stageName, stageCounter, buildName, buildId);
+        } catch (Exception e) {
+            return buildNotFound(pipelineName, pipelineCounter, stageName, stageCounter, buildName);
+        }
+
+        try {
+            List<String> linked = artifactsService.linkDeduplicatedFiles(jobIdentifier, filePath, IOUtils.readLines(request.getInputStream(), UTF_8));
+            return ResponseCodeView.create(HttpServletResponse.SC_OK, String.join("\n", linked));
+        } catch (IllegalArtifactLocationException e) {
+            return FileModelAndView.forbiddenUrl(filePath);
+        }
+    }
+
     private boolean updateChecksumFile(MultipartHttpServletRequest request, JobIdentifier jobIdentifier, String filePath) throws IOException, IllegalArtifactLocationException {
         MultipartFile checksumMultipartFile = getChecksumFile(request);
         if (checksumMultipartFile != null) {
-            String checksumFilePath = String.format("%s/%s/%s", artifactsService.findArtifactRoot(jobIdentifier), ArtifactLogUtil.CRUISE_OUTPUT_FOLDER, ArtifactLogUtil.MD5_CHECKSUM_FILENAME);
-            File checksumFile = artifactsService.getArtifactLocation(checksumFilePath);
-            synchronized (checksumFilePath.intern()) {
-                return artifactsService.saveOrAppendFile(checksumFile, checksumMultipartFile.getInputStream());
-            }
+            return appendToChecksumFile(jobIdentifier, checksumMultipartFile.getInputStream());
         } else {
             LOGGER.warn("[Artifacts Upload] Checksum file not uploaded for artifact at path '{}'", filePath);
         }
         return true;
     }
 
+    private boolean appendToChecksumFile(JobIdentifier jobIdentifier, InputStream checksums) throws IOException, IllegalArtifactLocationException {
+        String checksumFilePath = String.format("%s/%s/%s", artifactsService.findArtifactRoot(jobIdentifier), ArtifactLogUtil.CRUISE_OUTPUT_FOLDER, ArtifactLogUtil.MD5_CHECKSUM_FILENAME);
+        File checksumFile = artifactsService.getArtifactLocation(checksumFilePath);
+        synchronized (checksumFilePath.intern()) {
+            return artifactsService.saveOrAppendFile(checksumFile, checksums);
+        }
+    }
+
     private boolean saveFile(int convertedAttempt, File artifact, MultipartFile multipartFile, boolean shouldUnzip) throws IOException {
         try (InputStream inputStream = multipartFile.getInputStream()) {
             return artifactsService.saveFile(artifact, inputStream, shouldUnzip, convertedAttempt);
@@ -324,6 +431,7 @@ public class ArtifactsController {
                                      InputStream inputStream) throws Exception {
         File artifact = artifactsService.findArtifact(jobIdentifier, filePath);
         if (artifactsService.saveOrAppendFile(artifact, inputStream)) {
+            artifactsService.invalidateArtifactManifest(jobIdentifier);
             return FileModelAndView.fileAppended(filePath);
         } else {
             return FileModelAndView.errorSavingFile(filePath);
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.dao;
+
+import com.thoughtworks.go.config.CruiseConfig;
+import com.thoughtworks.go.config.JobConfig;
+import com.thoughtworks.go.config.PipelineConfig;
+import com.thoughtworks.go.config.StageConfig;
+import com.thoughtworks.go.listener.ConfigChangedListener;
+import com.thoughtworks.go.listener.EntityConfigChangedListener;
+import com.thoughtworks.go.server.service.GoConfigService;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * @understands the durations of the last few passed runs of every job config, so that the expected duration of a
+ * running job is known without going to the database. Durations are kept in seconds, in a ring of a fixed size per
+ * job config, and the statistics are recomputed whenever a run is recorded. At most {@link #MAX_JOB_CONFIGS} job
+ * configs are kept, the least recently asked for is dropped first, and job configs are dropped as soon as they are
+ * removed from the config.
+ */
+@Component
+public class JobDurationStatistics implements ConfigChangedListener {
+    static final int MAX_JOB_CONFIGS = 1000;
+
+    private final int samples;
+    private final int maxJobConfigs;
+    private final ConcurrentMap<String, Durations> durations = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    @Autowired
+    public JobDurationStatistics(SystemEnvironment systemEnvironment, GoConfigService goConfigService) {
+        this(systemEnvironment.getJobDurationSamples(), MAX_JOB_CONFIGS);
+        goConfigService.register(this);
+        goConfigService.register(new EntityConfigChangedListener<PipelineConfig>() {
+            @Override
+            public void onEntityConfigChange(PipelineConfig pipelineConfig) {
+                forgetRemovedJobsOf(pipelineConfig, goConfigService.hasPipelineNamed(pipelineConfig.name()));
+            }
+        });
+    }
+
+    JobDurationStatistics(int samples) {
+        this(samples, MAX_JOB_CONFIGS);
+    }
+
+    JobDurationStatistics(int samples, int maxJobConfigs) {
+        this.samples = Math.max(1, samples);
+        this.maxJobConfigs = Math.max(1, maxJobConfigs);
+    }
+
+    public int samples() {
+        return samples;
+    }
+
+    /**
+     * @return the statistics of the job config, or null if the job config has not been seeded yet
+     */
+    public Stats statsFor(String pipelineName, String stageName, String jobName) {
+        Durations forJob = durations.get(key(pipelineName, stageName, jobName));
+        return forJob == null ? null : forJob.stats;
+    }
+
+    /**
+     * @param passedDurations the durations of the passed runs of the job config, oldest first, asked for only once when
+     *                        the job config is not known yet
+     * @return the statistics of the job config
+     */
+    public Stats statsFor(String pipelineName, String stageName, String jobName, Supplier<List<Long>> passedDurations) {
+        String key = key(pipelineName, stageName, jobName);
+        Durations forJob = durations.get(key);
+        if (forJob == null) {
+            forJob = durations.computeIfAbsent(key, k -> seeded(passedDurations.get()));
+            if (durations.size() > maxJobConfigs) {
+                evictLeastRecentlyUsed(key);
+            }
+        }
+        forJob.lastUsed = clock.incrementAndGet();
+        return forJob.stats;
+    }
+
+    /**
+     * Adds a passed run to a job config which has been seeded. Job configs that are not known yet pick the run up
+     * from the database when they are seeded.
+     */
+    public void record(String pipelineName, String stageName, String jobName, long durationInSeconds) {
+        Durations forJob = durations.get(key(pipelineName, stageName, jobName));
+        if (forJob != null) {
+            forJob.add(durationInSeconds);
+        }
+    }
+
+    public void clear() {
+        durations.clear();
+    }
+
+    @Override
+    public void onConfigChange(CruiseConfig newCruiseConfig) {
+        Set<String> jobConfigs = new HashSet<>();
+        for (PipelineConfig pipelineConfig : newCruiseConfig.getAllPipelineConfigs()) {
+            jobConfigs.addAll(keysOf(pipelineConfig));
+        }
+        durations.keySet().retainAll(jobConfigs);
+    }
+
+    void forgetRemovedJobsOf(PipelineConfig pipelineConfig, boolean pipelineExists) {
+        String prefix = (pipelineConfig.name().toString() + "/").toLowerCase();
+        Set<String> jobConfigs = pipelineExists ? keysOf(pipelineConfig) : Collections.emptySet();
+        durations.keySet().removeIf(key -> key.startsWith(prefix) && !jobConfigs.contains(key));
+    }
+
+    private Durations seeded(List<Long> durationsInSeconds) {
+        Durations seeded = new Durations(samples);
+        for (Long duration : durationsInSeconds) {
+            seeded.add(duration);
+        }
+        return seeded;
+    }
+
+    private void evictLeastRecentlyUsed(String keep) {
+        durations.entrySet().stream()
+                .filter(entry -> !entry.getKey().equals(keep))
+                .min(Comparator.comparingLong(entry -> entry.getValue().lastUsed))
+                .ifPresent(entry -> durations.remove(entry.getKey(), entry.getValue()));
+    }
+
+    private static Set<String> keysOf(PipelineConfig pipelineConfig) {
+        Set<String> keys = new HashSet<>();
+        for (StageConfig stageConfig : pipelineConfig) {
+            for (JobConfig jobConfig : stageConfig.getJobs()) {
+                keys.add(key(pipelineConfig.name().toString(), stageConfig.name().toString(), jobConfig.name().toString()));
+            }
+        }
+        return keys;
+    }
+
+    private static String key(String pipelineName, String stageName, String jobName) {
+        return (pipelineName + "/" + stageName + "/" + jobName).toLowerCase();
+    }
+
+    private static class Durations {
+        private final long[] ring;
+        private int next;
+        private int size;
+        private volatile Stats stats = Stats.NONE;
+        private volatile long lastUsed;
+
+        Durations(int samples) {
+            this.ring = new long[samples];
+        }
+
+        synchronized void add(long durationInSeconds) {
+            ring[next] = durationInSeconds;
+            next = (next + 1) % ring.length;
+            size = Math.min(size + 1, ring.length);
+            long[] sorted = Arrays.copyOf(ring, size);
+            Arrays.sort(sorted);
+            stats = new Stats(size, durationInSeconds, percentile(sorted, 50), percentile(sorted, 90));
+        }
+
+        // nearest rank, so that every statistic is a duration that was actually seen
+        private static long percentile(long[] sorted, int percent) {
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+
+    public static class Stats {
+        static final Stats NONE = new Stats(0, 0, 0, 0);
+
+        private final int count;
+        private final long lastInSeconds;
+        private final long medianInSeconds;
+        private final long p90InSeconds;
+
+        Stats(int count, long lastInSeconds, long medianInSeconds, long p90InSeconds) {
+            this.count = count;
+            this.lastInSeconds = lastInSeconds;
+            this.medianInSeconds = medianInSeconds;
+            this.p90InSeconds = p90InSeconds;
+        }
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public long lastInSeconds() {
+            return lastInSeconds;
+        }
+
+        public long medianInSeconds() {
+            return medianInSeconds;
+        }
+
+        public long p90InSeconds() {
+            return p90InSeconds;
+        }
+    }
+}
@@ -66,6 +66,8 @@ public interface JobInstanceDao {
 
     int totalCompletedJobsOnAgent(String uuid);
 
+    List<JobInstance> completedJobsOnAgentViaCursor(String uuid, FeedModifier feedModifier, long cursor, int pageSize);
+
     boolean isJobCompleted(JobIdentifier jobIdentifier);
 
     List<JobInstance> getRunningJobs();
@@ -75,4 +77,8 @@ public interface JobInstanceDao {
     JobInstances findDetailedJobHistoryViaCursor(String pipelineName, String stageName, String jobConfigName, FeedModifier feedModifier, long cursor, Integer pageSize);
 
     PipelineRunIdInfo getOldestAndLatestJobInstanceId(String pipelineName, String stageName, String jobConfigName);
+
+    void deleteIntermediateTransitionsOfJobs(List<Long> jobIds);
+
+    boolean advanceState(JobInstance jobInstance);
 }
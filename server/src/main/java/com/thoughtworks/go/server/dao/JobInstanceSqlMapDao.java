@@ -15,7 +15,6 @@
  */
 package com.thoughtworks.go.server.dao;
 
-import com.opensymphony.oscache.base.Cache;
 import com.rits.cloning.Cloner;
 import com.thoughtworks.go.config.elastic.ClusterProfile;
 import com.thoughtworks.go.config.elastic.ElasticProfile;
@@ -26,6 +25,7 @@ import com.thoughtworks.go.server.cache.GoCache;
 import com.thoughtworks.go.server.cache.LazyCache;
 import com.thoughtworks.go.server.domain.JobStatusListener;
 import com.thoughtworks.go.server.persistence.ArtifactPlanRepository;
+import com.thoughtworks.go.server.persistence.PipelineRunArchive;
 import com.thoughtworks.go.server.persistence.ResourceRepository;
 import com.thoughtworks.go.server.service.ClusterProfilesService;
 import com.thoughtworks.go.server.service.JobInstanceService;
@@ -61,7 +61,6 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
     private static final Logger LOG = LoggerFactory.getLogger(JobInstanceSqlMapDao.class);
     private final LazyCache latestCompletedCache;
     private final CacheKeyGenerator cacheKeyGenerator;
-    private Cache cache;
     private TransactionSynchronizationManager transactionSynchronizationManager;
     private TransactionTemplate transactionTemplate;
     private EnvironmentVariableDao environmentVariableDao;
@@ -70,29 +69,30 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
     private ResourceRepository resourceRepository;
     private ArtifactPlanRepository artifactPlanRepository;
     private final ClusterProfilesService clusterProfilesService;
+    private final PipelineRunArchive pipelineRunArchive;
 
     @Autowired
     public JobInstanceSqlMapDao(EnvironmentVariableDao environmentVariableDao,
                                 GoCache goCache,
                                 TransactionTemplate transactionTemplate,
                                 SqlSessionFactory sqlSessionFactory,
-                                Cache cache,
                                 TransactionSynchronizationManager transactionSynchronizationManager,
                                 SystemEnvironment systemEnvironment,
                                 Database database,
                                 ResourceRepository resourceRepository,
                                 ArtifactPlanRepository artifactPlanRepository,
                                 ClusterProfilesService clusterProfilesService,
-                                JobAgentMetadataDao jobAgentMetadataDao) {
+                                JobAgentMetadataDao jobAgentMetadataDao,
+                                PipelineRunArchive pipelineRunArchive) {
         super(goCache, sqlSessionFactory, systemEnvironment, database);
         this.environmentVariableDao = environmentVariableDao;
         this.transactionTemplate = transactionTemplate;
-        this.cache = cache;
         this.transactionSynchronizationManager = transactionSynchronizationManager;
         this.resourceRepository = resourceRepository;
         this.artifactPlanRepository = artifactPlanRepository;
         this.clusterProfilesService = clusterProfilesService;
         this.jobAgentMetadataDao = jobAgentMetadataDao;
+        this.pipelineRunArchive = pipelineRunArchive;
         this.cacheKeyGenerator = new CacheKeyGenerator(getClass());
         this.latestCompletedCache = new LazyCache(createCacheIfRequired(getClass().getName()), transactionSynchronizationManager);
     }
@@ -121,13 +121,22 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
         synchronized (cacheKey) {
             JobInstance instance = (JobInstance) goCache.get(cacheKey);
             if (instance == null) {
-                instance = job(buildInstanceId, "buildByIdWithTransitions");
+                instance = pipelineRunArchive.restoreTransitions(job(buildInstanceId, "buildByIdWithTransitions"));
                 goCache.put(cacheKey, instance);
             }
             return cloner.deepClone(instance);
         }
     }
 
+    /**
+     * Every query which loads the state transitions of jobs goes through here, since those of archived runs are only
+     * partly in the database
+     */
+    <T extends Iterable<JobInstance>> T restoreArchivedTransitions(T jobs) {
+        pipelineRunArchive.restoreTransitions(jobs);
+        return jobs;
+    }
+
     String cacheKeyForJobInstanceWithTransitions(long jobId) {
         return cacheKeyGenerator.generate("jobInstanceWithTransitionIds", jobId);
     }
@@ -330,7 +339,7 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
                 and("limit", limit).
                 and("column", jobHistoryColumns.getColumnName()).
                 and("order", order.toString()).asMap();
-        return (List<JobInstance>) getSqlMapClientTemplate().queryForList("completedJobsOnAgent", params);
+        return restoreArchivedTransitions((List<JobInstance>) getSqlMapClientTemplate().queryForList("completedJobsOnAgent", params));
     }
 
     @Override
@@ -338,6 +347,19 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
         return (Integer) getSqlMapClientTemplate().queryForObject("totalCompletedJobsOnAgent", arguments("uuid", uuid).asMap());
     }
 
+    /**
+     * Newest first, keyed on the job id rather than an offset so that deep pages cost the same as the first one
+     */
+    @Override
+    public List<JobInstance> completedJobsOnAgentViaCursor(String uuid, FeedModifier feedModifier, long cursor, int pageSize) {
+        Map params = arguments("uuid", uuid).
+                and("limit", pageSize).
+                and("cursor", cursor).
+                and("suffix", feedModifier.suffix()).
+                and("order", feedModifier == FeedModifier.Before ? "ASC" : "DESC").asMap();
+        return restoreArchivedTransitions((List<JobInstance>) getSqlMapClientTemplate().queryForList("completedJobsOnAgent", params));
+    }
+
     @Override
     public boolean isJobCompleted(JobIdentifier jobIdentifier) {
         return mostRecentJobWithTransitions(jobIdentifier).isCompleted();
@@ -366,23 +388,7 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
     @Override
     public JobInstance updateStateAndResult(final JobInstance jobInstance) {
         return (JobInstance) transactionTemplate.execute((TransactionCallback) status -> {
-            transactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
-                @Override
-                public void afterCommit() {
-                    // Methods not extracted in order to make synchronization visible.
-                    synchronized (cacheKeyForJobPlan(jobInstance.getId())) {
-                        removeCachedJobPlan(jobInstance);
-                    }
-                    synchronized (cacheKeyForActiveJobIds()) {
-                        goCache.remove(cacheKeyForActiveJobIds());
-                    }
-                    String activeJobKey = cacheKeyForActiveJob(jobInstance.getId());
-                    synchronized (activeJobKey) {
-                        goCache.remove(activeJobKey);
-                    }
-                    removeCachedJobInstance(jobInstance);
-                }
-            });
+            removeCachedJobOnCommit(jobInstance);
             logIfJobIsCompleted(jobInstance);
             updateStatus(jobInstance);
             updateResult(jobInstance);
@@ -391,6 +397,54 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
 
     }
 
+    /**
+     * Moves the job to its current state and saves its new transitions, unless the job was cancelled, completed or
+     * got past that state in the meantime
+     *
+     * @return true if the job was moved
+     */
+    @Override
+    public boolean advanceState(final JobInstance jobInstance) {
+        return (Boolean) transactionTemplate.execute((TransactionCallback) status -> {
+            List<JobState> earlierStates = new ArrayList<>();
+            for (JobState state : JobState.values()) {
+                if (state.isActive() && state.compareTo(jobInstance.getState()) < 0) {
+                    earlierStates.add(state);
+                }
+            }
+            if (earlierStates.isEmpty()) {
+                return false;
+            }
+            Map<String, Object> params = arguments("id", jobInstance.getId()).and("state", jobInstance.getState()).and("earlierStates", earlierStates).asMap();
+            if (getSqlMapClientTemplate().update("advanceStatus", params) == 0) {
+                return false;
+            }
+            removeCachedJobOnCommit(jobInstance);
+            saveTransitions(jobInstance);
+            return true;
+        });
+    }
+
+    private void removeCachedJobOnCommit(JobInstance jobInstance) {
+        transactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                // Methods not extracted in order to make synchronization visible.
+                synchronized (cacheKeyForJobPlan(jobInstance.getId())) {
+                    removeCachedJobPlan(jobInstance);
+                }
+                synchronized (cacheKeyForActiveJobIds()) {
+                    goCache.remove(cacheKeyForActiveJobIds());
+                }
+                String activeJobKey = cacheKeyForActiveJob(jobInstance.getId());
+                synchronized (activeJobKey) {
+                    goCache.remove(activeJobKey);
+                }
+                removeCachedJobInstance(jobInstance);
+            }
+        });
+    }
+
     private void removeCachedJobInstance(JobInstance jobInstance) {
         String cacheKeyOfJob = cacheKeyForJobInstanceWithTransitions(jobInstance.getId());
         synchronized (cacheKeyOfJob) {
@@ -438,6 +492,14 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
         });
     }
 
+    @Override
+    public void deleteIntermediateTransitionsOfJobs(List<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        getSqlMapClientTemplate().delete("deleteIntermediateTransitionsOfJobs", arguments("jobIds", jobIds).asMap());
+    }
+
     @Override
     public void ignore(JobInstance job) {
         transactionTemplate.execute((TransactionCallback) status -> {
@@ -616,11 +678,6 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
                 saveTransition(jobInstance, transition);
             }
         }
-        if (jobInstance.getIdentifier() != null) {
-            String pipelineName = jobInstance.getIdentifier().getPipelineName();
-            String stageName = jobInstance.getIdentifier().getStageName();
-            cache.flushEntry(jobInstance.getBuildDurationKey(pipelineName, stageName));
-        }
     }
 
     private void saveTransition(JobInstance jobInstance, JobStateTransition transition) {
@@ -21,6 +21,7 @@ import com.thoughtworks.go.domain.buildcause.BuildCause;
 import com.thoughtworks.go.presentation.pipelinehistory.PipelineInstanceModel;
 import com.thoughtworks.go.presentation.pipelinehistory.PipelineInstanceModels;
 
+import java.util.Date;
 import java.util.List;
 
 
@@ -44,6 +45,8 @@ public interface PipelineDao {
 
     void updateComment(String pipelineName, int pipelineCounter, String comment);
 
+    void clearCachedPipelineHistory(Long pipelineId, String pipelineName, int pipelineCounter);
+
     @Deprecated
     // This is only used in test for legacy purpose.
     // Please call pipelineService.save(aPipeline) instead
@@ -90,4 +93,6 @@ public interface PipelineDao {
     PipelineInstanceModels loadHistory(String pipelineName, FeedModifier modifier, long cursor, Integer pageSize);
 
     PipelineRunIdInfo getOldestAndLatestPipelineId(String pipelineName);
+
+    List<Long> findPipelineIdsToArchive(long afterPipelineId, Date startedBefore, int limit);
 }
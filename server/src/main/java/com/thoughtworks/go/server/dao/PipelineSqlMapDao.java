@@ -31,6 +31,7 @@ import com.thoughtworks.go.server.cache.CacheKeyGenerator;
 import com.thoughtworks.go.server.cache.GoCache;
 import com.thoughtworks.go.server.cache.LazyCache;
 import com.thoughtworks.go.server.domain.StageStatusListener;
+import com.thoughtworks.go.server.database.ReadReplicaDataSource;
 import com.thoughtworks.go.server.initializers.Initializer;
 import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.transaction.SqlMapClientDaoSupport;
@@ -60,11 +61,13 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 
+import java.sql.Timestamp;
 import java.util.*;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.thoughtworks.go.util.IBatisUtil.arguments;
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -511,9 +514,8 @@ public class PipelineSqlMapDao extends SqlMapClientDaoSupport implements Initial
                 continue;
             }
             models.add(model);
-            loadPipelineHistoryBuildCause(model);
-
         }
+        loadPipelineHistoryBuildCauses(models);
         return PipelineInstanceModels.createPipelineInstanceModels(models);
     }
 
@@ -579,6 +581,14 @@ public class PipelineSqlMapDao extends SqlMapClientDaoSupport implements Initial
         clearPipelineHistoryCacheViaNameAndCounter(pipelineName, pipelineCounter);
     }
 
+    @Override
+    public void clearCachedPipelineHistory(Long pipelineId, String pipelineName, int pipelineCounter) {
+        if (pipelineId != null) {
+            goCache.remove(pipelineHistoryCacheKey(pipelineId));
+        }
+        clearPipelineHistoryCacheViaNameAndCounter(pipelineName, pipelineCounter);
+    }
+
     private void clearPipelineHistoryCacheViaNameAndCounter(String pipelineName, Integer pipelineCounter) {
         goCache.remove(cacheKeyForPipelineHistoryByNameAndCounter(pipelineName, pipelineCounter));
     }
@@ -741,6 +751,15 @@ public class PipelineSqlMapDao extends SqlMapClientDaoSupport implements Initial
         return ids;
     }
 
+    @Override
+    public List<Long> findPipelineIdsToArchive(long afterPipelineId, Date startedBefore, int limit) {
+        Map<String, Object> toGet =
+                arguments("afterPipelineId", afterPipelineId)
+                        .and("startedBefore", new Timestamp(startedBefore.getTime()))
+                        .and("limit", limit).asMap();
+        return getSqlMapClientTemplate().queryForList("getPipelineIdsToArchive", toGet);
+    }
+
     String cacheKeyForLatestPipelineIdByPipelineName(String pipelineName) {
         return cacheKeyGenerator.generate("latestPipelineIdByPipelineName", pipelineName.toLowerCase());
     }
@@ -755,9 +774,7 @@ public class PipelineSqlMapDao extends SqlMapClientDaoSupport implements Initial
                 .and("to", Collections.max(ids)).asMap();
         PipelineInstanceModels history = PipelineInstanceModels.createPipelineInstanceModels(
                 (List<PipelineInstanceModel>) getSqlMapClientTemplate().queryForList("getPipelineHistoryByName", args));
-        for (PipelineInstanceModel pipelineInstanceModel : history) {
-            loadPipelineHistoryBuildCause(pipelineInstanceModel);
-        }
+        loadPipelineHistoryBuildCauses(history);
         return history;
     }
 
@@ -791,14 +808,26 @@ public class PipelineSqlMapDao extends SqlMapClientDaoSupport implements Initial
         return pipeline;
     }
 
+    // the material revisions are loaded off the primary through hibernate, they stay cacheable while reading history off the replica
     private PipelineInstanceModel loadPipelineHistoryBuildCause(PipelineInstanceModel pipeline) {
         if (pipeline != null) {
-            MaterialRevisions materialRevisions = materialRepository.findMaterialRevisionsForPipeline(pipeline.getId());
+            MaterialRevisions materialRevisions = ReadReplicaDataSource.onPrimary(() -> materialRepository.findMaterialRevisionsForPipeline(pipeline.getId()));
             pipeline.setMaterialRevisionsOnBuildCause(materialRevisions);
         }
         return pipeline;
     }
 
+    private void loadPipelineHistoryBuildCauses(List<PipelineInstanceModel> pipelines) {
+        if (pipelines.isEmpty()) {
+            return;
+        }
+        List<Long> ids = pipelines.stream().map(PipelineInstanceModel::getId).collect(Collectors.toList());
+        Map<Long, MaterialRevisions> materialRevisions = ReadReplicaDataSource.onPrimary(() -> materialRepository.findMaterialRevisionsForPipelines(ids));
+        for (PipelineInstanceModel pipeline : pipelines) {
+            pipeline.setMaterialRevisionsOnBuildCause(materialRevisions.get(pipeline.getId()));
+        }
+    }
+
     static String getLatestRevisionFromOrderedLists(List<Modification> orderedList1, List<Modification> orderedList2) {
         Modification latestModification = null;
 
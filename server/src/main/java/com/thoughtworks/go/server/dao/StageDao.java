@@ -49,7 +49,9 @@ public interface StageDao extends JobDurationStrategy {
 
     boolean isStageActive(String pipelineName, String stageName);
 
-    Long getDurationOfLastSuccessfulOnAgent(String pipelineName, String stageName, JobInstance job);
+    Long getExpectedDurationSeconds(String pipelineName, String stageName, JobInstance job);
+
+    JobDurationStatistics.Stats getDurationStatistics(String pipelineName, String stageName, String jobName);
 
     int getMaxStageOrder(long pipelineId);
 
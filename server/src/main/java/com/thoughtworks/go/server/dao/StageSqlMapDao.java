@@ -15,9 +15,6 @@
  */
 package com.thoughtworks.go.server.dao;
 
-import com.opensymphony.oscache.base.Cache;
-import com.opensymphony.oscache.base.CacheEntry;
-import com.opensymphony.oscache.base.NeedsRefreshException;
 import com.rits.cloning.Cloner;
 import com.thoughtworks.go.config.CaseInsensitiveString;
 import com.thoughtworks.go.config.StageConfig;
@@ -52,10 +49,12 @@ import org.springframework.transaction.support.TransactionSynchronizationAdapter
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.thoughtworks.go.util.IBatisUtil.arguments;
 import static java.lang.String.format;
@@ -66,14 +65,14 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
     private final CacheKeyGenerator cacheKeyGenerator;
     private TransactionTemplate transactionTemplate;
     private JobInstanceSqlMapDao buildInstanceDao;
-    private Cache cache;
+    private final JobDurationStatistics jobDurationStatistics;
     private TransactionSynchronizationManager transactionSynchronizationManager;
     private Cloner cloner = new Cloner();
     private DynamicReadWriteLock readWriteLock = new DynamicReadWriteLock();
 
     @Autowired
     public StageSqlMapDao(JobInstanceSqlMapDao buildInstanceDao,
-                          Cache cache,
+                          JobDurationStatistics jobDurationStatistics,
                           TransactionTemplate transactionTemplate,
                           SqlSessionFactory sqlSessionFactory,
                           GoCache goCache,
@@ -82,7 +81,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
                           Database database) {
         super(goCache, sqlSessionFactory, systemEnvironment, database);
         this.buildInstanceDao = buildInstanceDao;
-        this.cache = cache;
+        this.jobDurationStatistics = jobDurationStatistics;
         this.transactionTemplate = transactionTemplate;
         this.transactionSynchronizationManager = transactionSynchronizationManager;
         this.cacheKeyGenerator = new CacheKeyGenerator(getClass());
@@ -178,11 +177,18 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
 
     @Override
     public Stages getStagesByPipelineId(long pipelineId) {
-        Stages stageHistory = new Stages(
-            (List<Stage>) getSqlMapClientTemplate().queryForList("getStagesByPipelineId", pipelineId));
+        Stages stageHistory = new Stages(withArchivedTransitions(
+            (List<Stage>) getSqlMapClientTemplate().queryForList("getStagesByPipelineId", pipelineId)));
         return new Stages(stageHistory);
     }
 
+    private List<Stage> withArchivedTransitions(List<Stage> stages) {
+        for (Stage stage : stages) {
+            buildInstanceDao.restoreArchivedTransitions(stage.getJobInstances());
+        }
+        return stages;
+    }
+
     @Override
     public int findLatestStageCounter(PipelineIdentifier pipeline, String stageName) {
         Map<String, Object> toGet = arguments("pipelineName", pipeline.getName()).and("pipelineCounter",
@@ -212,6 +218,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
                 if (stage == null) {
                     return new NullStage(identifier.getStageName());
                 }
+                withArchivedTransitions(Collections.singletonList(stage));
                 goCache.put(cacheKeyForIdentifiers, cachekey, stage);
             }
             return cloner.deepClone(stage);
@@ -230,54 +237,28 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
 
     @Override
     public long getExpectedDurationMillis(String pipelineName, String stageName, JobInstance job) {
-        Long duration = getDurationOfLastSuccessfulOnAgent(pipelineName, stageName, job);
+        Long duration = getExpectedDurationSeconds(pipelineName, stageName, job);
         return duration == null ? 0L : duration * 1000L;
     }
 
+    @Override
+    public Long getExpectedDurationSeconds(String pipelineName, String stageName, JobInstance job) {
+        JobDurationStatistics.Stats stats = getDurationStatistics(pipelineName, stageName, job.getName());
+        return stats.isEmpty() ? null : stats.medianInSeconds();
+    }
 
-    // TODO: (ketan) do we really care about duration on this agent, can't we just average the last few runs?
-    // TODO: this performans (miserably) on an environment with elastic agents, and there is no result or ETA
-    // TODO: to show because of this implementation
     @Override
-    public Long getDurationOfLastSuccessfulOnAgent(String pipelineName, String stageName, JobInstance job) {
-        String key = job.getBuildDurationKey(pipelineName, stageName);
-        Long duration;
-        try {
-            duration = (Long) cache.getFromCache(key, CacheEntry.INDEFINITE_EXPIRY);
-        } catch (NeedsRefreshException nre) {
-            boolean updated = false;
-            try {
-                duration = recalculateBuildDuration(pipelineName, stageName, job);
-                cache.putInCache(key, duration);
-                updated = true;
-            } finally {
-                if (!updated) {
-                    // It is essential that cancelUpdate is called if the
-                    // cached content could not be rebuilt
-                    cache.cancelUpdate(key);
-                    LOGGER.warn("refresh cancelled for {}", key);
-                }
-            }
-        }
-        return duration;
-    }
-
-    private Long recalculateBuildDuration(String pipelineName, String stageName, JobInstance job) {
-        Map<String, Object> toGet =
-            arguments("buildName", job.getName())
-                .and("agentUuid", job.getAgentUuid())
-                .and("stageName", stageName)
-                .and("pipelineName", pipelineName)
-                .asMap();
-
-        // Return a list of job id's and stage names, entries sorted by id.
-        Long buildId =
-            (Long) getSqlMapClientTemplate().queryForObject("getLastSuccessfulBuildIdOnAgent", toGet);
-        if (buildId == null) {
-            return null;
-        }
-        JobInstance mostRecent = buildInstanceDao.buildByIdWithTransitions(buildId);
-        return mostRecent.durationOfCompletedBuildInSeconds();
+    public JobDurationStatistics.Stats getDurationStatistics(String pipelineName, String stageName, String jobName) {
+        return jobDurationStatistics.statsFor(pipelineName, stageName, jobName, () -> {
+            Map<String, Object> toGet =
+                arguments("buildName", jobName)
+                    .and("stageName", stageName)
+                    .and("pipelineName", pipelineName)
+                    .and("limit", jobDurationStatistics.samples())
+                    .asMap();
+            List<JobInstance> passed = (List<JobInstance>) getSqlMapClientTemplate().queryForList("getLastSuccessfulBuildsWithDurationTransitions", toGet);
+            return passed.stream().map(JobInstance::durationOfCompletedBuildInSeconds).collect(Collectors.toList());
+        });
     }
 
     @Override
@@ -347,7 +328,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
     public Stages getPassedStagesByName(String pipelineName, String stageName, int limit, int offset) {
         Map<String, Object> toGet = arguments("pipelineName", pipelineName).and("stageName", stageName)
             .and("limit", limit).and("offset", offset).asMap();
-        return new Stages((List<Stage>) getSqlMapClientTemplate().queryForList("allPassedStagesByName", toGet));
+        return new Stages(withArchivedTransitions((List<Stage>) getSqlMapClientTemplate().queryForList("allPassedStagesByName", toGet)));
     }
 
     @Override
@@ -367,7 +348,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
             List<Stage> stages = (List<Stage>) goCache.get(cacheKeyForAllStages);
             if (stages == null) {
                 Map<String, Object> toGet = arguments("pipelineName", pipelineName).and("pipelineCounter", pipelineCounter).and("stageName", stageName).asMap();
-                stages = (List<Stage>) getSqlMapClientTemplate().queryForList("getAllRunsOfStageForPipelineInstance", toGet);
+                stages = withArchivedTransitions((List<Stage>) getSqlMapClientTemplate().queryForList("getAllRunsOfStageForPipelineInstance", toGet));
                 goCache.put(cacheKeyForAllStages, stages);
             }
             return new Stages(cloner.deepClone(stages));
@@ -686,6 +667,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
                     if (stage == null) {
                         throw new DataRetrievalFailureException("Unable to load related stage data for id " + id);
                     }
+                    withArchivedTransitions(Collections.singletonList(stage));
                     goCache.put(key, stage);
                 }
             }
@@ -759,7 +741,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
                 stages = (List<Stage>) goCache.get(key);
                 if (stages == null) {
                     Map<String, Object> params = arguments("pipelineName", pipelineName).and("pipelineCounter", counter).asMap();
-                    stages = getSqlMapClientTemplate().queryForList("getStagesByPipelineNameAndCounter", params);
+                    stages = withArchivedTransitions(getSqlMapClientTemplate().queryForList("getStagesByPipelineNameAndCounter", params));
                     goCache.put(key, stages);
                 }
             }
@@ -784,6 +766,15 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
     @Override
     public void jobStatusChanged(JobInstance job) {
         clearJobStatusDependentCaches(job.getStageId(), job.getIdentifier().getStageIdentifier());
+        recordDuration(job);
+    }
+
+    private void recordDuration(JobInstance job) {
+        if (!job.isCompleted() || job.getResult() != JobResult.Passed || job.getStartedDateFor(JobState.Building) == null) {
+            return;
+        }
+        StageIdentifier stageIdentifier = job.getIdentifier().getStageIdentifier();
+        jobDurationStatistics.record(stageIdentifier.getPipelineName(), stageIdentifier.getStageName(), job.getName(), job.durationOfCompletedBuildInSeconds());
     }
 
     private void clearJobStatusDependentCaches(long stageId, StageIdentifier stageIdentifier) {
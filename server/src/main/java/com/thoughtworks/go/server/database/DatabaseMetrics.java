@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.database;
+
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * @understands the time spent on the database: per sql map statement latency and rows, the time spent waiting for a
+ * connection and how busy the connection pool is.
+ * <p/>
+ * Queries slower than the threshold are logged, at most once a minute per statement, with the shape of their
+ * parameters (names, types and sizes) but never their values.
+ */
+@Component
+public class DatabaseMetrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseMetrics.class);
+    static final long SLOW_QUERY_LOG_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final boolean enabled;
+    private final long slowQueryThresholdNanos;
+    private final ConcurrentMap<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+    private final AtomicInteger waitingForConnection = new AtomicInteger();
+    private final AtomicInteger peakWaitingForConnection = new AtomicInteger();
+    private volatile BasicDataSource pool;
+
+    @Autowired
+    public DatabaseMetrics(SystemEnvironment systemEnvironment) {
+        this.enabled = systemEnvironment.isDatabaseInstrumentationEnabled();
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(systemEnvironment.getDatabaseSlowQueryThresholdMillis());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void monitorPool(BasicDataSource pool) {
+        this.pool = pool;
+    }
+
+    public void statementExecuted(String statementId, long nanos, int rows, Object parameter) {
+        StatementMetrics metrics = statements.computeIfAbsent(statementId, id -> new StatementMetrics());
+        metrics.latency.record(nanos);
+        if (rows > 0) {
+            metrics.rows.add(rows);
+        }
+        if (nanos >= slowQueryThresholdNanos && metrics.shouldLogSlowQuery(System.currentTimeMillis())) {
+            LOGGER.warn("[db] Statement '{}' took {}ms and returned {} rows. Parameters: {}", statementId, TimeUnit.NANOSECONDS.toMillis(nanos), rows, shapeOf(parameter));
+        }
+    }
+
+    public void waitingForConnection() {
+        int waiting = waitingForConnection.incrementAndGet();
+        peakWaitingForConnection.accumulateAndGet(waiting, Math::max);
+    }
+
+    public void gotConnection(long nanos) {
+        waitingForConnection.decrementAndGet();
+        connectionWait.record(nanos);
+    }
+
+    LatencyHistogram latencyOf(String statementId) {
+        StatementMetrics metrics = statements.get(statementId);
+        return metrics == null ? null : metrics.latency;
+    }
+
+    long rowsOf(String statementId) {
+        StatementMetrics metrics = statements.get(statementId);
+        return metrics == null ? 0 : metrics.rows.sum();
+    }
+
+    LatencyHistogram connectionWait() {
+        return connectionWait;
+    }
+
+    public Map<String, Object> asJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Enabled", enabled);
+        json.put("Connection Pool", poolAsJson());
+        json.put("Connection Wait", connectionWait.asJson());
+
+        Map<String, Object> byStatement = new LinkedHashMap<>();
+        statements.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, StatementMetrics> entry) -> entry.getValue().latency.totalNanos()).reversed())
+                .forEach(entry -> {
+                    Map<String, Object> statement = entry.getValue().latency.asJson();
+                    statement.put("Rows", entry.getValue().rows.sum());
+                    byStatement.put(entry.getKey(), statement);
+                });
+        json.put("Statements (by total time)", byStatement);
+        return json;
+    }
+
+    private Map<String, Object> poolAsJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        BasicDataSource pool = this.pool;
+        if (pool != null) {
+            json.put("Active", pool.getNumActive());
+            json.put("Idle", pool.getNumIdle());
+            json.put("Max Total", pool.getMaxTotal());
+            json.put("Saturation", pool.getMaxTotal() > 0 ? String.format("%.0f%%", 100.0 * pool.getNumActive() / pool.getMaxTotal()) : "n/a");
+        }
+        json.put("Waiting", waitingForConnection.get());
+        json.put("Peak Waiting", peakWaitingForConnection.get());
+        return json;
+    }
+
+    static String shapeOf(Object parameter) {
+        if (parameter == null) {
+            return "null";
+        }
+        if (parameter instanceof Map) {
+            return ((Map<?, ?>) parameter).entrySet().stream()
+                    .map(entry -> entry.getKey() + ": " + shapeOf(entry.getValue()))
+                    .sorted()
+                    .collect(joining(", ", "{", "}"));
+        }
+        if (parameter instanceof Collection) {
+            return parameter.getClass().getSimpleName() + "[" + ((Collection<?>) parameter).size() + "]";
+        }
+        if (parameter.getClass().isArray()) {
+            return parameter.getClass().getComponentType().getSimpleName() + "[" + Array.getLength(parameter) + "]";
+        }
+        return parameter.getClass().getSimpleName();
+    }
+
+    private static class StatementMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final AtomicLong lastSlowQueryLog = new AtomicLong();
+
+        boolean shouldLogSlowQuery(long now) {
+            long last = lastSlowQueryLog.get();
+            return now - last >= SLOW_QUERY_LOG_INTERVAL_MILLIS && lastSlowQueryLog.compareAndSet(last, now);
+        }
+    }
+}
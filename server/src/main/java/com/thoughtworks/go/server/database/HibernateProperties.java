@@ -16,6 +16,7 @@
 package com.thoughtworks.go.server.database;
 
 import com.thoughtworks.go.database.Database;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.hibernate.cache.EhCacheProvider;
 import org.hibernate.cfg.Environment;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,10 +27,11 @@ import java.util.Properties;
 @Component
 public class HibernateProperties extends Properties {
     @Autowired
-    public HibernateProperties(Database database) {
+    public HibernateProperties(Database database, SystemEnvironment systemEnvironment) {
         super.put(Environment.DIALECT, database.dialectForHibernate());
         super.put(Environment.CACHE_PROVIDER, EhCacheProvider.class.getName());
         super.put(Environment.USE_QUERY_CACHE, "true");
         super.put(Environment.SHOW_SQL, "false");
+        super.put(Environment.GENERATE_STATISTICS, String.valueOf(systemEnvironment.isDatabaseInstrumentationEnabled()));
     }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.database;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * @understands timing how long it takes to get a connection out of the pool
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+    private final DatabaseMetrics metrics;
+
+    public InstrumentedDataSource(DataSource pool, DatabaseMetrics metrics) {
+        super(pool);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        metrics.waitingForConnection();
+        try {
+            return super.getConnection();
+        } finally {
+            metrics.gotConnection(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        metrics.waitingForConnection();
+        try {
+            return super.getConnection(username, password);
+        } finally {
+            metrics.gotConnection(System.nanoTime() - start);
+        }
+    }
+}
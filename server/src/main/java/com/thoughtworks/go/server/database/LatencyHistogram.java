@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @understands counting durations into fixed millisecond buckets, without locking, so that it can be updated on every
+ * database call.
+ */
+public class LatencyHistogram {
+    static final long[] BUCKET_UPPER_BOUNDS_IN_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_UPPER_BOUNDS_IN_MILLIS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKET_UPPER_BOUNDS_IN_MILLIS.length && millis >= BUCKET_UPPER_BOUNDS_IN_MILLIS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public Map<String, Object> asJson() {
+        long count = count();
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Count", count);
+        json.put("TotalMillis", TimeUnit.NANOSECONDS.toMillis(totalNanos()));
+        json.put("MeanMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos() / count));
+        json.put("MaxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            long inBucket = buckets[i].sum();
+            if (inBucket > 0) {
+                histogram.put(i < BUCKET_UPPER_BOUNDS_IN_MILLIS.length ? "<" + BUCKET_UPPER_BOUNDS_IN_MILLIS[i] + "ms" : ">=" + BUCKET_UPPER_BOUNDS_IN_MILLIS[i - 1] + "ms", inBucket);
+            }
+        }
+        json.put("Histogram", histogram);
+        return json;
+    }
+}
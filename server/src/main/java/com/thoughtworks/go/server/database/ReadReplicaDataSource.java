@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.database;
+
+import com.thoughtworks.go.server.newsecurity.utils.SessionUtils;
+import com.thoughtworks.go.server.security.userdetail.GoUserPrinciple;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * @understands sending the reads made outside of a transaction to a read only replica of the database.
+ * <p/>
+ * A connection comes from the replica only for a query run through {@link #read(Supplier)}, while no transaction is
+ * active, the user did not write within the last {@code pinMillis} (so that a user reads its own writes whichever
+ * request thread serves the next read) and the replica is not lagging behind. Everything else gets the transaction aware
+ * connection to the primary it always had. What was read from the replica may be stale, so it is not put in the cache;
+ * what a replica read loads off the primary is run through {@link #onPrimary(Supplier)} to keep it cacheable.
+ */
+public class ReadReplicaDataSource extends TransactionAwareDataSourceProxy {
+    private static final ThreadLocal<Boolean> READING = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Boolean> READ_FROM_REPLICA = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Long> LAST_WRITE = ThreadLocal.withInitial(() -> 0L);
+    private static final Map<String, Long> LAST_WRITE_BY_USER = new ConcurrentHashMap<>();
+    private static final Object WRITE_SYNCHRONIZATION = ReadReplicaDataSource.class.getName() + ".WRITE_SYNCHRONIZATION";
+    // both lookups go through the primary key, the lag check runs every few seconds on a table which keeps growing
+    private static final String LAST_CHANGE = "SELECT statechangetime FROM buildstatetransitions WHERE id = (SELECT MAX(id) FROM buildstatetransitions)";
+
+    private final DataSource replica;
+    private final long pinMillis;
+    private final AtomicLong replicaConnections = new AtomicLong();
+    private final AtomicLong primaryConnections = new AtomicLong();
+    private volatile boolean replicaUsable = true;
+
+    public ReadReplicaDataSource(DataSource primary, DataSource replica, long pinMillis) {
+        super(primary);
+        this.replica = replica;
+        this.pinMillis = pinMillis;
+    }
+
+    public static <T> T read(Supplier<T> query) {
+        if (READING.get()) {
+            return query.get();
+        }
+        READING.set(true);
+        try {
+            return query.get();
+        } finally {
+            READING.set(false);
+            READ_FROM_REPLICA.set(false);
+        }
+    }
+
+    /**
+     * Runs a query made inside of {@link #read(Supplier)} against the primary, e.g. a load through hibernate, so that
+     * what it reads can be cached
+     */
+    public static <T> T onPrimary(Supplier<T> query) {
+        boolean reading = READING.get();
+        boolean readFromReplica = READ_FROM_REPLICA.get();
+        READING.set(false);
+        READ_FROM_REPLICA.set(false);
+        try {
+            return query.get();
+        } finally {
+            READING.set(reading);
+            READ_FROM_REPLICA.set(readFromReplica);
+        }
+    }
+
+    public static boolean isReadingFromReplica() {
+        return READ_FROM_REPLICA.get();
+    }
+
+    /**
+     * Keeps the reads of the current user (of the current thread when there is no user) on the primary until the
+     * replica had the time to catch up with the write, counting from the end of the transaction if the write was made
+     * in one
+     */
+    public static void markWritten() {
+        recordWrite();
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !TransactionSynchronizationManager.hasResource(WRITE_SYNCHRONIZATION)) {
+            TransactionSynchronizationManager.bindResource(WRITE_SYNCHRONIZATION, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_SYNCHRONIZATION);
+                    recordWrite();
+                }
+            });
+        }
+    }
+
+    private static void recordWrite() {
+        long now = System.currentTimeMillis();
+        String user = currentUser();
+        if (user == null) {
+            LAST_WRITE.set(now);
+        } else {
+            LAST_WRITE_BY_USER.put(user, now);
+        }
+    }
+
+    private static long lastWrite() {
+        String user = currentUser();
+        return user == null ? LAST_WRITE.get() : LAST_WRITE_BY_USER.getOrDefault(user, 0L);
+    }
+
+    private static String currentUser() {
+        GoUserPrinciple user = SessionUtils.getCurrentUser();
+        return user == null ? null : user.getUsername();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (shouldUseReplica()) {
+            replicaConnections.incrementAndGet();
+            READ_FROM_REPLICA.set(true);
+            return replica.getConnection();
+        }
+        primaryConnections.incrementAndGet();
+        return super.getConnection();
+    }
+
+    boolean shouldUseReplica() {
+        return READING.get()
+                && replicaUsable
+                && !TransactionSynchronizationManager.isActualTransactionActive()
+                && !pinnedToPrimary();
+    }
+
+    private boolean pinnedToPrimary() {
+        long lastWrite = lastWrite();
+        if (System.currentTimeMillis() - lastWrite < pinMillis) {
+            return true;
+        }
+        String user = currentUser();
+        if (user != null) {
+            LAST_WRITE_BY_USER.remove(user, lastWrite);
+        }
+        return false;
+    }
+
+    public void setReplicaUsable(boolean replicaUsable) {
+        this.replicaUsable = replicaUsable;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public long replicaConnections() {
+        return replicaConnections.get();
+    }
+
+    public long primaryConnections() {
+        return primaryConnections.get();
+    }
+
+    /**
+     * @return how far the last job state change the replica has is behind the last one on the primary
+     */
+    public long lagInMillis() throws SQLException {
+        Timestamp primaryLastChange = lastChange(getTargetDataSource());
+        Timestamp replicaLastChange = lastChange(replica);
+        if (primaryLastChange == null) {
+            return 0;
+        }
+        if (replicaLastChange == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, primaryLastChange.getTime() - replicaLastChange.getTime());
+    }
+
+    DataSource getReplica() {
+        return replica;
+    }
+
+    private static Timestamp lastChange(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(LAST_CHANGE)) {
+            return resultSet.next() ? resultSet.getTimestamp(1) : null;
+        }
+    }
+}
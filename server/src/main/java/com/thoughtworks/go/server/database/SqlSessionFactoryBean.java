@@ -24,6 +24,7 @@ import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
@@ -40,13 +41,15 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 @Component
 public class SqlSessionFactoryBean implements FactoryBean<SqlSessionFactory>, InitializingBean {
     private DatabaseStrategy databaseStrategy;
+    private final DatabaseMetrics databaseMetrics;
     private final DataSource dataSource;
     private final Resource configLocation;
     private SqlSessionFactory sqlSessionFactory;
 
     @Autowired
-    public SqlSessionFactoryBean(DatabaseStrategy databaseStrategy, DataSource dataSource, @Value("classpath:/sql-map-config.xml") Resource configLocation) {
+    public SqlSessionFactoryBean(DatabaseStrategy databaseStrategy, DatabaseMetrics databaseMetrics, @Qualifier("sqlMapDataSource") DataSource dataSource, @Value("classpath:/sql-map-config.xml") Resource configLocation) {
         this.databaseStrategy = databaseStrategy;
+        this.databaseMetrics = databaseMetrics;
         this.dataSource = dataSource instanceof TransactionAwareDataSourceProxy ? dataSource : new TransactionAwareDataSourceProxy(dataSource);
         this.configLocation = configLocation;
     }
@@ -93,6 +96,10 @@ public class SqlSessionFactoryBean implements FactoryBean<SqlSessionFactory>, In
             baseConfiguration = builder.parse();
         }
 
+        if (databaseMetrics.isEnabled()) {
+            baseConfiguration.addInterceptor(new StatementMetricsInterceptor(databaseMetrics));
+        }
+
         baseConfiguration.setEnvironment(new Environment(getClass().getSimpleName(), new SpringManagedTransactionFactory(), this.dataSource));
 
         return factoryBuilder.build(baseConfiguration);
@@ -64,6 +64,13 @@ public abstract class PluginMessageQueueHandler<T extends PluginAwareMessage> im
     }
 
     public void post(T message, long timeToLive) {
+        postToQueue(message, timeToLive);
+    }
+
+    /**
+     * @return true if the message was put on the queue of its plugin
+     */
+    protected boolean postToQueue(T message, long timeToLive) {
         String pluginId = message.pluginId();
         try {
             if (queues.containsKey(pluginId)) {
@@ -71,6 +78,7 @@ public abstract class PluginMessageQueueHandler<T extends PluginAwareMessage> im
                 LOGGER.debug("Posting message {} to queue {}", message, queue.queueName);
                 queue.post(message, timeToLive);
                 LOGGER.debug("Message {} posted to queue {}", message, queue.queueName);
+                return true;
             } else {
                 LOGGER.error("Could not find a queue for {}", pluginId);
                 //TODO: Add server health error
@@ -78,5 +86,6 @@ public abstract class PluginMessageQueueHandler<T extends PluginAwareMessage> im
         } catch (Exception e) {
             LOGGER.error("Failed while posting to queue for plugin {}. The error was {}", pluginId, e.getMessage(), e);
         }
+        return false;
     }
 }
@@ -15,19 +15,37 @@
  */
 package com.thoughtworks.go.server.messaging.elasticagents;
 
+import com.google.common.util.concurrent.RateLimiter;
 import com.thoughtworks.go.plugin.access.elastic.ElasticAgentPluginRegistry;
 import com.thoughtworks.go.server.messaging.GoMessageListener;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 public class CreateAgentListener implements GoMessageListener<CreateAgentMessage> {
 
     private final ElasticAgentPluginRegistry elasticAgentPluginRegistry;
+    private final RateLimiter rateLimiter;
+    private final Consumer<CreateAgentMessage> requeue;
 
     public CreateAgentListener(ElasticAgentPluginRegistry elasticAgentPluginRegistry) {
+        this(elasticAgentPluginRegistry, null, message -> {
+        });
+    }
+
+    public CreateAgentListener(ElasticAgentPluginRegistry elasticAgentPluginRegistry, RateLimiter rateLimiter, Consumer<CreateAgentMessage> requeue) {
         this.elasticAgentPluginRegistry = elasticAgentPluginRegistry;
+        this.rateLimiter = rateLimiter;
+        this.requeue = requeue;
     }
 
     @Override
     public void onMessage(CreateAgentMessage message) {
+        // a throttled request goes to the back of the queue instead of holding on to the listener thread
+        if (rateLimiter != null && !rateLimiter.tryAcquire(1, TimeUnit.SECONDS)) {
+            requeue.accept(message);
+            return;
+        }
         elasticAgentPluginRegistry.createAgent(message.pluginId(), message.autoregisterKey(), message.environment(), message.configuration(), message.getClusterProfileConfiguration(), message.jobIdentifier());
     }
 }
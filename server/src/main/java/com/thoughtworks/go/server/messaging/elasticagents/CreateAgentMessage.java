@@ -30,6 +30,7 @@ public class CreateAgentMessage implements PluginAwareMessage {
     private Map<String, String> clusterProfile;
     private final JobIdentifier jobIdentifier;
     private final String pluginId;
+    private long expiresAt;
 
     public CreateAgentMessage(String autoregisterKey, String environment, ElasticProfile elasticProfile, ClusterProfile clusterProfile, JobIdentifier jobIdentifier) {
         this.autoregisterKey = autoregisterKey;
@@ -77,6 +78,14 @@ public class CreateAgentMessage implements PluginAwareMessage {
         return clusterProfile;
     }
 
+    long expiresAt() {
+        return expiresAt;
+    }
+
+    void expiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
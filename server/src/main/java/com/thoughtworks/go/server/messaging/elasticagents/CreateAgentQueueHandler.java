@@ -15,6 +15,7 @@
  */
 package com.thoughtworks.go.server.messaging.elasticagents;
 
+import com.google.common.util.concurrent.RateLimiter;
 import com.thoughtworks.go.plugin.access.elastic.ElasticAgentExtension;
 import com.thoughtworks.go.plugin.access.elastic.ElasticAgentPluginRegistry;
 import com.thoughtworks.go.plugin.infra.PluginManager;
@@ -33,13 +34,34 @@ public class CreateAgentQueueHandler extends PluginMessageQueueHandler<CreateAge
         super(elasticAgentExtension, messaging, pluginManager, new QueueFactory() {
             @Override
             public PluginAwareMessageQueue create(GoPluginDescriptor pluginDescriptor) {
-                return new PluginAwareMessageQueue(messaging, pluginDescriptor.id(), QUEUE_NAME_PREFIX + pluginDescriptor.id(), systemEnvironment.get(SystemEnvironment.GO_ELASTIC_PLUGIN_CREATE_AGENT_THREADS), listener());
+                String queueName = QUEUE_NAME_PREFIX + pluginDescriptor.id();
+                return new PluginAwareMessageQueue(messaging, pluginDescriptor.id(), queueName, systemEnvironment.get(SystemEnvironment.GO_ELASTIC_PLUGIN_CREATE_AGENT_THREADS), listener(queueName, rateLimiter()));
             }
 
-            public ListenerFactory listener() {
-                return () -> new CreateAgentListener(elasticAgentPluginRegistry);
+            public ListenerFactory listener(String queueName, RateLimiter rateLimiter) {
+                GoMessageQueue<CreateAgentMessage> queue = new GoMessageQueue<>(messaging, queueName);
+                return () -> new CreateAgentListener(elasticAgentPluginRegistry, rateLimiter, message -> requeue(queue, message));
+            }
+
+            // one limiter per plugin, shared by all the listeners of the plugin queue
+            private RateLimiter rateLimiter() {
+                Integer requestsPerMinute = systemEnvironment.get(SystemEnvironment.GO_ELASTIC_PLUGIN_CREATE_AGENT_REQUESTS_PER_MINUTE);
+                return requestsPerMinute > 0 ? RateLimiter.create(requestsPerMinute / 60.0) : null;
             }
         });
     }
 
+    @Override
+    public void post(CreateAgentMessage message, long timeToLive) {
+        message.expiresAt(System.currentTimeMillis() + timeToLive);
+        super.post(message, timeToLive);
+    }
+
+    // requeued messages keep the expiry they were first posted with, so they never outlive the starvation threshold
+    static void requeue(GoMessageQueue<CreateAgentMessage> queue, CreateAgentMessage message) {
+        long timeToLive = message.expiresAt() - System.currentTimeMillis();
+        if (timeToLive > 0) {
+            queue.post(message, timeToLive);
+        }
+    }
 }
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.notifications;
+
+import com.thoughtworks.go.util.TimeProvider;
+
+import java.util.*;
+
+/**
+ * Holds the pending notification messages of a single plugin. A message is only put on the plugin queue when the lane
+ * has more pending messages than the queue, and a listener sends the oldest pending message of the lane whichever
+ * message it received. Dropped and coalesced messages are therefore never on the queue, which is no deeper than the lane.
+ * <p/>
+ * A plugin may have several listeners. A message of an entity another listener is still sending a message of is held
+ * back until that message is acknowledged, so the updates of an entity reach the plugin in the order they were posted.
+ * The listener which acknowledges it then sends the message another listener could not.
+ */
+public class PluginNotificationLane {
+    public enum OverflowPolicy {
+        DROP_OLDEST, COALESCE;
+
+        public static OverflowPolicy from(String value) {
+            return "coalesce".equalsIgnoreCase(value) ? COALESCE : DROP_OLDEST;
+        }
+    }
+
+    private final String pluginId;
+    private final int maxPending;
+    private final OverflowPolicy overflowPolicy;
+    private final long timeToLive;
+    private final TimeProvider timeProvider;
+
+    private long sequence;
+    private final LinkedHashMap<Long, PendingMessage> pending = new LinkedHashMap<>();
+    private final Map<String, Long> sequenceOfEntity = new HashMap<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private int onQueue;
+    private int heldBack;
+
+    private long delivered;
+    private long dropped;
+    private long coalesced;
+    private long lastDeliveryLagInMillis;
+
+    public PluginNotificationLane(String pluginId, int maxPending, OverflowPolicy overflowPolicy, long timeToLive, TimeProvider timeProvider) {
+        this.pluginId = pluginId;
+        this.maxPending = maxPending;
+        this.overflowPolicy = overflowPolicy;
+        this.timeToLive = timeToLive;
+        this.timeProvider = timeProvider;
+    }
+
+    /**
+     * @return true if the message has to be put on the plugin queue, false if a message already on the queue will pick it up
+     */
+    public synchronized boolean offer(PluginNotificationMessage message) {
+        long now = timeProvider.currentTimeMillis();
+        expireMessagesOlderThanTimeToLive(now);
+
+        long messageSequence = ++sequence;
+        if (overflowPolicy == OverflowPolicy.COALESCE && message.getEntityKey() != null) {
+            Long previous = sequenceOfEntity.put(message.getEntityKey(), messageSequence);
+            if (previous != null && pending.remove(previous) != null) {
+                coalesced++;
+            }
+        }
+
+        while (maxPending > 0 && pending.size() >= maxPending) {
+            removeOldest();
+            dropped++;
+        }
+
+        pending.put(messageSequence, new PendingMessage(message, messageSequence, now));
+        heldBack = Math.min(heldBack, pending.size());
+        if (onQueue + heldBack < pending.size()) {
+            onQueue++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called when a message {@link #offer(PluginNotificationMessage)} asked for could not be put on the plugin queue
+     */
+    public synchronized void notPosted() {
+        onQueue = Math.max(0, onQueue - 1);
+    }
+
+    /**
+     * Called for every message received from the plugin queue
+     *
+     * @return the oldest pending message of an entity no other message is being sent of, which is the one to send to
+     * the plugin, or null if there is none
+     */
+    public synchronized PluginNotificationMessage poll() {
+        onQueue = Math.max(0, onQueue - 1);
+        long now = timeProvider.currentTimeMillis();
+        expireMessagesOlderThanTimeToLive(now);
+
+        heldBack = Math.min(heldBack, pending.size());
+        PluginNotificationMessage message = take(now);
+        if (message == null && !pending.isEmpty()) {
+            heldBack++;
+        }
+        return message;
+    }
+
+    /**
+     * Called once a message returned by {@link #poll()} or by this method was sent to the plugin
+     *
+     * @return a message which was held back while the acknowledged one was sent, to be sent by the same listener, or null
+     */
+    public synchronized PluginNotificationMessage acknowledge(PluginNotificationMessage sent) {
+        if (sent.getEntityKey() != null) {
+            inFlight.remove(sent.getEntityKey());
+        }
+        long now = timeProvider.currentTimeMillis();
+        expireMessagesOlderThanTimeToLive(now);
+        heldBack = Math.min(heldBack, pending.size());
+        if (heldBack == 0) {
+            return null;
+        }
+        PluginNotificationMessage message = take(now);
+        if (message != null) {
+            heldBack--;
+        }
+        return message;
+    }
+
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+    public synchronized long lagInMillis() {
+        PendingMessage oldest = oldest();
+        return oldest == null ? 0 : timeProvider.currentTimeMillis() - oldest.postedAt;
+    }
+
+    public synchronized Map<String, Object> asJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Overflow policy", overflowPolicy.name());
+        json.put("Max pending", maxPending);
+        json.put("Pending", pending());
+        json.put("Lag in milliseconds", lagInMillis());
+        json.put("Last delivery lag in milliseconds", lastDeliveryLagInMillis);
+        json.put("Delivered", delivered);
+        json.put("Dropped", dropped);
+        json.put("Coalesced", coalesced);
+        return json;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    int entitiesTracked() {
+        return sequenceOfEntity.size();
+    }
+
+    private PluginNotificationMessage take(long now) {
+        for (PendingMessage candidate : pending.values()) {
+            String entityKey = candidate.message.getEntityKey();
+            if (entityKey == null || !inFlight.contains(entityKey)) {
+                remove(candidate);
+                if (entityKey != null) {
+                    inFlight.add(entityKey);
+                }
+                lastDeliveryLagInMillis = now - candidate.postedAt;
+                delivered++;
+                return candidate.message;
+            }
+        }
+        return null;
+    }
+
+    private PendingMessage oldest() {
+        Iterator<PendingMessage> iterator = pending.values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private PendingMessage removeOldest() {
+        PendingMessage oldest = oldest();
+        if (oldest != null) {
+            remove(oldest);
+        }
+        return oldest;
+    }
+
+    private void remove(PendingMessage message) {
+        pending.remove(message.sequence);
+        if (message.message.getEntityKey() != null) {
+            sequenceOfEntity.remove(message.message.getEntityKey(), message.sequence);
+        }
+    }
+
+    // the lane, not the queue, expires messages which were not sent within their time to live
+    private void expireMessagesOlderThanTimeToLive(long now) {
+        if (timeToLive <= 0) {
+            return;
+        }
+        PendingMessage oldest;
+        while ((oldest = oldest()) != null && now - oldest.postedAt > timeToLive) {
+            removeOldest();
+            dropped++;
+        }
+    }
+
+    private static class PendingMessage {
+        private final PluginNotificationMessage message;
+        private final long sequence;
+        private final long postedAt;
+
+        PendingMessage(PluginNotificationMessage message, long sequence, long postedAt) {
+            this.message = message;
+            this.sequence = sequence;
+            this.postedAt = postedAt;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.notifications;
+
+import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.TimeProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.thoughtworks.go.util.SystemEnvironment.NOTIFICATION_PLUGIN_MESSAGES_TTL;
+
+@Component
+public class PluginNotificationLanes {
+    private final SystemEnvironment systemEnvironment;
+    private final TimeProvider timeProvider;
+    private final Map<String, PluginNotificationLane> lanes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PluginNotificationLanes(SystemEnvironment systemEnvironment, TimeProvider timeProvider) {
+        this.systemEnvironment = systemEnvironment;
+        this.timeProvider = timeProvider;
+    }
+
+    public PluginNotificationLane laneFor(String pluginId) {
+        return lanes.computeIfAbsent(pluginId, id -> new PluginNotificationLane(id,
+                systemEnvironment.getNotificationMaxPendingForPlugin(id),
+                PluginNotificationLane.OverflowPolicy.from(systemEnvironment.getNotificationOverflowPolicyForPlugin(id)),
+                systemEnvironment.get(NOTIFICATION_PLUGIN_MESSAGES_TTL),
+                timeProvider));
+    }
+
+    /**
+     * @return the message to send to the plugin for a message received from its queue, or null if there is none
+     */
+    public PluginNotificationMessage poll(String pluginId) {
+        PluginNotificationLane lane = lanes.get(pluginId);
+        return lane == null ? null : lane.poll();
+    }
+
+    /**
+     * @return the next message to send to the plugin once the given one was sent, or null if there is none
+     */
+    public PluginNotificationMessage acknowledge(PluginNotificationMessage sent) {
+        PluginNotificationLane lane = lanes.get(sent.pluginId());
+        return lane == null ? null : lane.acknowledge(sent);
+    }
+
+    public void remove(String pluginId) {
+        lanes.remove(pluginId);
+    }
+
+    public Map<String, Object> asJson() {
+        Map<String, Object> json = new TreeMap<>();
+        lanes.forEach((pluginId, lane) -> json.put(pluginId, lane.asJson()));
+        return json;
+    }
+}
@@ -24,11 +24,17 @@ public class PluginNotificationMessage<T extends Serializable> implements Plugin
     private String pluginId;
     private final String requestName;
     private final T data;
+    private final String entityKey;
 
     public PluginNotificationMessage(String pluginId, String requestName, T data) {
+        this(pluginId, requestName, data, null);
+    }
+
+    public PluginNotificationMessage(String pluginId, String requestName, T data, String entityKey) {
         this.pluginId = pluginId;
         this.requestName = requestName;
         this.data = data;
+        this.entityKey = entityKey;
     }
 
     public String getRequestName() {
@@ -39,6 +45,10 @@ public class PluginNotificationMessage<T extends Serializable> implements Plugin
         return data;
     }
 
+    public String getEntityKey() {
+        return entityKey;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -66,6 +76,7 @@ public class PluginNotificationMessage<T extends Serializable> implements Plugin
                 "pluginId='" + pluginId + '\'' +
                 ", requestName='" + requestName + '\'' +
                 ", data=" + data +
+                ", entityKey='" + entityKey + '\'' +
                 '}';
     }
 }
@@ -29,15 +29,33 @@ import org.slf4j.LoggerFactory;
 public class PluginNotificationMessageListener implements GoMessageListener<PluginNotificationMessage> {
     private NotificationExtension notificationExtension;
     private ServerHealthService serverHealthService;
+    private PluginNotificationLanes lanes;
     private static final Logger LOGGER = LoggerFactory.getLogger(PluginNotificationMessageListener.class);
 
     public PluginNotificationMessageListener(NotificationExtension notificationExtension, ServerHealthService serverHealthService) {
+        this(notificationExtension, serverHealthService, null);
+    }
+
+    public PluginNotificationMessageListener(NotificationExtension notificationExtension, ServerHealthService serverHealthService, PluginNotificationLanes lanes) {
         this.notificationExtension = notificationExtension;
         this.serverHealthService = serverHealthService;
+        this.lanes = lanes;
     }
 
     @Override
-    public void onMessage(PluginNotificationMessage message) {
+    public void onMessage(PluginNotificationMessage received) {
+        PluginNotificationMessage message = lanes == null ? received : lanes.poll(received.pluginId());
+        if (message == null) {
+            LOGGER.debug("Skipping notification message {} for plugin {}, there are no pending messages left to send", received, received.pluginId());
+            return;
+        }
+        while (message != null) {
+            send(message);
+            message = lanes == null ? null : lanes.acknowledge(message);
+        }
+    }
+
+    private void send(PluginNotificationMessage message) {
         HealthStateScope scope = HealthStateScope.aboutPlugin(message.pluginId());
         try {
             LOGGER.debug("Sending {} notification message {} for plugin {}", message.getRequestName(), message, message.pluginId());
@@ -65,18 +65,18 @@ public class PluginNotificationService {
     }
 
     public void notifyAgentStatus(AgentInstance agentInstance) {
-        notify(NotificationExtension.AGENT_STATUS_CHANGE_NOTIFICATION, agentInstance);
+        notify(NotificationExtension.AGENT_STATUS_CHANGE_NOTIFICATION, agentInstance, "agent:" + agentInstance.getUuid());
     }
 
     public void notifyStageStatus(Stage stage) {
-        notify(NotificationExtension.STAGE_STATUS_CHANGE_NOTIFICATION, stage);
+        notify(NotificationExtension.STAGE_STATUS_CHANGE_NOTIFICATION, stage, "stage:" + stage.getIdentifier().getStageLocator());
     }
 
-    private <T> void notify(String requestName, T instance) {
+    private <T> void notify(String requestName, T instance, String entityKey) {
         Set<String> interestedPlugins = notificationPluginRegistry.getPluginsInterestedIn(requestName);
         Long timeToLive = systemEnvironment.get(NOTIFICATION_PLUGIN_MESSAGES_TTL);
         for (String pluginId : interestedPlugins) {
-            PluginNotificationMessage message = new PluginNotificationMessage<>(pluginId, requestName, map.get(requestName).notificationDataFor(instance));
+            PluginNotificationMessage message = new PluginNotificationMessage<>(pluginId, requestName, map.get(requestName).notificationDataFor(instance), entityKey);
             pluginNotificationsQueueHandler.post(message, timeToLive);
         }
     }
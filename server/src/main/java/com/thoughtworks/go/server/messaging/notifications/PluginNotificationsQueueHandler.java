@@ -29,10 +29,12 @@ import java.util.Map;
 @Component
 public class PluginNotificationsQueueHandler extends PluginMessageQueueHandler<PluginNotificationMessage> {
     private final static String QUEUE_NAME_PREFIX = PluginNotificationsQueueHandler.class.getSimpleName() + ".";
+    private final PluginNotificationLanes lanes;
 
     @Autowired
     public PluginNotificationsQueueHandler(final MessagingService messaging, NotificationExtension notificationExtension,
-        PluginManager pluginManager, final SystemEnvironment systemEnvironment, ServerHealthService serverHealthService) {
+        PluginManager pluginManager, final SystemEnvironment systemEnvironment, ServerHealthService serverHealthService,
+        PluginNotificationLanes lanes) {
         super(notificationExtension, messaging, pluginManager, new QueueFactory() {
             @Override
             public PluginAwareMessageQueue create(GoPluginDescriptor pluginDescriptor) {
@@ -42,9 +44,32 @@ public class PluginNotificationsQueueHandler extends PluginMessageQueueHandler<P
             }
 
             public ListenerFactory listener() {
-                return () -> new PluginNotificationMessageListener(notificationExtension, serverHealthService);
+                return () -> new PluginNotificationMessageListener(notificationExtension, serverHealthService, lanes);
             }
         });
+        this.lanes = lanes;
+    }
+
+    @Override
+    public void post(PluginNotificationMessage message, long timeToLive) {
+        if (!queues.containsKey(message.pluginId())) {
+            super.post(message, timeToLive);
+            return;
+        }
+        // the lane expires its messages, a message on the queue must not expire or the lane would wait for it forever
+        PluginNotificationLane lane = lanes.laneFor(message.pluginId());
+        if (lane.offer(message) && !postToQueue(message, 0)) {
+            lane.notPosted();
+        }
+    }
+
+    @Override
+    public void pluginUnLoaded(GoPluginDescriptor pluginDescriptor) {
+        try {
+            super.pluginUnLoaded(pluginDescriptor);
+        } finally {
+            lanes.remove(pluginDescriptor.id());
+        }
     }
 
     Map<String, PluginAwareMessageQueue> getQueues() {
@@ -70,9 +70,11 @@ public class ArtifactSizeEnforcementFilter extends OncePerRequestFilter {
             }
         }
 
-        if (Long.valueOf(headerValue) * 2 > totalAvailableSpace) {
+        // a streamed upload is unzipped as it arrives, it is not staged on disk as a zip first
+        int copies = isBlank(request.getHeader(HttpService.GO_ARTIFACT_STREAMING)) ? 2 : 1;
+        if (Long.valueOf(headerValue) * copies > totalAvailableSpace) {
             Long artifactSize = Long.valueOf(headerValue);
-            LOG.error("[Artifact Upload] Artifact upload (Required Size {} * 2 = {}) was denied by the server because it has run out of disk space (Available Space {}).", artifactSize, artifactSize * 2, totalAvailableSpace);
+            LOG.error("[Artifact Upload] Artifact upload (Required Size {} * {} = {}) was denied by the server because it has run out of disk space (Available Space {}).", artifactSize, copies, artifactSize * copies, totalAvailableSpace);
             response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
         } else {
             filterChain.doFilter(request, response);
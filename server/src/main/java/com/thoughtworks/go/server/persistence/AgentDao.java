@@ -34,17 +34,15 @@ import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
+import static com.google.common.collect.Lists.partition;
 import static com.thoughtworks.go.util.ExceptionUtils.bomb;
 import static java.lang.String.format;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.*;
 
 /**
  * @understands persisting and retrieving agent uuid-cookie mapping
@@ -52,6 +50,9 @@ import static java.util.stream.Collectors.toList;
 @SuppressWarnings({"ALL"})
 @Component
 public class AgentDao extends HibernateDaoSupport {
+    // keeps the number of bind parameters of a statement well below what the databases allow
+    static final int MAX_UUIDS_PER_STATEMENT = 1000;
+
     private final GoCache cache;
     private final TransactionTemplate transactionTemplate;
     private final TransactionSynchronizationManager synchronizationManager;
@@ -148,10 +149,14 @@ public class AgentDao extends HibernateDaoSupport {
         AgentMutex mutex = agentMutexes.acquire(uuids);
         synchronized (mutex) {
             List<Agent> agents = (List<Agent>) transactionTemplate.execute((TransactionCallback) transactionStatus -> {
-                Query query = sessionFactory.getCurrentSession().createQuery("FROM Agent where uuid in :uuids and deleted = false");
-                query.setCacheable(true);
-                query.setParameterList("uuids", uuids);
-                return query.list();
+                List<Agent> found = new ArrayList<>();
+                for (List<String> uuidsInStatement : partition(uuids, MAX_UUIDS_PER_STATEMENT)) {
+                    Query query = sessionFactory.getCurrentSession().createQuery("FROM Agent where uuid in :uuids and deleted = false");
+                    query.setCacheable(true);
+                    query.setParameterList("uuids", uuidsInStatement);
+                    found.addAll(query.list());
+                }
+                return found;
             });
             agentMutexes.release(uuids, mutex);
             return agents;
@@ -215,11 +220,8 @@ public class AgentDao extends HibernateDaoSupport {
         agentEntityChangeListenerSet.forEach(listener -> listener.entityChanged(agent));
     }
 
-    private void notifyBulkAgentEntityChangeListeners(List<String> uuids) {
-        agentEntityChangeListenerSet.forEach(listener -> {
-            List<Agent> changedAgents = getAgentsByUUIDs(uuids);
-            listener.bulkEntitiesChanged(changedAgents);
-        });
+    private void notifyBulkAgentEntityChangeListeners(List<Agent> changedAgents) {
+        agentEntityChangeListenerSet.forEach(listener -> listener.bulkEntitiesChanged(changedAgents));
     }
 
     public void updateAgentIdFromDBIfAgentDoesNotHaveAnIdAndAgentExistInDB(Agent agent) {
@@ -241,10 +243,12 @@ public class AgentDao extends HibernateDaoSupport {
                 @Override
                 protected void doInTransactionWithoutResult(TransactionStatus status) {
                     String queryString = format("update Agent set disabled = :disabled where uuid in (:uuids)");
-                    Query query = sessionFactory.getCurrentSession().createQuery(queryString);
-                    query.setParameter("disabled", true);
-                    query.setParameterList("uuids", uuids);
-                    query.executeUpdate();
+                    for (List<String> uuidsInStatement : partition(uuids, MAX_UUIDS_PER_STATEMENT)) {
+                        Query query = sessionFactory.getCurrentSession().createQuery(queryString);
+                        query.setParameter("disabled", true);
+                        query.setParameterList("uuids", uuidsInStatement);
+                        query.executeUpdate();
+                    }
 
                     registerAfterCommitCallback(() -> clearCacheAndNotifyBulkAgentEntityChangeListeners(uuids));
                 }
@@ -253,15 +257,30 @@ public class AgentDao extends HibernateDaoSupport {
         }
     }
 
-    public void bulkUpdateAgents(List<Agent> agents) {
-        List<String> uuids = agents.stream().map(agent -> agent.getUuid()).collect(toList());
+    /**
+     * Persists the changed attributes of agents which are in the database already, and saves pending agents in full,
+     * in one transaction. Only the changed attributes are written, and agents which end up with the same values of
+     * them are updated by one statement, so re-tagging many agents the same way does not update them one by one.
+     */
+    public void bulkUpdateAttributes(List<Agent> registeredAgents, List<Agent> pendingAgents, Set<Attribute> changedAttributes) {
+        List<Agent> agents = new ArrayList<>(registeredAgents);
+        agents.addAll(pendingAgents);
+        if (agents.isEmpty()) {
+            return;
+        }
+        List<String> uuids = agents.stream().map(Agent::getUuid).collect(toList());
         AgentMutex mutex = agentMutexes.acquire(uuids);
         synchronized (mutex) {
             transactionTemplate.execute(new TransactionCallbackWithoutResult() {
                 @Override
                 protected void doInTransactionWithoutResult(TransactionStatus status) {
-                    agents.forEach(agent -> sessionFactory.getCurrentSession().saveOrUpdate(Agent.class.getName(), agent));
-                    List<String> uuids = agents.stream().map(Agent::getUuid).collect(toList());
+                    List<Attribute> attributes = new ArrayList<>(changedAttributes);
+                    if (!attributes.isEmpty()) {
+                        updateAttributes(registeredAgents, attributes);
+                    }
+                    pendingAgents.forEach(agent -> sessionFactory.getCurrentSession().saveOrUpdate(Agent.class.getName(), agent));
+
+                    // callers may hold stale values of the attributes which were not changed, so notify with the agents as saved
                     registerAfterCommitCallback(() -> clearCacheAndNotifyBulkAgentEntityChangeListeners(uuids));
                 }
             });
@@ -269,6 +288,26 @@ public class AgentDao extends HibernateDaoSupport {
         }
     }
 
+    private void updateAttributes(List<Agent> agents, List<Attribute> attributes) {
+        String queryString = attributes.stream()
+                .map(attribute -> format("%s = :%s", attribute.column, attribute.column))
+                .collect(joining(", ", "update Agent set ", " where uuid in (:uuids)"));
+        Map<List<Object>, List<String>> uuidsByValues = agents.stream()
+                .collect(groupingBy(agent -> attributes.stream().map(attribute -> attribute.valueOf(agent)).collect(toList()),
+                        LinkedHashMap::new, mapping(Agent::getUuid, toList())));
+
+        uuidsByValues.forEach((values, uuidsWithValues) -> {
+            for (List<String> uuidsInStatement : partition(uuidsWithValues, MAX_UUIDS_PER_STATEMENT)) {
+                Query query = sessionFactory.getCurrentSession().createQuery(queryString);
+                for (int i = 0; i < attributes.size(); i++) {
+                    attributes.get(i).bind(query, values.get(i));
+                }
+                query.setParameterList("uuids", uuidsInStatement);
+                query.executeUpdate();
+            }
+        });
+    }
+
     public void bulkSoftDelete(List<String> uuids) {
         AgentMutex mutex = agentMutexes.acquire(uuids);
         synchronized (mutex) {
@@ -276,9 +315,11 @@ public class AgentDao extends HibernateDaoSupport {
                 @Override
                 protected void doInTransactionWithoutResult(TransactionStatus status) {
                     String queryString = format("update Agent set deleted = true where uuid in (:uuids)");
-                    Query query = sessionFactory.getCurrentSession().createQuery(queryString);
-                    query.setParameterList("uuids", uuids);
-                    query.executeUpdate();
+                    for (List<String> uuidsInStatement : partition(uuids, MAX_UUIDS_PER_STATEMENT)) {
+                        Query query = sessionFactory.getCurrentSession().createQuery(queryString);
+                        query.setParameterList("uuids", uuidsInStatement);
+                        query.executeUpdate();
+                    }
 
                     registerAfterCommitCallback(() -> clearCacheAndNotifyBulkAgentEntityDeleteListeners(uuids));
                 }
@@ -289,7 +330,9 @@ public class AgentDao extends HibernateDaoSupport {
 
     private synchronized void clearCacheAndNotifyBulkAgentEntityChangeListeners(List<String> uuids) {
         uuids.stream().map(this::agentCacheKey).forEach(cache::remove);
-        notifyBulkAgentEntityChangeListeners(uuids);
+        if (!agentEntityChangeListenerSet.isEmpty()) {
+            notifyBulkAgentEntityChangeListeners(getAgentsByUUIDs(uuids));
+        }
     }
 
     private synchronized void clearCacheAndNotifyBulkAgentEntityDeleteListeners(List<String> uuids) {
@@ -316,6 +359,40 @@ public class AgentDao extends HibernateDaoSupport {
     public void clearListeners() {
         this.agentEntityChangeListenerSet.clear();
     }
+
+    /**
+     * The attributes of an agent which are changed in bulk
+     */
+    public enum Attribute {
+        ENVIRONMENTS("environments"),
+        RESOURCES("resources"),
+        DISABLED("disabled");
+
+        private final String column;
+
+        Attribute(String column) {
+            this.column = column;
+        }
+
+        private Object valueOf(Agent agent) {
+            switch (this) {
+                case ENVIRONMENTS:
+                    return agent.getEnvironments();
+                case RESOURCES:
+                    return agent.getResources();
+                default:
+                    return agent.isDisabled();
+            }
+        }
+
+        private void bind(Query query, Object value) {
+            if (this == DISABLED) {
+                query.setBoolean(column, (Boolean) value);
+            } else {
+                query.setString(column, (String) value);
+            }
+        }
+    }
 }
 
 class AgentMutexes {
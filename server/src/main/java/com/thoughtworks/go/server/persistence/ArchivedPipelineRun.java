@@ -0,0 +1,234 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.persistence;
+
+import com.thoughtworks.go.domain.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * @understands the copy of a completed pipeline run kept in the {@link PipelineRunArchive}: its stage runs, their jobs
+ * and every state transition of those jobs. The transitions of a job are stored as one column of states and one of
+ * times, which compresses far better than a list of objects.
+ */
+public class ArchivedPipelineRun {
+    private long pipelineId;
+    private String pipelineName;
+    private int pipelineCounter;
+    private String pipelineLabel;
+    private List<ArchivedStage> stages = new ArrayList<>();
+
+    public static ArchivedPipelineRun from(long pipelineId, String pipelineName, int pipelineCounter, String pipelineLabel, Stages stages) {
+        ArchivedPipelineRun run = new ArchivedPipelineRun();
+        run.pipelineId = pipelineId;
+        run.pipelineName = pipelineName;
+        run.pipelineCounter = pipelineCounter;
+        run.pipelineLabel = pipelineLabel;
+        for (Stage stage : stages) {
+            run.stages.add(ArchivedStage.from(stage));
+        }
+        return run;
+    }
+
+    public long getPipelineId() {
+        return pipelineId;
+    }
+
+    public String getPipelineName() {
+        return pipelineName;
+    }
+
+    public int getPipelineCounter() {
+        return pipelineCounter;
+    }
+
+    public String getPipelineLabel() {
+        return pipelineLabel;
+    }
+
+    /**
+     * @return the ids of the jobs in this run, which are the only jobs whose transitions may be deleted once it is
+     * archived; rescheduled jobs are not part of a stage run and so are not archived
+     */
+    public List<Long> jobIds() {
+        List<Long> ids = new ArrayList<>();
+        for (ArchivedStage stage : stages) {
+            for (ArchivedJob job : stage.jobs) {
+                ids.add(job.id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return the archived state transitions of the job, or null if the job is not part of this run
+     */
+    public JobStateTransitions transitionsOf(long jobId) {
+        for (ArchivedStage stage : stages) {
+            for (ArchivedJob job : stage.jobs) {
+                if (job.id == jobId) {
+                    return job.transitions(stage.id);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true when this run has every job of the other run with at least all of its state transitions, so the
+     * transitions of the other run can be deleted from the database once this run is archived
+     */
+    public boolean covers(ArchivedPipelineRun other) {
+        if (other.pipelineId != pipelineId) {
+            return false;
+        }
+        for (ArchivedStage stage : other.stages) {
+            for (ArchivedJob job : stage.jobs) {
+                ArchivedJob archived = job(job.id);
+                if (archived == null || !archived.transitionIds.containsAll(job.transitionIds)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the transitions which an earlier archived copy of this run has and the database does not have any more,
+     * so that archiving the run again does not lose them
+     */
+    public void addTransitionsOf(ArchivedPipelineRun earlier) {
+        if (earlier == null || earlier.pipelineId != pipelineId) {
+            return;
+        }
+        for (ArchivedStage stage : stages) {
+            for (ArchivedJob job : stage.jobs) {
+                ArchivedJob archived = earlier.job(job.id);
+                if (archived != null) {
+                    job.addTransitionsOf(archived);
+                }
+            }
+        }
+    }
+
+    private ArchivedJob job(long jobId) {
+        for (ArchivedStage stage : stages) {
+            for (ArchivedJob job : stage.jobs) {
+                if (job.id == jobId) {
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    static class ArchivedStage {
+        private long id;
+        private String name;
+        private int counter;
+        private String state;
+        private String result;
+        private String approvedBy;
+        private String cancelledBy;
+        private Long createdTime;
+        private Long lastTransitionedTime;
+        private List<ArchivedJob> jobs = new ArrayList<>();
+
+        static ArchivedStage from(Stage stage) {
+            ArchivedStage archived = new ArchivedStage();
+            archived.id = stage.getId();
+            archived.name = stage.getName();
+            archived.counter = stage.getCounter();
+            archived.state = String.valueOf(stage.getState());
+            archived.result = String.valueOf(stage.getResult());
+            archived.approvedBy = stage.getApprovedBy();
+            archived.cancelledBy = stage.getCancelledBy();
+            archived.createdTime = stage.getCreatedTime() == null ? null : stage.getCreatedTime().getTime();
+            archived.lastTransitionedTime = stage.getLastTransitionedTime() == null ? null : stage.getLastTransitionedTime().getTime();
+            for (JobInstance job : stage.getJobInstances()) {
+                archived.jobs.add(ArchivedJob.from(job));
+            }
+            return archived;
+        }
+    }
+
+    static class ArchivedJob {
+        private long id;
+        private String name;
+        private String state;
+        private String result;
+        private String agentUuid;
+        private boolean rerun;
+        private List<Long> transitionIds = new ArrayList<>();
+        private List<String> transitionStates = new ArrayList<>();
+        private List<Long> transitionTimes = new ArrayList<>();
+
+        static ArchivedJob from(JobInstance job) {
+            ArchivedJob archived = new ArchivedJob();
+            archived.id = job.getId();
+            archived.name = job.getName();
+            archived.state = String.valueOf(job.getState());
+            archived.result = String.valueOf(job.getResult());
+            archived.agentUuid = job.getAgentUuid();
+            archived.rerun = job.isRerun();
+            for (JobStateTransition transition : job.getTransitions()) {
+                archived.transitionIds.add(transition.getId());
+                archived.transitionStates.add(transition.getCurrentState().name());
+                archived.transitionTimes.add(transition.getStateChangeTime().getTime());
+            }
+            return archived;
+        }
+
+        void addTransitionsOf(ArchivedJob other) {
+            // transition ids grow with time, so ordering by id keeps the transitions in the order they happened
+            TreeMap<Long, Integer> byId = new TreeMap<>();
+            for (int i = 0; i < transitionIds.size(); i++) {
+                byId.put(transitionIds.get(i), i);
+            }
+            List<String> states = new ArrayList<>(transitionStates);
+            List<Long> times = new ArrayList<>(transitionTimes);
+            for (int i = 0; i < other.transitionIds.size(); i++) {
+                if (!byId.containsKey(other.transitionIds.get(i))) {
+                    byId.put(other.transitionIds.get(i), states.size());
+                    states.add(other.transitionStates.get(i));
+                    times.add(other.transitionTimes.get(i));
+                }
+            }
+            transitionIds = new ArrayList<>(byId.keySet());
+            transitionStates = new ArrayList<>();
+            transitionTimes = new ArrayList<>();
+            for (Integer index : byId.values()) {
+                transitionStates.add(states.get(index));
+                transitionTimes.add(times.get(index));
+            }
+        }
+
+        JobStateTransitions transitions(long stageId) {
+            List<JobStateTransition> transitions = new ArrayList<>();
+            for (int i = 0; i < transitionStates.size(); i++) {
+                JobStateTransition transition = new JobStateTransition(JobState.valueOf(transitionStates.get(i)), new Date(transitionTimes.get(i)));
+                transition.setId(transitionIds.get(i));
+                transition.setJobId(id);
+                transition.setStageId(stageId);
+                transitions.add(transition);
+            }
+            return new JobStateTransitions(transitions);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.thoughtworks.go.domain.materials.*;
 import com.thoughtworks.go.domain.materials.dependency.DependencyMaterialInstance;
 import com.thoughtworks.go.server.cache.CacheKeyGenerator;
 import com.thoughtworks.go.server.cache.GoCache;
+import com.thoughtworks.go.server.dao.FeedModifier;
 import com.thoughtworks.go.server.service.MaterialConfigConverter;
 import com.thoughtworks.go.server.service.MaterialExpansionService;
 import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
@@ -221,23 +222,55 @@ public MaterialRevisions findMaterialRevisionsForPipeline(long pipelineId) {
         return materialRevisions;
     }
 
+    /**
+     * Same as {@link #findMaterialRevisionsForPipeline(long)} for each of the pipelines, but loads the revisions and
+     * modifications which are not cached yet in batches, rather than with a few queries per pipeline.
+     */
+    public Map<Long, MaterialRevisions> findMaterialRevisionsForPipelines(Collection<Long> ids) {
+        Set<Long> pipelineIds = new LinkedHashSet<>(ids);
+        cacheMaterialRevisionsForPipelines(pipelineIds);
+        Map<Long, MaterialRevisions> revisionsByPipeline = new HashMap<>();
+        for (Long pipelineId : pipelineIds) {
+            revisionsByPipeline.put(pipelineId, findMaterialRevisionsForPipeline(pipelineId));
+        }
+        return revisionsByPipeline;
+    }
+
     public void cacheMaterialRevisionsForPipelines(Set<Long> pipelineIds) {
-        List<Long> ids = new ArrayList<>(pipelineIds);
+        List<Long> ids = new ArrayList<>();
+        for (Long pipelineId : pipelineIds) {
+            if (goCache.get(pipelinePmrsKey(pipelineId)) == null) {
+                ids.add(pipelineId);
+            }
+        }
 
         final int batchSize = 500;
         loadPMRsIntoCache(ids, batchSize);
+
+        Set<PipelineMaterialRevision> pmrs = new LinkedHashSet<>();
+        for (Long pipelineId : pipelineIds) {
+            pmrs.addAll(findPipelineMaterialRevisions(pipelineId));
+        }
+        loadModificationsIntoCache(pmrs);
     }
 
     private void loadPMRsIntoCache(List<Long> ids, int batchSize) {
         int total = ids.size(), remaining = total;
         while (!ids.isEmpty()) {
-            LOGGER.info("Loading PMRs,Remaining {} Pipelines (Total: {})...", remaining, total);
+            logProgress(total, batchSize, "Loading PMRs,Remaining {} Pipelines (Total: {})...", remaining);
             final List<Long> idsBatch = batchIds(ids, batchSize);
             loadPMRByPipelineIds(idsBatch);
             remaining -= batchSize;
         }
     }
 
+    private void logProgress(int total, int batchSize, String message, int remaining) {
+        // a page of history fits in one batch, only the bigger loads are worth reporting
+        if (total > batchSize) {
+            LOGGER.info(message, remaining, total);
+        }
+    }
+
     private <T> List<T> batchIds(List<T> items, int batchSize) {
         List<T> ids = new ArrayList<>();
         for (int i = 0; i < batchSize; ++i) {
@@ -269,19 +302,28 @@ public MaterialRevisions findMaterialRevisionsForPipeline(long pipelineId) {
     private void loadPMRByPipelineIds(List<Long> pipelineIds) {
         List<PipelineMaterialRevision> pmrs = (List<PipelineMaterialRevision>) getHibernateTemplate().findByCriteria(buildPMRDetachedQuery(pipelineIds));
         sortPersistentObjectsById(pmrs, true);
-        final Set<PipelineMaterialRevision> uniquePmrs = new HashSet<>();
+        Map<Long, List<PipelineMaterialRevision>> pmrsByPipeline = new LinkedHashMap<>();
+        for (Long pipelineId : pipelineIds) {
+            pmrsByPipeline.put(pipelineId, new ArrayList<>());
+        }
         for (PipelineMaterialRevision pmr : pmrs) {
-            String cacheKey = pipelinePmrsKey(pmr.getPipelineId());
-            List<PipelineMaterialRevision> pmrsForId = (List<PipelineMaterialRevision>) goCache.get(cacheKey);
-            if (pmrsForId == null) {
-                pmrsForId = new ArrayList<>();
-                goCache.put(cacheKey, pmrsForId);
-            }
-            pmrsForId.add(pmr);
+            pmrsByPipeline.get(pmr.getPipelineId()).add(pmr);
             putMaterialInstanceIntoCache(pmr.getToModification().getMaterialInstance());
-            uniquePmrs.add(pmr);
         }
-        loadModificationsIntoCache(uniquePmrs);
+        for (Map.Entry<Long, List<PipelineMaterialRevision>> entry : pmrsByPipeline.entrySet()) {
+            putIfNotCached(pipelinePmrsKey(entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * Entries can be cached by a lookup of a single pipeline while a batch is loaded, those are kept as they are
+     */
+    private void putIfNotCached(String cacheKey, Object value) {
+        synchronized (cacheKey) {
+            if (goCache.get(cacheKey) == null) {
+                goCache.put(cacheKey, value);
+            }
+        }
     }
 
     private void sortPersistentObjectsById(List<? extends PersistentObject> persistentObjects, boolean asc) {
@@ -303,10 +345,15 @@ public MaterialRevisions findMaterialRevisionsForPipeline(long pipelineId) {
     }
 
     private void loadModificationsIntoCache(Set<PipelineMaterialRevision> pmrs) {
-        List<PipelineMaterialRevision> pmrList = new ArrayList<>(pmrs);
+        List<PipelineMaterialRevision> pmrList = new ArrayList<>();
+        for (PipelineMaterialRevision pmr : pmrs) {
+            if (goCache.get(pmrModificationsKey(pmr)) == null) {
+                pmrList.add(pmr);
+            }
+        }
         int batchSize = 100, total = pmrList.size(), remaining = total;
         while (!pmrList.isEmpty()) {
-            LOGGER.info("Loading modifications, Remaining {} PMRs(Total: {})...", remaining, total);
+            logProgress(total, batchSize, "Loading modifications, Remaining {} PMRs(Total: {})...", remaining);
             final List<PipelineMaterialRevision> pmrBatch = batchIds(pmrList, batchSize);
             loadModificationsForPMR(pmrBatch);
             remaining -= batchSize;
@@ -315,27 +362,23 @@ public MaterialRevisions findMaterialRevisionsForPipeline(long pipelineId) {
 
     private void loadModificationsForPMR(List<PipelineMaterialRevision> pmrs) {
         List<Criterion> criterions = new ArrayList<>();
+        Map<String, List<Modification>> modificationsByKey = new LinkedHashMap<>();
         for (PipelineMaterialRevision pmr : pmrs) {
-            if (goCache.get(pmrModificationsKey(pmr)) != null) {
-                continue;
-            }
             final Criterion modificationClause = Restrictions.between("id", pmr.getFromModification().getId(), pmr.getToModification().getId());
             final SimpleExpression idClause = Restrictions.eq("materialInstance", pmr.getMaterialInstance());
             criterions.add(Restrictions.and(idClause, modificationClause));
+            modificationsByKey.put(pmrModificationsKey(pmr), new ArrayList<>());
         }
         List<Modification> modifications = (List<Modification>) getHibernateTemplate().findByCriteria(buildModificationDetachedQuery(criterions));
         sortPersistentObjectsById(modifications, false);
         for (Modification modification : modifications) {
-            List<String> cacheKeys = pmrModificationsKey(modification, pmrs);
-            for (String cacheKey : cacheKeys) {
-                List<Modification> modificationList = (List<Modification>) goCache.get(cacheKey);
-                if (modificationList == null) {
-                    modificationList = new ArrayList<>();
-                    goCache.put(cacheKey, modificationList);
-                }
-                modificationList.add(modification);
+            for (String cacheKey : pmrModificationsKey(modification, pmrs)) {
+                modificationsByKey.get(cacheKey).add(modification);
             }
         }
+        for (Map.Entry<String, List<Modification>> entry : modificationsByKey.entrySet()) {
+            putIfNotCached(entry.getKey(), entry.getValue());
+        }
     }
 
     private DetachedCriteria buildModificationDetachedQuery(List<Criterion> criteria) {
@@ -385,8 +428,7 @@ List<Modification> findModificationsFor(PipelineMaterialRevision pmr) {
         Collection<PipelineMaterialRevision> matchedPmrs = CollectionUtils.select(pmrs, pmr -> {
             long from = pmr.getFromModification().getId();
             long to = pmr.getToModification().getId();
-            MaterialInstance pmi = findMaterialInstance(pmr.getMaterial());
-            return from <= id && id <= to && materialInstance.equals(pmi);
+            return from <= id && id <= to && materialInstance.getId() == pmr.getMaterialInstance().getId();
         });
         List<String> keys = new ArrayList<>(matchedPmrs.size());
         for (PipelineMaterialRevision matchedPmr : matchedPmrs) {
@@ -981,6 +1023,45 @@ List<Modification> findModificationsFor(PipelineMaterialRevision pmr) {
         return modifications;
     }
 
+    /**
+     * Newest first, keyed on the modification id rather than an offset so that deep pages cost the same as the first one.
+     * Shares the cache of the paginated modifications, which is cleared when new modifications are saved.
+     */
+    public Modifications getModificationsFor(final MaterialInstance materialInstance, final FeedModifier feedModifier, final long cursor, final int pageSize) {
+        String key = materialModificationsWithPaginationKey(materialInstance);
+        String subKey = String.format("%s-%s-%s", feedModifier.suffix(), cursor, pageSize);
+        Modifications modifications = (Modifications) goCache.get(key, subKey);
+        if (modifications == null) {
+            synchronized (key) {
+                modifications = (Modifications) goCache.get(key, subKey);
+                if (modifications == null) {
+                    List<Modification> modificationsList = (List<Modification>) getHibernateTemplate().execute((HibernateCallback) session -> {
+                        Query q;
+                        if (feedModifier == FeedModifier.After) {
+                            q = session.createQuery("FROM Modification WHERE materialId = ? AND id < ? ORDER BY id DESC");
+                            q.setLong(1, cursor);
+                        } else if (feedModifier == FeedModifier.Before) {
+                            q = session.createQuery("FROM Modification WHERE materialId = ? AND id > ? ORDER BY id ASC");
+                            q.setLong(1, cursor);
+                        } else {
+                            q = session.createQuery("FROM Modification WHERE materialId = ? ORDER BY id DESC");
+                        }
+                        q.setLong(0, materialInstance.getId());
+                        q.setMaxResults(pageSize);
+                        return q.list();
+                    });
+                    if (feedModifier == FeedModifier.Before) {
+                        modificationsList = new ArrayList<>(modificationsList);
+                        Collections.reverse(modificationsList);
+                    }
+                    modifications = new Modifications(modificationsList);
+                    goCache.put(key, subKey, modifications);
+                }
+            }
+        }
+        return modifications;
+    }
+
     public Long latestModificationRunByPipeline(final CaseInsensitiveString pipelineName, final Material material) {
         final long materialId = findMaterialInstance(material).getId();
         String key = cacheKeyForLatestPmrForPipelineKey(materialId, pipelineName.toLower());
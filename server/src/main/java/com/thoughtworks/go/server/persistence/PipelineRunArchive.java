@@ -0,0 +1,356 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.persistence;
+
+import com.google.gson.Gson;
+import com.thoughtworks.go.domain.JobIdentifier;
+import com.thoughtworks.go.domain.JobInstance;
+import com.thoughtworks.go.domain.JobState;
+import com.thoughtworks.go.domain.JobStateTransitions;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * @understands keeping completed pipeline runs which were moved out of the live tables on disk.
+ * <p/>
+ * Runs are appended to segment files, each run as a gzip member of its own so that it can be read without the rest of
+ * the segment. Every pipeline has an index file of fixed size entries (counter, segment, offset, length) sorted by
+ * counter, which is binary searched to find a run. The watermark is the id of the last pipeline the archiver went past,
+ * followed in the same file by the ids of the pipelines before it which could not be archived yet.
+ */
+@Component
+public class PipelineRunArchive {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineRunArchive.class);
+    public static final String ARCHIVE_FOLDER = "archive";
+    static final long MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".json.gz";
+    private static final String INDEX_FOLDER = "index";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String WATERMARK_FILE = "watermark";
+    private static final int INDEX_ENTRY_SIZE = 4 + 4 + 8 + 4;
+
+    private final File archiveDir;
+    private final long maxSegmentSize;
+    private final Gson gson = new Gson();
+    private volatile long watermark = -1;
+    private volatile Set<Long> skipped = Collections.emptySet();
+    private int currentSegment = -1;
+
+    @Autowired
+    public PipelineRunArchive(SystemEnvironment systemEnvironment) {
+        this(new File(systemEnvironment.getDbFolder(), ARCHIVE_FOLDER), MAX_SEGMENT_SIZE);
+    }
+
+    PipelineRunArchive(File archiveDir, long maxSegmentSize) {
+        this.archiveDir = archiveDir;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * @return the id of the last pipeline the archiver went past, or 0 if nothing was archived yet
+     */
+    public long watermark() {
+        if (watermark < 0) {
+            synchronized (this) {
+                if (watermark < 0) {
+                    readWatermark();
+                }
+            }
+        }
+        return watermark;
+    }
+
+    /**
+     * @return the ids of the pipelines up to the watermark which were still running, or could not be archived for
+     * another reason, when the archiver went past them
+     */
+    public Set<Long> skipped() {
+        watermark();
+        return skipped;
+    }
+
+    public synchronized void updateWatermark(long pipelineId) throws IOException {
+        updateWatermark(pipelineId, skipped());
+    }
+
+    public synchronized void updateWatermark(long pipelineId, Collection<Long> skippedPipelineIds) throws IOException {
+        FileUtils.forceMkdir(archiveDir);
+        List<String> lines = new ArrayList<>();
+        lines.add(String.valueOf(pipelineId));
+        Set<Long> sorted = new TreeSet<>(skippedPipelineIds);
+        sorted.forEach(id -> lines.add(String.valueOf(id)));
+        File temp = new File(archiveDir, WATERMARK_FILE + ".tmp");
+        FileUtils.writeLines(temp, UTF_8.name(), lines, "\n");
+        Files.move(temp.toPath(), new File(archiveDir, WATERMARK_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        skipped = Collections.unmodifiableSet(sorted);
+        watermark = pipelineId;
+    }
+
+    private void readWatermark() {
+        File file = new File(archiveDir, WATERMARK_FILE);
+        try {
+            List<String> lines = file.isFile() ? FileUtils.readLines(file, UTF_8) : Collections.emptyList();
+            Set<Long> ids = new TreeSet<>();
+            for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+                if (!line.trim().isEmpty()) {
+                    ids.add(Long.parseLong(line.trim()));
+                }
+            }
+            skipped = Collections.unmodifiableSet(ids);
+            watermark = lines.isEmpty() ? 0 : Long.parseLong(lines.get(0).trim());
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("[Pipeline Archive] Could not read the archive watermark from '{}'", file, e);
+            skipped = Collections.emptySet();
+            watermark = 0;
+        }
+    }
+
+    public boolean contains(String pipelineName, int pipelineCounter) throws IOException {
+        return lookup(pipelineName, pipelineCounter) != null;
+    }
+
+    public synchronized void append(ArchivedPipelineRun run) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(record), UTF_8)) {
+            gson.toJson(run, writer);
+        }
+        int segment = segmentToAppendTo();
+        long offset = write(segmentFile(segment), record.toByteArray());
+        index(run.getPipelineName(), new IndexEntry(run.getPipelineCounter(), segment, offset, record.size()));
+    }
+
+    /**
+     * @return the archived run, or null if the run was never archived
+     */
+    public ArchivedPipelineRun find(String pipelineName, int pipelineCounter) throws IOException {
+        IndexEntry entry = lookup(pipelineName, pipelineCounter);
+        if (entry == null) {
+            return null;
+        }
+        byte[] record = new byte[entry.length];
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(entry.segment), "r")) {
+            file.seek(entry.offset);
+            file.readFully(record);
+        }
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(record)), UTF_8)) {
+            return gson.fromJson(reader, ArchivedPipelineRun.class);
+        }
+    }
+
+    /**
+     * Gives a completed job whose intermediate state transitions were removed from the database, once its run was
+     * archived, all of its transitions back. Any other job is left as it is.
+     */
+    public JobInstance restoreTransitions(JobInstance job) {
+        restoreTransitions(Collections.singletonList(job));
+        return job;
+    }
+
+    /**
+     * Same as {@link #restoreTransitions(JobInstance)} for each of the jobs, reading every archived run only once
+     */
+    public void restoreTransitions(Iterable<JobInstance> jobs) {
+        if (watermark() == 0) {
+            return;
+        }
+        Map<String, ArchivedPipelineRun> runs = new HashMap<>();
+        for (JobInstance job : jobs) {
+            if (!job.isCompleted() || job.getTransition(JobState.Building) == null || job.getTransition(JobState.Assigned) != null) {
+                continue;
+            }
+            JobIdentifier identifier = job.getIdentifier();
+            if (identifier == null || identifier.getPipelineCounter() == null) {
+                continue;
+            }
+            try {
+                String key = identifier.getPipelineName().toLowerCase() + "/" + identifier.getPipelineCounter();
+                if (!runs.containsKey(key)) {
+                    runs.put(key, find(identifier.getPipelineName(), identifier.getPipelineCounter()));
+                }
+                ArchivedPipelineRun run = runs.get(key);
+                JobStateTransitions transitions = run == null ? null : run.transitionsOf(job.getId());
+                if (transitions != null) {
+                    job.setTransitions(transitions);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("[Pipeline Archive] Could not read the archived state transitions of '{}'", identifier, e);
+            }
+        }
+    }
+
+    /**
+     * Zips the archive while runs may be appended to it. The watermark and the index files go in before the segments,
+     * which are only ever appended to, so every run the zipped index points to is in the zip.
+     */
+    public static void backup(File archiveDir, ZipOutputStream zip) throws IOException {
+        List<File> files = new ArrayList<>();
+        files.add(new File(archiveDir, WATERMARK_FILE));
+        File[] indexes = new File(archiveDir, INDEX_FOLDER).listFiles((dir, name) -> name.endsWith(INDEX_SUFFIX));
+        files.addAll(Arrays.asList(indexes == null ? new File[0] : indexes));
+        File[] segments = archiveDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        files.addAll(Arrays.asList(segments == null ? new File[0] : segments));
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            zip.putNextEntry(new ZipEntry(archiveDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/')));
+            FileUtils.copyFile(file, zip);
+            zip.closeEntry();
+        }
+    }
+
+    private int segmentToAppendTo() {
+        if (currentSegment < 0) {
+            currentSegment = 0;
+            File[] segments = archiveDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+            for (File segment : segments == null ? new File[0] : segments) {
+                String number = segment.getName().substring(SEGMENT_PREFIX.length(), segment.getName().length() - SEGMENT_SUFFIX.length());
+                currentSegment = Math.max(currentSegment, Integer.parseInt(number));
+            }
+        }
+        if (segmentFile(currentSegment).length() >= maxSegmentSize) {
+            currentSegment++;
+        }
+        return currentSegment;
+    }
+
+    private File segmentFile(int segment) {
+        return new File(archiveDir, String.format("%s%06d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private File indexFile(String pipelineName) {
+        return new File(new File(archiveDir, INDEX_FOLDER), pipelineName.toLowerCase() + INDEX_SUFFIX);
+    }
+
+    private IndexEntry lookup(String pipelineName, int pipelineCounter) throws IOException {
+        File index = indexFile(pipelineName);
+        if (!index.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(index, "r")) {
+            long low = 0;
+            long high = file.length() / INDEX_ENTRY_SIZE - 1;
+            while (low <= high) {
+                long middle = (low + high) >>> 1;
+                file.seek(middle * INDEX_ENTRY_SIZE);
+                IndexEntry entry = IndexEntry.read(file);
+                if (entry.counter < pipelineCounter) {
+                    low = middle + 1;
+                } else if (entry.counter > pipelineCounter) {
+                    high = middle - 1;
+                } else {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void index(String pipelineName, IndexEntry entry) throws IOException {
+        File index = indexFile(pipelineName);
+        FileUtils.forceMkdir(index.getParentFile());
+        long length = index.length() - index.length() % INDEX_ENTRY_SIZE;
+        if (length == 0 || lastCounter(index, length) < entry.counter) {
+            try (FileChannel channel = FileChannel.open(index.toPath(), CREATE, WRITE)) {
+                channel.truncate(length);
+            }
+            write(index, entry.toBytes());
+            return;
+        }
+        // counters of a pipeline only go down when its counter was reset, the index is rewritten to stay sorted
+        List<IndexEntry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+            for (long i = 0; i < length / INDEX_ENTRY_SIZE; i++) {
+                IndexEntry existing = IndexEntry.read(in);
+                if (existing.counter != entry.counter) {
+                    entries.add(existing);
+                }
+            }
+        }
+        entries.add(entry);
+        entries.sort((first, second) -> Integer.compare(first.counter, second.counter));
+        File temp = new File(index.getParentFile(), index.getName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            for (IndexEntry each : entries) {
+                out.write(each.toBytes());
+            }
+        }
+        Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int lastCounter(File index, long length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(index, "r")) {
+            file.seek(length - INDEX_ENTRY_SIZE);
+            return file.readInt();
+        }
+    }
+
+    private static long write(File file, byte[] bytes) throws IOException {
+        FileUtils.forceMkdir(file.getParentFile());
+        try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, WRITE)) {
+            long offset = channel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            // the rows are deleted from the database once the run is archived, so it must be on disk by then
+            channel.force(false);
+            return offset;
+        }
+    }
+
+    private static class IndexEntry {
+        private final int counter;
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        IndexEntry(int counter, int segment, long offset, int length) {
+            this.counter = counter;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        static IndexEntry read(DataInput in) throws IOException {
+            return new IndexEntry(in.readInt(), in.readInt(), in.readLong(), in.readInt());
+        }
+
+        byte[] toBytes() {
+            return ByteBuffer.allocate(INDEX_ENTRY_SIZE).putInt(counter).putInt(segment).putLong(offset).putInt(length).array();
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.thoughtworks.go.config.TrackingTool;
 import com.thoughtworks.go.domain.*;
 import com.thoughtworks.go.domain.exception.IllegalArtifactLocationException;
 import com.thoughtworks.go.server.service.ArtifactsService;
+import com.thoughtworks.go.util.ArtifactManifest;
 import com.thoughtworks.go.util.DirectoryReader;
 import com.thoughtworks.go.util.TimeConverter;
 import org.apache.commons.io.FileUtils;
@@ -126,7 +127,9 @@ public class JobDetailPresentationModel {
                         artifactsService.findArtifactUrl(jobIdentifier,
                                 getConsoleOutputFolderAndFileName()));
             }
-            addAll(directoryReader.listEntries(artifactsService.findArtifact(jobIdentifier, ""), ""));
+            ArtifactManifest manifest = job.isCompleted() ? artifactsService.findArtifactManifest(jobIdentifier) : null;
+            addAll(manifest != null ? directoryReader.listEntriesFromManifest(manifest, "") :
+                    directoryReader.listEntries(artifactsService.findArtifact(jobIdentifier, ""), ""));
             setIsArtifactsDeleted(stage.isArtifactsDeleted());
         }};
     }
@@ -56,6 +56,7 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.thoughtworks.go.CurrentGoCDVersion.docsUrl;
 import static com.thoughtworks.go.domain.AgentConfigStatus.Pending;
 import static com.thoughtworks.go.domain.AgentInstance.createFromAgent;
+import static com.thoughtworks.go.server.persistence.AgentDao.Attribute.*;
 import static com.thoughtworks.go.util.CommaSeparatedString.append;
 import static com.thoughtworks.go.util.CommaSeparatedString.remove;
 import static com.thoughtworks.go.util.ExceptionUtils.bombIfNull;
@@ -169,7 +170,9 @@ public class AgentService implements DatabaseEntityChangeListener<Agent> {
 
             agents.forEach(agent -> setResourcesEnvsAndState(agent, resourcesToAdd, resourcesToRemove, envsToAdd, envsToRemove, state, environmentConfigService));
             updateIdsAndGenerateCookiesForPendingAgents(agents, state);
-            agentDao.bulkUpdateAgents(agents);
+            Map<Boolean, List<Agent>> pendingAndRegisteredAgents = agents.stream().collect(partitioningBy(agent -> isTriStateSet(state) && isPending(agent)));
+            agentDao.bulkUpdateAttributes(pendingAndRegisteredAgents.get(false), pendingAndRegisteredAgents.get(true),
+                    changedAttributes(resourcesToAdd, resourcesToRemove, envsToAdd, envsToRemove, state));
         }
     }
 
@@ -188,7 +191,7 @@ public class AgentService implements DatabaseEntityChangeListener<Agent> {
             if (agents.isEmpty()) {
                 return;
             }
-            agentDao.bulkUpdateAgents(agents);
+            agentDao.bulkUpdateAttributes(agents, emptyList(), EnumSet.of(ENVIRONMENTS));
         }
     }
 
@@ -206,7 +209,7 @@ public class AgentService implements DatabaseEntityChangeListener<Agent> {
             if (agents.isEmpty()) {
                 return;
             }
-            agentDao.bulkUpdateAgents(agents);
+            agentDao.bulkUpdateAttributes(agents, emptyList(), EnumSet.of(ENVIRONMENTS));
         }
     }
 
@@ -405,13 +408,13 @@ public class AgentService implements DatabaseEntityChangeListener<Agent> {
         if (agentInstanceBeforeUpdate instanceof NullAgentInstance) {
             createNewAgentInstanceAndAddToCache(agentAfterUpdate);
         } else {
-            notifyAgentChangeListenersAndSyncAgentFromUpdatedAgent(agentAfterUpdate, agentInstanceBeforeUpdate);
+            notifyAgentChangeListenersAndSyncAgentFromUpdatedAgent(agentAfterUpdate);
         }
     }
 
-    private void notifyAgentChangeListenersAndSyncAgentFromUpdatedAgent(Agent agentAfterUpdate, AgentInstance agentInstanceBeforeUpdate) {
+    private void notifyAgentChangeListenersAndSyncAgentFromUpdatedAgent(Agent agentAfterUpdate) {
         notifyAgentChangeListeners(agentAfterUpdate);
-        agentInstanceBeforeUpdate.syncAgentFrom(agentAfterUpdate);
+        agentInstances.syncAgentFrom(agentAfterUpdate);
     }
 
     private void createNewAgentInstanceAndAddToCache(Agent agentAfterUpdate) {
@@ -514,14 +517,16 @@ public class AgentService implements DatabaseEntityChangeListener<Agent> {
     }
 
     private List<String> getUUIDsToAddEnvTo(List<String> uuidsToAssociateWithEnv, List<String> uuidsAssociatedWithEnv) {
+        Set<String> associated = new HashSet<>(uuidsAssociatedWithEnv);
         return uuidsToAssociateWithEnv.stream()
-                .filter(uuid -> !uuidsAssociatedWithEnv.contains(uuid))
+                .filter(uuid -> !associated.contains(uuid))
                 .collect(toList());
     }
 
     private List<String> getUUIDsToRemoveEnvFrom(List<String> uuidsToAssociateWithEnv, List<String> uuidsAssociatedWithEnv) {
+        Set<String> toAssociate = new HashSet<>(uuidsToAssociateWithEnv);
         return uuidsAssociatedWithEnv.stream()
-                .filter(uuid -> !uuidsToAssociateWithEnv.contains(uuid))
+                .filter(uuid -> !toAssociate.contains(uuid))
                 .collect(toList());
     }
 
@@ -645,6 +650,21 @@ public class AgentService implements DatabaseEntityChangeListener<Agent> {
         return true;
     }
 
+    private Set<AgentDao.Attribute> changedAttributes(List<String> resourcesToAdd, List<String> resourcesToRemove,
+                                                      List<String> envsToAdd, List<String> envsToRemove, TriState state) {
+        Set<AgentDao.Attribute> changed = EnumSet.noneOf(AgentDao.Attribute.class);
+        if (isNotEmpty(resourcesToAdd) || isNotEmpty(resourcesToRemove)) {
+            changed.add(RESOURCES);
+        }
+        if (isNotEmpty(envsToAdd) || isNotEmpty(envsToRemove)) {
+            changed.add(ENVIRONMENTS);
+        }
+        if (isTriStateSet(state)) {
+            changed.add(DISABLED);
+        }
+        return changed;
+    }
+
     private boolean isTriStateSet(TriState state) {
         return state.isTrue() || state.isFalse();
     }
@@ -684,11 +704,15 @@ public class AgentService implements DatabaseEntityChangeListener<Agent> {
     void updateIdsAndGenerateCookiesForPendingAgents(List<Agent> agents, TriState state) {
         if (isTriStateSet(state)) {
             agents.stream()
-                    .filter(agent -> findAgent(agent.getUuid()).getStatus().getConfigStatus() == Pending)
+                    .filter(this::isPending)
                     .forEach(this::updateIdAndGenerateCookieForPendingAgent);
         }
     }
 
+    private boolean isPending(Agent agent) {
+        return findAgent(agent.getUuid()).getStatus().getConfigStatus() == Pending;
+    }
+
     private void updateIdAndGenerateCookieForPendingAgent(Agent pendingAgent) {
         agentDao.updateAgentIdFromDBIfAgentDoesNotHaveAnIdAndAgentExistInDB(pendingAgent);
         generateAndAddCookie(pendingAgent);
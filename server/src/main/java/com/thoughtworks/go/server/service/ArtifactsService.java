@@ -26,6 +26,7 @@ import com.thoughtworks.go.server.view.artifacts.BuildIdArtifactLocator;
 import com.thoughtworks.go.server.view.artifacts.PathBasedArtifactsLocator;
 import com.thoughtworks.go.util.*;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +35,13 @@ import org.springframework.stereotype.Service;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.ZipInputStream;
 
 import static java.lang.String.format;
@@ -48,16 +56,22 @@ public class ArtifactsService implements ArtifactUrlReader {
     public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactsService.class);
     public static final String LOG_XML_NAME = "log.xml";
     private ArtifactDirectoryChooser chooser;
+    private final ContentAddressedArtifactStore contentStore;
+    private final ConcurrentMap<String, AtomicLong> manifestInvalidations = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor manifestExecutor;
 
     @Autowired
     public ArtifactsService(JobResolverService jobResolverService, StageDao stageDao,
-                            ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil, SystemService systemService) {
-        this(jobResolverService, stageDao, artifactsDirHolder, zipUtil, systemService, new ArtifactDirectoryChooser());
+                            ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil, SystemService systemService,
+                            ContentAddressedArtifactStore contentStore) {
+        this(jobResolverService, stageDao, artifactsDirHolder, zipUtil, systemService, contentStore, new ArtifactDirectoryChooser());
     }
 
     protected ArtifactsService(JobResolverService jobResolverService, StageDao stageDao,
-                               ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil, SystemService systemService, ArtifactDirectoryChooser chooser) {
+                               ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil, SystemService systemService,
+                               ContentAddressedArtifactStore contentStore, ArtifactDirectoryChooser chooser) {
         this.artifactsDirHolder = artifactsDirHolder;
+        this.contentStore = contentStore;
         this.zipUtil = zipUtil;
         this.jobResolverService = jobResolverService;
         this.stageDao = stageDao;
@@ -66,6 +80,13 @@ public class ArtifactsService implements ArtifactUrlReader {
         //This is a Chain of Responsibility to decide which view should be shown for a particular artifact URL
         this.chooser = chooser;
 
+        AtomicInteger count = new AtomicInteger();
+        this.manifestExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "artifact-manifest-thread-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.manifestExecutor.allowCoreThreadTimeOut(true);
     }
 
     public void initialize() {
@@ -112,10 +133,121 @@ public class ArtifactsService implements ArtifactUrlReader {
         }
     }
 
+    public StreamedArtifactUpload streamedUpload(JobIdentifier identifier, String destPath) throws IllegalArtifactLocationException, IOException {
+        return new StreamedArtifactUpload(chooser.streamedUploadProgress(identifier, destPath), findArtifact(identifier, destPath), destPath);
+    }
+
     public File findArtifact(JobIdentifier identifier, String path) throws IllegalArtifactLocationException {
         return chooser.findArtifact(identifier, path);
     }
 
+    /**
+     * Links files the server already has into an artifact which is about to be uploaded, so the agent can skip them.
+     *
+     * @param blobs lines of "sha256&lt;TAB&gt;path of the file relative to the artifact"
+     * @return paths of the files which were linked
+     */
+    public List<String> linkDeduplicatedFiles(JobIdentifier identifier, String destPath, List<String> blobs) throws IllegalArtifactLocationException, IOException {
+        List<String> linked = new ArrayList<>();
+        if (!contentStore.isEnabled()) {
+            return linked;
+        }
+        File destination = findArtifact(identifier, destPath);
+        Set<String> hashes = new HashSet<>();
+        for (String blob : blobs) {
+            String[] hashAndName = blob.split("\t", 2);
+            if (hashAndName.length != 2 || hashAndName[1].contains("..")) {
+                continue;
+            }
+            File target = new File(destination, StringUtils.removeStart(hashAndName[1], "/"));
+            if (FileUtil.isSubdirectoryOf(destination, target) && contentStore.link(hashAndName[0], target)) {
+                linked.add(hashAndName[1]);
+                hashes.add(hashAndName[0]);
+            }
+        }
+        contentStore.recordReferences(blobReferences(identifier), hashes);
+        return linked;
+    }
+
+    /**
+     * Moves large files of an uploaded artifact into the content addressed store, when de-duplication is enabled
+     */
+    public void deduplicate(JobIdentifier identifier, File artifact) {
+        if (!contentStore.isEnabled()) {
+            return;
+        }
+        try {
+            contentStore.recordReferences(blobReferences(identifier), contentStore.ingest(artifact));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to de-duplicate artifact '{}' of '{}'", artifact, identifier, e);
+        }
+    }
+
+    private File blobReferences(JobIdentifier identifier) throws IllegalArtifactLocationException {
+        return chooser.findArtifact(identifier, ArtifactLogUtil.CRUISE_OUTPUT_FOLDER + "/" + ContentAddressedArtifactStore.REFERENCES_FILE);
+    }
+
+    /**
+     * Reads the artifact manifest of a job. Returns null when the job has no manifest, callers should fall back to
+     * walking the artifacts folder.
+     */
+    public ArtifactManifest findArtifactManifest(JobIdentifier identifier) {
+        File manifestFile = chooser.artifactManifest(identifier);
+        if (!manifestFile.isFile()) {
+            return null;
+        }
+        try {
+            return ArtifactManifest.readFrom(manifestFile);
+        } catch (Exception e) {
+            LOGGER.warn("Could not read artifact manifest for '{}' at '{}'", identifier, manifestFile, e);
+            FileUtils.deleteQuietly(manifestFile);
+            return null;
+        }
+    }
+
+    /**
+     * Queues the build of the artifact manifest of a job, so that the artifacts are not walked on the caller's thread
+     */
+    public void scheduleArtifactManifest(JobIdentifier identifier) {
+        manifestExecutor.execute(() -> updateArtifactManifest(identifier));
+    }
+
+    /**
+     * Builds the artifact manifest of a job from the artifacts on disk, once all of them have been uploaded
+     */
+    public void updateArtifactManifest(JobIdentifier identifier) {
+        File manifestFile = chooser.artifactManifest(identifier);
+        String key = manifestFile.getAbsolutePath();
+        AtomicLong invalidations = manifestInvalidations.computeIfAbsent(key, k -> new AtomicLong());
+        try {
+            File root = chooser.findArtifact(identifier, "");
+            if (!root.isDirectory()) {
+                return;
+            }
+            long seen = invalidations.get();
+            ArtifactManifest.build(root).writeTo(manifestFile);
+            if (seen != invalidations.get()) {
+                // artifacts were uploaded while the manifest was being built, it may already be stale
+                FileUtils.deleteQuietly(manifestFile);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not write artifact manifest for '{}' at '{}'", identifier, manifestFile, e);
+            FileUtils.deleteQuietly(manifestFile);
+        } finally {
+            manifestInvalidations.remove(key, invalidations);
+        }
+    }
+
+    public void invalidateArtifactManifest(JobIdentifier identifier) {
+        File manifestFile = chooser.artifactManifest(identifier);
+        // only a manifest being built needs to hear about it, any other one is simply deleted
+        AtomicLong invalidations = manifestInvalidations.get(manifestFile.getAbsolutePath());
+        if (invalidations != null) {
+            invalidations.incrementAndGet();
+        }
+        deleteFile(manifestFile);
+    }
+
     @Override
     public String findArtifactRoot(JobIdentifier identifier) throws IllegalArtifactLocationException {
         JobIdentifier id = jobResolverService.actualJobIdentifier(identifier);
@@ -191,6 +323,7 @@ public class ArtifactsService implements ArtifactUrlReader {
                 }
                 didDelete &= deleteFile(artifact);
             }
+            contentStore.releaseReferences(new File(new File(jobRoot, ArtifactLogUtil.CRUISE_OUTPUT_FOLDER), ContentAddressedArtifactStore.REFERENCES_FILE));
         }
         return didDelete;
     }
@@ -28,9 +28,11 @@ import com.thoughtworks.go.server.domain.Username;
 import com.thoughtworks.go.server.messaging.EmailMessageDrafter;
 import com.thoughtworks.go.server.messaging.ServerBackupQueue;
 import com.thoughtworks.go.server.messaging.StartServerBackupMessage;
+import com.thoughtworks.go.server.persistence.PipelineRunArchive;
 import com.thoughtworks.go.server.persistence.ServerBackupRepository;
 import com.thoughtworks.go.server.service.backup.BackupStatusUpdater;
 import com.thoughtworks.go.server.service.backup.BackupUpdateListener;
+import com.thoughtworks.go.server.service.backup.IncrementalBackup;
 import com.thoughtworks.go.server.web.BackupStatusProvider;
 import com.thoughtworks.go.service.ConfigRepository;
 import com.thoughtworks.go.util.SystemEnvironment;
@@ -88,6 +90,7 @@ public class BackupService implements BackupStatusProvider {
     private static final String WRAPPER_CONFIG_BACKUP_ZIP = "wrapper-config-dir.zip";
 
     private static final String CONFIG_REPOSITORY_BACKUP_ZIP = "config-repo.zip";
+    private static final String PIPELINE_RUN_ARCHIVE_BACKUP_ZIP = "pipeline-run-archive.zip";
     private static final String VERSION_BACKUP_FILE = "version.txt";
 
     private static final Object BACKUP_MUTEX = new Object();
@@ -207,6 +210,12 @@ public class BackupService implements BackupStatusProvider {
             @Override
             public void run() throws IOException {
                 File configRepoDir = systemEnvironment.getConfigRepoDir();
+                if (systemEnvironment.isIncrementalBackupEnabled()) {
+                    IncrementalBackup incrementalBackup = new IncrementalBackup(new File(backupLocation(), IncrementalBackup.CHUNKS_FOLDER), Runtime.getRuntime().availableProcessors());
+                    incrementalBackup.backup(configRepoDir, new File(destDir, IncrementalBackup.MANIFEST_FILE));
+                    incrementalBackup.prune(incrementalBackupManifests());
+                    return;
+                }
                 try (ZipOutputStream configRepoZipStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(new File(destDir, CONFIG_REPOSITORY_BACKUP_ZIP))))) {
                     new DirectoryStructureWalker(configRepoDir.getAbsolutePath(), configRepoZipStream).walk();
                 }
@@ -214,6 +223,20 @@ public class BackupService implements BackupStatusProvider {
         });
     }
 
+    private List<File> incrementalBackupManifests() {
+        List<File> manifests = new ArrayList<>();
+        File[] backups = new File(backupLocation()).listFiles(File::isDirectory);
+        if (backups != null) {
+            for (File backup : backups) {
+                File manifest = new File(backup, IncrementalBackup.MANIFEST_FILE);
+                if (manifest.isFile()) {
+                    manifests.add(manifest);
+                }
+            }
+        }
+        return manifests;
+    }
+
     private void notifyUpdateToListeners(List<BackupUpdateListener> listeners, BackupProgressStatus status) {
         LOGGER.debug(status.getMessage());
         listeners.forEach(backupUpdateListener -> backupUpdateListener.updateStep(status));
@@ -324,9 +347,21 @@ public class BackupService implements BackupStatusProvider {
         }
     }
 
-    private void backupDb(File backupDir, List<BackupUpdateListener> backupUpdateListener) {
+    private void backupDb(File backupDir, List<BackupUpdateListener> backupUpdateListener) throws IOException {
         notifyUpdateToListeners(backupUpdateListener, BackupProgressStatus.BACKUP_DATABASE);
         databaseStrategy.backup(backupDir);
+        // after the database, so the archive has every run whose state transitions the database backup is missing
+        backupPipelineRunArchive(backupDir);
+    }
+
+    private void backupPipelineRunArchive(File backupDir) throws IOException {
+        File archiveDir = new File(systemEnvironment.getDbFolder(), PipelineRunArchive.ARCHIVE_FOLDER);
+        if (!archiveDir.isDirectory()) {
+            return;
+        }
+        try (ZipOutputStream archiveZip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(new File(backupDir, PIPELINE_RUN_ARCHIVE_BACKUP_ZIP))))) {
+            PipelineRunArchive.backup(archiveDir, archiveZip);
+        }
     }
 
     public String backupLocation() {
@@ -220,17 +220,21 @@ public class BuildAssignmentService implements ConfigChangedListener {
     }
 
     private void reloadJobPlans() {
+        List<JobPlan> old;
+        List<JobPlan> newPlan;
         synchronized (this) {
             if (jobPlans == null) {
                 jobPlans = jobInstanceService.orderedScheduledBuilds();
-                elasticAgentPluginService.createAgentsFor(jobPlans, new ArrayList<>());
+                old = new ArrayList<>(jobPlans);
+                newPlan = new ArrayList<>();
             } else {
-                List<JobPlan> old = jobPlans;
-                List<JobPlan> newPlan = jobInstanceService.orderedScheduledBuilds();
-                jobPlans = newPlan;
-                elasticAgentPluginService.createAgentsFor(old, newPlan);
+                old = jobPlans;
+                jobPlans = jobInstanceService.orderedScheduledBuilds();
+                newPlan = new ArrayList<>(jobPlans);
             }
         }
+//      elastic agent creation talks to plugins, keep it out of the assignment lock so that agents can pick up work meanwhile
+        elasticAgentPluginService.createAgentsFor(old, newPlan);
     }
 
     @Override
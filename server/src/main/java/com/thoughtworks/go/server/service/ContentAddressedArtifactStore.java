@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.util.GoConstants;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * @understands keeping a single copy of large artifact files, by their sha256, under the artifacts directory.
+ * Job artifacts are hard links to the blobs in the store, so the link count of a blob is its reference count: a blob
+ * whose only remaining link is the store itself is not used by any job and can be deleted. Blobs are copy on write:
+ * whatever writes to an artifact file must replace it, or {@link #detach} it before appending to it.
+ */
+@Component
+public class ContentAddressedArtifactStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentAddressedArtifactStore.class);
+    public static final String STORE_FOLDER = "cas";
+    public static final String REFERENCES_FILE = ".blob-references";
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private final ArtifactsDirHolder artifactsDirHolder;
+    private final boolean enabled;
+
+    @Autowired
+    public ContentAddressedArtifactStore(ArtifactsDirHolder artifactsDirHolder, SystemEnvironment systemEnvironment) {
+        this.artifactsDirHolder = artifactsDirHolder;
+        this.enabled = systemEnvironment.isArtifactsDedupEnabled() && FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+        if (systemEnvironment.isArtifactsDedupEnabled() && !enabled) {
+            LOGGER.warn("Artifact de-duplication is enabled, but the file system does not support hard links. Artifacts will not be de-duplicated.");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Links a blob of the store to the given path, if the store has it
+     *
+     * @return true if the target is now a link to the blob
+     */
+    public boolean link(String sha256, File target) throws IOException {
+        if (!enabled || !SHA256.matcher(sha256).matches() || target.exists()) {
+            return false;
+        }
+        Path blob = blob(sha256);
+        if (!Files.isRegularFile(blob)) {
+            return false;
+        }
+        FileUtils.forceMkdir(target.getParentFile());
+        try {
+            Files.createLink(target.toPath(), blob);
+            return true;
+        } catch (NoSuchFileException e) {
+            // blob was released since it was looked up, the agent will upload the file instead
+            return false;
+        }
+    }
+
+    /**
+     * Moves large files under the given path into the store. A file whose content is already in the store is replaced
+     * with a link to the existing blob, otherwise the file becomes the blob.
+     *
+     * @return the hashes of the blobs the given path now refers to
+     */
+    public List<String> ingest(File fileOrFolder) throws IOException {
+        if (!enabled || !fileOrFolder.exists()) {
+            return Collections.emptyList();
+        }
+        List<Path> candidates;
+        try (Stream<Path> paths = Files.walk(fileOrFolder.toPath())) {
+            candidates = paths.filter(Files::isRegularFile).collect(toList());
+        }
+        List<String> hashes = new ArrayList<>();
+        for (Path candidate : candidates) {
+            if (Files.size(candidate) < GoConstants.ARTIFACT_DEDUP_MIN_SIZE || linkCount(candidate) > 1) {
+                continue;
+            }
+            String sha256;
+            try (InputStream in = new FileInputStream(candidate.toFile())) {
+                sha256 = DigestUtils.sha256Hex(in);
+            }
+            adopt(candidate, sha256);
+            hashes.add(sha256);
+        }
+        return hashes;
+    }
+
+    void adopt(Path file, String sha256) throws IOException {
+        Path blob = blob(sha256);
+        Files.createDirectories(blob.getParent());
+        if (!Files.exists(blob)) {
+            try {
+                Files.createLink(blob, file);
+                return;
+            } catch (FileAlreadyExistsException e) {
+                // same content stored concurrently, fall through and share that blob instead
+            }
+        }
+        Path temp = file.resolveSibling("." + file.getFileName() + ".link");
+        Files.deleteIfExists(temp);
+        try {
+            Files.createLink(temp, blob);
+        } catch (NoSuchFileException e) {
+            Files.createLink(blob, file);
+            return;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Remembers which blobs a job refers to, so that they can be released when the job's artifacts are purged
+     */
+    public void recordReferences(File referencesFile, Collection<String> hashes) throws IOException {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        synchronized (referencesFile.getAbsolutePath().intern()) {
+            FileUtils.writeLines(referencesFile, UTF_8.name(), hashes, true);
+        }
+    }
+
+    /**
+     * Deletes the blobs recorded in the references file which are no longer linked to from any job. This must be called
+     * after the artifacts of the job have been deleted.
+     */
+    public void releaseReferences(File referencesFile) {
+        if (!referencesFile.isFile()) {
+            return;
+        }
+        try {
+            for (String sha256 : new HashSet<>(FileUtils.readLines(referencesFile, UTF_8))) {
+                release(sha256.trim());
+            }
+            FileUtils.deleteQuietly(referencesFile);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to release de-duplicated artifacts recorded in '{}'", referencesFile, e);
+        }
+    }
+
+    void release(String sha256) throws IOException {
+        if (!SHA256.matcher(sha256).matches()) {
+            return;
+        }
+        Path blob = blob(sha256);
+        // a job linking to the blob while it is deleted keeps the content, the store just forgets about it
+        if (Files.exists(blob) && linkCount(blob) <= 1) {
+            Files.deleteIfExists(blob);
+        }
+    }
+
+    /**
+     * Gives a file which is linked from elsewhere a copy of its content of its own, so that appending to it does not
+     * change the blob or the artifacts of other jobs
+     */
+    public static void detach(File file) throws IOException {
+        Path path = file.toPath();
+        if (!Files.isRegularFile(path) || !FileSystems.getDefault().supportedFileAttributeViews().contains("unix") || linkCount(path) <= 1) {
+            return;
+        }
+        Path copy = path.resolveSibling("." + path.getFileName() + ".copy");
+        Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        Files.move(copy, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path blob(String sha256) {
+        return new File(artifactsDirHolder.getArtifactsDir(), STORE_FOLDER).toPath().resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private static int linkCount(Path path) throws IOException {
+        return (Integer) Files.getAttribute(path, "unix:nlink");
+    }
+}
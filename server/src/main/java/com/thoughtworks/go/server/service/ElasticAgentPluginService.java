@@ -167,29 +167,34 @@ public class ElasticAgentPluginService {
     }
 
     public void createAgentsFor(List<JobPlan> old, List<JobPlan> newPlan) {
-        Collection<JobPlan> starvingJobs = new ArrayList<>();
+        long now = timeProvider.currentTimeMillis();
+        Set<JobPlan> plansThatRequireElasticAgent = new LinkedHashSet<>();
+        // claiming the job in the map is what keeps concurrent callers from asking for an agent for the same job twice
+        Sets.difference(new LinkedHashSet<>(newPlan), new HashSet<>(old)).stream()
+                .filter(isElasticAgent())
+                .filter(jobPlan -> jobCreationTimeMap.putIfAbsent(jobPlan.getJobId(), now) == null)
+                .forEach(plansThatRequireElasticAgent::add);
+
         for (JobPlan jobPlan : newPlan) {
-            if (jobPlan.requiresElasticAgent()) {
-                if (!jobCreationTimeMap.containsKey(jobPlan.getJobId())) {
-                    continue;
-                }
-                long lastTryTime = jobCreationTimeMap.get(jobPlan.getJobId());
-                if ((timeProvider.currentTimeMillis() - lastTryTime) >= goConfigService.elasticJobStarvationThreshold()) {
-                    starvingJobs.add(jobPlan);
+            if (jobPlan.requiresElasticAgent() && !plansThatRequireElasticAgent.contains(jobPlan)) {
+                Long lastTryTime = jobCreationTimeMap.get(jobPlan.getJobId());
+                if (lastTryTime != null && (now - lastTryTime) >= goConfigService.elasticJobStarvationThreshold()
+                        && jobCreationTimeMap.replace(jobPlan.getJobId(), lastTryTime, now)) {
+                    plansThatRequireElasticAgent.add(jobPlan);
                 }
             }
         }
 
-        ArrayList<JobPlan> jobsThatRequireAgent = new ArrayList<>();
-        jobsThatRequireAgent.addAll(Sets.difference(new HashSet<>(newPlan), new HashSet<>(old)));
-        jobsThatRequireAgent.addAll(starvingJobs);
+        if (plansThatRequireElasticAgent.isEmpty()) {
+            return;
+        }
 
-        List<JobPlan> plansThatRequireElasticAgent = jobsThatRequireAgent.stream().filter(isElasticAgent()).collect(Collectors.toList());
 //      messageTimeToLive is lesser than the starvation threshold to ensure there are no duplicate create agent message
         long messageTimeToLive = goConfigService.elasticJobStarvationThreshold() - 10000;
+        String autoRegisterKey = goConfigService.serverConfig().getAgentAutoRegisterKey();
+        Map<String, String> environmentForPipeline = new HashMap<>();
 
         for (JobPlan plan : plansThatRequireElasticAgent) {
-            jobCreationTimeMap.put(plan.getJobId(), timeProvider.currentTimeMillis());
             ElasticProfile elasticProfile = plan.getElasticProfile();
             ClusterProfile clusterProfile = plan.getClusterProfile();
             if (clusterProfile == null) {
@@ -200,8 +205,8 @@ public class ElasticAgentPluginService {
                 logToJobConsole(plan.getIdentifier(), cancellationMessage);
                 scheduleService.cancelJob(plan.getIdentifier());
             } else if (elasticAgentPluginRegistry.has(clusterProfile.getPluginId())) {
-                String environment = environmentConfigService.envForPipeline(plan.getPipelineName());
-                createAgentQueue.post(new CreateAgentMessage(goConfigService.serverConfig().getAgentAutoRegisterKey(), environment, elasticProfile, clusterProfile, plan.getIdentifier()), messageTimeToLive);
+                String environment = environmentForPipeline.computeIfAbsent(plan.getPipelineName(), environmentConfigService::envForPipeline);
+                createAgentQueue.post(new CreateAgentMessage(autoRegisterKey, environment, elasticProfile, clusterProfile, plan.getIdentifier()), messageTimeToLive);
                 serverHealthService.removeByScope(HealthStateScope.forJob(plan.getIdentifier().getPipelineName(), plan.getIdentifier().getStageName(), plan.getIdentifier().getBuildName()));
             } else {
                 String jobConfigIdentifier = plan.getIdentifier().jobConfigIdentifier().toString();
@@ -150,6 +150,20 @@ public class JobInstanceService implements JobPlanLoader, ConfigChangedListener
         });
     }
 
+    /**
+     * Like {@link #updateStateAndResult(JobInstance)}, for a job which is only moving forward while it is active on
+     * an agent. Nothing is written, and nobody notified, if the job was cancelled, completed or got further meanwhile.
+     */
+    public boolean advanceState(final JobInstance job) {
+        return (Boolean) transactionTemplate.execute(status -> {
+            if (!jobInstanceDao.advanceState(job)) {
+                return false;
+            }
+            notifyJobStatusChangeListeners(job);
+            return true;
+        });
+    }
+
     private void notifyJobStatusChangeListeners(final JobInstance job) {
         transactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
             @Override
@@ -289,6 +303,22 @@ public class JobInstanceService implements JobPlanLoader, ConfigChangedListener
         return new JobInstancesModel(new JobInstances(jobInstances), pagination);
     }
 
+    public JobInstances completedJobsOnAgentViaCursor(String uuid, long afterCursor, long beforeCursor, int pageSize) {
+        List<JobInstance> jobInstances;
+        if (validateCursor(afterCursor, "after")) {
+            jobInstances = jobInstanceDao.completedJobsOnAgentViaCursor(uuid, FeedModifier.After, afterCursor, pageSize);
+        } else if (validateCursor(beforeCursor, "before")) {
+            jobInstances = jobInstanceDao.completedJobsOnAgentViaCursor(uuid, FeedModifier.Before, beforeCursor, pageSize);
+        } else {
+            jobInstances = jobInstanceDao.completedJobsOnAgentViaCursor(uuid, FeedModifier.Latest, 0, pageSize);
+        }
+        CruiseConfig cruiseConfig = goConfigService.getCurrentConfig();
+        for (JobInstance jobInstance : jobInstances) {
+            jobInstance.setPipelineStillConfigured(cruiseConfig.hasPipelineNamed(new CaseInsensitiveString(jobInstance.getPipelineName())));
+        }
+        return new JobInstances(jobInstances);
+    }
+
     @Override
     public void onConfigChange(CruiseConfig newCruiseConfig) {
         for (ServerHealthState state : serverHealthService.logs()) {
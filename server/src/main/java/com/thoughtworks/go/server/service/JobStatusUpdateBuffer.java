@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.JobIdentifier;
+import com.thoughtworks.go.domain.JobInstance;
+import com.thoughtworks.go.domain.JobResult;
+import com.thoughtworks.go.domain.JobState;
+import com.thoughtworks.go.server.dao.StageDao;
+import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
+import com.thoughtworks.go.server.transaction.TransactionTemplate;
+import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.TimeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+
+import java.util.*;
+
+/**
+ * @understands writing the Preparing, Building and Completing reports of agents behind their backs, many jobs to a
+ * transaction.
+ * <p/>
+ * Reports wait here until the next flush, which writes them with the time they were reported at. All the reports
+ * a job made since the previous flush are one update of the job, and one notification of the job status listeners
+ * after the commit. A job is only ever moved forward, so a report which lost the race against a cancellation or
+ * the completion of the job is dropped. Anything else that changes the state of a job in the order it was reported
+ * in must {@link #flush(long)} the job first.
+ */
+@Component
+public class JobStatusUpdateBuffer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobStatusUpdateBuffer.class);
+
+    private final JobInstanceService jobInstanceService;
+    private final StageDao stageDao;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionSynchronizationManager synchronizationManager;
+    private final TimeProvider timeProvider;
+    private final boolean enabled;
+
+    private final Map<Long, PendingUpdates> pending = new LinkedHashMap<>();
+    private final Set<Long> inFlight = new HashSet<>();
+
+    @Autowired
+    public JobStatusUpdateBuffer(JobInstanceService jobInstanceService, StageDao stageDao, TransactionTemplate transactionTemplate,
+                                 TransactionSynchronizationManager synchronizationManager, TimeProvider timeProvider, SystemEnvironment systemEnvironment) {
+        this.jobInstanceService = jobInstanceService;
+        this.stageDao = stageDao;
+        this.transactionTemplate = transactionTemplate;
+        this.synchronizationManager = synchronizationManager;
+        this.timeProvider = timeProvider;
+        this.enabled = systemEnvironment.isJobStatusBatchingEnabled();
+    }
+
+    /**
+     * @return true if the report will be written by a later flush, false if it has to be written right away
+     */
+    public boolean offer(JobIdentifier jobIdentifier, JobState state) {
+        if (!enabled || !state.isBuilding()) {
+            return false;
+        }
+        synchronized (pending) {
+            pending.computeIfAbsent(jobIdentifier.getBuildId(), id -> new PendingUpdates(jobIdentifier)).add(state, timeProvider.currentTime());
+        }
+        return true;
+    }
+
+    //NOTE: This method is called on a thread from Spring
+    public void onTimer() {
+        List<PendingUpdates> updates;
+        synchronized (pending) {
+            updates = new ArrayList<>(pending.values());
+            pending.clear();
+            for (PendingUpdates update : updates) {
+                inFlight.add(update.jobIdentifier.getBuildId());
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        try {
+            write(updates);
+        } finally {
+            synchronized (pending) {
+                for (PendingUpdates update : updates) {
+                    inFlight.remove(update.jobIdentifier.getBuildId());
+                }
+                pending.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes what the job reported so far, waiting for a flush which is already writing the job to finish
+     */
+    public void flush(long jobId) {
+        PendingUpdates updates;
+        synchronized (pending) {
+            while (inFlight.contains(jobId)) {
+                try {
+                    pending.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            updates = pending.remove(jobId);
+        }
+        if (updates != null) {
+            write(Collections.singletonList(updates));
+        }
+    }
+
+    private void write(List<PendingUpdates> updates) {
+        List<JobInstance> jobs = load(updates);
+        if (jobs.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.execute(status -> {
+                jobs.forEach(this::advance);
+                return null;
+            });
+        } catch (Exception e) {
+            LOGGER.warn("[Job Status] Failed to update the status of {} jobs together, updating them one by one", jobs.size(), e);
+            for (PendingUpdates update : updates) {
+                try {
+                    // loaded again, the rolled back transaction left ids on the transitions it inserted
+                    transactionTemplate.execute(status -> {
+                        load(Collections.singletonList(update)).forEach(this::advance);
+                        return null;
+                    });
+                } catch (Exception jobException) {
+                    LOGGER.error("[Job Status] Failed to update the status of job {}", update.jobIdentifier, jobException);
+                }
+            }
+        }
+    }
+
+    private List<JobInstance> load(List<PendingUpdates> updates) {
+        List<JobInstance> jobs = new ArrayList<>();
+        for (PendingUpdates update : updates) {
+            try {
+                JobInstance job = jobInstanceService.buildByIdWithTransitions(update.jobIdentifier.getBuildId());
+                if (update.applyTo(job)) {
+                    jobs.add(job);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("[Job Status] Could not load job {} to update its status", update.jobIdentifier, e);
+            }
+        }
+        return jobs;
+    }
+
+    private void advance(JobInstance job) {
+        if (jobInstanceService.advanceState(job)) {
+            JobIdentifier identifier = job.getIdentifier();
+            synchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    stageDao.clearCachedAllStages(identifier.getPipelineName(), identifier.getPipelineCounter(), identifier.getStageName());
+                }
+            });
+        }
+    }
+
+    int pendingJobs() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private static class PendingUpdates {
+        private final JobIdentifier jobIdentifier;
+        private final List<JobState> states = new ArrayList<>();
+        private final List<Date> times = new ArrayList<>();
+
+        PendingUpdates(JobIdentifier jobIdentifier) {
+            this.jobIdentifier = jobIdentifier;
+        }
+
+        void add(JobState state, Date time) {
+            // agents repeat their reports, only a change of state is a transition
+            if (states.isEmpty() || states.get(states.size() - 1) != state) {
+                states.add(state);
+                times.add(time);
+            }
+        }
+
+        boolean applyTo(JobInstance job) {
+            if (job.isNull() || job.getState() == JobState.Rescheduled || job.getResult() == JobResult.Cancelled || job.isCompleted()) {
+                return false;
+            }
+            for (int i = 0; i < states.size(); i++) {
+                job.changeState(states.get(i), times.get(i));
+            }
+            //TODO: #2318 JobInstance should contain identifier after it's loaded from database
+            job.setIdentifier(jobIdentifier);
+            return true;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.thoughtworks.go.server.service;
 
 import com.thoughtworks.go.config.SecretParamAware;
+import com.thoughtworks.go.config.exceptions.BadRequestException;
 import com.thoughtworks.go.config.exceptions.EntityType;
 import com.thoughtworks.go.config.materials.PackageMaterial;
 import com.thoughtworks.go.config.materials.PluggableSCMMaterial;
@@ -31,6 +32,7 @@ import com.thoughtworks.go.domain.MaterialInstance;
 import com.thoughtworks.go.domain.materials.*;
 import com.thoughtworks.go.plugin.access.packagematerial.PackageRepositoryExtension;
 import com.thoughtworks.go.plugin.access.scm.SCMExtension;
+import com.thoughtworks.go.server.dao.FeedModifier;
 import com.thoughtworks.go.server.domain.Username;
 import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.service.materials.*;
@@ -48,6 +50,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static com.thoughtworks.go.server.service.ServiceConstants.History.BAD_CURSOR_MSG;
+import static java.lang.String.format;
+
 /**
  * @understands interactions between material-config, repository and modifications
  */
@@ -151,6 +156,25 @@ public class MaterialService {
         return materialRepository.getModificationsFor(materialInstance, pagination);
     }
 
+    public Modifications getModificationsFor(MaterialConfig materialConfig, long afterCursor, long beforeCursor, int pageSize) {
+        MaterialInstance materialInstance = materialRepository.findMaterialInstance(materialConfig);
+        if (validateCursor(afterCursor, "after")) {
+            return materialRepository.getModificationsFor(materialInstance, FeedModifier.After, afterCursor, pageSize);
+        }
+        if (validateCursor(beforeCursor, "before")) {
+            return materialRepository.getModificationsFor(materialInstance, FeedModifier.Before, beforeCursor, pageSize);
+        }
+        return materialRepository.getModificationsFor(materialInstance, FeedModifier.Latest, 0, pageSize);
+    }
+
+    private boolean validateCursor(long cursor, String key) {
+        if (cursor == 0) return false;
+        if (cursor < 0) {
+            throw new BadRequestException(format(BAD_CURSOR_MSG, key));
+        }
+        return true;
+    }
+
     private void resolveSecretParams(Material material) {
         if ((material instanceof SecretParamAware) && ((SecretParamAware) material).hasSecretParams()) {
             this.secretParamResolver.resolve((ScmMaterial) material);
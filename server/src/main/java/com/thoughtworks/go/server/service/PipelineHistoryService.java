@@ -30,6 +30,7 @@ import com.thoughtworks.go.presentation.PipelineStatusModel;
 import com.thoughtworks.go.presentation.pipelinehistory.*;
 import com.thoughtworks.go.server.dao.FeedModifier;
 import com.thoughtworks.go.server.dao.PipelineDao;
+import com.thoughtworks.go.server.database.ReadReplicaDataSource;
 import com.thoughtworks.go.server.domain.PipelineTimeline;
 import com.thoughtworks.go.server.domain.Username;
 import com.thoughtworks.go.server.domain.user.DashboardFilter;
@@ -125,7 +126,7 @@ public class PipelineHistoryService {
     }
 
     public PipelineInstanceModels load(String pipelineName, Pagination pagination, String username, boolean populateCanRun) {
-        PipelineInstanceModels history = pipelineDao.loadHistory(pipelineName, pagination.getPageSize(), pagination.getOffset());
+        PipelineInstanceModels history = ReadReplicaDataSource.read(() -> pipelineDao.loadHistory(pipelineName, pagination.getPageSize(), pagination.getOffset()));
 
         PipelineConfig pipelineConfig = goConfigService.pipelineConfigNamed(new CaseInsensitiveString(pipelineName));
 
@@ -151,7 +152,7 @@ public class PipelineHistoryService {
             return null;
         }
 
-        PipelineInstanceModels history = pipelineDao.loadHistory(pipelineName, pagination.getPageSize(), pagination.getOffset());
+        PipelineInstanceModels history = ReadReplicaDataSource.read(() -> pipelineDao.loadHistory(pipelineName, pagination.getPageSize(), pagination.getOffset()));
 
         return populatePipelineInstanceModels(username, history);
     }
@@ -160,11 +161,11 @@ public class PipelineHistoryService {
         checkForExistenceAndAccess(username, pipelineName);
         PipelineInstanceModels history;
         if (validateCursor(afterCursor, "after")) {
-            history = pipelineDao.loadHistory(pipelineName, FeedModifier.After, afterCursor, pageSize);
+            history = ReadReplicaDataSource.read(() -> pipelineDao.loadHistory(pipelineName, FeedModifier.After, afterCursor, pageSize));
         } else if (validateCursor(beforeCursor, "before")) {
-            history = pipelineDao.loadHistory(pipelineName, FeedModifier.Before, beforeCursor, pageSize);
+            history = ReadReplicaDataSource.read(() -> pipelineDao.loadHistory(pipelineName, FeedModifier.Before, beforeCursor, pageSize));
         } else {
-            history = pipelineDao.loadHistory(pipelineName, FeedModifier.Latest, 0, pageSize);
+            history = ReadReplicaDataSource.read(() -> pipelineDao.loadHistory(pipelineName, FeedModifier.Latest, 0, pageSize));
         }
         return populatePipelineInstanceModels(username, history);
     }
@@ -528,12 +529,12 @@ public class PipelineHistoryService {
     }
 
     public PipelineInstanceModels findMatchingPipelineInstances(String pipelineName, String pattern, int limit, Username userName, HttpLocalizedOperationResult result) {
-        pattern = escapeWildCardsAndTrim(pattern.trim());
+        String escapedPattern = escapeWildCardsAndTrim(pattern.trim());
         if (!securityService.hasViewPermissionForPipeline(userName, pipelineName)) {
             result.forbidden(LocalizedMessage.forbiddenToViewPipeline(pipelineName), HealthStateType.general(HealthStateScope.forPipeline(pipelineName)));
             return PipelineInstanceModels.createPipelineInstanceModels();
         }
-        PipelineInstanceModels models = pipelineDao.findMatchingPipelineInstances(pipelineName, pattern, limitForPipeline(pipelineName, limit));
+        PipelineInstanceModels models = ReadReplicaDataSource.read(() -> pipelineDao.findMatchingPipelineInstances(pipelineName, escapedPattern, limitForPipeline(pipelineName, limit)));
         for (PipelineInstanceModel model : models) {
             populatePlaceHolderStages(model);
             populateMaterialRevisionsOnBuildCause(model);
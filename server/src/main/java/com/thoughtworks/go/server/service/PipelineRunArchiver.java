@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.Stage;
+import com.thoughtworks.go.domain.Stages;
+import com.thoughtworks.go.presentation.pipelinehistory.PipelineInstanceModel;
+import com.thoughtworks.go.server.dao.JobInstanceDao;
+import com.thoughtworks.go.server.dao.PipelineDao;
+import com.thoughtworks.go.server.dao.StageDao;
+import com.thoughtworks.go.server.persistence.ArchivedPipelineRun;
+import com.thoughtworks.go.server.persistence.PipelineRunArchive;
+import com.thoughtworks.go.util.Clock;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @understands moving pipeline runs which completed longer ago than the configured number of days to the
+ * {@link PipelineRunArchive}.
+ * <p/>
+ * A run is archived in full, after which the intermediate state transitions of its jobs, the bulk of the rows a run
+ * leaves behind, are deleted from the database. Pipelines, stages and jobs stay, since counters, fan-in, the value
+ * stream map and material revisions all refer to them. Every query which loads the transitions of jobs
+ * reads the removed ones back from the archive. Pipelines which were still running, or had a stage rerun recently,
+ * when the archiver went past them are kept with the watermark and tried again on every pass until they are archived.
+ */
+@Component
+public class PipelineRunArchiver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineRunArchiver.class);
+    static final int BATCH_SIZE = 100;
+
+    private final PipelineDao pipelineDao;
+    private final StageDao stageDao;
+    private final JobInstanceDao jobInstanceDao;
+    private final PipelineRunArchive archive;
+    private final SystemEnvironment systemEnvironment;
+    private final Clock clock;
+
+    @Autowired
+    public PipelineRunArchiver(PipelineDao pipelineDao, StageDao stageDao, JobInstanceDao jobInstanceDao, PipelineRunArchive archive,
+                               SystemEnvironment systemEnvironment, Clock clock) {
+        this.pipelineDao = pipelineDao;
+        this.stageDao = stageDao;
+        this.jobInstanceDao = jobInstanceDao;
+        this.archive = archive;
+        this.systemEnvironment = systemEnvironment;
+        this.clock = clock;
+    }
+
+    //NOTE: This method is called on a thread from Spring
+    public synchronized void onTimer() {
+        int days = systemEnvironment.getPipelineArchiveAfterDays();
+        if (days <= 0) {
+            return;
+        }
+        Date completedBefore = new Date(clock.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+        long start = System.currentTimeMillis();
+        int archived = 0;
+        try {
+            Set<Long> skipped = new TreeSet<>(archive.skipped());
+            for (Long pipelineId : archive.skipped()) {
+                if (archive(pipelineId, completedBefore)) {
+                    skipped.remove(pipelineId);
+                    archived++;
+                }
+            }
+            if (skipped.size() != archive.skipped().size()) {
+                archive.updateWatermark(archive.watermark(), skipped);
+            }
+            List<Long> pipelineIds;
+            do {
+                pipelineIds = pipelineDao.findPipelineIdsToArchive(archive.watermark(), completedBefore, BATCH_SIZE);
+                for (Long pipelineId : pipelineIds) {
+                    if (archive(pipelineId, completedBefore)) {
+                        archived++;
+                    } else {
+                        skipped.add(pipelineId);
+                    }
+                }
+                if (!pipelineIds.isEmpty()) {
+                    archive.updateWatermark(pipelineIds.get(pipelineIds.size() - 1), skipped);
+                }
+            } while (pipelineIds.size() == BATCH_SIZE);
+        } catch (Exception e) {
+            LOGGER.warn("[Pipeline Archive] Failed to archive pipeline runs completed before {}", completedBefore, e);
+        }
+        if (archived > 0) {
+            LOGGER.info("[Pipeline Archive] Archived {} pipeline runs in {}ms", archived, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @return true once there is nothing left to archive of the pipeline, false if it has to be tried again later
+     */
+    boolean archive(long pipelineId, Date completedBefore) throws IOException {
+        PipelineInstanceModel pipeline = pipelineDao.loadHistory(pipelineId);
+        if (pipeline == null) {
+            return true;
+        }
+        Stages stages = stageDao.findAllStagesFor(pipeline.getName(), pipeline.getCounter());
+        if (stages.isEmpty()) {
+            return true;
+        }
+        // a run which is still going on, or had a stage rerun recently, is left alone until it is old enough
+        if (stages.stream().anyMatch(stage -> stage.isActive() || completedAfter(stage, completedBefore))) {
+            return false;
+        }
+        ArchivedPipelineRun run = ArchivedPipelineRun.from(pipelineId, pipeline.getName(), pipeline.getCounter(), pipeline.getLabel(), stages);
+        ArchivedPipelineRun archived = archive.find(run.getPipelineName(), run.getPipelineCounter());
+        // the run may be in the archive already, from a pass which stopped before deleting, or from before a counter reset
+        if (archived == null || !archived.covers(run)) {
+            run.addTransitionsOf(archived);
+            archive.append(run);
+            archived = archive.find(run.getPipelineName(), run.getPipelineCounter());
+        }
+        if (archived == null || !archived.covers(run)) {
+            LOGGER.warn("[Pipeline Archive] The archived copy of {}/{} does not match the database, keeping its state transitions", run.getPipelineName(), run.getPipelineCounter());
+            return false;
+        }
+        jobInstanceDao.deleteIntermediateTransitionsOfJobs(run.jobIds());
+        return true;
+    }
+
+    private static boolean completedAfter(Stage stage, Date completedBefore) {
+        return stage.getLastTransitionedTime() != null && !stage.getLastTransitionedTime().before(completedBefore);
+    }
+}
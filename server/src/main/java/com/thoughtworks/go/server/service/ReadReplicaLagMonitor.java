@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.server.database.ReadReplicaDataSource;
+import com.thoughtworks.go.serverhealth.HealthStateScope;
+import com.thoughtworks.go.serverhealth.HealthStateType;
+import com.thoughtworks.go.serverhealth.ServerHealthService;
+import com.thoughtworks.go.serverhealth.ServerHealthState;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @understands keeping reads off the read replica while it lags too far behind the primary database.
+ */
+@Component
+public class ReadReplicaLagMonitor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadReplicaLagMonitor.class);
+    public static final String READ_REPLICA_LAGGING = "Read replica is lagging behind";
+    private static final HealthStateScope SCOPE = HealthStateScope.forReadReplica();
+
+    private final DataSource dataSource;
+    private final SystemEnvironment systemEnvironment;
+    private final ServerHealthService serverHealthService;
+    private volatile long lagInMillis;
+
+    @Autowired
+    public ReadReplicaLagMonitor(@Qualifier("sqlMapDataSource") DataSource dataSource, SystemEnvironment systemEnvironment, ServerHealthService serverHealthService) {
+        this.dataSource = dataSource;
+        this.systemEnvironment = systemEnvironment;
+        this.serverHealthService = serverHealthService;
+    }
+
+    //NOTE: This method is called on a thread from Spring
+    public void onTimer() {
+        if (!(dataSource instanceof ReadReplicaDataSource)) {
+            return;
+        }
+        ReadReplicaDataSource readReplica = (ReadReplicaDataSource) dataSource;
+        long maxLagInMillis = TimeUnit.SECONDS.toMillis(systemEnvironment.getDatabaseReplicaMaxLagSeconds());
+        String problem;
+        try {
+            lagInMillis = readReplica.lagInMillis();
+            problem = lagInMillis <= maxLagInMillis ? null : String.format("The read replica is %s seconds behind the primary database.", TimeUnit.MILLISECONDS.toSeconds(lagInMillis));
+        } catch (Exception e) {
+            LOGGER.warn("[Read Replica] Could not work out how far the read replica is behind the primary database", e);
+            lagInMillis = Long.MAX_VALUE;
+            problem = "The read replica could not be reached: " + e.getMessage();
+        }
+        boolean usable = problem == null;
+        if (usable != readReplica.isReplicaUsable()) {
+            LOGGER.info("[Read Replica] {} reads to the read replica, it is {}ms behind the primary database", usable ? "Resuming" : "Stopping", lagInMillis);
+        }
+        readReplica.setReplicaUsable(usable);
+        if (usable) {
+            serverHealthService.removeByScope(SCOPE);
+        } else {
+            serverHealthService.update(ServerHealthState.warning(READ_REPLICA_LAGGING, problem + " Reads are sent to the primary until it catches up.", HealthStateType.general(SCOPE)));
+        }
+    }
+
+    public long lagInMillis() {
+        return lagInMillis;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.thoughtworks.go.config.SecretConfig;
+import com.thoughtworks.go.plugin.domain.secrets.Secret;
+import com.thoughtworks.go.security.CryptoException;
+import com.thoughtworks.go.security.GoCipher;
+import com.thoughtworks.go.server.cache.CacheKeyGenerator;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short lived, in-memory cache of secret values resolved by secrets plugins. Values are kept encrypted and the cache
+ * is disabled unless {@link SystemEnvironment#GO_SERVER_SECRETS_CACHE_TTL_IN_SECONDS} is set to a positive value.
+ */
+@Component
+public class ResolvedSecretsCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedSecretsCache.class);
+
+    private final Cache<String, String> resolvedSecrets;
+    private final GoCipher goCipher;
+    private final CacheKeyGenerator cacheKeyGenerator;
+    private final boolean enabled;
+
+    ResolvedSecretsCache(SystemEnvironment systemEnvironment, GoCipher goCipher, Ticker ticker) {
+        int ttlInSeconds = systemEnvironment.getSecretsCacheTtlInSeconds();
+        this.enabled = ttlInSeconds > 0;
+        this.goCipher = goCipher;
+        this.cacheKeyGenerator = new CacheKeyGenerator(getClass());
+        this.resolvedSecrets = CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(Math.max(ttlInSeconds, 0), TimeUnit.SECONDS)
+                .maximumSize(systemEnvironment.getSecretsCacheMaxEntries())
+                .build();
+    }
+
+    @Autowired
+    public ResolvedSecretsCache(SystemEnvironment systemEnvironment) {
+        this(systemEnvironment, new GoCipher(systemEnvironment), Ticker.systemTicker());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return secrets found in cache for the given keys, keys which are not cached are absent from the returned list
+     */
+    public List<Secret> getIfPresent(SecretConfig secretConfig, Set<String> keys) {
+        if (!enabled) {
+            return Collections.emptyList();
+        }
+
+        List<Secret> secrets = new ArrayList<>();
+        for (String key : keys) {
+            String encryptedValue = resolvedSecrets.getIfPresent(cacheKey(secretConfig, key));
+            if (encryptedValue == null) {
+                continue;
+            }
+            try {
+                secrets.add(new Secret(key, goCipher.decrypt(encryptedValue)));
+            } catch (CryptoException e) {
+                LOGGER.warn("Could not decrypt cached value of secret '{}' from secret config '{}', it will be looked up again.", key, secretConfig.getId());
+                resolvedSecrets.invalidate(cacheKey(secretConfig, key));
+            }
+        }
+        return secrets;
+    }
+
+    public void put(SecretConfig secretConfig, List<Secret> secrets) {
+        if (!enabled) {
+            return;
+        }
+
+        for (Secret secret : secrets) {
+            try {
+                resolvedSecrets.put(cacheKey(secretConfig, secret.getKey()), goCipher.encrypt(secret.getValue()));
+            } catch (CryptoException e) {
+                LOGGER.warn("Could not encrypt value of secret '{}' from secret config '{}', it will not be cached.", secret.getKey(), secretConfig.getId());
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        resolvedSecrets.invalidateAll();
+    }
+
+    // the config hash makes sure that any change to the secret config (plugin id, properties, rules) misses the cache
+    private String cacheKey(SecretConfig secretConfig, String key) {
+        return cacheKeyGenerator.generate("resolvedSecret", secretConfig.getId(), secretConfig.hashCode(), key);
+    }
+}
@@ -56,6 +56,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static com.thoughtworks.go.util.GoConstants.DEFAULT_APPROVED_BY;
@@ -91,6 +92,8 @@ public class ScheduleService {
     private SchedulingPerformanceLogger schedulingPerformanceLogger;
     private ElasticProfileService elasticProfileService;
     private ClusterProfilesService clusterProfilesService;
+    private JobStatusUpdateBuffer jobStatusUpdateBuffer;
+    private StageStatusAggregator stageStatusAggregator;
 
     protected ScheduleService() {
     }
@@ -120,7 +123,9 @@ public class ScheduleService {
                            InstanceFactory instanceFactory,
                            SchedulingPerformanceLogger schedulingPerformanceLogger,
                            ElasticProfileService elasticProfileService,
-                           ClusterProfilesService clusterProfilesService
+                           ClusterProfilesService clusterProfilesService,
+                           JobStatusUpdateBuffer jobStatusUpdateBuffer,
+                           StageStatusAggregator stageStatusAggregator
     ) {
         this.goConfigService = goConfigService;
         this.pipelineService = pipelineService;
@@ -147,6 +152,8 @@ public class ScheduleService {
         this.schedulingPerformanceLogger = schedulingPerformanceLogger;
         this.elasticProfileService = elasticProfileService;
         this.clusterProfilesService = clusterProfilesService;
+        this.jobStatusUpdateBuffer = jobStatusUpdateBuffer;
+        this.stageStatusAggregator = stageStatusAggregator;
     }
 
     //Note: This is called from a Spring timer
@@ -538,11 +545,16 @@ public class ScheduleService {
     // synchronized for updating job
 
     public void updateJobStatus(final JobIdentifier jobIdentifier, final JobState jobState) throws Exception {
+        if (jobStatusUpdateBuffer.offer(jobIdentifier, jobState)) {
+            return;
+        }
         // have to synchronize at stage-level because cancellation happens at stage-level
         final String stageMutex = mutexForStageInstance(jobIdentifier);
         synchronized (stageMutex) {
             synchronized (mutexForJob(jobIdentifier)) {
+                jobStatusUpdateBuffer.flush(jobIdentifier.getBuildId());
                 final JobInstance job = jobInstanceService.buildByIdWithTransitions(jobIdentifier.getBuildId());
+                final AtomicBoolean stageChanged = new AtomicBoolean();
 
                 transactionTemplate.executeWithExceptionHandling(new com.thoughtworks.go.server.transaction.TransactionCallbackWithoutResult() {
                     @Override
@@ -563,9 +575,14 @@ public class ScheduleService {
                             }
                         });
 
-                        if (job.isCompleted()) {
+                        // the stage is only loaded, with all its jobs, when the job takes it to another state
+                        if (job.isCompleted() && stageStatusAggregator.changesStageState(job)) {
                             Stage stage = stageService.stageById(job.getStageId());
                             stageService.updateResult(stage);
+                            stageStatusAggregator.track(stage);
+                            stageChanged.set(true);
+                        } else if (job.isCompleted()) {
+                            stageService.jobCompletedWithoutChangingStage(job, stageStatusAggregator.pipelineIdOf(job.getStageId()));
                         }
                     }
                 });
@@ -575,7 +592,7 @@ public class ScheduleService {
                 transactionTemplate.executeWithExceptionHandling(new com.thoughtworks.go.server.transaction.TransactionCallbackWithoutResult() {
                     @Override
                     public void doInTransactionWithoutResult(TransactionStatus status) throws Exception {
-                        if (job.isCompleted()) {
+                        if (stageChanged.get()) {
                             Stage stage = stageService.stageById(job.getStageId());
                             automaticallyTriggerRelevantStagesFollowingCompletionOf(stage);
                         }
@@ -692,6 +709,7 @@ public class ScheduleService {
         // have to synchronize at stage-level because cancellation happens at stage-level
         synchronized (mutexForStageInstance(jobIdentifier)) {
             synchronized (mutexForJob(jobIdentifier)) {
+                jobStatusUpdateBuffer.flush(jobIdentifier.getBuildId());
                 JobInstance jobInstance = jobInstanceService.buildByIdWithTransitions(jobIdentifier.getBuildId());
                 if (jobInstance.isNull() || jobInstance.getResult() == JobResult.Cancelled || jobInstance.getState() == JobState.Rescheduled) {
                     return;
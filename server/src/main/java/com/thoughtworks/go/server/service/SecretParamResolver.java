@@ -25,8 +25,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -40,12 +39,14 @@ public class SecretParamResolver {
     private SecretsExtension secretsExtension;
     private GoConfigService goConfigService;
     private RulesService rulesService;
+    private ResolvedSecretsCache resolvedSecretsCache;
 
     @Autowired
-    public SecretParamResolver(SecretsExtension secretsExtension, GoConfigService goConfigService, RulesService rulesService) {
+    public SecretParamResolver(SecretsExtension secretsExtension, GoConfigService goConfigService, RulesService rulesService, ResolvedSecretsCache resolvedSecretsCache) {
         this.secretsExtension = secretsExtension;
         this.goConfigService = goConfigService;
         this.rulesService = rulesService;
+        this.resolvedSecretsCache = resolvedSecretsCache;
     }
 
     public void resolve(ScmMaterial scmMaterial) {
@@ -84,8 +85,16 @@ public class SecretParamResolver {
             Map<String, List<SecretParam>> secretParamMap = secretParamsToResolve.stream().collect(groupingBy(SecretParam::getKey, Collectors.toList()));
             final SecretConfig secretConfig = goConfigService.cruiseConfig().getSecretConfigs().find(secretConfigId);
 
-            LOGGER.debug("Resolving secret params '{}' using secret config '{}'", secretParamMap.keySet(), secretConfig.getId());
-            List<Secret> resolvedSecrets = secretsExtension.lookupSecrets(secretConfig.getPluginId(), secretConfig, secretParamMap.keySet());
+            List<Secret> resolvedSecrets = new ArrayList<>(resolvedSecretsCache.getIfPresent(secretConfig, secretParamMap.keySet()));
+            Set<String> keysToLookup = new HashSet<>(secretParamMap.keySet());
+            resolvedSecrets.forEach(secret -> keysToLookup.remove(secret.getKey()));
+
+            if (!keysToLookup.isEmpty()) {
+                LOGGER.debug("Resolving secret params '{}' using secret config '{}'", keysToLookup, secretConfig.getId());
+                List<Secret> lookedUpSecrets = secretsExtension.lookupSecrets(secretConfig.getPluginId(), secretConfig, keysToLookup);
+                resolvedSecretsCache.put(secretConfig, lookedUpSecrets);
+                resolvedSecrets.addAll(lookedUpSecrets);
+            }
             LOGGER.debug("Resolved secret size '{}'", resolvedSecrets.size());
 
             LOGGER.debug("Updating secret params '{}' with values.", secretParamMap.keySet());
@@ -36,6 +36,7 @@ import com.thoughtworks.go.server.cache.GoCache;
 import com.thoughtworks.go.server.dao.FeedModifier;
 import com.thoughtworks.go.server.dao.PipelineDao;
 import com.thoughtworks.go.server.dao.StageDao;
+import com.thoughtworks.go.server.database.ReadReplicaDataSource;
 import com.thoughtworks.go.server.domain.StageIdentity;
 import com.thoughtworks.go.server.domain.StageStatusListener;
 import com.thoughtworks.go.server.domain.Username;
@@ -241,11 +242,10 @@ public class StageService implements StageFinder {
 
     private DurationBean getDuration(String pipelineName, String stageName, JobInstance job) {
         if (job.isCompleted()) {
-            // Calculating duration is an expensive query; only do so when the stage is building.
             return new DurationBean(job.getId(), 0L);
         }
 
-        Long duration = stageDao.getDurationOfLastSuccessfulOnAgent(pipelineName, stageName, job);
+        Long duration = stageDao.getExpectedDurationSeconds(pipelineName, stageName, job);
         return new DurationBean(job.getId(), duration == null ? 0L : duration);
     }
 
@@ -321,6 +321,21 @@ public class StageService implements StageFinder {
         return stageDao.getMaxStageOrder(pipelineId);
     }
 
+    /**
+     * Evicts what is cached of the stage of a job which completed without changing the state of the stage, the stage
+     * itself stays as it was written
+     */
+    public void jobCompletedWithoutChangingStage(final JobInstance job, final Long pipelineId) {
+        transactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                JobIdentifier identifier = job.getIdentifier();
+                pipelineDao.clearCachedPipelineHistory(pipelineId, identifier.getPipelineName(), identifier.getPipelineCounter());
+                stageStatusCache.jobStatusChanged(job);
+            }
+        });
+    }
+
     public void updateResult(final Stage stage) {
         transactionTemplate.execute(new TransactionCallbackWithoutResult() {
             @Override
@@ -372,7 +387,7 @@ public class StageService implements StageFinder {
                                        FeedModifier feedModifier,
                                        Username username) {
         if (pipelineCounter != null) {
-            List<StageFeedEntry> feedBasedOnPipelineCounter = stageDao.findStageFeedBy(pipelineName, pipelineCounter, feedModifier, FEED_PAGE_SIZE);
+            List<StageFeedEntry> feedBasedOnPipelineCounter = ReadReplicaDataSource.read(() -> stageDao.findStageFeedBy(pipelineName, pipelineCounter, feedModifier, FEED_PAGE_SIZE));
             return cloner.deepClone(new FeedEntries(new ArrayList<>(feedBasedOnPipelineCounter)));
         }
 
@@ -449,11 +464,11 @@ public class StageService implements StageFinder {
                                                        int pageNumber,
                                                        int pageSize,
                                                        Username username) {
-        int total = stageDao.getTotalStageCountForChart(pipelineName, stageName);
+        int total = ReadReplicaDataSource.read(() -> stageDao.getTotalStageCountForChart(pipelineName, stageName));
 
         Pagination pagination = Pagination.pageByNumber(pageNumber, total, pageSize);
 
-        List<Stage> stages = stageDao.findStageHistoryForChart(pipelineName, stageName, pageSize, pagination.getOffset());
+        List<Stage> stages = ReadReplicaDataSource.read(() -> stageDao.findStageHistoryForChart(pipelineName, stageName, pageSize, pagination.getOffset()));
 
         StageSummaryModels stageSummaryModels = new StageSummaryModels();
         for (Stage forStage : stages) {
@@ -468,14 +483,14 @@ public class StageService implements StageFinder {
     }
 
     public StageHistoryPage findStageHistoryPage(Stage stage, int pageSize) {
-        return stageDao.findStageHistoryPage(stage, pageSize);
+        return ReadReplicaDataSource.read(() -> stageDao.findStageHistoryPage(stage, pageSize));
     }
 
     public StageHistoryPage findStageHistoryPageByNumber(String pipelineName,
                                                          String stageName,
                                                          int pageNumber,
                                                          int pageSize) {
-        return stageDao.findStageHistoryPageByNumber(pipelineName, stageName, pageNumber, pageSize);
+        return ReadReplicaDataSource.read(() -> stageDao.findStageHistoryPageByNumber(pipelineName, stageName, pageNumber, pageSize));
     }
 
     public StageInstanceModels findDetailedStageHistoryByOffset(String pipelineName,
@@ -492,18 +507,18 @@ public class StageService implements StageFinder {
             return null;
         }
 
-        return stageDao.findDetailedStageHistoryByOffset(pipelineName, stageName, pagination);
+        return ReadReplicaDataSource.read(() -> stageDao.findDetailedStageHistoryByOffset(pipelineName, stageName, pagination));
     }
 
     public StageInstanceModels findStageHistoryViaCursor(Username username, String pipelineName, String stageName, long afterCursor, long beforeCursor, Integer pageSize) {
         checkForExistenceAndAccess(username, pipelineName);
         StageInstanceModels stageInstanceModels;
         if (validateCursor(afterCursor, "after")) {
-            stageInstanceModels = stageDao.findDetailedStageHistoryViaCursor(pipelineName, stageName, FeedModifier.After, afterCursor, pageSize);
+            stageInstanceModels = ReadReplicaDataSource.read(() -> stageDao.findDetailedStageHistoryViaCursor(pipelineName, stageName, FeedModifier.After, afterCursor, pageSize));
         } else if (validateCursor(beforeCursor, "before")) {
-            stageInstanceModels = stageDao.findDetailedStageHistoryViaCursor(pipelineName, stageName, FeedModifier.Before, beforeCursor, pageSize);
+            stageInstanceModels = ReadReplicaDataSource.read(() -> stageDao.findDetailedStageHistoryViaCursor(pipelineName, stageName, FeedModifier.Before, beforeCursor, pageSize));
         } else {
-            stageInstanceModels = stageDao.findDetailedStageHistoryViaCursor(pipelineName, stageName, FeedModifier.Latest, 0, pageSize);
+            stageInstanceModels = ReadReplicaDataSource.read(() -> stageDao.findDetailedStageHistoryViaCursor(pipelineName, stageName, FeedModifier.Latest, 0, pageSize));
         }
         return stageInstanceModels;
     }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.JobInstance;
+import com.thoughtworks.go.domain.JobResult;
+import com.thoughtworks.go.domain.Stage;
+import com.thoughtworks.go.domain.StageState;
+import com.thoughtworks.go.server.domain.JobStatusListener;
+import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @understands what the jobs of the active stages add up to, so that the completion of a job only needs the stage to
+ * be loaded and written when it changes the state of the stage.
+ * <p/>
+ * A stage is tracked from the first time it is loaded in full, and then kept up to date with counters of its jobs
+ * which are building, failed, cancelled or without a result, from the job status changes committed after that. The
+ * stage is no longer tracked once its jobs add up to a completed stage.
+ */
+@Component
+public class StageStatusAggregator implements JobStatusListener {
+    private static final int ACTIVE = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 4;
+    private static final int UNKNOWN = 8;
+
+    private final TransactionSynchronizationManager transactionSynchronizationManager;
+    private final ConcurrentMap<Long, StageJobCounters> stages = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StageStatusAggregator(TransactionSynchronizationManager transactionSynchronizationManager) {
+        this.transactionSynchronizationManager = transactionSynchronizationManager;
+    }
+
+    /**
+     * Starts tracking a stage which was just loaded in full, its state being the one stored for it
+     */
+    public void track(Stage stage) {
+        long stageId = stage.getId();
+        if (stage.getState().completed()) {
+            stages.remove(stageId);
+            return;
+        }
+        StageJobCounters counters = new StageJobCounters(stage.getPipelineId(), stage.getState());
+        for (JobInstance job : stage.getJobInstances()) {
+            counters.update(job);
+        }
+        stages.put(stageId, counters);
+        // the stage may have been read together with changes which do not make it to the database
+        transactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    stages.remove(stageId);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true if the change of the job changes the state of its stage, or it is not known whether it does
+     */
+    public boolean changesStageState(JobInstance job) {
+        StageJobCounters counters = stages.get(job.getStageId());
+        return counters == null || counters.stateWith(job) != counters.recordedState;
+    }
+
+    /**
+     * @return the id of the pipeline of a tracked stage, null if the stage is not tracked
+     */
+    public Long pipelineIdOf(long stageId) {
+        StageJobCounters counters = stages.get(stageId);
+        return counters == null ? null : counters.pipelineId;
+    }
+
+    @Override
+    public void jobStatusChanged(JobInstance job) {
+        StageJobCounters counters = stages.get(job.getStageId());
+        if (counters == null) {
+            return;
+        }
+        counters.update(job);
+        if (counters.state().completed()) {
+            stages.remove(job.getStageId(), counters);
+        }
+    }
+
+    boolean isTracking(long stageId) {
+        return stages.containsKey(stageId);
+    }
+
+    private static int flagsOf(JobInstance job) {
+        int flags = 0;
+        if (job.getState().isBuilding() || job.getState().isAssignedOrScheduled()) {
+            flags |= ACTIVE;
+        }
+        if (job.getResult() == JobResult.Failed) {
+            flags |= FAILED;
+        }
+        if (job.getResult() == JobResult.Cancelled) {
+            flags |= CANCELLED;
+        }
+        if (job.getResult() == JobResult.Unknown) {
+            flags |= UNKNOWN;
+        }
+        return flags;
+    }
+
+    private static class StageJobCounters {
+        private final long pipelineId;
+        private final StageState recordedState;
+        private final ConcurrentMap<Long, Integer> jobs = new ConcurrentHashMap<>();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger cancelled = new AtomicInteger();
+        private final AtomicInteger unknown = new AtomicInteger();
+
+        StageJobCounters(long pipelineId, StageState recordedState) {
+            this.pipelineId = pipelineId;
+            this.recordedState = recordedState;
+        }
+
+        void update(JobInstance job) {
+            // a rescheduled job is ignored, the job it was replaced by takes its place in the stage
+            boolean removed = job.isRescheduled() || job.isIgnored();
+            jobs.compute(job.getId(), (id, previous) -> {
+                if (previous != null) {
+                    count(previous, -1);
+                }
+                if (removed) {
+                    return null;
+                }
+                int flags = flagsOf(job);
+                count(flags, 1);
+                return flags;
+            });
+        }
+
+        StageState state() {
+            return stateOf(jobs.size(), active.get(), failed.get(), cancelled.get(), unknown.get());
+        }
+
+        StageState stateWith(JobInstance job) {
+            int[] counts = {jobs.size(), active.get(), failed.get(), cancelled.get(), unknown.get()};
+            Integer previous = jobs.get(job.getId());
+            if (previous != null) {
+                add(counts, previous, -1);
+                counts[0]--;
+            }
+            if (!job.isRescheduled() && !job.isIgnored()) {
+                add(counts, flagsOf(job), 1);
+                counts[0]++;
+            }
+            return stateOf(counts[0], counts[1], counts[2], counts[3], counts[4]);
+        }
+
+        private void count(int flags, int delta) {
+            if ((flags & ACTIVE) != 0) {
+                active.addAndGet(delta);
+            }
+            if ((flags & FAILED) != 0) {
+                failed.addAndGet(delta);
+            }
+            if ((flags & CANCELLED) != 0) {
+                cancelled.addAndGet(delta);
+            }
+            if ((flags & UNKNOWN) != 0) {
+                unknown.addAndGet(delta);
+            }
+        }
+
+        private static void add(int[] counts, int flags, int delta) {
+            for (int i = 0; i < 4; i++) {
+                if ((flags & (1 << i)) != 0) {
+                    counts[i + 1] += delta;
+                }
+            }
+        }
+
+        private static StageState stateOf(int jobs, int active, int failed, int cancelled, int unknown) {
+            if (jobs == 0) {
+                return StageState.Unknown;
+            }
+            return StageState.of(active > 0, failed > 0, cancelled > 0, unknown > 0);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.publishers.GoArtifactsManipulator;
+import com.thoughtworks.go.publishers.StreamingArtifactZipEntity;
+import com.thoughtworks.go.util.IllegalPathException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * @understands unzipping an artifact into its destination while it is being uploaded, and remembering which entries
+ * made it to disk so that a retried upload can carry on from there
+ */
+public class StreamedArtifactUpload {
+    public enum Result {COMPLETED, OUT_OF_SYNC, INCOMPLETE, CHECKSUM_MISMATCH, IN_PROGRESS}
+
+    private static final String SEPARATOR = "\t";
+    // progress files of the uploads being received, so that two attempts at the same upload do not interleave
+    private static final Set<String> RECEIVING = ConcurrentHashMap.newKeySet();
+    private final File progressFile;
+    private final File destination;
+    private final String destPath;
+    private final List<String[]> received = new ArrayList<>();
+    private Properties checksums;
+
+    StreamedArtifactUpload(File progressFile, File destination, String destPath) throws IOException {
+        this.progressFile = progressFile;
+        this.destination = destination;
+        this.destPath = destPath;
+        readProgress();
+    }
+
+    private void readProgress() throws IOException {
+        received.clear();
+        if (progressFile.isFile()) {
+            for (String line : FileUtils.readLines(progressFile, UTF_8)) {
+                received.add(line.split(SEPARATOR, 2));
+            }
+        }
+    }
+
+    public int entriesReceived() {
+        return received.size();
+    }
+
+    /**
+     * @return the checksums sent along with a completed upload, to be added to the checksum file of the job
+     */
+    public Properties checksums() {
+        return checksums;
+    }
+
+    public Result receive(InputStream stream, int resumeFrom) throws IOException {
+        String key = progressFile.getAbsolutePath();
+        if (!RECEIVING.add(key)) {
+            return Result.IN_PROGRESS;
+        }
+        try {
+            readProgress();
+            return receiveEntries(stream, resumeFrom);
+        } finally {
+            RECEIVING.remove(key);
+        }
+    }
+
+    private Result receiveEntries(InputStream stream, int resumeFrom) throws IOException {
+        if (resumeFrom == 0) {
+            received.clear();
+            FileUtils.deleteQuietly(progressFile);
+        } else if (resumeFrom != received.size()) {
+            return Result.OUT_OF_SYNC;
+        }
+
+        Properties declaredChecksums = null;
+        FileUtils.forceMkdir(progressFile.getParentFile());
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(stream));
+             Writer progress = new OutputStreamWriter(new FileOutputStream(progressFile, true), UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (StreamingArtifactZipEntity.CHECKSUMS_ENTRY_NAME.equals(name)) {
+                    declaredChecksums = new Properties();
+                    declaredChecksums.load(zip);
+                    break;
+                }
+                String md5 = extract(name, zip);
+                received.add(new String[]{name, md5});
+                progress.write(name + SEPARATOR + md5 + "\n");
+                progress.flush();
+            }
+        }
+        if (declaredChecksums == null) {
+            return Result.INCOMPLETE;
+        }
+
+        for (String[] entry : received) {
+            String expected = declaredChecksums.getProperty(GoArtifactsManipulator.effectiveFileName(destPath, entry[0]));
+            if (!entry[1].isEmpty() && expected != null && !expected.equals(entry[1])) {
+                rollBack();
+                return Result.CHECKSUM_MISMATCH;
+            }
+        }
+        received.clear();
+        FileUtils.deleteQuietly(progressFile);
+        checksums = declaredChecksums;
+        return Result.COMPLETED;
+    }
+
+    /**
+     * Throws away every entry of the upload, including those received by earlier attempts, so that a partly
+     * corrupted artifact is never published
+     */
+    private void rollBack() {
+        for (int i = received.size() - 1; i >= 0; i--) {
+            File target = target(received.get(i)[0]);
+            if (target.isDirectory()) {
+                target.delete();
+            } else {
+                FileUtils.deleteQuietly(target);
+            }
+        }
+        received.clear();
+        FileUtils.deleteQuietly(progressFile);
+    }
+
+    private File target(String name) {
+        return new File(destination, name.startsWith("/") ? name.substring(1) : name);
+    }
+
+    private String extract(String name, InputStream zip) throws IOException {
+        if (name.contains("..")) {
+            throw new IllegalPathException(String.format("File %s is outside extraction target directory", name));
+        }
+        File target = target(name);
+        if (name.endsWith("/")) {
+            FileUtils.forceMkdir(target);
+            return "";
+        }
+        FileUtils.forceMkdir(target.getParentFile());
+        // replace rather than overwrite, the file may be a link to a de-duplicated blob
+        Files.deleteIfExists(target.toPath());
+        MessageDigest md5 = DigestUtils.getMd5Digest();
+        byte[] buffer = new byte[32 * 1024];
+        try (OutputStream out = new FileOutputStream(target)) {
+            int length;
+            while ((length = zip.read(buffer)) > 0) {
+                md5.update(buffer, 0, length);
+                out.write(buffer, 0, length);
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(target);
+            throw e;
+        }
+        return Hex.encodeHexString(md5.digest());
+    }
+}
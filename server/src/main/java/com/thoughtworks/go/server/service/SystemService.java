@@ -47,6 +47,8 @@ public class SystemService {
     }
 
     public void streamToFile(InputStream stream, File dest) throws IOException {
+        // the file may be a de-duplicated artifact, which must not be changed in place
+        ContentAddressedArtifactStore.detach(dest);
         try (FileOutputStream out = FileUtils.openOutputStream(dest, true)) {
             IOUtils.copyLarge(stream, out);
         }
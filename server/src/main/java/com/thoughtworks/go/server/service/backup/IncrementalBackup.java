@@ -0,0 +1,289 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service.backup;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.codec.binary.Hex.encodeHexString;
+
+/**
+ * @understands backing up a directory as a manifest of content addressed chunks. Chunks are kept once in a store
+ * shared by all backups, so a backup only writes the chunks none of the earlier backups had. Chunks are compressed in
+ * parallel. Every backup folder also gets a {@link #CHUNKS_FOLDER} of its own with hard links to (or, where the file
+ * system has none, copies of) the chunks its manifest uses, so that it can be copied away and restored on its own.
+ * <p>
+ * The manifest lists, one per line, directories as {@code D<TAB>path} and files as
+ * {@code F<TAB>path<TAB>size<TAB>comma separated sha256 of the chunks}.
+ */
+public class IncrementalBackup {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalBackup.class);
+    public static final String CHUNKS_FOLDER = "chunks";
+    public static final String MANIFEST_FILE = "config-repo.manifest";
+    static final int CHUNK_SIZE = 1024 * 1024;
+    private static final String HEADER = "# GoCD incremental backup v1";
+    private static final String SEPARATOR = "\t";
+
+    private final File chunksDir;
+    private final int threads;
+    private final AtomicLong chunksWritten = new AtomicLong();
+    private final AtomicLong chunksReused = new AtomicLong();
+
+    public IncrementalBackup(File chunksDir, int threads) {
+        this.chunksDir = chunksDir;
+        this.threads = Math.max(1, threads);
+    }
+
+    public void backup(File sourceDir, File manifest) throws IOException {
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "incremental-backup-thread-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // bounds the chunks held in memory while they wait to be compressed
+        Semaphore inFlight = new Semaphore(2 * threads);
+        try {
+            List<Path> paths;
+            Path root = sourceDir.toPath();
+            try (Stream<Path> walk = Files.walk(root)) {
+                paths = walk.filter(path -> !path.equals(root)).sorted().collect(toList());
+            }
+            List<String> lines = new ArrayList<>();
+            lines.add(HEADER);
+            for (Path path : paths) {
+                String name = FilenameUtils.separatorsToUnix(root.relativize(path).toString());
+                if (name.contains(SEPARATOR) || name.contains("\n")) {
+                    throw new IOException("Can not back up file with a tab or new line in its name: " + path);
+                }
+                if (Files.isDirectory(path)) {
+                    lines.add("D" + SEPARATOR + name);
+                } else if (Files.isRegularFile(path)) {
+                    lines.add("F" + SEPARATOR + name + SEPARATOR + Files.size(path) + SEPARATOR + String.join(",", storeChunks(path, executor, inFlight)));
+                }
+            }
+            linkChunksInto(new File(manifest.getParentFile(), CHUNKS_FOLDER), lines);
+            File temp = new File(manifest.getParentFile(), manifest.getName() + ".tmp");
+            FileUtils.writeLines(temp, UTF_8.name(), lines, "\n");
+            Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("[Backup] Backed up {} to {}, wrote {} new chunks and reused {}", sourceDir, manifest, chunksWritten.get(), chunksReused.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Restores from the chunks of the backup folder the manifest is in, which need not be under the store anymore
+     */
+    public static void restore(File manifest, File targetDir) throws IOException {
+        File chunksDir = new File(manifest.getParentFile(), CHUNKS_FOLDER);
+        for (String line : manifestLines(manifest)) {
+            String[] parts = line.split(SEPARATOR, -1);
+            File target = new File(targetDir, parts[1]);
+            if (parts[1].contains("..")) {
+                throw new IOException("Backup entry is outside of the restore directory: " + parts[1]);
+            }
+            if ("D".equals(parts[0])) {
+                FileUtils.forceMkdir(target);
+                continue;
+            }
+            FileUtils.forceMkdir(target.getParentFile());
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+                for (String sha256 : chunksOf(parts)) {
+                    restoreChunk(chunkFile(chunksDir, sha256), sha256, out);
+                }
+            }
+            if (target.length() != Long.parseLong(parts[2])) {
+                throw new IOException("Restored file " + target + " does not have the size it was backed up with");
+            }
+        }
+    }
+
+    /**
+     * Deletes the chunks of the store which none of the given manifests use anymore, the chunks of backups which
+     * were deleted
+     */
+    public void prune(Collection<File> manifests) throws IOException {
+        Set<String> used = new HashSet<>();
+        for (File manifest : manifests) {
+            for (String line : manifestLines(manifest)) {
+                used.addAll(chunksOf(line.split(SEPARATOR, -1)));
+            }
+        }
+        if (!chunksDir.isDirectory()) {
+            return;
+        }
+        int pruned = 0;
+        for (File chunk : FileUtils.listFiles(chunksDir, null, true)) {
+            if (!used.contains(chunk.getName()) && !chunk.getName().endsWith(".tmp") && chunk.delete()) {
+                pruned++;
+            }
+        }
+        LOGGER.info("[Backup] Pruned {} chunks which no backup uses anymore from {}", pruned, chunksDir);
+    }
+
+    /**
+     * Restores a config repository which was backed up incrementally, from a copy of its backup folder:
+     * {@code IncrementalBackup <backup folder> <config repository folder>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: IncrementalBackup <backup folder> <config repository folder>");
+            System.exit(1);
+        }
+        restore(new File(args[0], MANIFEST_FILE), new File(args[1]));
+    }
+
+    private static List<String> manifestLines(File manifest) throws IOException {
+        List<String> lines = FileUtils.readLines(manifest, UTF_8);
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            throw new IOException("Not an incremental backup manifest: " + manifest);
+        }
+        return lines.subList(1, lines.size());
+    }
+
+    private static List<String> chunksOf(String[] parts) {
+        if (!"F".equals(parts[0]) || parts[3].isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(parts[3].split(","));
+    }
+
+    private void linkChunksInto(File backupChunksDir, List<String> lines) throws IOException {
+        for (String line : lines.subList(1, lines.size())) {
+            for (String sha256 : chunksOf(line.split(SEPARATOR, -1))) {
+                File link = chunkFile(backupChunksDir, sha256);
+                if (link.exists()) {
+                    continue;
+                }
+                FileUtils.forceMkdir(link.getParentFile());
+                try {
+                    Files.createLink(link.toPath(), chunkFile(chunksDir, sha256).toPath());
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    FileUtils.copyFile(chunkFile(chunksDir, sha256), link);
+                }
+            }
+        }
+    }
+
+    long chunksWritten() {
+        return chunksWritten.get();
+    }
+
+    long chunksReused() {
+        return chunksReused.get();
+    }
+
+    private List<String> storeChunks(Path file, ExecutorService executor, Semaphore inFlight) throws IOException {
+        List<Future<String>> chunks = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(file)) {
+            while (true) {
+                byte[] buffer = new byte[CHUNK_SIZE];
+                int length = IOUtils.read(in, buffer);
+                if (length == 0) {
+                    break;
+                }
+                byte[] chunk = length == CHUNK_SIZE ? buffer : Arrays.copyOf(buffer, length);
+                inFlight.acquireUninterruptibly();
+                chunks.add(executor.submit(() -> {
+                    try {
+                        return storeChunk(chunk);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                if (length < CHUNK_SIZE) {
+                    break;
+                }
+            }
+        }
+        List<String> hashes = new ArrayList<>();
+        for (Future<String> chunk : chunks) {
+            try {
+                hashes.add(chunk.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while backing up " + file, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to back up " + file, e.getCause());
+            }
+        }
+        return hashes;
+    }
+
+    private String storeChunk(byte[] chunk) throws IOException {
+        String sha256 = DigestUtils.sha256Hex(chunk);
+        File chunkFile = chunkFile(chunksDir, sha256);
+        if (chunkFile.exists()) {
+            chunksReused.incrementAndGet();
+            return sha256;
+        }
+        FileUtils.forceMkdir(chunkFile.getParentFile());
+        File temp = new File(chunkFile.getParentFile(), sha256 + "." + Thread.currentThread().getId() + ".tmp");
+        try (OutputStream out = new DeflaterOutputStream(new FileOutputStream(temp), new Deflater(Deflater.DEFAULT_COMPRESSION), 64 * 1024)) {
+            out.write(chunk);
+        }
+        try {
+            Files.move(temp.toPath(), chunkFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            chunksWritten.incrementAndGet();
+        } catch (FileAlreadyExistsException e) {
+            // an identical chunk of another file was stored at the same time
+            FileUtils.deleteQuietly(temp);
+            chunksReused.incrementAndGet();
+        }
+        return sha256;
+    }
+
+    private static void restoreChunk(File chunkFile, String sha256, OutputStream out) throws IOException {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        try (InputStream in = new InflaterInputStream(new FileInputStream(chunkFile))) {
+            byte[] buffer = new byte[64 * 1024];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, length);
+                out.write(buffer, 0, length);
+            }
+        }
+        if (!sha256.equals(encodeHexString(digest.digest()))) {
+            throw new IOException("Backup chunk " + sha256 + " is corrupt");
+        }
+    }
+
+    private static File chunkFile(File chunksDir, String sha256) {
+        if (!sha256.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Not a chunk: " + sha256);
+        }
+        return new File(new File(chunksDir, sha256.substring(0, 2)), sha256);
+    }
+}
@@ -17,6 +17,7 @@ package com.thoughtworks.go.server.transaction;
 
 import com.thoughtworks.go.database.Database;
 import com.thoughtworks.go.server.cache.GoCache;
+import com.thoughtworks.go.server.database.ReadReplicaDataSource;
 import com.thoughtworks.go.util.SystemEnvironment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -69,17 +70,17 @@ public class SqlMapClientTemplate {
     }
 
     public void insert(String statementName, Object parameter) {
-        goCache.stopServingForTransaction();
+        beforeWrite();
         delegate.insert(translateStatementName(statementName), parameter);
     }
 
     public int update(String statementName, Object parameter) {
-        goCache.stopServingForTransaction();
+        beforeWrite();
         return delegate.update(translateStatementName(statementName), parameter);
     }
 
     public void update(String statementName, Object parameter, int requiredRowsAffected) {
-        goCache.stopServingForTransaction();
+        beforeWrite();
         int actualRowsAffected = delegate.update(statementName, parameter);
         if (actualRowsAffected != requiredRowsAffected) {
             throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(
@@ -88,7 +89,12 @@ public class SqlMapClientTemplate {
     }
 
     public void delete(String statementName, Object parameter) {
-        goCache.stopServingForTransaction();
+        beforeWrite();
         delegate.delete(translateStatementName(statementName), parameter);
     }
+
+    private void beforeWrite() {
+        goCache.stopServingForTransaction();
+        ReadReplicaDataSource.markWritten();
+    }
 }
@@ -18,6 +18,7 @@ package com.thoughtworks.go.server.transaction;
 import java.io.Serializable;
 
 import com.thoughtworks.go.server.cache.GoCache;
+import com.thoughtworks.go.server.database.ReadReplicaDataSource;
 import org.hibernate.EmptyInterceptor;
 import org.hibernate.type.Type;
 
@@ -46,5 +47,6 @@ public class TransactionCacheInterceptor extends EmptyInterceptor {
 
     private void stopServingFromCache() {
         goCache.stopServingForTransaction();
+        ReadReplicaDataSource.markWritten();
     }
 }
@@ -16,7 +16,14 @@
 package com.thoughtworks.go.server.util;
 
 import com.thoughtworks.go.database.Database;
+import com.thoughtworks.go.server.database.DatabaseMetrics;
+import com.thoughtworks.go.server.database.InstrumentedDataSource;
+import com.thoughtworks.go.server.database.ReadReplicaDataSource;
 import com.thoughtworks.go.server.datamigration.DataMigrationRunner;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -24,29 +31,78 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
 /**
  * @understands data source creation
  */
 @Component
 public class DatabaseUpgraderDataSourceFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseUpgraderDataSourceFactory.class);
 
+    private DataSource pool;
     private DataSource dataSource;
+    private DataSource sqlMapDataSource;
+    private BasicDataSource replica;
     private Database database;
+    private SystemEnvironment systemEnvironment;
+    private DatabaseMetrics databaseMetrics;
 
     @Autowired
-    public DatabaseUpgraderDataSourceFactory(Database database) {
+    public DatabaseUpgraderDataSourceFactory(Database database, SystemEnvironment systemEnvironment, DatabaseMetrics databaseMetrics) {
         this.database = database;
+        this.systemEnvironment = systemEnvironment;
+        this.databaseMetrics = databaseMetrics;
         this.database.startDatabase();
     }
 
     public DataSource dataSource() {
         if (dataSource == null) {
-            this.dataSource = database.createDataSource();
+            this.pool = database.createDataSource();
+            if (pool instanceof BasicDataSource) {
+                databaseMetrics.monitorPool((BasicDataSource) pool);
+            }
+            this.dataSource = databaseMetrics.isEnabled() ? new InstrumentedDataSource(pool, databaseMetrics) : pool;
         }
         return dataSource;
     }
 
+    /**
+     * The data source of the sql maps: the primary, or the primary and a read only replica when one is configured
+     */
+    public DataSource sqlMapDataSource() {
+        if (sqlMapDataSource == null) {
+            String replicaUrl = systemEnvironment.getDatabaseReplicaUrl();
+            if (isBlank(replicaUrl)) {
+                sqlMapDataSource = dataSource();
+            } else {
+                LOGGER.info("[db] Sending reads made outside of transactions to the read replica at {}", replicaUrl);
+                DataSource primary = dataSource();
+                replica = replicaDataSource(replicaUrl);
+                sqlMapDataSource = new ReadReplicaDataSource(primary, replica, TimeUnit.SECONDS.toMillis(systemEnvironment.getDatabaseReplicaMaxLagSeconds()));
+            }
+        }
+        return sqlMapDataSource;
+    }
+
+    private BasicDataSource replicaDataSource(String url) {
+        BasicDataSource source = new BasicDataSource();
+        source.setUrl(url);
+        // the replica is another instance of the same database, it is reached the same way as the primary
+        if (pool instanceof BasicDataSource) {
+            BasicDataSource primary = (BasicDataSource) pool;
+            source.setDriverClassName(primary.getDriverClassName());
+            source.setUsername(primary.getUsername());
+            source.setPassword(primary.getPassword());
+            source.setMaxTotal(primary.getMaxTotal());
+            source.setMaxIdle(primary.getMaxIdle());
+        }
+        source.setDefaultReadOnly(true);
+        return source;
+    }
+
     @PostConstruct
     public void upgradeDb() throws SQLException {
         database.upgrade();
@@ -56,6 +112,9 @@ public class DatabaseUpgraderDataSourceFactory {
     @PreDestroy
     public void shutdownDatabase() throws SQLException {
         //if (Environment.getProperty("DB_NO_UPGRADE") != null) { return; }
+        if (replica != null) {
+            replica.close();
+        }
         database.shutdown();
     }
 }
@@ -28,6 +28,7 @@ import java.util.List;
 import static java.lang.String.format;
 
 public class ArtifactDirectoryChooser {
+    private static final String ARTIFACT_MANIFEST_FILE_NAME = ".artifacts.manifest";
     List<ArtifactLocator> locators = new ArrayList<>();
 
     public void add(ArtifactLocator artifactLocator) {
@@ -73,6 +74,15 @@ public class ArtifactDirectoryChooser {
         return null;
     }
 
+    public File artifactManifest(LocatableEntity locatableEntity) {
+        return new File(locators.get(0).findCachedArtifact(locatableEntity), ARTIFACT_MANIFEST_FILE_NAME);
+    }
+
+    public File streamedUploadProgress(LocatableEntity locatableEntity, String destPath) {
+        File uploads = new File(locators.get(0).findCachedArtifact(locatableEntity), ".uploads");
+        return new File(uploads, format("%s.progress", DigestUtils.md5Hex(destPath)));
+    }
+
     public File temporaryConsoleFile(LocatableEntity locatableEntity) {
         return new File("data/console", format("%s.log", DigestUtils.md5Hex(locatableEntity.entityLocator())));
     }
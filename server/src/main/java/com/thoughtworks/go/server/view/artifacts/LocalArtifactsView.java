@@ -21,6 +21,7 @@ import com.thoughtworks.go.server.service.ConsoleService;
 import com.thoughtworks.go.server.web.ArtifactFolder;
 import com.thoughtworks.go.server.web.ArtifactFolderViewFactory;
 import com.thoughtworks.go.server.web.FileModelAndView;
+import com.thoughtworks.go.util.ArtifactManifest;
 import org.springframework.web.servlet.ModelAndView;
 
 import java.io.File;
@@ -56,7 +57,9 @@ public class LocalArtifactsView implements ArtifactsView {
         String convertedURL = filePath.replaceFirst("\\.(html|json|zip)$", "");
         File directory = artifactsService.findArtifact(translatedId, convertedURL);
         if (directory.exists() && directory.isDirectory()) {
-            ArtifactFolder folder = new ArtifactFolder(translatedId, directory, convertedURL);
+            // zips are made from the folder itself, only listings are rendered from the manifest
+            ArtifactManifest manifest = filePath.endsWith(".zip") ? null : artifactsService.findArtifactManifest(translatedId);
+            ArtifactFolder folder = new ArtifactFolder(translatedId, directory, convertedURL, manifest);
             return folderViewFactory.createView(translatedId, folder);
         }
 
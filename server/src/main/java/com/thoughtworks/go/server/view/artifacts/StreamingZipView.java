@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.view.artifacts;
+
+import java.io.IOException;
+import java.util.Map;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.thoughtworks.go.server.cache.ZipArtifactCache;
+import com.thoughtworks.go.server.web.ArtifactFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.view.AbstractView;
+
+/**
+ * @understands sending an artifact folder as a zip while the zip is being created
+ */
+public class StreamingZipView extends AbstractView {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingZipView.class);
+    private final ZipArtifactCache zipArtifactCache;
+    private final ArtifactFolder artifactFolder;
+
+    public StreamingZipView(ZipArtifactCache zipArtifactCache, ArtifactFolder artifactFolder) {
+        this.zipArtifactCache = zipArtifactCache;
+        this.artifactFolder = artifactFolder;
+        setContentType("application/zip");
+    }
+
+    public ArtifactFolder getArtifactFolder() {
+        return artifactFolder;
+    }
+
+    @Override
+    protected void renderMergedOutputModel(Map model, HttpServletRequest request, HttpServletResponse response) throws Exception {
+        LOGGER.info("[Artifact Download] About to stream zip of: {}", artifactFolder.getRootFolderPath());
+        long before = System.currentTimeMillis();
+
+        response.setContentType(getContentType());
+        ServletOutputStream out = response.getOutputStream();
+        try {
+            zipArtifactCache.stream(artifactFolder, out);
+        } catch (Exception e) {
+            // Once part of the zip has been sent the client can only tell that it is truncated if the connection is
+            // dropped. The container aborts a committed response when the failure escapes, so it must not be
+            // flushed, closed or turned into an error page here.
+            LOGGER.error("[Artifact Download] Failed streaming zip of: {}, aborting the download", artifactFolder.getRootFolderPath(), e);
+            throw new StreamingZipAbortedException(artifactFolder.getRootFolderPath(), e);
+        }
+        out.flush();
+
+        LOGGER.info("[Artifact Download] Finished streaming zip of: {}. The time taken is: {}ms", artifactFolder.getRootFolderPath(), System.currentTimeMillis() - before);
+    }
+
+    static class StreamingZipAbortedException extends IOException {
+        StreamingZipAbortedException(String folder, Throwable cause) {
+            super("Failed streaming zip of " + folder, cause);
+        }
+    }
+}
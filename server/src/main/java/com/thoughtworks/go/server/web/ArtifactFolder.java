@@ -18,6 +18,7 @@ package com.thoughtworks.go.server.web;
 import com.thoughtworks.go.domain.DirectoryEntries;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.server.presentation.models.HtmlRenderer;
+import com.thoughtworks.go.util.ArtifactManifest;
 import com.thoughtworks.go.util.DirectoryReader;
 import com.thoughtworks.go.util.json.JsonAware;
 
@@ -34,11 +35,17 @@ public class ArtifactFolder implements JsonAware, Comparable {
     private final JobIdentifier jobIdentifier;
     private final File rootFolder;
     private final String relativePath;
+    private final ArtifactManifest manifest;
 
     public ArtifactFolder(JobIdentifier jobIdentifier, File rootFolder, String relativePath) {
+        this(jobIdentifier, rootFolder, relativePath, null);
+    }
+
+    public ArtifactFolder(JobIdentifier jobIdentifier, File rootFolder, String relativePath, ArtifactManifest manifest) {
         this.jobIdentifier = jobIdentifier;
         this.rootFolder = rootFolder;
         this.relativePath = relativePath;
+        this.manifest = manifest;
     }
 
     public boolean directoryExists() {
@@ -55,6 +62,9 @@ public class ArtifactFolder implements JsonAware, Comparable {
 
     public DirectoryEntries allEntries() {
         bombUnless(rootFolder.isDirectory(), rootFolder + " is not a folder");
+        if (manifest != null) {
+            return new DirectoryReader(jobIdentifier).listEntriesFromManifest(manifest, relativePath);
+        }
         return new DirectoryReader(jobIdentifier).listEntries(rootFolder, relativePath);
     }
 
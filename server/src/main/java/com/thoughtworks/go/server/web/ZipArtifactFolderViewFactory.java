@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.thoughtworks.go.server.view.artifacts.PreparingArtifactFile;
+import com.thoughtworks.go.server.view.artifacts.StreamingZipView;
 import com.thoughtworks.go.server.cache.ZipArtifactCache;
 import org.springframework.web.servlet.ModelAndView;
 import com.thoughtworks.go.domain.JobIdentifier;
@@ -32,6 +33,9 @@ public class ZipArtifactFolderViewFactory implements ArtifactFolderViewFactory {
 
     @Override
     public ModelAndView createView(JobIdentifier identifier, ArtifactFolder artifactFolder) throws Exception {
+        if (!zipArtifactCache.isOnDiskCacheEnabled()) {
+            return new ModelAndView(new StreamingZipView(zipArtifactCache, artifactFolder));
+        }
         if (zipArtifactCache.cacheCreated(artifactFolder)) {
             Map<String, Object> data = new HashMap<>();
             data.put("targetFile", zipArtifactCache.cachedFile(artifactFolder));
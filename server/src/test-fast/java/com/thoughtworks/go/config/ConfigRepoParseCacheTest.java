@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config;
+
+import com.thoughtworks.go.plugin.configrepo.contract.CRParseResult;
+import com.thoughtworks.go.plugin.configrepo.contract.CRPipeline;
+import com.thoughtworks.go.plugin.configrepo.contract.ErrorCollection;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConfigRepoParseCacheTest {
+    private final ConfigRepoParseCache cache = new ConfigRepoParseCache();
+    private final List<String> parsedFiles = new ArrayList<>();
+    private final List<Set<String>> parseCalls = new ArrayList<>();
+    private final Function<Set<String>, CRParseResult> parser = files -> {
+        parseCalls.add(new TreeSet<>(files));
+        parsedFiles.addAll(files);
+        List<CRPipeline> pipelines = new ArrayList<>();
+        for (String file : files) {
+            CRPipeline pipeline = new CRPipeline();
+            pipeline.setName(file);
+            pipeline.setLocation(file);
+            pipelines.add(pipeline);
+        }
+        return new CRParseResult(new ArrayList<>(), pipelines, new ErrorCollection());
+    };
+
+    @Test
+    void shouldParseOnlyTheFilesWhoseContentChanged() {
+        cache.parse("repo", "1.0", hashes("a.yaml", "1", "b.yaml", "1", "c.yaml", "1"), parser);
+        parsedFiles.clear();
+
+        CRParseResult result = cache.parse("repo", "1.0", hashes("a.yaml", "1", "b.yaml", "2", "c.yaml", "1"), parser);
+
+        assertThat(parsedFiles).containsExactly("b.yaml");
+        assertThat(pipelineNames(result)).containsExactlyInAnyOrder("a.yaml", "b.yaml", "c.yaml");
+    }
+
+    @Test
+    void shouldParseAllTheChangedFilesInOneGo() {
+        cache.parse("repo", "1.0", hashes("a.yaml", "1", "b.yaml", "1", "c.yaml", "1"), parser);
+        cache.parse("repo", "1.0", hashes("a.yaml", "2", "b.yaml", "1", "c.yaml", "2"), parser);
+
+        assertThat(parseCalls).containsExactly(
+                new TreeSet<>(Arrays.asList("a.yaml", "b.yaml", "c.yaml")),
+                new TreeSet<>(Arrays.asList("a.yaml", "c.yaml")));
+    }
+
+    @Test
+    void shouldParseFilesTogetherAgainWhenThePluginDoesNotSayWhereWhatItParsedCameFrom() {
+        Function<Set<String>, CRParseResult> withoutLocations = files -> {
+            parsedFiles.addAll(files);
+            CRPipeline pipeline = new CRPipeline();
+            pipeline.setName(String.join(",", files));
+            return new CRParseResult(new ArrayList<>(), new ArrayList<>(Collections.singletonList(pipeline)), new ErrorCollection());
+        };
+        cache.parse("repo", "1.0", hashes("a.yaml", "1", "b.yaml", "1", "c.yaml", "1"), withoutLocations);
+        parsedFiles.clear();
+
+        CRParseResult result = cache.parse("repo", "1.0", hashes("a.yaml", "1", "b.yaml", "2", "c.yaml", "1"), withoutLocations);
+
+        assertThat(parsedFiles).containsExactly("a.yaml", "b.yaml", "c.yaml");
+        assertThat(pipelineNames(result)).containsExactly("a.yaml,b.yaml,c.yaml");
+    }
+
+    @Test
+    void shouldParseEverythingAgainOnceThePluginIsUpgraded() {
+        cache.parse("repo", "1.0", hashes("a.yaml", "1", "b.yaml", "1"), parser);
+        parsedFiles.clear();
+
+        cache.parse("repo", "2.0", hashes("a.yaml", "1", "b.yaml", "1"), parser);
+
+        assertThat(parsedFiles).containsExactly("a.yaml", "b.yaml");
+    }
+
+    @Test
+    void shouldForgetFilesWhichWereDeleted() {
+        cache.parse("repo", "1.0", hashes("a.yaml", "1", "b.yaml", "1"), parser);
+
+        CRParseResult result = cache.parse("repo", "1.0", hashes("a.yaml", "1"), parser);
+
+        assertThat(pipelineNames(result)).containsExactly("a.yaml");
+        assertThat(cache.size("repo")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotRememberAParseWhichFailed() {
+        cache.parse("repo", "1.0", hashes("a.yaml", "1"), parser);
+        CRParseResult failed = cache.parse("repo", "1.0", hashes("a.yaml", "2"), files -> {
+            ErrorCollection errors = new ErrorCollection();
+            files.forEach(file -> errors.addError(file, "invalid"));
+            return new CRParseResult(errors);
+        });
+        parsedFiles.clear();
+
+        cache.parse("repo", "1.0", hashes("a.yaml", "2"), parser);
+
+        assertThat(failed.hasErrors()).isTrue();
+        assertThat(failed.getErrors().getErrorsAsText()).contains("a.yaml", "invalid");
+        assertThat(parsedFiles).containsExactly("a.yaml");
+    }
+
+    @Test
+    void shouldKeepTheFilesOfEachRepositorySeparate() {
+        cache.parse(ConfigRepoParseCache.repositoryKey("plugin", "fingerprint-1"), "1.0", hashes("a.yaml", "1"), parser);
+        cache.parse(ConfigRepoParseCache.repositoryKey("plugin", "fingerprint-2"), "1.0", hashes("a.yaml", "1"), parser);
+
+        cache.removeRepositoriesOf("fingerprint-1");
+
+        assertThat(parsedFiles).containsExactly("a.yaml", "a.yaml");
+        assertThat(cache.size(ConfigRepoParseCache.repositoryKey("plugin", "fingerprint-1"))).isEqualTo(0);
+        assertThat(cache.size(ConfigRepoParseCache.repositoryKey("plugin", "fingerprint-2"))).isEqualTo(1);
+    }
+
+    private static Map<String, String> hashes(String... fileAndHash) {
+        Map<String, String> hashes = new LinkedHashMap<>();
+        for (int i = 0; i < fileAndHash.length; i += 2) {
+            hashes.put(fileAndHash[i], fileAndHash[i + 1]);
+        }
+        return hashes;
+    }
+
+    private static List<String> pipelineNames(CRParseResult result) {
+        List<String> names = new ArrayList<>();
+        result.getPipelines().forEach(pipeline -> names.add(pipeline.getName()));
+        return names;
+    }
+}
@@ -15,17 +15,39 @@
  */
 package com.thoughtworks.go.config.plugin;
 
+import com.thoughtworks.go.config.ConfigConverter;
+import com.thoughtworks.go.config.ConfigRepoParseCache;
 import com.thoughtworks.go.config.ConfigRepoPlugin;
+import com.thoughtworks.go.config.PartialConfigLoadContext;
 import com.thoughtworks.go.domain.config.Configuration;
+import com.thoughtworks.go.domain.materials.MaterialConfig;
+import com.thoughtworks.go.plugin.access.configrepo.ConfigFileList;
+import com.thoughtworks.go.plugin.access.configrepo.ConfigRepoExtension;
 import com.thoughtworks.go.plugin.configrepo.contract.CRConfigurationProperty;
+import com.thoughtworks.go.plugin.configrepo.contract.CRParseResult;
+import com.thoughtworks.go.plugin.configrepo.contract.ErrorCollection;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
-import static org.junit.Assert.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonMap;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 public class ConfigRepoPluginTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
     @Test
     public void shouldGetCRConfigurationFromConfigurationWhenInsecureValue() {
         Configuration configuration = new Configuration();
@@ -49,4 +71,54 @@ public class ConfigRepoPluginTest {
         assertThat(prop.getKey(), is("key1"));
         assertThat(prop.getEncryptedValue(), is("@$$%^1234"));
     }
+
+    @Test
+    public void shouldParseOnlyTheConfigFilesWhichChangedSinceTheLastLoad() throws Exception {
+        ConfigRepoExtension extension = mock(ConfigRepoExtension.class);
+        ConfigRepoPlugin plugin = new ConfigRepoPlugin(mock(ConfigConverter.class), extension, "plugin-id", new ConfigRepoParseCache());
+        File checkout = temporaryFolder.newFolder("checkout");
+        FileUtils.writeStringToFile(new File(checkout, "a.gocd.yaml"), "a", UTF_8);
+        FileUtils.writeStringToFile(new File(checkout, "b.gocd.yaml"), "b", UTF_8);
+        when(extension.getConfigFiles(eq("plugin-id"), eq(checkout.getAbsolutePath()), anyCollection()))
+                .thenReturn(ConfigFileList.from(Arrays.asList("a.gocd.yaml", "b.gocd.yaml")));
+        when(extension.parseContent(eq("plugin-id"), anyMap())).thenReturn(new CRParseResult(new ArrayList<>(), new ArrayList<>(), new ErrorCollection()));
+        PartialConfigLoadContext context = loadContext();
+
+        plugin.load(checkout, context);
+        FileUtils.writeStringToFile(new File(checkout, "b.gocd.yaml"), "changed", UTF_8);
+        plugin.load(checkout, context);
+
+        Map<String, String> allFiles = new TreeMap<>();
+        allFiles.put("a.gocd.yaml", "a");
+        allFiles.put("b.gocd.yaml", "b");
+        verify(extension).parseContent("plugin-id", allFiles);
+        verify(extension).parseContent("plugin-id", singletonMap("b.gocd.yaml", "changed"));
+        verify(extension, times(2)).parseContent(anyString(), anyMap());
+        verify(extension, never()).parseDirectory(anyString(), anyString(), anyCollection());
+    }
+
+    @Test
+    public void shouldParseTheWholeDirectoryWhenThePluginCanNotListItsConfigFiles() throws Exception {
+        ConfigRepoExtension extension = mock(ConfigRepoExtension.class);
+        ConfigRepoPlugin plugin = new ConfigRepoPlugin(mock(ConfigConverter.class), extension, "plugin-id", new ConfigRepoParseCache());
+        File checkout = temporaryFolder.newFolder("checkout");
+        when(extension.getConfigFiles(eq("plugin-id"), eq(checkout.getAbsolutePath()), anyCollection()))
+                .thenReturn(ConfigFileList.withError("Unsupported Operation", "This plugin version does not support list config files"));
+        when(extension.parseDirectory(eq("plugin-id"), eq(checkout.getAbsolutePath()), anyCollection()))
+                .thenReturn(new CRParseResult(new ArrayList<>(), new ArrayList<>(), new ErrorCollection()));
+
+        plugin.load(checkout, loadContext());
+
+        verify(extension).parseDirectory(eq("plugin-id"), eq(checkout.getAbsolutePath()), anyCollection());
+        verify(extension, never()).parseContent(anyString(), anyMap());
+    }
+
+    private PartialConfigLoadContext loadContext() {
+        PartialConfigLoadContext context = mock(PartialConfigLoadContext.class);
+        MaterialConfig material = mock(MaterialConfig.class);
+        when(material.getFingerprint()).thenReturn("fingerprint");
+        when(context.configuration()).thenReturn(new Configuration());
+        when(context.configMaterial()).thenReturn(material);
+        return context;
+    }
 }
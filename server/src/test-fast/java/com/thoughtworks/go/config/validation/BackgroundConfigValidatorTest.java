@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config.validation;
+
+import com.thoughtworks.go.config.BasicCruiseConfig;
+import com.thoughtworks.go.config.CruiseConfig;
+import com.thoughtworks.go.config.exceptions.GoConfigInvalidException;
+import com.thoughtworks.go.server.service.GoConfigService;
+import com.thoughtworks.go.serverhealth.HealthStateScope;
+import com.thoughtworks.go.serverhealth.ServerHealthService;
+import com.thoughtworks.go.serverhealth.ServerHealthState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BackgroundConfigValidatorTest {
+    private GoConfigService goConfigService;
+    private ServerHealthService serverHealthService;
+    private BackgroundConfigValidator validator;
+
+    @BeforeEach
+    void setUp() {
+        goConfigService = mock(GoConfigService.class);
+        serverHealthService = mock(ServerHealthService.class);
+        validator = new BackgroundConfigValidator(goConfigService, serverHealthService);
+    }
+
+    @Test
+    void shouldValidateACopyOfTheConfigOnlyOnceItChanged() throws Exception {
+        CruiseConfig config = new BasicCruiseConfig();
+        when(goConfigService.getConfigForEditing()).thenReturn(config);
+
+        validator.onTimer();
+        validator.onTimer();
+
+        verify(goConfigService, times(1)).validateCruiseConfig(any(CruiseConfig.class));
+        verify(goConfigService, never()).validateCruiseConfig(same(config));
+        verify(serverHealthService).removeByScope(HealthStateScope.forBackgroundConfigValidation());
+
+        when(goConfigService.getConfigForEditing()).thenReturn(new BasicCruiseConfig());
+        validator.onTimer();
+
+        verify(goConfigService, times(2)).validateCruiseConfig(any(CruiseConfig.class));
+    }
+
+    @Test
+    void shouldWarnAboutErrorsFoundInTheConfig() throws Exception {
+        BasicCruiseConfig invalid = new BasicCruiseConfig();
+        invalid.addError("pipeline", "Pipeline 'up' does not exist");
+        when(goConfigService.getConfigForEditing()).thenReturn(new BasicCruiseConfig());
+        when(goConfigService.validateCruiseConfig(any(CruiseConfig.class))).thenThrow(new GoConfigInvalidException(invalid, "Validation failed."));
+
+        validator.onTimer();
+
+        ArgumentCaptor<ServerHealthState> state = ArgumentCaptor.forClass(ServerHealthState.class);
+        verify(serverHealthService).update(state.capture());
+        assertThat(state.getValue().getMessage()).isEqualTo(BackgroundConfigValidator.INVALID_CONFIG_FOUND);
+        assertThat(state.getValue().getDescription()).contains("does not exist");
+        verify(serverHealthService, never()).removeByScope(any(HealthStateScope.class));
+    }
+}
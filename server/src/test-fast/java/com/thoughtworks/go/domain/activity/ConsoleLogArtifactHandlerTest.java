@@ -17,6 +17,7 @@ package com.thoughtworks.go.domain.activity;
 
 import com.thoughtworks.go.domain.JobInstance;
 import com.thoughtworks.go.helper.JobInstanceMother;
+import com.thoughtworks.go.server.service.ArtifactsService;
 import com.thoughtworks.go.server.service.ConsoleService;
 import org.junit.Before;
 import org.junit.Test;
@@ -26,6 +27,7 @@ import static org.mockito.Mockito.*;
 public class ConsoleLogArtifactHandlerTest {
 
     private ConsoleService consoleService;
+    private ArtifactsService artifactsService;
     private ConsoleLogArtifactHandler handler;
     private JobInstance completedJobInstance;
     private JobInstance buildingJobInstance;
@@ -33,7 +35,8 @@ public class ConsoleLogArtifactHandlerTest {
     @Before
     public void setUp() throws Exception {
         consoleService = mock(ConsoleService.class);
-        handler = new ConsoleLogArtifactHandler(consoleService);
+        artifactsService = mock(ArtifactsService.class);
+        handler = new ConsoleLogArtifactHandler(consoleService, artifactsService);
         completedJobInstance = JobInstanceMother.completed("job");
         buildingJobInstance = JobInstanceMother.building("job");
     }
@@ -43,6 +46,7 @@ public class ConsoleLogArtifactHandlerTest {
         completedJobInstance.setOriginalJobId(null);
         handler.jobStatusChanged(completedJobInstance);
         verify(consoleService).moveConsoleArtifacts(completedJobInstance.getIdentifier());
+        verify(artifactsService).scheduleArtifactManifest(completedJobInstance.getIdentifier());
     }
 
     @Test
@@ -64,6 +68,7 @@ public class ConsoleLogArtifactHandlerTest {
         completedJobInstance.setOriginalJobId(null);
         handler.jobStatusChanged(buildingJobInstance);
         verify(consoleService, never()).moveConsoleArtifacts(buildingJobInstance.getIdentifier());
+        verify(artifactsService, never()).scheduleArtifactManifest(any());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.cache;
+
+import com.thoughtworks.go.server.service.ArtifactsDirHolder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ArtifactCacheTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private ArtifactsDirHolder artifactsDirHolder;
+
+    @Before
+    public void setUp() {
+        artifactsDirHolder = mock(ArtifactsDirHolder.class);
+        when(artifactsDirHolder.getArtifactsDir()).thenReturn(temporaryFolder.getRoot());
+    }
+
+    @Test
+    public void shouldCreateEachCachedFileOnlyOnceAndDropRequestsBeyondTheQueueDepth() throws Exception {
+        BlockingCache cache = new BlockingCache(1, 1);
+
+        assertThat(cache.cacheCreated("a"), is(false));
+        cache.started.await(5, TimeUnit.SECONDS);
+        assertThat(cache.cacheCreated("b"), is(false));
+        assertThat(cache.cacheCreated("c"), is(false));
+        assertThat(cache.cacheCreated("a"), is(false));
+
+        Map<String, Object> json = cache.asJson();
+        assertThat(json.get("Queue depth"), is(1));
+        assertThat(json.get("In flight"), is(2));
+        assertThat(json.get("In flight bytes"), is(1L));
+        assertThat(json.get("Rejected"), is(1L));
+
+        cache.release.countDown();
+        waitUntilCreated(cache, "b");
+        assertThat(cache.created, contains("a", "b"));
+        assertThat(cache.asJson().get("Completed"), is(2L));
+        assertThat((List<?>) cache.asJson().get("Recently completed"), hasSize(2));
+    }
+
+    @Test
+    public void shouldCreateSmallCachesBeforeLargeOnesQueuedAtTheSameTime() throws Exception {
+        BlockingCache cache = new BlockingCache(1, 0);
+        cache.cacheCreated("a");
+        cache.started.await(5, TimeUnit.SECONDS);
+
+        cache.cacheCreated("large-" + 1024L * 1024 * 1024);
+        cache.cacheCreated("small");
+        cache.release.countDown();
+
+        waitUntilCreated(cache, "large-" + 1024L * 1024 * 1024);
+        assertThat(cache.created, contains("a", "small", "large-" + 1024L * 1024 * 1024));
+    }
+
+    @Test
+    public void shouldMeasureTheArtifactsOnTheCacheCreatorThread() throws Exception {
+        BlockingCache cache = new BlockingCache(1, 0);
+        cache.release.countDown();
+
+        cache.cacheCreated("a");
+        waitUntilCreated(cache, "a");
+
+        assertThat(cache.measuredOn, contains(startsWith("cache-creator-thread-")));
+    }
+
+    @Test
+    public void shouldHandBackTheFailureOfACreationOnce() throws Exception {
+        BlockingCache cache = new BlockingCache(1, 0);
+        cache.release.countDown();
+        cache.cacheCreated("fail");
+        for (int i = 0; i < 50 && !cache.asJson().get("Completed").equals(1L); i++) {
+            Thread.sleep(100);
+        }
+
+        try {
+            cache.cacheCreated("fail");
+            fail("should have handed back the failure");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("boom"));
+        }
+        assertThat(cache.cacheCreated("fail"), is(false));
+    }
+
+    private void waitUntilCreated(ArtifactCache<String> cache, String location) throws Exception {
+        for (int i = 0; i < 50 && !cache.cacheCreated(location); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(cache.cacheCreated(location), is(true));
+    }
+
+    private class BlockingCache extends ArtifactCache<String> {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> created = new CopyOnWriteArrayList<>();
+        private final List<String> measuredOn = new CopyOnWriteArrayList<>();
+
+        BlockingCache(int workers, int maxQueueDepth) {
+            super(artifactsDirHolder, workers, maxQueueDepth);
+        }
+
+        @Override
+        public File cachedFile(String artifactLocation) {
+            return new File(artifactsDirHolder.getArtifactsDir(), artifactLocation + ".zip");
+        }
+
+        @Override
+        void createCachedFile(String artifactLocation) throws IOException {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            created.add(artifactLocation);
+            if (artifactLocation.equals("fail")) {
+                throw new IOException("boom");
+            }
+            cachedFile(artifactLocation).createNewFile();
+        }
+
+        @Override
+        long sizeOf(String artifactLocation) {
+            measuredOn.add(Thread.currentThread().getName());
+            return artifactLocation.startsWith("large-") ? Long.parseLong(artifactLocation.substring("large-".length())) : 1;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.thoughtworks.go.server.cache;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.server.service.ArtifactsDirHolder;
 import com.thoughtworks.go.server.web.ArtifactFolder;
+import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.TestFileUtil;
 import com.thoughtworks.go.util.ZipUtil;
 import org.apache.commons.io.FileUtils;
@@ -28,7 +29,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Random;
 
 import static com.thoughtworks.go.matchers.FileExistsMatcher.exists;
 import static org.hamcrest.Matchers.*;
@@ -55,7 +58,7 @@ public class ZipArtifactCacheTest {
 
         artifactsDirHolder = mock(ArtifactsDirHolder.class);
         when(artifactsDirHolder.getArtifactsDir()).thenReturn(folder);
-        zipArtifactCache = new ZipArtifactCache(this.artifactsDirHolder, new ZipUtil());
+        zipArtifactCache = new ZipArtifactCache(this.artifactsDirHolder, new SystemEnvironment());
         artifactFolder = new ArtifactFolder(JOB_IDENTIFIER, new File(artifact, "dir"), "dir");
     }
 
@@ -105,6 +108,48 @@ public class ZipArtifactCacheTest {
         assertThat(new File(cacheDir, "dir/file1"), exists());
     }
 
+    @Test public void shouldEvictLeastRecentlyUsedZipsWhenCacheGrowsBeyondItsLimit() throws Exception {
+        SystemEnvironment systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.getArtifactsZipCacheMaxSizeInMb()).thenReturn(1L);
+        zipArtifactCache = new ZipArtifactCache(artifactsDirHolder, systemEnvironment);
+        File cacheDir = new File(folder, "cache/artifacts/" + JOB_FOLDERS);
+        cacheDir.mkdirs();
+        File oldZip = new File(cacheDir, "old.zip");
+        FileUtils.writeByteArrayToFile(oldZip, new byte[2 * 1024 * 1024]);
+        oldZip.setLastModified(System.currentTimeMillis() - 60 * 60 * 1000);
+
+        zipArtifactCache.createCachedFile(artifactFolder);
+
+        assertThat(oldZip, not(exists()));
+        assertThat(zipArtifactCache.cachedFile(artifactFolder), exists());
+    }
+
+    @Test public void shouldKeepTheZipsThatWereServedMostRecentlyWhenEvicting() throws Exception {
+        SystemEnvironment systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.getArtifactsZipCacheMaxSizeInMb()).thenReturn(1L);
+        zipArtifactCache = new ZipArtifactCache(artifactsDirHolder, systemEnvironment);
+        ArtifactFolder first = folderWithRandomContent("first");
+        ArtifactFolder second = folderWithRandomContent("second");
+        ArtifactFolder third = folderWithRandomContent("third");
+
+        zipArtifactCache.createCachedFile(first);
+        zipArtifactCache.createCachedFile(second);
+        assertThat(zipArtifactCache.cacheCreated(first), is(true));
+        zipArtifactCache.createCachedFile(third);
+
+        assertThat(zipArtifactCache.cachedFile(first), exists());
+        assertThat(zipArtifactCache.cachedFile(second), not(exists()));
+        assertThat(zipArtifactCache.cachedFile(third), exists());
+    }
+
+    private ArtifactFolder folderWithRandomContent(String name) throws IOException {
+        File artifact = new File(folder, JOB_FOLDERS);
+        byte[] content = new byte[400 * 1024];
+        new Random(name.hashCode()).nextBytes(content);
+        FileUtils.writeByteArrayToFile(new File(artifact, name + "/content.bin"), content);
+        return new ArtifactFolder(JOB_IDENTIFIER, new File(artifact, name), name);
+    }
+
     private void waitForCacheCreated() throws Exception {
         int timesTried = 10;
         while (timesTried > 0 && !zipArtifactCache.cacheCreated(artifactFolder)) {
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.dao;
+
+import com.thoughtworks.go.config.BasicCruiseConfig;
+import com.thoughtworks.go.config.BasicPipelineConfigs;
+import com.thoughtworks.go.config.PipelineConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.thoughtworks.go.helper.PipelineConfigMother.createPipelineConfig;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JobDurationStatisticsTest {
+    private final JobDurationStatistics statistics = new JobDurationStatistics(5);
+
+    @Test
+    void shouldKnowNothingAboutJobConfigsThatWereNotSeeded() {
+        statistics.record("pipeline", "stage", "job", 10);
+
+        assertThat(statistics.statsFor("pipeline", "stage", "job")).isNull();
+    }
+
+    @Test
+    void shouldComputeStatisticsOfTheSeededDurations() {
+        seed("pipeline", "stage", "job", Arrays.asList(30L, 10L, 50L, 20L));
+
+        JobDurationStatistics.Stats stats = statistics.statsFor("pipeline", "stage", "job");
+        assertThat(stats.count()).isEqualTo(4);
+        assertThat(stats.lastInSeconds()).isEqualTo(20L);
+        assertThat(stats.medianInSeconds()).isEqualTo(20L);
+        assertThat(stats.p90InSeconds()).isEqualTo(50L);
+    }
+
+    @Test
+    void shouldKeepOnlyTheMostRecentDurations() {
+        seed("pipeline", "stage", "job", Arrays.asList(1000L, 1000L, 1000L, 1000L, 1000L));
+
+        for (long duration = 1; duration <= 5; duration++) {
+            statistics.record("pipeline", "stage", "job", duration);
+        }
+
+        JobDurationStatistics.Stats stats = statistics.statsFor("pipeline", "stage", "job");
+        assertThat(stats.count()).isEqualTo(5);
+        assertThat(stats.lastInSeconds()).isEqualTo(5L);
+        assertThat(stats.medianInSeconds()).isEqualTo(3L);
+        assertThat(stats.p90InSeconds()).isEqualTo(5L);
+    }
+
+    @Test
+    void shouldRememberJobConfigsWithoutAnyPassedRun() {
+        JobDurationStatistics.Stats seeded = seed("pipeline", "stage", "job", emptyList());
+
+        assertThat(seeded.isEmpty()).isTrue();
+
+        statistics.record("pipeline", "stage", "job", 42);
+
+        assertThat(statistics.statsFor("pipeline", "stage", "job").medianInSeconds()).isEqualTo(42L);
+    }
+
+    @Test
+    void shouldAskForTheDurationsOfAJobConfigOnlyOnce() {
+        AtomicInteger seeded = new AtomicInteger();
+        statistics.statsFor("pipeline", "stage", "job", () -> {
+            seeded.incrementAndGet();
+            return Arrays.asList(10L);
+        });
+
+        JobDurationStatistics.Stats stats = statistics.statsFor("pipeline", "stage", "job", () -> {
+            seeded.incrementAndGet();
+            return Arrays.asList(99L);
+        });
+
+        assertThat(stats.medianInSeconds()).isEqualTo(10L);
+        assertThat(seeded.get()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDropTheLeastRecentlyUsedJobConfigWhenThereAreTooMany() {
+        JobDurationStatistics statistics = new JobDurationStatistics(5, 2);
+        statistics.statsFor("pipeline", "stage", "first", () -> Arrays.asList(10L));
+        statistics.statsFor("pipeline", "stage", "second", () -> Arrays.asList(20L));
+        statistics.statsFor("pipeline", "stage", "first", () -> Arrays.asList(99L));
+
+        statistics.statsFor("pipeline", "stage", "third", () -> Arrays.asList(30L));
+
+        assertThat(statistics.statsFor("pipeline", "stage", "first").medianInSeconds()).isEqualTo(10L);
+        assertThat(statistics.statsFor("pipeline", "stage", "second")).isNull();
+        assertThat(statistics.statsFor("pipeline", "stage", "third").medianInSeconds()).isEqualTo(30L);
+    }
+
+    @Test
+    void shouldForgetJobConfigsWhichAreNoLongerInTheConfig() {
+        seed("pipeline", "stage", "job", Arrays.asList(10L));
+        seed("pipeline", "stage", "renamed", Arrays.asList(20L));
+        seed("deleted", "stage", "job", Arrays.asList(30L));
+
+        statistics.onConfigChange(new BasicCruiseConfig(new BasicPipelineConfigs(createPipelineConfig("pipeline", "stage", "job"))));
+
+        assertThat(statistics.statsFor("pipeline", "stage", "job")).isNotNull();
+        assertThat(statistics.statsFor("pipeline", "stage", "renamed")).isNull();
+        assertThat(statistics.statsFor("deleted", "stage", "job")).isNull();
+    }
+
+    @Test
+    void shouldForgetTheRemovedJobConfigsOfAChangedPipeline() {
+        PipelineConfig pipelineConfig = createPipelineConfig("pipeline", "stage", "job");
+        seed("pipeline", "stage", "job", Arrays.asList(10L));
+        seed("pipeline", "stage", "renamed", Arrays.asList(20L));
+        seed("other", "stage", "job", Arrays.asList(30L));
+
+        statistics.forgetRemovedJobsOf(pipelineConfig, true);
+
+        assertThat(statistics.statsFor("pipeline", "stage", "job")).isNotNull();
+        assertThat(statistics.statsFor("pipeline", "stage", "renamed")).isNull();
+        assertThat(statistics.statsFor("other", "stage", "job")).isNotNull();
+
+        statistics.forgetRemovedJobsOf(pipelineConfig, false);
+
+        assertThat(statistics.statsFor("pipeline", "stage", "job")).isNull();
+        assertThat(statistics.statsFor("other", "stage", "job")).isNotNull();
+    }
+
+    @Test
+    void shouldIgnoreTheCaseOfNames() {
+        seed("Pipeline", "Stage", "Job", Arrays.asList(10L));
+
+        statistics.record("pipeline", "STAGE", "job", 20);
+
+        assertThat(statistics.statsFor("PIPELINE", "stage", "JOB").count()).isEqualTo(2);
+    }
+
+    private JobDurationStatistics.Stats seed(String pipelineName, String stageName, String jobName, List<Long> durations) {
+        return statistics.statsFor(pipelineName, stageName, jobName, () -> durations);
+    }
+}
@@ -15,11 +15,12 @@
  */
 package com.thoughtworks.go.server.dao;
 
-import com.opensymphony.oscache.base.Cache;
 import com.thoughtworks.go.domain.JobIdentifier;
+import com.thoughtworks.go.domain.JobInstance;
 import com.thoughtworks.go.domain.StageIdentifier;
 import com.thoughtworks.go.server.cache.GoCache;
 import com.thoughtworks.go.server.persistence.ArtifactPlanRepository;
+import com.thoughtworks.go.server.persistence.PipelineRunArchive;
 import com.thoughtworks.go.server.persistence.ResourceRepository;
 import com.thoughtworks.go.server.service.ClusterProfilesService;
 import com.thoughtworks.go.server.service.StubGoCache;
@@ -45,8 +46,6 @@ import static org.mockito.MockitoAnnotations.initMocks;
 class JobInstanceSqlMapDaoTest {
     private JobInstanceSqlMapDao jobInstanceSqlMapDao;
     @Mock
-    private Cache cache;
-    @Mock
     private TransactionSynchronizationManager transactionSynchronizationManager;
     private GoCache goCache;
     @Mock
@@ -65,14 +64,17 @@ class JobInstanceSqlMapDaoTest {
     private SqlMapClientTemplate template;
     @Mock
     private ClusterProfilesService clusterProfileService;
+    @Mock
+    private PipelineRunArchive pipelineRunArchive;
 
     @BeforeEach
     void setUp() {
         initMocks(this);
         goCache = new StubGoCache(new TestTransactionSynchronizationManager());
+        when(pipelineRunArchive.restoreTransitions(any(JobInstance.class))).thenAnswer(invocation -> invocation.getArgument(0));
         jobInstanceSqlMapDao = new JobInstanceSqlMapDao(environmentVariableDao, goCache, transactionTemplate, null,
-                cache, transactionSynchronizationManager, systemEnvironment, null, resourceRepository,
-                artifactPlanRepository, clusterProfileService, jobAgentMetadataDao);
+                transactionSynchronizationManager, systemEnvironment, null, resourceRepository,
+                artifactPlanRepository, clusterProfileService, jobAgentMetadataDao, pipelineRunArchive);
         jobInstanceSqlMapDao.setSqlMapClientTemplate(template);
     }
 
@@ -15,10 +15,9 @@
  */
 package com.thoughtworks.go.server.dao;
 
-import com.opensymphony.oscache.base.Cache;
 import com.rits.cloning.Cloner;
-import com.thoughtworks.go.domain.Stage;
-import com.thoughtworks.go.domain.StageIdentifier;
+import com.thoughtworks.go.domain.*;
+import com.thoughtworks.go.helper.JobInstanceMother;
 import com.thoughtworks.go.helper.StageMother;
 import com.thoughtworks.go.presentation.pipelinehistory.StageHistoryEntry;
 import com.thoughtworks.go.presentation.pipelinehistory.StageHistoryPage;
@@ -42,6 +41,7 @@ import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.function.Supplier;
@@ -59,12 +59,14 @@ class StageSqlMapDaoTest {
     private GoCache goCache;
     private SqlMapClientTemplate sqlMapClientTemplate;
     private Cloner cloner;
+    private JobInstanceSqlMapDao jobInstanceDao;
 
     @BeforeEach
     void setUp() {
         goCache = new StubGoCache(new TestTransactionSynchronizationManager());
         sqlMapClientTemplate = mock(SqlMapClientTemplate.class);
-        stageSqlMapDao = new StageSqlMapDao(mock(JobInstanceSqlMapDao.class), new Cache(true, false, false), mock(TransactionTemplate.class), mock(SqlSessionFactory.class), goCache,
+        jobInstanceDao = mock(JobInstanceSqlMapDao.class);
+        stageSqlMapDao = new StageSqlMapDao(jobInstanceDao, new JobDurationStatistics(20), mock(TransactionTemplate.class), mock(SqlSessionFactory.class), goCache,
                 mock(TransactionSynchronizationManager.class), mock(SystemEnvironment.class), null);
         stageSqlMapDao.setSqlMapClientTemplate(sqlMapClientTemplate);
         cloner = mock(Cloner.class);
@@ -91,6 +93,42 @@ class StageSqlMapDaoTest {
         verify(sqlMapClientTemplate, times(1)).queryForList("latestStageInstances");
     }
 
+    @Test
+    void shouldSeedDurationStatisticsOfAJobConfigFromTheDatabaseWithOneQueryOnlyOnce() {
+        when(sqlMapClientTemplate.queryForList(eq("getLastSuccessfulBuildsWithDurationTransitions"), any())).thenReturn((List) Arrays.asList(passed(10), passed(20)));
+
+        JobInstance running = JobInstanceMother.building("job");
+        Assertions.assertThat(stageSqlMapDao.getExpectedDurationSeconds("pipeline", "stage", running)).isEqualTo(10L);
+        Assertions.assertThat(stageSqlMapDao.getExpectedDurationMillis("pipeline", "stage", running)).isEqualTo(10000L);
+        Assertions.assertThat(stageSqlMapDao.getDurationStatistics("pipeline", "stage", "job").lastInSeconds()).isEqualTo(20L);
+
+        verify(sqlMapClientTemplate, times(1)).queryForList(eq("getLastSuccessfulBuildsWithDurationTransitions"), any());
+        verifyZeroInteractions(jobInstanceDao);
+    }
+
+    @Test
+    void shouldRecordDurationsOfPassedJobsAsTheyComplete() {
+        when(sqlMapClientTemplate.queryForList(eq("getLastSuccessfulBuildsWithDurationTransitions"), any())).thenReturn((List) Arrays.asList(passed(10)));
+        stageSqlMapDao.getDurationStatistics("pipeline", "stage", "job");
+
+        JobInstance failed = JobInstanceMother.completed("job", JobResult.Failed, new Date(100000), new Date(0));
+        failed.setIdentifier(new JobIdentifier("pipeline", 1, "1", "stage", "1", "job", 3L));
+        stageSqlMapDao.jobStatusChanged(failed);
+        stageSqlMapDao.jobStatusChanged(passed(30));
+        stageSqlMapDao.jobStatusChanged(passed(50));
+
+        JobDurationStatistics.Stats stats = stageSqlMapDao.getDurationStatistics("pipeline", "stage", "job");
+        Assertions.assertThat(stats.count()).isEqualTo(3);
+        Assertions.assertThat(stats.medianInSeconds()).isEqualTo(30L);
+        verify(sqlMapClientTemplate, times(1)).queryForList(eq("getLastSuccessfulBuildsWithDurationTransitions"), any());
+    }
+
+    private JobInstance passed(int durationInSeconds) {
+        JobInstance job = JobInstanceMother.completed("job", JobResult.Passed, new Date(durationInSeconds * 1000L), new Date(0));
+        job.setIdentifier(new JobIdentifier("pipeline", 1, "1", "stage", "1", "job", 1L));
+        return job;
+    }
+
     @Test
     void shouldRemoveLatestStageInstancesFromCache_OnStageChange() {
         when(sqlMapClientTemplate.queryForList("latestStageInstances")).thenReturn(Arrays.asList(new StageIdentity("p1", "s1", 10L), new StageIdentity("p2", "s2", 100L)));
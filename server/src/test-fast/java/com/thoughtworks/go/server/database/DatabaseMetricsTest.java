@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.database;
+
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DatabaseMetricsTest {
+    private DatabaseMetrics metrics;
+
+    @Before
+    public void setUp() {
+        SystemEnvironment systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.isDatabaseInstrumentationEnabled()).thenReturn(true);
+        when(systemEnvironment.getDatabaseSlowQueryThresholdMillis()).thenReturn(1000);
+        metrics = new DatabaseMetrics(systemEnvironment);
+    }
+
+    @Test
+    public void shouldRecordLatencyAndRowsPerStatement() {
+        metrics.statementExecuted("Pipeline.getPipelineHistory", TimeUnit.MILLISECONDS.toNanos(3), 10, null);
+        metrics.statementExecuted("Pipeline.getPipelineHistory", TimeUnit.MILLISECONDS.toNanos(30), 5, null);
+        metrics.statementExecuted("Stage.findStageById", TimeUnit.MILLISECONDS.toNanos(1), 1, null);
+
+        LatencyHistogram latency = metrics.latencyOf("Pipeline.getPipelineHistory");
+        assertThat(latency.count(), is(2L));
+        assertThat(metrics.rowsOf("Pipeline.getPipelineHistory"), is(15L));
+        Map<String, Object> json = latency.asJson();
+        assertThat(json.get("MaxMillis"), is(30L));
+        assertThat(json.get("Histogram"), is(histogram("<5ms", 1L, "<50ms", 1L)));
+    }
+
+    @Test
+    public void shouldPutSlowValuesInTheLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(TimeUnit.SECONDS.toNanos(20));
+        histogram.record(0);
+
+        assertThat(histogram.asJson().get("Histogram"), is(histogram("<1ms", 1L, ">=10000ms", 1L)));
+    }
+
+    @Test
+    public void shouldTimeConnectionsTakenFromThePool() throws SQLException {
+        DataSource pool = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(pool.getConnection()).thenReturn(connection);
+
+        assertThat(new InstrumentedDataSource(pool, metrics).getConnection(), is(sameInstance(connection)));
+
+        assertThat(metrics.connectionWait().count(), is(1L));
+        Map<String, Object> pooling = (Map<String, Object>) metrics.asJson().get("Connection Pool");
+        assertThat(pooling.get("Waiting"), is(0));
+        assertThat(pooling.get("Peak Waiting"), is(1));
+    }
+
+    @Test
+    public void shouldDescribeTheShapeOfParametersWithoutTheirValues() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("pipelineName", "secret-name");
+        parameters.put("ids", Arrays.asList(1L, 2L, 3L));
+        parameters.put("limit", 10);
+        parameters.put("after", null);
+
+        String shape = DatabaseMetrics.shapeOf(parameters);
+
+        assertThat(shape, is("{after: null, ids: ArrayList[3], limit: Integer, pipelineName: String}"));
+        assertThat(shape, not(containsString("secret-name")));
+        assertThat(DatabaseMetrics.shapeOf(new long[]{1, 2}), is("long[2]"));
+    }
+
+    private static Map<String, Long> histogram(Object... bucketsAndCounts) {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < bucketsAndCounts.length; i += 2) {
+            histogram.put((String) bucketsAndCounts[i], (Long) bucketsAndCounts[i + 1]);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.database;
+
+import com.thoughtworks.go.server.newsecurity.utils.SessionUtils;
+import com.thoughtworks.go.server.security.userdetail.GoUserPrinciple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class ReadReplicaDataSourceTest {
+    private DataSource primary;
+    private DataSource replica;
+    private Connection replicaConnection;
+
+    @Before
+    public void setUp() throws SQLException {
+        primary = mock(DataSource.class);
+        replica = mock(DataSource.class);
+        replicaConnection = mock(Connection.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+    }
+
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        SessionUtils.unsetCurrentUser();
+    }
+
+    @Test
+    public void shouldSendReadsToTheReplica() throws SQLException {
+        ReadReplicaDataSource dataSource = new ReadReplicaDataSource(primary, replica, 0);
+
+        Connection connection = ReadReplicaDataSource.read(() -> connection(dataSource));
+
+        assertThat(connection, is(sameInstance(replicaConnection)));
+        assertThat(dataSource.replicaConnections(), is(1L));
+        assertThat(ReadReplicaDataSource.isReadingFromReplica(), is(false));
+    }
+
+    @Test
+    public void shouldNotPutWhatWasReadFromTheReplicaInTheCache() {
+        ReadReplicaDataSource dataSource = new ReadReplicaDataSource(primary, replica, 0);
+
+        boolean readingFromReplica = ReadReplicaDataSource.read(() -> {
+            connection(dataSource);
+            return ReadReplicaDataSource.isReadingFromReplica();
+        });
+
+        assertThat(readingFromReplica, is(true));
+    }
+
+    @Test
+    public void shouldKeepWhatIsLoadedOffThePrimaryDuringAReplicaReadCacheable() {
+        ReadReplicaDataSource dataSource = new ReadReplicaDataSource(primary, replica, 0);
+
+        boolean readingFromReplica = ReadReplicaDataSource.read(() -> {
+            connection(dataSource);
+            boolean onPrimary = ReadReplicaDataSource.onPrimary(() -> {
+                connection(dataSource);
+                return ReadReplicaDataSource.isReadingFromReplica();
+            });
+            assertThat(onPrimary, is(false));
+            return ReadReplicaDataSource.isReadingFromReplica();
+        });
+
+        assertThat(readingFromReplica, is(true));
+        assertThat(dataSource.replicaConnections(), is(1L));
+        assertThat(dataSource.primaryConnections(), is(1L));
+    }
+
+    @Test
+    public void shouldSendEverythingElseToThePrimary() throws SQLException {
+        ReadReplicaDataSource dataSource = new ReadReplicaDataSource(primary, replica, 0);
+
+        dataSource.getConnection();
+
+        assertThat(dataSource.primaryConnections(), is(1L));
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    public void shouldSendReadsInATransactionToThePrimary() throws SQLException {
+        ReadReplicaDataSource dataSource = new ReadReplicaDataSource(primary, replica, 0);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        ReadReplicaDataSource.read(() -> connection(dataSource));
+
+        assertThat(dataSource.primaryConnections(), is(1L));
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    public void shouldSendReadsToThePrimaryRightAfterTheThreadWrote() throws SQLException {
+        ReadReplicaDataSource dataSource = new ReadReplicaDataSource(primary, replica, 60000);
+
+        ReadReplicaDataSource.markWritten();
+        ReadReplicaDataSource.read(() -> connection(dataSource));
+
+        assertThat(dataSource.primaryConnections(), is(1L));
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    public void shouldSendReadsToThePrimaryRightAfterTheUserWroteOnAnyThread() throws Exception {
+        ReadReplicaDataSource dataSource = new ReadReplicaDataSource(primary, replica, 60000);
+        Thread writer = new Thread(() -> {
+            SessionUtils.setCurrentUser(new GoUserPrinciple("bob", "Bob"));
+            ReadReplicaDataSource.markWritten();
+        });
+        writer.start();
+        writer.join();
+
+        SessionUtils.setCurrentUser(new GoUserPrinciple("bob", "Bob"));
+        ReadReplicaDataSource.read(() -> connection(dataSource));
+        SessionUtils.setCurrentUser(new GoUserPrinciple("alice", "Alice"));
+        ReadReplicaDataSource.read(() -> connection(dataSource));
+
+        assertThat(dataSource.primaryConnections(), is(1L));
+        assertThat(dataSource.replicaConnections(), is(1L));
+    }
+
+    @Test
+    public void shouldWorkOutTheLagFromTheLatestTransitionLookedUpByPrimaryKey() throws SQLException {
+        DataSource primaryDataSource = lastChangeAt(primary, 10000);
+        DataSource replicaDataSource = lastChangeAt(replica, 4000);
+        ReadReplicaDataSource dataSource = new ReadReplicaDataSource(primaryDataSource, replicaDataSource, 0);
+
+        assertThat(dataSource.lagInMillis(), is(6000L));
+    }
+
+    @Test
+    public void shouldSendReadsToThePrimaryWhileTheReplicaIsLagging() throws SQLException {
+        ReadReplicaDataSource dataSource = new ReadReplicaDataSource(primary, replica, 0);
+        dataSource.setReplicaUsable(false);
+
+        ReadReplicaDataSource.read(() -> connection(dataSource));
+
+        assertThat(dataSource.primaryConnections(), is(1L));
+        verify(replica, never()).getConnection();
+    }
+
+    private static DataSource lastChangeAt(DataSource dataSource, long time) throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(argThat(query -> query.contains("MAX(id)") && !query.contains("MAX(statechangetime)")))).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getTimestamp(1)).thenReturn(new Timestamp(time));
+        return dataSource;
+    }
+
+    private static Connection connection(DataSource dataSource) {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.elasticagents;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.thoughtworks.go.config.elastic.ClusterProfile;
+import com.thoughtworks.go.config.elastic.ElasticProfile;
+import com.thoughtworks.go.plugin.access.elastic.ElasticAgentPluginRegistry;
+import com.thoughtworks.go.server.messaging.GoMessageQueue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CreateAgentListenerTest {
+    private ElasticAgentPluginRegistry registry;
+    private RateLimiter rateLimiter;
+    private List<CreateAgentMessage> requeued;
+    private CreateAgentMessage message;
+
+    @Before
+    public void setUp() {
+        registry = mock(ElasticAgentPluginRegistry.class);
+        rateLimiter = mock(RateLimiter.class);
+        requeued = new ArrayList<>();
+        message = new CreateAgentMessage("key", "env", new ElasticProfile("foo", "prod-cluster"), new ClusterProfile("prod-cluster", "plugin-id"), null);
+    }
+
+    @Test
+    public void shouldCreateAgentWhenThereIsRoomInTheRateLimit() {
+        when(rateLimiter.tryAcquire(anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+        new CreateAgentListener(registry, rateLimiter, requeued::add).onMessage(message);
+
+        verify(registry).createAgent(eq("plugin-id"), eq("key"), eq("env"), any(), any(), any());
+        assertThat(requeued, empty());
+    }
+
+    @Test
+    public void shouldRequeueInsteadOfWaitingWhenTheRateLimitIsReached() {
+        when(rateLimiter.tryAcquire(anyLong(), any(TimeUnit.class))).thenReturn(false);
+
+        new CreateAgentListener(registry, rateLimiter, requeued::add).onMessage(message);
+
+        verifyZeroInteractions(registry);
+        assertThat(requeued, contains(message));
+    }
+
+    @Test
+    public void shouldRequeueWithWhatIsLeftOfTheTimeToLive() {
+        GoMessageQueue<CreateAgentMessage> queue = mock(GoMessageQueue.class);
+        message.expiresAt(System.currentTimeMillis() + 60000);
+
+        CreateAgentQueueHandler.requeue(queue, message);
+
+        verify(queue).post(eq(message), longThat(timeToLive -> timeToLive > 0 && timeToLive <= 60000));
+    }
+
+    @Test
+    public void shouldDropRequeuedMessageOnceItHasExpired() {
+        GoMessageQueue<CreateAgentMessage> queue = mock(GoMessageQueue.class);
+        message.expiresAt(System.currentTimeMillis() - 1);
+
+        CreateAgentQueueHandler.requeue(queue, message);
+
+        verifyZeroInteractions(queue);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.notifications;
+
+import com.thoughtworks.go.util.TimeProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.thoughtworks.go.server.messaging.notifications.PluginNotificationLane.OverflowPolicy.COALESCE;
+import static com.thoughtworks.go.server.messaging.notifications.PluginNotificationLane.OverflowPolicy.DROP_OLDEST;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PluginNotificationLaneTest {
+    private TimeProvider timeProvider;
+
+    @BeforeEach
+    void setUp() {
+        timeProvider = mock(TimeProvider.class);
+        when(timeProvider.currentTimeMillis()).thenReturn(1000L);
+    }
+
+    @Test
+    void shouldDeliverAllMessagesInOrderWhenLaneIsUnbounded() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 0, DROP_OLDEST, 0, timeProvider);
+        PluginNotificationMessage first = message("agent:1");
+        PluginNotificationMessage second = message("agent:1");
+
+        assertThat(lane.offer(first)).isTrue();
+        assertThat(lane.offer(second)).isTrue();
+
+        assertThat(lane.pending()).isEqualTo(2);
+        assertThat(lane.poll()).isSameAs(first);
+        assertThat(lane.acknowledge(first)).isNull();
+        assertThat(lane.poll()).isSameAs(second);
+        assertThat(lane.poll()).isNull();
+        assertThat(lane.pending()).isEqualTo(0);
+    }
+
+    @Test
+    void shouldHoldBackAMessageOfAnEntityUntilTheMessageBeingSentOfItIsAcknowledged() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 0, DROP_OLDEST, 0, timeProvider);
+        PluginNotificationMessage first = message("agent:1");
+        PluginNotificationMessage second = message("agent:1");
+        PluginNotificationMessage other = message("agent:2");
+        lane.offer(first);
+        lane.offer(second);
+        lane.offer(other);
+
+        assertThat(lane.poll()).isSameAs(first);
+        assertThat(lane.poll()).isSameAs(other);
+        assertThat(lane.poll()).isNull();
+
+        assertThat(lane.acknowledge(other)).isNull();
+        assertThat(lane.acknowledge(first)).isSameAs(second);
+        assertThat(lane.acknowledge(second)).isNull();
+        assertThat(lane.pending()).isEqualTo(0);
+    }
+
+    @Test
+    void shouldNotPutAnotherMessageOnTheQueueForAMessageWhichIsHeldBack() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 2, DROP_OLDEST, 0, timeProvider);
+        PluginNotificationMessage first = message("agent:1");
+        lane.offer(first);
+        lane.offer(message("agent:1"));
+        lane.poll();
+        lane.poll();
+
+        assertThat(lane.offer(message("agent:2"))).isTrue();
+        assertThat(lane.offer(message("agent:3"))).isFalse();
+        assertThat(lane.acknowledge(first).getEntityKey()).isEqualTo("agent:2");
+    }
+
+    @Test
+    void shouldPutAnotherMessageOnTheQueueWhenAnEarlierOneCouldNotBePosted() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 1, DROP_OLDEST, 0, timeProvider);
+
+        assertThat(lane.offer(message("agent:1"))).isTrue();
+        lane.notPosted();
+
+        assertThat(lane.offer(message("agent:2"))).isTrue();
+    }
+
+    @Test
+    void shouldDropOldestMessageWithoutPuttingAnotherMessageOnTheQueueWhenLaneIsFull() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 2, DROP_OLDEST, 0, timeProvider);
+        PluginNotificationMessage second = message("agent:2");
+        PluginNotificationMessage third = message("agent:3");
+
+        assertThat(lane.offer(message("agent:1"))).isTrue();
+        assertThat(lane.offer(second)).isTrue();
+        assertThat(lane.offer(third)).isFalse();
+
+        assertThat(lane.pending()).isEqualTo(2);
+        assertThat(lane.poll()).isSameAs(second);
+        assertThat(lane.poll()).isSameAs(third);
+        assertThat(lane.asJson()).containsEntry("Dropped", 1L).containsEntry("Delivered", 2L);
+    }
+
+    @Test
+    void shouldReplaceAPendingMessageWithANewerMessageForTheSameEntity() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 0, COALESCE, 0, timeProvider);
+        PluginNotificationMessage otherStage = message("stage:p/1/t/1");
+        PluginNotificationMessage passed = message("stage:p/1/s/1");
+
+        assertThat(lane.offer(message("stage:p/1/s/1"))).isTrue();
+        assertThat(lane.offer(otherStage)).isTrue();
+        assertThat(lane.offer(passed)).isFalse();
+
+        assertThat(lane.poll()).isSameAs(otherStage);
+        assertThat(lane.poll()).isSameAs(passed);
+        assertThat(lane.asJson()).containsEntry("Coalesced", 1L);
+    }
+
+    @Test
+    void shouldPutAnotherMessageOnTheQueueOnceTheQueuedOnesAreReceived() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 1, DROP_OLDEST, 0, timeProvider);
+
+        assertThat(lane.offer(message("agent:1"))).isTrue();
+        lane.poll();
+
+        assertThat(lane.offer(message("agent:2"))).isTrue();
+    }
+
+    @Test
+    void shouldForgetEntitiesWhichHaveNoPendingMessages() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 1, COALESCE, 100, timeProvider);
+        lane.offer(message("agent:1"));
+        lane.offer(message("agent:2"));
+        lane.poll();
+
+        assertThat(lane.entitiesTracked()).isEqualTo(0);
+
+        lane.offer(message("agent:3"));
+        when(timeProvider.currentTimeMillis()).thenReturn(2000L);
+
+        assertThat(lane.poll()).isNull();
+        assertThat(lane.entitiesTracked()).isEqualTo(0);
+    }
+
+    @Test
+    void shouldReportLagOfTheOldestPendingMessage() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 0, DROP_OLDEST, 0, timeProvider);
+        lane.offer(message("agent:1"));
+
+        when(timeProvider.currentTimeMillis()).thenReturn(1500L);
+
+        assertThat(lane.lagInMillis()).isEqualTo(500L);
+    }
+
+    @Test
+    void shouldExpireMessagesWhichHaveOutlivedTheirTimeToLive() {
+        PluginNotificationLane lane = new PluginNotificationLane("plugin", 0, DROP_OLDEST, 100, timeProvider);
+        lane.offer(message("agent:1"));
+
+        when(timeProvider.currentTimeMillis()).thenReturn(2000L);
+        PluginNotificationMessage fresh = message("agent:2");
+        lane.offer(fresh);
+
+        assertThat(lane.pending()).isEqualTo(1);
+        assertThat(lane.lagInMillis()).isEqualTo(0L);
+        assertThat(lane.poll()).isSameAs(fresh);
+    }
+
+    private PluginNotificationMessage message(String entityKey) {
+        return new PluginNotificationMessage<>("plugin", "request", "data", entityKey);
+    }
+}
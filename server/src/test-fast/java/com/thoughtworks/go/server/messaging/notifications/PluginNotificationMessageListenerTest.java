@@ -20,12 +20,16 @@ import com.thoughtworks.go.plugin.api.response.Result;
 import com.thoughtworks.go.serverhealth.HealthStateScope;
 import com.thoughtworks.go.serverhealth.ServerHealthService;
 import com.thoughtworks.go.serverhealth.ServerHealthState;
+import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.TimeProvider;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 public class PluginNotificationMessageListenerTest {
@@ -83,4 +87,66 @@ public class PluginNotificationMessageListenerTest {
         verify(notificationExtension).notify("pid", "request-name", message.getData());
     }
 
+    @Test
+    public void shouldSendTheOldestPendingMessageOfThePluginInsteadOfTheReceivedOne() {
+        NotificationExtension notificationExtension = mock(NotificationExtension.class);
+        ServerHealthService serverHealthService = mock(ServerHealthService.class);
+        PluginNotificationLanes lanes = lanes();
+        PluginNotificationMessageListener listener = new PluginNotificationMessageListener(notificationExtension, serverHealthService, lanes);
+        PluginNotificationMessage oldest = new PluginNotificationMessage("pid", "request-name", "oldest");
+        PluginNotificationMessage newest = new PluginNotificationMessage("pid", "request-name", "newest");
+        lanes.laneFor("pid").offer(oldest);
+        lanes.laneFor("pid").offer(newest);
+        when(notificationExtension.notify(any(), any(), any())).thenReturn(new Result());
+
+        listener.onMessage(newest);
+
+        verify(notificationExtension).notify("pid", "request-name", "oldest");
+        verifyNoMoreInteractions(notificationExtension);
+    }
+
+    @Test
+    public void shouldSendTheMessageOfAnEntityAnotherListenerHeldBackOnceItsEarlierMessageIsSent() {
+        NotificationExtension notificationExtension = mock(NotificationExtension.class);
+        ServerHealthService serverHealthService = mock(ServerHealthService.class);
+        PluginNotificationLanes lanes = lanes();
+        PluginNotificationMessageListener listener = new PluginNotificationMessageListener(notificationExtension, serverHealthService, lanes);
+        PluginNotificationMessage building = new PluginNotificationMessage<>("pid", "request-name", "building", "stage:p/1/s/1");
+        PluginNotificationMessage passed = new PluginNotificationMessage<>("pid", "request-name", "passed", "stage:p/1/s/1");
+        lanes.laneFor("pid").offer(building);
+        lanes.laneFor("pid").offer(passed);
+        when(notificationExtension.notify("pid", "request-name", "building")).thenAnswer(invocation -> {
+            assertThat(lanes.poll("pid") == null, is(true));
+            return new Result();
+        });
+        when(notificationExtension.notify("pid", "request-name", "passed")).thenReturn(new Result());
+
+        listener.onMessage(building);
+
+        InOrder inOrder = inOrder(notificationExtension);
+        inOrder.verify(notificationExtension).notify("pid", "request-name", "building");
+        inOrder.verify(notificationExtension).notify("pid", "request-name", "passed");
+        assertThat(lanes.laneFor("pid").pending(), is(0));
+    }
+
+    @Test
+    public void shouldSkipMessageWhenThePluginHasNoPendingMessagesLeft() {
+        NotificationExtension notificationExtension = mock(NotificationExtension.class);
+        ServerHealthService serverHealthService = mock(ServerHealthService.class);
+        PluginNotificationLanes lanes = lanes();
+        PluginNotificationMessageListener listener = new PluginNotificationMessageListener(notificationExtension, serverHealthService, lanes);
+        PluginNotificationMessage message = new PluginNotificationMessage("pid", "request-name", "data");
+        lanes.laneFor("pid").offer(message);
+        lanes.laneFor("pid").poll();
+
+        listener.onMessage(message);
+
+        verifyZeroInteractions(notificationExtension, serverHealthService);
+    }
+
+    private PluginNotificationLanes lanes() {
+        SystemEnvironment systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.get(SystemEnvironment.NOTIFICATION_PLUGIN_MESSAGES_TTL)).thenReturn(0L);
+        return new PluginNotificationLanes(systemEnvironment, new TimeProvider());
+    }
 }
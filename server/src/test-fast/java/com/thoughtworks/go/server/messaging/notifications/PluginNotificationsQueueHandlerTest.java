@@ -18,12 +18,14 @@ package com.thoughtworks.go.server.messaging.notifications;
 import com.thoughtworks.go.plugin.access.notification.NotificationExtension;
 import com.thoughtworks.go.plugin.infra.PluginManager;
 import com.thoughtworks.go.plugin.infra.plugininfo.GoPluginDescriptor;
+import com.thoughtworks.go.server.messaging.MessageSender;
 import com.thoughtworks.go.server.messaging.MessagingService;
 import com.thoughtworks.go.server.messaging.PluginAwareMessageQueue;
 import com.thoughtworks.go.server.messaging.activemq.JMSMessageListenerAdapter;
 import com.thoughtworks.go.serverhealth.ServerHealthService;
 import com.thoughtworks.go.util.ReflectionUtil;
 import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.TimeProvider;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -31,10 +33,14 @@ import org.mockito.Mock;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import static com.thoughtworks.go.util.SystemEnvironment.NOTIFICATION_PLUGIN_MESSAGES_TTL;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class PluginNotificationsQueueHandlerTest {
@@ -48,12 +54,18 @@ public class PluginNotificationsQueueHandlerTest {
     private SystemEnvironment systemEnvironment;
     @Mock
     private ServerHealthService serverHealthService;
+    @Mock
+    private MessageSender sender;
+    private PluginNotificationLanes lanes;
     private PluginNotificationsQueueHandler handler;
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        handler = new PluginNotificationsQueueHandler(messagingService, notificationExtension, pluginManager, systemEnvironment, serverHealthService);
+        when(messagingService.createQueueSender(any())).thenReturn(sender);
+        when(systemEnvironment.get(NOTIFICATION_PLUGIN_MESSAGES_TTL)).thenReturn(0L);
+        lanes = new PluginNotificationLanes(systemEnvironment, new TimeProvider());
+        handler = new PluginNotificationsQueueHandler(messagingService, notificationExtension, pluginManager, systemEnvironment, serverHealthService, lanes);
     }
 
     @Test
@@ -79,6 +91,46 @@ public class PluginNotificationsQueueHandlerTest {
         assertThat(listenersForPlugin3.get(pluginId3).size(), is(2));
     }
 
+    @Test
+    public void shouldNotPutMoreMessagesOnThePluginQueueThanThePluginMayHavePending() {
+        when(notificationExtension.canHandlePlugin("plugin-1")).thenReturn(true);
+        when(systemEnvironment.getNotificationListenerCountForPlugin("plugin-1")).thenReturn(1);
+        when(systemEnvironment.getNotificationMaxPendingForPlugin("plugin-1")).thenReturn(2);
+        handler.pluginLoaded(getPluginDescriptor("plugin-1"));
+
+        for (int i = 0; i < 5; i++) {
+            handler.post(new PluginNotificationMessage<>("plugin-1", "request", "data-" + i), 1000L);
+        }
+
+        verify(sender, times(2)).sendMessage(any(PluginNotificationMessage.class), eq(0L));
+        assertThat(lanes.laneFor("plugin-1").pending(), is(2));
+        assertThat(lanes.poll("plugin-1").getData(), is("data-3"));
+        assertThat(lanes.poll("plugin-1").getData(), is("data-4"));
+    }
+
+    @Test
+    public void shouldPutTheNextMessageOnThePluginQueueWhenPostingTheLastOneFailed() {
+        when(notificationExtension.canHandlePlugin("plugin-1")).thenReturn(true);
+        when(systemEnvironment.getNotificationListenerCountForPlugin("plugin-1")).thenReturn(1);
+        when(systemEnvironment.getNotificationMaxPendingForPlugin("plugin-1")).thenReturn(1);
+        handler.pluginLoaded(getPluginDescriptor("plugin-1"));
+        doThrow(new RuntimeException("broker down")).doNothing().when(sender).sendMessage(any(PluginNotificationMessage.class), eq(0L));
+
+        handler.post(new PluginNotificationMessage<>("plugin-1", "request", "data-0"), 1000L);
+        handler.post(new PluginNotificationMessage<>("plugin-1", "request", "data-1"), 1000L);
+
+        verify(sender, times(2)).sendMessage(any(PluginNotificationMessage.class), eq(0L));
+        assertThat(lanes.poll("plugin-1").getData(), is("data-1"));
+    }
+
+    @Test
+    public void shouldPostMessageForAPluginWithoutAQueueAsBefore() {
+        handler.post(new PluginNotificationMessage<>("unknown", "request", "data"), 1000L);
+
+        verify(sender, never()).sendMessage(any(), anyLong());
+        assertThat(lanes.poll("unknown") == null, is(true));
+    }
+
     private GoPluginDescriptor getPluginDescriptor(String pluginId) {
         return GoPluginDescriptor.builder().id(pluginId).build();
     }
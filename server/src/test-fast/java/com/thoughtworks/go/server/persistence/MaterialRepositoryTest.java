@@ -15,6 +15,9 @@
  */
 package com.thoughtworks.go.server.persistence;
 
+import com.thoughtworks.go.domain.MaterialRevision;
+import com.thoughtworks.go.domain.MaterialRevisions;
+import com.thoughtworks.go.domain.PipelineMaterialRevision;
 import com.thoughtworks.go.domain.materials.Modification;
 import com.thoughtworks.go.domain.materials.git.GitMaterialInstance;
 import com.thoughtworks.go.server.cache.GoCache;
@@ -25,6 +28,7 @@ import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.DetachedCriteria;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
@@ -32,10 +36,18 @@ import org.mockito.stubbing.Answer;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import static com.thoughtworks.go.helper.MaterialsMother.gitMaterial;
+
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -118,4 +130,67 @@ public class MaterialRepositoryTest {
         verifyZeroInteractions(goCache);
     }
 
+    @Test
+    public void shouldLoadMaterialRevisionsOfManyPipelinesWithOneQueryForRevisionsAndOneForModifications() {
+        GitMaterialInstance materialInstance = new GitMaterialInstance("url", null, "branch", null, UUID.randomUUID().toString());
+        materialInstance.setId(10);
+        Modification first = modification(materialInstance, 1);
+        Modification second = modification(materialInstance, 2);
+        Modification third = modification(materialInstance, 3);
+        PipelineMaterialRevision firstPipelinePmr = new PipelineMaterialRevision(1, new MaterialRevision(gitMaterial("url"), second, first), null);
+        firstPipelinePmr.setId(100);
+        PipelineMaterialRevision secondPipelinePmr = new PipelineMaterialRevision(2, new MaterialRevision(gitMaterial("url"), third), null);
+        secondPipelinePmr.setId(101);
+        when(mockHibernateTemplate.findByCriteria(any(DetachedCriteria.class)))
+                .thenReturn(new ArrayList<>(Arrays.asList(secondPipelinePmr, firstPipelinePmr)))
+                .thenReturn(new ArrayList<>(Arrays.asList(first, third, second)));
+
+        Map<Long, MaterialRevisions> revisions = materialRepository.findMaterialRevisionsForPipelines(Arrays.asList(1L, 2L));
+
+        assertThat(revisions.get(1L).getMaterialRevision(0).getModifications(), contains(second, first));
+        assertThat(revisions.get(2L).getMaterialRevision(0).getModifications(), contains(third));
+        verify(mockHibernateTemplate, times(2)).findByCriteria(any(DetachedCriteria.class));
+        verify(mockHibernateTemplate, never()).find(anyString(), any(Object[].class));
+        verify(mockHibernateTemplate, never()).find(anyString(), anyLong());
+
+        materialRepository.findMaterialRevisionsForPipelines(Arrays.asList(1L, 2L));
+        verify(mockHibernateTemplate, times(2)).findByCriteria(any(DetachedCriteria.class));
+    }
+
+    @Test
+    public void shouldLoadOnlyTheMaterialRevisionsWhichAreNotCachedYetAndKeepTheCachedOnes() {
+        GitMaterialInstance materialInstance = new GitMaterialInstance("url", null, "branch", null, UUID.randomUUID().toString());
+        materialInstance.setId(10);
+        Modification first = modification(materialInstance, 1);
+        Modification second = modification(materialInstance, 2);
+        PipelineMaterialRevision firstPipelinePmr = new PipelineMaterialRevision(1, new MaterialRevision(gitMaterial("url"), first), null);
+        firstPipelinePmr.setId(100);
+        PipelineMaterialRevision secondPipelinePmr = new PipelineMaterialRevision(2, new MaterialRevision(gitMaterial("url"), second), null);
+        secondPipelinePmr.setId(101);
+        List<PipelineMaterialRevision> cachedPmrs = new ArrayList<>(Arrays.asList(firstPipelinePmr));
+        List<Modification> cachedModifications = new ArrayList<>(Arrays.asList(first));
+        ourCustomCache.put(MaterialRepository.class.getName() + "_pipelinePMRs_1", cachedPmrs);
+        ourCustomCache.put(MaterialRepository.class.getName() + "_pmrModifications_100", cachedModifications);
+        when(mockHibernateTemplate.findByCriteria(any(DetachedCriteria.class)))
+                .thenReturn(new ArrayList<>(Arrays.asList(secondPipelinePmr)))
+                .thenReturn(new ArrayList<>(Arrays.asList(second)));
+
+        Map<Long, MaterialRevisions> revisions = materialRepository.findMaterialRevisionsForPipelines(Arrays.asList(1L, 2L));
+
+        assertThat(revisions.get(1L).getMaterialRevision(0).getModifications(), contains(first));
+        assertThat(revisions.get(2L).getMaterialRevision(0).getModifications(), contains(second));
+        assertThat(ourCustomCache.get(MaterialRepository.class.getName() + "_pipelinePMRs_1"), is(sameInstance(cachedPmrs)));
+        assertThat(ourCustomCache.get(MaterialRepository.class.getName() + "_pmrModifications_100"), is(sameInstance(cachedModifications)));
+        assertThat(cachedPmrs.size(), is(1));
+        assertThat(cachedModifications.size(), is(1));
+        verify(mockHibernateTemplate, times(2)).findByCriteria(any(DetachedCriteria.class));
+    }
+
+    private static Modification modification(GitMaterialInstance materialInstance, long id) {
+        Modification modification = new Modification("user", "comment " + id, "email", new Date(), "rev" + id);
+        modification.setId(id);
+        modification.setMaterialInstance(materialInstance);
+        return modification;
+    }
+
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.persistence;
+
+import com.thoughtworks.go.domain.*;
+import com.thoughtworks.go.helper.JobInstanceMother;
+import com.thoughtworks.go.helper.StageMother;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineRunArchiveTest {
+    @TempDir
+    File archiveDir;
+    private PipelineRunArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        archive = new PipelineRunArchive(archiveDir, 1);
+    }
+
+    @Test
+    void shouldFindArchivedRunsByPipelineAndCounter() throws IOException {
+        for (int counter = 1; counter <= 3; counter++) {
+            archive.append(run("up", counter, completedJob(counter)));
+        }
+        archive.append(run("down", 1, completedJob(4)));
+
+        assertThat(archive.find("up", 2).getPipelineLabel()).isEqualTo("label-2");
+        assertThat(archive.find("UP", 3).getPipelineCounter()).isEqualTo(3);
+        assertThat(archive.find("down", 1).transitionsOf(4)).isNotNull();
+        assertThat(archive.find("up", 4)).isNull();
+        assertThat(archive.find("unknown", 1)).isNull();
+        assertThat(archive.contains("up", 1)).isTrue();
+        assertThat(archiveDir.listFiles((dir, name) -> name.startsWith("segment-"))).hasSize(4);
+    }
+
+    @Test
+    void shouldKeepTheIndexSortedWhenTheCounterOfAPipelineWasReset() throws IOException {
+        archive.append(run("up", 5, completedJob(1)));
+        archive.append(run("up", 7, completedJob(2)));
+        archive.append(run("up", 2, completedJob(3)));
+
+        assertThat(archive.find("up", 2).transitionsOf(3)).isNotNull();
+        assertThat(archive.find("up", 5).transitionsOf(1)).isNotNull();
+        assertThat(archive.find("up", 7).transitionsOf(2)).isNotNull();
+    }
+
+    @Test
+    void shouldRestoreTheIntermediateTransitionsOfAnArchivedJob() throws IOException {
+        JobInstance archived = completedJob(42);
+        archive.append(run("pipeline", 1, archived));
+        JobInstance trimmed = completedJob(42);
+        trimmed.setTransitions(new JobStateTransitions(trimmed.getTransitions().stream()
+                .filter(transition -> transition.getCurrentState() == JobState.Scheduled || transition.getCurrentState() == JobState.Building || transition.getCurrentState() == JobState.Completed)
+                .collect(toList())));
+
+        assertThat(archive.restoreTransitions(trimmed).getTransition(JobState.Assigned)).isNull();
+
+        archive.updateWatermark(1);
+        JobInstance restored = archive.restoreTransitions(trimmed);
+
+        assertThat(restored.getTransitions().stream().map(JobStateTransition::getCurrentState).collect(toList()))
+                .containsExactly(JobState.Scheduled, JobState.Assigned, JobState.Preparing, JobState.Building, JobState.Completing, JobState.Completed);
+        assertThat(restored.getTransition(JobState.Assigned).getStateChangeTime()).isEqualTo(archived.getTransition(JobState.Assigned).getStateChangeTime());
+        assertThat(restored.getTransition(JobState.Assigned).getStageId()).isEqualTo(10L);
+    }
+
+    @Test
+    void shouldRememberTheWatermarkAcrossRestarts() throws IOException {
+        assertThat(archive.watermark()).isEqualTo(0);
+
+        archive.updateWatermark(123);
+
+        assertThat(new PipelineRunArchive(archiveDir, 1).watermark()).isEqualTo(123);
+        assertThat(new PipelineRunArchive(archiveDir, 1).skipped()).isEmpty();
+    }
+
+    @Test
+    void shouldRememberThePipelinesWhichWereSkippedAcrossRestarts() throws IOException {
+        archive.updateWatermark(123, Arrays.asList(99L, 12L));
+
+        PipelineRunArchive restarted = new PipelineRunArchive(archiveDir, 1);
+        assertThat(restarted.watermark()).isEqualTo(123);
+        assertThat(restarted.skipped()).containsExactly(12L, 99L);
+    }
+
+    @Test
+    void shouldBackUpTheIndexesBeforeTheSegmentsTheyPointTo() throws IOException {
+        archive.append(run("up", 1, completedJob(1)));
+        archive.updateWatermark(1);
+        ByteArrayOutputStream backup = new ByteArrayOutputStream();
+
+        try (ZipOutputStream zip = new ZipOutputStream(backup)) {
+            PipelineRunArchive.backup(archiveDir, zip);
+        }
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(backup.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+            }
+        }
+        assertThat(entries).containsExactly("watermark", "index/up.idx", "segment-000000.json.gz");
+    }
+
+    private static JobInstance completedJob(long id) {
+        JobInstance job = JobInstanceMother.completed("unit");
+        job.setId(id);
+        return job;
+    }
+
+    private static ArchivedPipelineRun run(String pipelineName, int counter, JobInstance job) {
+        Stage stage = StageMother.passedStageInstance(pipelineName, "build", "unit", new Date());
+        stage.setId(10);
+        stage.setJobInstances(new JobInstances(job));
+        return ArchivedPipelineRun.from(counter, pipelineName, counter, "label-" + counter, new Stages(stage));
+    }
+}
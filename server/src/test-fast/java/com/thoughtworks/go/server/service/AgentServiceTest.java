@@ -61,6 +61,7 @@ import static com.thoughtworks.go.domain.AgentRuntimeStatus.Idle;
 import static com.thoughtworks.go.domain.AgentStatus.fromConfig;
 import static com.thoughtworks.go.helper.AgentInstanceMother.*;
 import static com.thoughtworks.go.security.Registration.createNullPrivateKeyEntry;
+import static com.thoughtworks.go.server.persistence.AgentDao.Attribute.*;
 import static com.thoughtworks.go.server.service.AgentRuntimeInfo.fromServer;
 import static com.thoughtworks.go.serverhealth.HealthStateScope.forAgent;
 import static com.thoughtworks.go.serverhealth.HealthStateType.duplicateAgent;
@@ -227,7 +228,7 @@ class AgentServiceTest {
                 AgentService agentServiceSpy = Mockito.spy(agentService);
                 assertDoesNotThrow(() -> agentServiceSpy.bulkUpdateAgentAttributes(asList("uuid1", "uuid2"), asList("R1", "R2"), emptyStrList, asList("test", "prod"), emptyStrList, TRUE, environmentConfigService));
 
-                verify(agentDao).bulkUpdateAgents(anyList());
+                verify(agentDao).bulkUpdateAttributes(anyList(), anyList(), eq(EnumSet.of(ENVIRONMENTS, RESOURCES, DISABLED)));
                 verify(agentServiceSpy).updateIdsAndGenerateCookiesForPendingAgents(anyList(), eq(TRUE));
             }
 
@@ -250,7 +251,7 @@ class AgentServiceTest {
                 AgentService agentServiceSpy = Mockito.spy(agentService);
                 assertDoesNotThrow(() -> agentServiceSpy.bulkUpdateAgentAttributes(uuids, emptyStrList, emptyStrList, emptyStrList, emptyStrList, TRUE, environmentConfigService));
 
-                verify(agentDao).bulkUpdateAgents(anyList());
+                verify(agentDao).bulkUpdateAttributes(anyList(), anyList(), eq(EnumSet.of(DISABLED)));
                 verify(agentServiceSpy).updateIdsAndGenerateCookiesForPendingAgents(anyList(), eq(TRUE));
             }
 
@@ -330,7 +331,7 @@ class AgentServiceTest {
                 assertDoesNotThrow(() -> agentServiceSpy.bulkUpdateAgentAttributes(uuids, emptyStrList, emptyStrList, asList("env1", configEnvName), emptyStrList, TRUE, environmentConfigService));
                 verify(agentDao).getAgentsByUUIDs(uuids);
                 ArgumentCaptor<List<Agent>> argumentCaptor = ArgumentCaptor.forClass(List.class);
-                verify(agentDao).bulkUpdateAgents(argumentCaptor.capture());
+                verify(agentDao).bulkUpdateAttributes(eq(emptyList()), argumentCaptor.capture(), eq(EnumSet.of(ENVIRONMENTS, DISABLED)));
                 assertEquals("env1", argumentCaptor.getValue().get(0).getEnvironments());
                 verify(agentServiceSpy).updateIdsAndGenerateCookiesForPendingAgents(eq(agents), eq(TRUE));
             }
@@ -961,7 +962,7 @@ class AgentServiceTest {
 
             List<Agent> agents = asList(agentConfigForUUID1, agent);
 
-            verify(agentDao).bulkUpdateAgents(argument.capture());
+            verify(agentDao).bulkUpdateAttributes(argument.capture(), eq(emptyList()), eq(EnumSet.of(ENVIRONMENTS)));
             assertEquals(agents.size(), argument.getValue().size());
             assertTrue(argument.getValue().contains(agents.get(0)));
             assertTrue(argument.getValue().contains(agents.get(1)));
@@ -991,7 +992,7 @@ class AgentServiceTest {
             when(agentInstances.findAgent("uuid2")).thenReturn(mock(AgentInstance.class));
 
             assertDoesNotThrow(() -> agentService.updateAgentsAssociationOfEnvironment(testEnv, asList(uuid, "uuid2")));
-            verify(agentDao).bulkUpdateAgents(anyList());
+            verify(agentDao).bulkUpdateAttributes(anyList(), anyList(), eq(EnumSet.of(ENVIRONMENTS)));
         }
 
         @Test
@@ -1024,7 +1025,7 @@ class AgentServiceTest {
 
             ArgumentCaptor<List<Agent>> argument = ArgumentCaptor.forClass(List.class);
 
-            verify(agentDao).bulkUpdateAgents(argument.capture());
+            verify(agentDao).bulkUpdateAttributes(argument.capture(), eq(emptyList()), eq(EnumSet.of(ENVIRONMENTS)));
             assertEquals(agents.size(), argument.getValue().size());
             assertTrue(argument.getValue().contains(agents.get(0)));
             assertTrue(argument.getValue().contains(agents.get(1)));
@@ -1126,7 +1127,7 @@ class AgentServiceTest {
 
             List<Agent> agents = asList(agentConfigForUUID1, agent);
 
-            verify(agentDao).bulkUpdateAgents(argument.capture());
+            verify(agentDao).bulkUpdateAttributes(argument.capture(), eq(emptyList()), eq(EnumSet.of(ENVIRONMENTS)));
             assertEquals(agents.size(), argument.getValue().size());
             assertTrue(argument.getValue().contains(agents.get(0)));
             assertTrue(argument.getValue().contains(agents.get(1)));
@@ -1156,7 +1157,7 @@ class AgentServiceTest {
             when(agentInstances.findAgent("uuid2")).thenReturn(mock(AgentInstance.class));
 
             assertDoesNotThrow(() -> agentService.updateAgentsAssociationOfEnvironment(testEnv, asList(uuid, "uuid2")));
-            verify(agentDao).bulkUpdateAgents(anyList());
+            verify(agentDao).bulkUpdateAttributes(anyList(), anyList(), eq(EnumSet.of(ENVIRONMENTS)));
         }
 
         @Test
@@ -1189,7 +1190,7 @@ class AgentServiceTest {
 
             ArgumentCaptor<List<Agent>> argument = ArgumentCaptor.forClass(List.class);
 
-            verify(agentDao).bulkUpdateAgents(argument.capture());
+            verify(agentDao).bulkUpdateAttributes(argument.capture(), eq(emptyList()), eq(EnumSet.of(ENVIRONMENTS)));
             assertEquals(agents.size(), argument.getValue().size());
             assertTrue(argument.getValue().contains(agents.get(0)));
             assertTrue(argument.getValue().contains(agents.get(1)));
@@ -1239,7 +1240,7 @@ class AgentServiceTest {
 
             when(agentInstances.findAgent(agentBeforeUpdate.getUuid())).thenReturn(agentInstanceBeforeUpdate);
             agentService.entityChanged(agentAfterUpdate);
-            assertThat(agentInstanceBeforeUpdate.getAgent(), is(agentAfterUpdate));
+            verify(agentInstances).syncAgentFrom(agentAfterUpdate);
             verify(listener).agentChanged(agentAfterUpdate);
         }
 
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.util.GoConstants;
+import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.ZipUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisabledOnOs(OS.WINDOWS)
+class ContentAddressedArtifactStoreTest {
+    @TempDir
+    File artifactsDir;
+    private ContentAddressedArtifactStore store;
+
+    @BeforeEach
+    void setUp() {
+        ArtifactsDirHolder artifactsDirHolder = mock(ArtifactsDirHolder.class);
+        when(artifactsDirHolder.getArtifactsDir()).thenReturn(artifactsDir);
+        SystemEnvironment systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.isArtifactsDedupEnabled()).thenReturn(true);
+        store = new ContentAddressedArtifactStore(artifactsDirHolder, systemEnvironment);
+    }
+
+    @Test
+    void shouldStoreIdenticalLargeFilesOfDifferentJobsOnce() throws IOException {
+        File first = largeFile("pipelines/p/1/s/1/job/dist/tool.tar", 'a');
+        File second = largeFile("pipelines/p/2/s/1/job/dist/tool.tar", 'a');
+
+        List<String> firstHashes = store.ingest(first.getParentFile());
+        List<String> secondHashes = store.ingest(second.getParentFile());
+
+        assertThat(firstHashes).containsExactly(sha256(first));
+        assertThat(secondHashes).isEqualTo(firstHashes);
+        assertThat(Files.isSameFile(first.toPath(), second.toPath())).isTrue();
+        assertThat(linkCount(blob(firstHashes.get(0)))).isEqualTo(3);
+    }
+
+    @Test
+    void shouldLeaveSmallFilesAlone() throws IOException {
+        File small = new File(artifactsDir, "pipelines/p/1/s/1/job/small.txt");
+        FileUtils.writeStringToFile(small, "small", UTF_8);
+
+        assertThat(store.ingest(small)).isEmpty();
+        assertThat(new File(artifactsDir, ContentAddressedArtifactStore.STORE_FOLDER)).doesNotExist();
+    }
+
+    @Test
+    void shouldLinkKnownBlobsOnly() throws IOException {
+        File stored = largeFile("pipelines/p/1/s/1/job/tool.tar", 'a');
+        String sha256 = store.ingest(stored).get(0);
+        File target = new File(artifactsDir, "pipelines/p/2/s/1/job/nested/tool.tar");
+
+        assertThat(store.link(sha256, target)).isTrue();
+        assertThat(Files.isSameFile(stored.toPath(), target.toPath())).isTrue();
+        assertThat(store.link(sha256, target)).isFalse();
+        assertThat(store.link(DigestUtils.sha256Hex("unknown"), new File(artifactsDir, "other"))).isFalse();
+        assertThat(store.link("../../etc/passwd", new File(artifactsDir, "other"))).isFalse();
+    }
+
+    @Test
+    void shouldDeleteBlobOnlyOnceNoJobRefersToIt() throws IOException {
+        File first = largeFile("pipelines/p/1/s/1/job/tool.tar", 'a');
+        File second = largeFile("pipelines/p/2/s/1/job/tool.tar", 'a');
+        File firstReferences = new File(artifactsDir, "pipelines/p/1/s/1/job/cruise-output/" + ContentAddressedArtifactStore.REFERENCES_FILE);
+        File secondReferences = new File(artifactsDir, "pipelines/p/2/s/1/job/cruise-output/" + ContentAddressedArtifactStore.REFERENCES_FILE);
+        store.recordReferences(firstReferences, store.ingest(first));
+        store.recordReferences(secondReferences, store.ingest(second));
+        File blob = blob(sha256(first));
+
+        FileUtils.deleteQuietly(first);
+        store.releaseReferences(firstReferences);
+
+        assertThat(blob).exists();
+        assertThat(firstReferences).doesNotExist();
+
+        FileUtils.deleteQuietly(second);
+        store.releaseReferences(secondReferences);
+
+        assertThat(blob).doesNotExist();
+    }
+
+    @Test
+    void shouldNotChangeOtherLinksWhenAppendingToALinkedArtifact() throws IOException {
+        File first = largeFile("pipelines/p/1/s/1/job/tool.tar", 'a');
+        File second = largeFile("pipelines/p/2/s/1/job/tool.tar", 'a');
+        store.ingest(first);
+        store.ingest(second);
+        String original = FileUtils.readFileToString(first, UTF_8);
+
+        new SystemService(null).streamToFile(new ByteArrayInputStream("appended".getBytes(UTF_8)), second);
+
+        assertThat(FileUtils.readFileToString(second, UTF_8)).isEqualTo(original + "appended");
+        assertThat(FileUtils.readFileToString(first, UTF_8)).isEqualTo(original);
+        assertThat(FileUtils.readFileToString(blob(sha256(first)), UTF_8)).isEqualTo(original);
+        assertThat(Files.isSameFile(first.toPath(), second.toPath())).isFalse();
+    }
+
+    @Test
+    void shouldNotChangeOtherLinksWhenUnzippingOverALinkedArtifact() throws IOException {
+        File first = largeFile("pipelines/p/1/s/1/job/dist/tool.tar", 'a');
+        File second = largeFile("pipelines/p/2/s/1/job/dist/tool.tar", 'a');
+        store.ingest(first);
+        store.ingest(second);
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry("tool.tar"));
+            out.write("replaced".getBytes(UTF_8));
+        }
+
+        new ZipUtil().unzip(new ZipInputStream(new ByteArrayInputStream(zip.toByteArray())), second.getParentFile());
+
+        assertThat(FileUtils.readFileToString(second, UTF_8)).isEqualTo("replaced");
+        assertThat(FileUtils.readFileToString(first, UTF_8)).isEqualTo(FileUtils.readFileToString(blob(sha256(first)), UTF_8));
+        assertThat(first.length()).isEqualTo(GoConstants.ARTIFACT_DEDUP_MIN_SIZE);
+    }
+
+    @Test
+    void shouldDoNothingWhenDisabled() throws IOException {
+        ArtifactsDirHolder artifactsDirHolder = mock(ArtifactsDirHolder.class);
+        when(artifactsDirHolder.getArtifactsDir()).thenReturn(artifactsDir);
+        ContentAddressedArtifactStore disabled = new ContentAddressedArtifactStore(artifactsDirHolder, mock(SystemEnvironment.class));
+        File file = largeFile("pipelines/p/1/s/1/job/tool.tar", 'a');
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.ingest(file)).isEmpty();
+        assertThat(disabled.link(sha256(file), new File(artifactsDir, "other"))).isFalse();
+    }
+
+    private File largeFile(String path, char content) throws IOException {
+        File file = new File(artifactsDir, path);
+        file.getParentFile().mkdirs();
+        char[] chars = new char[(int) GoConstants.ARTIFACT_DEDUP_MIN_SIZE];
+        Arrays.fill(chars, content);
+        FileUtils.writeStringToFile(file, new String(chars), UTF_8);
+        return file;
+    }
+
+    private File blob(String sha256) {
+        return new File(artifactsDir, ContentAddressedArtifactStore.STORE_FOLDER + "/" + sha256.substring(0, 2) + "/" + sha256);
+    }
+
+    private static String sha256(File file) throws IOException {
+        return DigestUtils.sha256Hex(Files.readAllBytes(file.toPath()));
+    }
+
+    private static int linkCount(File file) throws IOException {
+        return (Integer) Files.getAttribute(file.toPath(), "unix:nlink");
+    }
+}
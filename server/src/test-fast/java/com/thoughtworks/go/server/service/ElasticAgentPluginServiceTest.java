@@ -231,6 +231,17 @@ class ElasticAgentPluginServiceTest {
         assertThat(createAgentMessage.configuration()).isEqualTo(plan1.getElasticProfile().getConfigurationAsMap(true));
     }
 
+    @Test
+    void shouldNotRequestAnotherAgentForAJobWhoseAgentCreationIsInFlight() {
+        JobPlan plan1 = plan(1, "docker");
+        when(goConfigService.elasticJobStarvationThreshold()).thenReturn(60000L);
+
+        service.createAgentsFor(new ArrayList<>(), asList(plan1));
+        service.createAgentsFor(new ArrayList<>(), asList(plan1));
+
+        verify(createAgentQueue, times(1)).post(any(CreateAgentMessage.class), anyLong());
+    }
+
     @Test
     void shouldReportMissingElasticPlugin() {
         JobPlan plan1 = plan(1, "missing");
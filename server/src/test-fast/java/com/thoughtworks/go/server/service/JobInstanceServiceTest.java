@@ -537,6 +537,40 @@ public class JobInstanceServiceTest {
         }
     }
 
+    @Nested
+    class CompletedJobsOnAgentViaCursor {
+        private JobInstanceService jobService;
+
+        @BeforeEach
+        void setUp() {
+            jobService = new JobInstanceService(jobInstanceDao, null, jobStatusCache, transactionTemplate, transactionSynchronizationManager, null, null, goConfigService, securityService, serverHealthService);
+        }
+
+        @Test
+        void shouldFetchLatestJobsRunOnTheAgent() {
+            jobService.completedJobsOnAgentViaCursor("uuid", 0, 0, 10);
+
+            verify(jobInstanceDao).completedJobsOnAgentViaCursor("uuid", FeedModifier.Latest, 0, 10);
+            verify(jobInstanceDao, never()).totalCompletedJobsOnAgent("uuid");
+        }
+
+        @Test
+        void shouldFetchJobsRunOnTheAgentAfterAndBeforeTheSpecifiedCursor() {
+            jobService.completedJobsOnAgentViaCursor("uuid", 2, 0, 10);
+            jobService.completedJobsOnAgentViaCursor("uuid", 0, 3, 10);
+
+            verify(jobInstanceDao).completedJobsOnAgentViaCursor("uuid", FeedModifier.After, 2, 10);
+            verify(jobInstanceDao).completedJobsOnAgentViaCursor("uuid", FeedModifier.Before, 3, 10);
+        }
+
+        @Test
+        void shouldThrowErrorIfCursorIsANegativeInteger() {
+            assertThatCode(() -> jobService.completedJobsOnAgentViaCursor("uuid", -10, 0, 10))
+                    .isInstanceOf(BadRequestException.class)
+                    .hasMessage("The query parameter 'after', if specified, must be a positive integer.");
+        }
+    }
+
     @Nested
     class LatestAndOldestStageInstanceId {
         private JobInstanceService jobService;
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.JobIdentifier;
+import com.thoughtworks.go.domain.JobInstance;
+import com.thoughtworks.go.domain.JobResult;
+import com.thoughtworks.go.domain.JobState;
+import com.thoughtworks.go.server.dao.StageDao;
+import com.thoughtworks.go.server.transaction.TestTransactionSynchronizationManager;
+import com.thoughtworks.go.server.transaction.TestTransactionTemplate;
+import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.TimeProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Date;
+
+import static com.thoughtworks.go.helper.JobInstanceMother.assigned;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JobStatusUpdateBufferTest {
+    private JobInstanceService jobInstanceService;
+    private StageDao stageDao;
+    private TimeProvider timeProvider;
+    private JobStatusUpdateBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        jobInstanceService = mock(JobInstanceService.class);
+        stageDao = mock(StageDao.class);
+        timeProvider = mock(TimeProvider.class);
+        SystemEnvironment systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.isJobStatusBatchingEnabled()).thenReturn(true);
+        when(jobInstanceService.advanceState(any(JobInstance.class))).thenReturn(true);
+        TestTransactionSynchronizationManager synchronizationManager = new TestTransactionSynchronizationManager();
+        buffer = new JobStatusUpdateBuffer(jobInstanceService, stageDao, new TestTransactionTemplate(synchronizationManager), synchronizationManager, timeProvider, systemEnvironment);
+    }
+
+    @Test
+    void shouldWriteTheReportsOfAJobAsOneUpdateWithTheTimesTheyWereReportedAt() {
+        JobIdentifier identifier = identifier(10L);
+        when(jobInstanceService.buildByIdWithTransitions(10L)).thenReturn(assigned("job"));
+        when(timeProvider.currentTime()).thenReturn(new Date(1000), new Date(2000), new Date(3000));
+
+        assertThat(buffer.offer(identifier, JobState.Preparing)).isTrue();
+        assertThat(buffer.offer(identifier, JobState.Preparing)).isTrue();
+        assertThat(buffer.offer(identifier, JobState.Building)).isTrue();
+        verifyZeroInteractions(jobInstanceService);
+
+        buffer.onTimer();
+
+        ArgumentCaptor<JobInstance> captor = ArgumentCaptor.forClass(JobInstance.class);
+        verify(jobInstanceService, times(1)).advanceState(captor.capture());
+        JobInstance job = captor.getValue();
+        assertThat(job.getState()).isEqualTo(JobState.Building);
+        assertThat(job.getIdentifier()).isEqualTo(identifier);
+        assertThat(job.getTransition(JobState.Preparing).getStateChangeTime()).isEqualTo(new Date(1000));
+        assertThat(job.getTransition(JobState.Building).getStateChangeTime()).isEqualTo(new Date(3000));
+        verify(stageDao).clearCachedAllStages("pipeline", 1, "stage");
+        assertThat(buffer.pendingJobs()).isZero();
+    }
+
+    @Test
+    void shouldDropReportsOfJobsWhichWereCancelledMeanwhile() {
+        JobInstance cancelled = assigned("job");
+        cancelled.setResult(JobResult.Cancelled);
+        when(jobInstanceService.buildByIdWithTransitions(10L)).thenReturn(cancelled);
+        when(timeProvider.currentTime()).thenReturn(new Date());
+
+        buffer.offer(identifier(10L), JobState.Building);
+        buffer.onTimer();
+
+        verify(jobInstanceService, never()).advanceState(any(JobInstance.class));
+    }
+
+    @Test
+    void shouldWriteWhatAJobReportedSoFarWhenFlushedForThatJob() {
+        when(jobInstanceService.buildByIdWithTransitions(anyLong())).thenAnswer(invocation -> assigned("job"));
+        when(timeProvider.currentTime()).thenReturn(new Date());
+        buffer.offer(identifier(10L), JobState.Building);
+        buffer.offer(identifier(11L), JobState.Building);
+
+        buffer.flush(10L);
+
+        verify(jobInstanceService).buildByIdWithTransitions(10L);
+        verify(jobInstanceService, never()).buildByIdWithTransitions(11L);
+        assertThat(buffer.pendingJobs()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldLeaveReportsOtherThanPreparingBuildingAndCompletingToTheCaller() {
+        assertThat(buffer.offer(identifier(10L), JobState.Completed)).isFalse();
+        assertThat(buffer.offer(identifier(10L), JobState.Assigned)).isFalse();
+        assertThat(buffer.pendingJobs()).isZero();
+    }
+
+    private static JobIdentifier identifier(long buildId) {
+        return new JobIdentifier("pipeline", 1, "label-1", "stage", "1", "job", buildId);
+    }
+}
@@ -16,6 +16,7 @@
 package com.thoughtworks.go.server.service;
 
 import com.thoughtworks.go.config.CaseInsensitiveString;
+import com.thoughtworks.go.config.exceptions.BadRequestException;
 import com.thoughtworks.go.config.exceptions.EntityType;
 import com.thoughtworks.go.config.materials.PackageMaterial;
 import com.thoughtworks.go.config.materials.PluggableSCMMaterial;
@@ -47,6 +48,7 @@ import com.thoughtworks.go.plugin.api.material.packagerepository.PackageConfigur
 import com.thoughtworks.go.plugin.api.material.packagerepository.PackageRevision;
 import com.thoughtworks.go.plugin.api.material.packagerepository.RepositoryConfiguration;
 import com.thoughtworks.go.security.GoCipher;
+import com.thoughtworks.go.server.dao.FeedModifier;
 import com.thoughtworks.go.server.domain.Username;
 import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.service.materials.GitPoller;
@@ -400,6 +402,28 @@ public class MaterialServiceTest {
         assertThat(gotModifications, is(modifications));
     }
 
+    @Test
+    public void shouldFetchModificationsViaCursorWithoutCountingThem() {
+        GitMaterialConfig materialConfig = git("http://test.com");
+        GitMaterialInstance gitMaterialInstance = new GitMaterialInstance("http://test.com", null, null, null, "flyweight");
+        Modifications modifications = new Modifications();
+        when(materialRepository.findMaterialInstance(materialConfig)).thenReturn(gitMaterialInstance);
+        when(materialRepository.getModificationsFor(gitMaterialInstance, FeedModifier.After, 20, 10)).thenReturn(modifications);
+
+        assertThat(materialService.getModificationsFor(materialConfig, 20, 0, 10), is(modifications));
+        materialService.getModificationsFor(materialConfig, 0, 30, 10);
+        materialService.getModificationsFor(materialConfig, 0, 0, 10);
+
+        verify(materialRepository).getModificationsFor(gitMaterialInstance, FeedModifier.Before, 30, 10);
+        verify(materialRepository).getModificationsFor(gitMaterialInstance, FeedModifier.Latest, 0, 10);
+        verify(materialRepository, never()).getTotalModificationsFor(any(MaterialInstance.class));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldNotAcceptANegativeCursorForModifications() {
+        materialService.getModificationsFor(git("http://test.com"), -1, 0, 10);
+    }
+
     private void assertHasModification(MaterialRevisions materialRevisions, boolean b) {
         HgMaterial hgMaterial = new HgMaterial("foo.com", null);
         when(materialRepository.findLatestModification(hgMaterial)).thenReturn(materialRevisions);
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.*;
+import com.thoughtworks.go.helper.JobInstanceMother;
+import com.thoughtworks.go.helper.StageMother;
+import com.thoughtworks.go.presentation.pipelinehistory.PipelineInstanceModel;
+import com.thoughtworks.go.server.dao.JobInstanceDao;
+import com.thoughtworks.go.server.dao.PipelineDao;
+import com.thoughtworks.go.server.dao.StageDao;
+import com.thoughtworks.go.server.persistence.ArchivedPipelineRun;
+import com.thoughtworks.go.server.persistence.PipelineRunArchive;
+import com.thoughtworks.go.util.Clock;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PipelineRunArchiverTest {
+    private static final Date COMPLETED_BEFORE = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+    @TempDir
+    File dbFolder;
+    private PipelineDao pipelineDao;
+    private StageDao stageDao;
+    private JobInstanceDao jobInstanceDao;
+    private PipelineRunArchive archive;
+    private PipelineRunArchiver archiver;
+    private SystemEnvironment systemEnvironment;
+    private Clock clock;
+
+    @BeforeEach
+    void setUp() {
+        pipelineDao = mock(PipelineDao.class);
+        stageDao = mock(StageDao.class);
+        jobInstanceDao = mock(JobInstanceDao.class);
+        systemEnvironment = mock(SystemEnvironment.class);
+        clock = mock(Clock.class);
+        when(systemEnvironment.getDbFolder()).thenReturn(dbFolder);
+        archive = spy(new PipelineRunArchive(systemEnvironment));
+        archiver = new PipelineRunArchiver(pipelineDao, stageDao, jobInstanceDao, archive, systemEnvironment, clock);
+        PipelineInstanceModel pipeline = mock(PipelineInstanceModel.class);
+        when(pipeline.getName()).thenReturn("up");
+        when(pipeline.getCounter()).thenReturn(1);
+        when(pipeline.getLabel()).thenReturn("1");
+        when(pipelineDao.loadHistory(42L)).thenReturn(pipeline);
+    }
+
+    @Test
+    void shouldDeleteTheIntermediateTransitionsOnceTheRunIsArchived() throws IOException {
+        when(stageDao.findAllStagesFor("up", 1)).thenReturn(stages(completedJob(7, 100)));
+
+        assertThat(archiver.archive(42, COMPLETED_BEFORE)).isTrue();
+
+        assertThat(archive.find("up", 1).transitionsOf(7)).hasSize(6);
+        verify(jobInstanceDao).deleteIntermediateTransitionsOfJobs(singletonList(7L));
+    }
+
+    @Test
+    void shouldArchiveARunAgainWhenTheArchivedCopyMissesSomeOfItsTransitions() throws IOException {
+        archive.append(ArchivedPipelineRun.from(42, "up", 1, "1", stages(completedJob(7, 100))));
+        JobInstance rerun = completedJob(8, 200);
+        when(stageDao.findAllStagesFor("up", 1)).thenReturn(stages(trimmed(completedJob(7, 100)), rerun));
+
+        assertThat(archiver.archive(42, COMPLETED_BEFORE)).isTrue();
+
+        ArchivedPipelineRun archived = archive.find("up", 1);
+        assertThat(archived.transitionsOf(7)).hasSize(6);
+        assertThat(archived.transitionsOf(8)).hasSize(6);
+        verify(jobInstanceDao).deleteIntermediateTransitionsOfJobs(asList(7L, 8L));
+    }
+
+    @Test
+    void shouldNotDeleteAnyTransitionWhenTheAppendedRunCanNotBeReadBack() throws IOException {
+        when(stageDao.findAllStagesFor("up", 1)).thenReturn(stages(completedJob(7, 100)));
+        doNothing().when(archive).append(any());
+
+        assertThat(archiver.archive(42, COMPLETED_BEFORE)).isFalse();
+
+        verify(jobInstanceDao, never()).deleteIntermediateTransitionsOfJobs(any());
+    }
+
+    @Test
+    void shouldNotTrustTheArchivedCopyOfAnotherPipelineWithTheSameCounter() throws IOException {
+        archive.append(ArchivedPipelineRun.from(41, "up", 1, "1", stages(completedJob(7, 100))));
+        when(stageDao.findAllStagesFor("up", 1)).thenReturn(stages(completedJob(9, 300)));
+
+        assertThat(archiver.archive(42, COMPLETED_BEFORE)).isTrue();
+
+        assertThat(archive.find("up", 1).getPipelineId()).isEqualTo(42);
+        assertThat(archive.find("up", 1).transitionsOf(9)).hasSize(6);
+    }
+
+    @Test
+    void shouldTryAPipelineWhichWasStillRunningAgainOnTheNextPass() throws IOException {
+        when(systemEnvironment.getPipelineArchiveAfterDays()).thenReturn(1);
+        when(clock.currentTimeMillis()).thenReturn(COMPLETED_BEFORE.getTime() + TimeUnit.DAYS.toMillis(1));
+        when(pipelineDao.findPipelineIdsToArchive(eq(0L), any(Date.class), eq(PipelineRunArchiver.BATCH_SIZE))).thenReturn(singletonList(42L));
+        JobInstance building = JobInstanceMother.building("unit-7");
+        building.setId(7);
+        when(stageDao.findAllStagesFor("up", 1)).thenReturn(stages(building));
+
+        archiver.onTimer();
+
+        assertThat(archive.watermark()).isEqualTo(42);
+        assertThat(archive.skipped()).containsExactly(42L);
+        verify(jobInstanceDao, never()).deleteIntermediateTransitionsOfJobs(any());
+
+        when(stageDao.findAllStagesFor("up", 1)).thenReturn(stages(completedJob(7, 100)));
+
+        archiver.onTimer();
+
+        assertThat(archive.skipped()).isEmpty();
+        assertThat(archive.find("up", 1).transitionsOf(7)).hasSize(6);
+        verify(jobInstanceDao).deleteIntermediateTransitionsOfJobs(singletonList(7L));
+    }
+
+    @Test
+    void shouldLeaveARunWithAStageCompletedInsideTheWindowForALaterPass() throws IOException {
+        Stages stages = stages(completedJob(7, 100));
+        stages.first().setLastTransitionedTime(new Timestamp(COMPLETED_BEFORE.getTime()));
+        when(stageDao.findAllStagesFor("up", 1)).thenReturn(stages);
+
+        assertThat(archiver.archive(42, COMPLETED_BEFORE)).isFalse();
+
+        verify(jobInstanceDao, never()).deleteIntermediateTransitionsOfJobs(any());
+    }
+
+    private static JobInstance completedJob(long id, long firstTransitionId) {
+        JobInstance job = JobInstanceMother.completed("unit-" + id);
+        job.setId(id);
+        long transitionId = firstTransitionId;
+        for (JobStateTransition transition : job.getTransitions()) {
+            transition.setId(transitionId++);
+        }
+        return job;
+    }
+
+    private static JobInstance trimmed(JobInstance job) {
+        job.setTransitions(new JobStateTransitions(job.getTransitions().stream()
+                .filter(transition -> transition.getCurrentState() == JobState.Scheduled || transition.getCurrentState() == JobState.Building || transition.getCurrentState() == JobState.Completed)
+                .collect(toList())));
+        return job;
+    }
+
+    private static Stages stages(JobInstance... jobs) {
+        Stage stage = StageMother.passedStageInstance("up", "build", "unit", new Date());
+        stage.setId(10);
+        stage.setJobInstances(new JobInstances(jobs));
+        return new Stages(stage);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.google.common.base.Ticker;
+import com.thoughtworks.go.config.SecretConfig;
+import com.thoughtworks.go.domain.config.ConfigurationKey;
+import com.thoughtworks.go.domain.config.ConfigurationProperty;
+import com.thoughtworks.go.domain.config.ConfigurationValue;
+import com.thoughtworks.go.plugin.domain.secrets.Secret;
+import com.thoughtworks.go.security.GoCipher;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ResolvedSecretsCacheTest {
+    private final FakeTicker ticker = new FakeTicker();
+    private SystemEnvironment systemEnvironment;
+    private GoCipher goCipher;
+    private SecretConfig secretConfig;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        systemEnvironment = mock(SystemEnvironment.class);
+        goCipher = mock(GoCipher.class);
+        when(systemEnvironment.getSecretsCacheTtlInSeconds()).thenReturn(30);
+        when(systemEnvironment.getSecretsCacheMaxEntries()).thenReturn(100L);
+        when(goCipher.encrypt(anyString())).thenAnswer(invocation -> "encrypted:" + invocation.getArgument(0));
+        when(goCipher.decrypt(anyString())).thenAnswer(invocation -> invocation.<String>getArgument(0).replace("encrypted:", ""));
+
+        secretConfig = new SecretConfig("secret_config_id", "cd.go.file");
+    }
+
+    @Test
+    void shouldReturnOnlyCachedSecrets() {
+        ResolvedSecretsCache cache = new ResolvedSecretsCache(systemEnvironment, goCipher, ticker);
+
+        cache.put(secretConfig, singletonList(new Secret("username", "bob")));
+
+        assertThat(cache.getIfPresent(secretConfig, new HashSet<>(asList("username", "password"))))
+                .containsExactly(new Secret("username", "bob"));
+    }
+
+    @Test
+    void shouldKeepValuesEncryptedInCache() throws Exception {
+        ResolvedSecretsCache cache = new ResolvedSecretsCache(systemEnvironment, goCipher, ticker);
+
+        cache.put(secretConfig, singletonList(new Secret("username", "bob")));
+        cache.getIfPresent(secretConfig, new HashSet<>(singletonList("username")));
+
+        verify(goCipher).encrypt("bob");
+        verify(goCipher).decrypt("encrypted:bob");
+    }
+
+    @Test
+    void shouldExpireSecretsAfterTtl() {
+        ResolvedSecretsCache cache = new ResolvedSecretsCache(systemEnvironment, goCipher, ticker);
+        cache.put(secretConfig, singletonList(new Secret("username", "bob")));
+
+        ticker.advance(31, TimeUnit.SECONDS);
+
+        assertThat(cache.getIfPresent(secretConfig, new HashSet<>(singletonList("username")))).isEmpty();
+    }
+
+    @Test
+    void shouldMissCacheWhenSecretConfigIsChanged() {
+        ResolvedSecretsCache cache = new ResolvedSecretsCache(systemEnvironment, goCipher, ticker);
+        cache.put(secretConfig, singletonList(new Secret("username", "bob")));
+
+        SecretConfig updatedSecretConfig = new SecretConfig("secret_config_id", "cd.go.file",
+                new ConfigurationProperty(new ConfigurationKey("path"), new ConfigurationValue("/tmp/secrets.db")));
+
+        assertThat(cache.getIfPresent(updatedSecretConfig, new HashSet<>(singletonList("username")))).isEmpty();
+    }
+
+    @Test
+    void shouldNotCacheAnythingWhenTtlIsNotConfigured() {
+        when(systemEnvironment.getSecretsCacheTtlInSeconds()).thenReturn(0);
+        ResolvedSecretsCache cache = new ResolvedSecretsCache(systemEnvironment, goCipher, ticker);
+
+        cache.put(secretConfig, singletonList(new Secret("username", "bob")));
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.getIfPresent(secretConfig, new HashSet<>(singletonList("username")))).isEmpty();
+        verifyZeroInteractions(goCipher);
+    }
+
+    class FakeTicker extends Ticker {
+        private final AtomicLong nanos = new AtomicLong();
+
+        void advance(long time, TimeUnit timeUnit) {
+            nanos.addAndGet(timeUnit.toNanos(time));
+        }
+
+        @Override
+        public long read() {
+            return nanos.getAndAdd(0);
+        }
+    }
+}
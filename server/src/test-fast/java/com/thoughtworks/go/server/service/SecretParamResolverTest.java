@@ -55,13 +55,15 @@ class SecretParamResolverTest {
     private GoConfigService goConfigService;
     @Mock
     private RulesService rulesService;
+    @Mock
+    private ResolvedSecretsCache resolvedSecretsCache;
     private SecretParamResolver secretParamResolver;
 
     @BeforeEach
     void setUp() {
         initMocks(this);
 
-        secretParamResolver = new SecretParamResolver(secretsExtension, goConfigService, rulesService);
+        secretParamResolver = new SecretParamResolver(secretsExtension, goConfigService, rulesService, resolvedSecretsCache);
     }
 
     @Nested
@@ -235,6 +237,41 @@ class SecretParamResolverTest {
         assertThat(allSecretParams.get(1).getValue()).isEqualTo("some-username");
     }
 
+    @Test
+    void shouldLookupOnlySecretsWhichAreNotCachedAndCacheTheLookedUpSecrets() {
+        final SecretParams allSecretParams = new SecretParams(
+                new SecretParam("secret_config_id_1", "username"),
+                new SecretParam("secret_config_id_1", "password")
+        );
+        final SecretConfig fileBasedSecretConfig = new SecretConfig("secret_config_id_1", "cd.go.file");
+        final List<Secret> lookedUpSecrets = singletonList(new Secret("password", "some-password"));
+        when(goConfigService.cruiseConfig()).thenReturn(GoConfigMother.configWithSecretConfig(fileBasedSecretConfig));
+        when(resolvedSecretsCache.getIfPresent(fileBasedSecretConfig, new HashSet<>(asList("username", "password"))))
+                .thenReturn(singletonList(new Secret("username", "some-username")));
+        when(secretsExtension.lookupSecrets(fileBasedSecretConfig.getPluginId(), fileBasedSecretConfig, singleton("password")))
+                .thenReturn(lookedUpSecrets);
+
+        secretParamResolver.resolve(allSecretParams);
+
+        assertThat(allSecretParams.get(0).getValue()).isEqualTo("some-username");
+        assertThat(allSecretParams.get(1).getValue()).isEqualTo("some-password");
+        verify(resolvedSecretsCache).put(fileBasedSecretConfig, lookedUpSecrets);
+    }
+
+    @Test
+    void shouldNotCallThePluginWhenAllSecretsAreCached() {
+        final SecretParams allSecretParams = new SecretParams(new SecretParam("secret_config_id_1", "username"));
+        final SecretConfig fileBasedSecretConfig = new SecretConfig("secret_config_id_1", "cd.go.file");
+        when(goConfigService.cruiseConfig()).thenReturn(GoConfigMother.configWithSecretConfig(fileBasedSecretConfig));
+        when(resolvedSecretsCache.getIfPresent(fileBasedSecretConfig, singleton("username")))
+                .thenReturn(singletonList(new Secret("username", "some-username")));
+
+        secretParamResolver.resolve(allSecretParams);
+
+        assertThat(allSecretParams.get(0).getValue()).isEqualTo("some-username");
+        verifyZeroInteractions(secretsExtension);
+    }
+
     private JobPlan defaultJobPlan(EnvironmentVariables variables, EnvironmentVariables triggerVariables) {
         JobIdentifier identifier = new JobIdentifier("Up42", 1, "1", "test", "1", "unit_test", 123L);
         return new DefaultJobPlan(new Resources(), new ArrayList<>(), -1, identifier, null,
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.*;
+import com.thoughtworks.go.server.transaction.TestTransactionSynchronizationManager;
+import com.thoughtworks.go.util.TimeProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+
+import static com.thoughtworks.go.helper.JobInstanceMother.building;
+import static com.thoughtworks.go.helper.JobInstanceMother.completed;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StageStatusAggregatorTest {
+    private static final long STAGE_ID = 42L;
+    private TestTransactionSynchronizationManager synchronizationManager;
+    private StageStatusAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        synchronizationManager = new TestTransactionSynchronizationManager();
+        aggregator = new StageStatusAggregator(synchronizationManager);
+    }
+
+    @Test
+    void shouldNotKnowAboutStagesItHasNotSeenInFull() {
+        assertThat(aggregator.changesStageState(job(1, completed("a", JobResult.Passed)))).isTrue();
+    }
+
+    @Test
+    void shouldOnlyAskForTheStageWhenAJobChangesItsState() {
+        aggregator.track(stage(job(1, building("a")), job(2, building("b")), job(3, building("c"))));
+
+        JobInstance firstPassed = job(1, completed("a", JobResult.Passed));
+        assertThat(aggregator.changesStageState(firstPassed)).isFalse();
+        aggregator.jobStatusChanged(firstPassed);
+
+        JobInstance secondFailed = job(2, completed("b", JobResult.Failed));
+        assertThat(aggregator.changesStageState(secondFailed)).isTrue();
+    }
+
+    @Test
+    void shouldAskForTheStageOnceAllJobsHaveCompletedAndStopTrackingIt() {
+        aggregator.track(stage(job(1, building("a")), job(2, building("b"))));
+
+        aggregator.jobStatusChanged(job(1, completed("a", JobResult.Passed)));
+        JobInstance lastPassed = job(2, completed("b", JobResult.Passed));
+        assertThat(aggregator.changesStageState(lastPassed)).isTrue();
+
+        aggregator.jobStatusChanged(lastPassed);
+        assertThat(aggregator.isTracking(STAGE_ID)).isFalse();
+    }
+
+    @Test
+    void shouldLeaveOutJobsWhichWereRescheduled() {
+        aggregator.track(stage(job(1, completed("a", JobResult.Passed)), job(2, building("b"))));
+
+        JobInstance rescheduled = job(2, building("b"));
+        rescheduled.changeState(JobState.Rescheduled);
+        aggregator.jobStatusChanged(rescheduled);
+        aggregator.jobStatusChanged(job(3, building("b")));
+
+        assertThat(aggregator.changesStageState(job(3, completed("b", JobResult.Passed)))).isTrue();
+        assertThat(aggregator.changesStageState(job(3, building("b")))).isFalse();
+    }
+
+    @Test
+    void shouldForgetAStageReadInATransactionWhichRolledBack() {
+        aggregator.track(stage(job(1, building("a")), job(2, building("b"))));
+
+        synchronizationManager.executeAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(aggregator.isTracking(STAGE_ID)).isFalse();
+    }
+
+    private static Stage stage(JobInstance... jobs) {
+        Stage stage = new Stage("stage", new JobInstances(jobs), "me", null, "manual", new TimeProvider());
+        stage.setId(STAGE_ID);
+        stage.calculateResult();
+        return stage;
+    }
+
+    private static JobInstance job(long id, JobInstance job) {
+        job.setId(id);
+        job.setStageId(STAGE_ID);
+        return job;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.publishers.StreamingArtifactZipEntity;
+import com.thoughtworks.go.util.CachedDigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamedArtifactUploadTest {
+    private File source;
+    private File destination;
+    private File progressFile;
+
+    @BeforeEach
+    void setUp(@TempDir Path tempDir) throws IOException {
+        source = new File(tempDir.toFile(), "dist");
+        FileUtils.writeStringToFile(new File(source, "a.txt"), "first", UTF_8);
+        FileUtils.writeStringToFile(new File(source, "lib/b.jar"), "second", UTF_8);
+        destination = new File(tempDir.toFile(), "artifacts/pipelines/job/dest");
+        progressFile = new File(tempDir.toFile(), "cache/.uploads/dest.progress");
+    }
+
+    @Test
+    void shouldUnzipUploadAndHandBackTheChecksumsItWasSent() throws IOException {
+        StreamedArtifactUpload upload = new StreamedArtifactUpload(progressFile, destination, "dest");
+
+        assertThat(upload.receive(zip(0), 0)).isEqualTo(StreamedArtifactUpload.Result.COMPLETED);
+
+        assertThat(FileUtils.readFileToString(new File(destination, "dist/a.txt"), UTF_8)).isEqualTo("first");
+        assertThat(FileUtils.readFileToString(new File(destination, "dist/lib/b.jar"), UTF_8)).isEqualTo("second");
+        assertThat(upload.checksums().getProperty("dest/dist/a.txt")).isEqualTo(CachedDigestUtils.md5Hex("first"));
+        assertThat(upload.checksums().getProperty("dest/dist/lib/b.jar")).isEqualTo(CachedDigestUtils.md5Hex("second"));
+        assertThat(progressFile).doesNotExist();
+    }
+
+    @Test
+    void shouldResumeAnInterruptedUploadFromTheLastEntryWritten() throws IOException {
+        byte[] complete = zip(0).readAllBytes();
+        StreamedArtifactUpload upload = new StreamedArtifactUpload(progressFile, destination, "dest");
+        try {
+            assertThat(upload.receive(new ByteArrayInputStream(Arrays.copyOf(complete, complete.length / 2)), 0)).isEqualTo(StreamedArtifactUpload.Result.INCOMPLETE);
+        } catch (IOException expected) {
+            // a stream which is cut off in the middle of an entry fails, one cut off between entries is incomplete
+        }
+
+        StreamedArtifactUpload retry = new StreamedArtifactUpload(progressFile, destination, "dest");
+        int received = retry.entriesReceived();
+        assertThat(received).isGreaterThan(0);
+
+        assertThat(retry.receive(zip(received), received)).isEqualTo(StreamedArtifactUpload.Result.COMPLETED);
+        assertThat(FileUtils.readFileToString(new File(destination, "dist/lib/b.jar"), UTF_8)).isEqualTo("second");
+    }
+
+    @Test
+    void shouldNotSendFilesWhichTheServerLinkedButStillDeclareTheirChecksums() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new StreamingArtifactZipEntity(source, "dest", 0, Collections.singletonMap("dist/lib/b.jar", CachedDigestUtils.md5Hex("second"))).writeTo(bytes);
+        StreamedArtifactUpload upload = new StreamedArtifactUpload(progressFile, destination, "dest");
+
+        assertThat(upload.receive(new ByteArrayInputStream(bytes.toByteArray()), 0)).isEqualTo(StreamedArtifactUpload.Result.COMPLETED);
+
+        assertThat(new File(destination, "dist/a.txt")).exists();
+        assertThat(new File(destination, "dist/lib/b.jar")).doesNotExist();
+        assertThat(upload.checksums().getProperty("dest/dist/lib/b.jar")).isEqualTo(CachedDigestUtils.md5Hex("second"));
+    }
+
+    @Test
+    void shouldRefuseToResumeFromAnEntryItDoesNotHave() throws IOException {
+        StreamedArtifactUpload upload = new StreamedArtifactUpload(progressFile, destination, "dest");
+
+        assertThat(upload.receive(zip(2), 2)).isEqualTo(StreamedArtifactUpload.Result.OUT_OF_SYNC);
+    }
+
+    @Test
+    void shouldReportAnUploadWithoutChecksumsAsIncomplete() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("dist/a.txt"));
+            zip.write("first".getBytes(UTF_8));
+        }
+        StreamedArtifactUpload upload = new StreamedArtifactUpload(progressFile, destination, "dest");
+
+        assertThat(upload.receive(new ByteArrayInputStream(bytes.toByteArray()), 0)).isEqualTo(StreamedArtifactUpload.Result.INCOMPLETE);
+        assertThat(upload.entriesReceived()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectEntriesWhoseChecksumDoesNotMatch() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("dist/a.txt"));
+            zip.write("tampered".getBytes(UTF_8));
+            zip.putNextEntry(new ZipEntry(StreamingArtifactZipEntity.CHECKSUMS_ENTRY_NAME));
+            zip.write(("dest/dist/a.txt=" + CachedDigestUtils.md5Hex("first")).getBytes(UTF_8));
+        }
+        StreamedArtifactUpload upload = new StreamedArtifactUpload(progressFile, destination, "dest");
+
+        assertThat(upload.receive(new ByteArrayInputStream(bytes.toByteArray()), 0)).isEqualTo(StreamedArtifactUpload.Result.CHECKSUM_MISMATCH);
+        assertThat(new File(destination, "dist/a.txt")).doesNotExist();
+    }
+
+    @Test
+    void shouldThrowAwayTheEntriesOfEarlierAttemptsWhenAChecksumDoesNotMatch() throws IOException {
+        ByteArrayOutputStream firstAttempt = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(firstAttempt)) {
+            zip.putNextEntry(new ZipEntry("dist/a.txt"));
+            zip.write("first".getBytes(UTF_8));
+        }
+        ByteArrayOutputStream secondAttempt = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(secondAttempt)) {
+            zip.putNextEntry(new ZipEntry("dist/lib/b.jar"));
+            zip.write("tampered".getBytes(UTF_8));
+            zip.putNextEntry(new ZipEntry(StreamingArtifactZipEntity.CHECKSUMS_ENTRY_NAME));
+            zip.write(("dest/dist/a.txt=" + CachedDigestUtils.md5Hex("first") + "\ndest/dist/lib/b.jar=" + CachedDigestUtils.md5Hex("second")).getBytes(UTF_8));
+        }
+        StreamedArtifactUpload upload = new StreamedArtifactUpload(progressFile, destination, "dest");
+        assertThat(upload.receive(new ByteArrayInputStream(firstAttempt.toByteArray()), 0)).isEqualTo(StreamedArtifactUpload.Result.INCOMPLETE);
+
+        StreamedArtifactUpload retry = new StreamedArtifactUpload(progressFile, destination, "dest");
+        assertThat(retry.receive(new ByteArrayInputStream(secondAttempt.toByteArray()), 1)).isEqualTo(StreamedArtifactUpload.Result.CHECKSUM_MISMATCH);
+
+        assertThat(new File(destination, "dist/a.txt")).doesNotExist();
+        assertThat(new File(destination, "dist/lib/b.jar")).doesNotExist();
+        assertThat(progressFile).doesNotExist();
+    }
+
+    @Test
+    void shouldNotReceiveTwoAttemptsOfTheSameUploadAtOnce() throws IOException {
+        StreamedArtifactUpload other = new StreamedArtifactUpload(progressFile, destination, "dest");
+        StreamedArtifactUpload.Result[] whileReceiving = new StreamedArtifactUpload.Result[1];
+        InputStream stream = new FilterInputStream(zip(0)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (whileReceiving[0] == null) {
+                    whileReceiving[0] = other.receive(zip(0), 0);
+                }
+                return super.read(b, off, len);
+            }
+        };
+
+        assertThat(new StreamedArtifactUpload(progressFile, destination, "dest").receive(stream, 0)).isEqualTo(StreamedArtifactUpload.Result.COMPLETED);
+        assertThat(whileReceiving[0]).isEqualTo(StreamedArtifactUpload.Result.IN_PROGRESS);
+    }
+
+    private ByteArrayInputStream zip(int resumeFrom) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new StreamingArtifactZipEntity(source, "dest", resumeFrom).writeTo(bytes);
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+}
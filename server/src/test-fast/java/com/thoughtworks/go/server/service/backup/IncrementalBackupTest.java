@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 ThoughtWorks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service.backup;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IncrementalBackupTest {
+    @TempDir
+    File tempDir;
+    private File source;
+    private File chunks;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        source = new File(tempDir, "config-repo");
+        chunks = new File(tempDir, "backups/chunks");
+        FileUtils.writeStringToFile(new File(source, "cruise-config.xml"), "<cruise/>", UTF_8);
+        FileUtils.writeByteArrayToFile(new File(source, ".git/objects/pack/pack-1.pack"), randomBytes(IncrementalBackup.CHUNK_SIZE * 2 + 10));
+        FileUtils.writeByteArrayToFile(new File(source, ".git/empty"), new byte[0]);
+        new File(source, ".git/refs/heads").mkdirs();
+    }
+
+    @Test
+    void shouldRestoreWhatItBackedUp() throws IOException {
+        File manifest = new File(tempDir, "backups/backup_1/config-repo.manifest");
+        manifest.getParentFile().mkdirs();
+        new IncrementalBackup(chunks, 4).backup(source, manifest);
+
+        File restored = new File(tempDir, "restored");
+        IncrementalBackup.restore(manifest, restored);
+
+        assertThat(FileUtils.readFileToString(new File(restored, "cruise-config.xml"), UTF_8)).isEqualTo("<cruise/>");
+        assertThat(FileUtils.contentEquals(new File(source, ".git/objects/pack/pack-1.pack"), new File(restored, ".git/objects/pack/pack-1.pack"))).isTrue();
+        assertThat(new File(restored, ".git/empty")).exists().hasSize(0);
+        assertThat(new File(restored, ".git/refs/heads")).isDirectory();
+    }
+
+    @Test
+    void shouldOnlyWriteChunksWhichEarlierBackupsDoNotHave() throws IOException {
+        File first = new File(tempDir, "backups/backup_1/config-repo.manifest");
+        first.getParentFile().mkdirs();
+        IncrementalBackup firstBackup = new IncrementalBackup(chunks, 2);
+        firstBackup.backup(source, first);
+        assertThat(firstBackup.chunksWritten()).isEqualTo(4);
+
+        FileUtils.writeStringToFile(new File(source, "cruise-config.xml"), "<cruise changed=\"true\"/>", UTF_8);
+        File second = new File(tempDir, "backups/backup_2/config-repo.manifest");
+        second.getParentFile().mkdirs();
+        IncrementalBackup secondBackup = new IncrementalBackup(chunks, 2);
+        secondBackup.backup(source, second);
+
+        assertThat(secondBackup.chunksWritten()).isEqualTo(1);
+        assertThat(secondBackup.chunksReused()).isEqualTo(3);
+
+        File restored = new File(tempDir, "restored");
+        IncrementalBackup.restore(first, restored);
+        assertThat(FileUtils.readFileToString(new File(restored, "cruise-config.xml"), UTF_8)).isEqualTo("<cruise/>");
+    }
+
+    @Test
+    void shouldRefuseToRestoreFromACorruptChunk() throws IOException {
+        File manifest = new File(tempDir, "backups/backup_1/config-repo.manifest");
+        manifest.getParentFile().mkdirs();
+        new IncrementalBackup(chunks, 1).backup(source, manifest);
+        for (File chunk : FileUtils.listFiles(new File(manifest.getParentFile(), IncrementalBackup.CHUNKS_FOLDER), null, true)) {
+            FileUtils.forceDelete(chunk);
+            FileUtils.writeByteArrayToFile(chunk, new byte[]{120, -100, 3, 0, 0, 0, 0, 1});
+        }
+
+        assertThatThrownBy(() -> IncrementalBackup.restore(manifest, new File(tempDir, "restored")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("corrupt");
+    }
+
+    @Test
+    void shouldRestoreACopyOfTheBackupFolderOnItsOwn() throws IOException {
+        File manifest = new File(tempDir, "backups/backup_1/" + IncrementalBackup.MANIFEST_FILE);
+        manifest.getParentFile().mkdirs();
+        new IncrementalBackup(chunks, 2).backup(source, manifest);
+        File copy = new File(tempDir, "offsite/backup_1");
+        FileUtils.copyDirectory(manifest.getParentFile(), copy);
+        FileUtils.deleteDirectory(new File(tempDir, "backups"));
+
+        File restored = new File(tempDir, "restored");
+        IncrementalBackup.main(new String[]{copy.getAbsolutePath(), restored.getAbsolutePath()});
+
+        assertThat(FileUtils.contentEquals(new File(source, ".git/objects/pack/pack-1.pack"), new File(restored, ".git/objects/pack/pack-1.pack"))).isTrue();
+    }
+
+    @Test
+    void shouldPruneChunksWhichNoRemainingBackupUses() throws IOException {
+        File first = new File(tempDir, "backups/backup_1/" + IncrementalBackup.MANIFEST_FILE);
+        first.getParentFile().mkdirs();
+        new IncrementalBackup(chunks, 2).backup(source, first);
+        FileUtils.writeStringToFile(new File(source, "cruise-config.xml"), "<cruise changed=\"true\"/>", UTF_8);
+        File second = new File(tempDir, "backups/backup_2/" + IncrementalBackup.MANIFEST_FILE);
+        second.getParentFile().mkdirs();
+        IncrementalBackup secondBackup = new IncrementalBackup(chunks, 2);
+        secondBackup.backup(source, second);
+        assertThat(FileUtils.listFiles(chunks, null, true)).hasSize(5);
+
+        FileUtils.deleteDirectory(first.getParentFile());
+        secondBackup.prune(Collections.singletonList(second));
+
+        assertThat(FileUtils.listFiles(chunks, null, true)).hasSize(4);
+        File restored = new File(tempDir, "restored");
+        IncrementalBackup.restore(second, restored);
+        assertThat(FileUtils.readFileToString(new File(restored, "cruise-config.xml"), UTF_8)).isEqualTo("<cruise changed=\"true\"/>");
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
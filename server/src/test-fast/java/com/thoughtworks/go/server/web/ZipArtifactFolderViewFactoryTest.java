@@ -18,6 +18,8 @@ package com.thoughtworks.go.server.web;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.server.cache.ZipArtifactCache;
 import com.thoughtworks.go.server.view.artifacts.PreparingArtifactFile;
+import com.thoughtworks.go.server.view.artifacts.StreamingZipView;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -62,8 +64,33 @@ public class ZipArtifactFolderViewFactoryTest {
         assertThat(targetFile, is(cacheZipFile));
     }
 
+    @Test public void shouldStreamZipWhenOnDiskCacheIsDisabled() throws Exception {
+        ZipArtifactCache zipArtifactCache = new ZipArtifactCache(null, new SystemEnvironment()) {
+            @Override
+            public boolean isOnDiskCacheEnabled() {
+                return false;
+            }
+
+            @Override
+            public boolean cacheCreated(ArtifactFolder artifactFolder) {
+                throw new RuntimeException("Should not look at the on-disk cache");
+            }
+        };
+        folderViewFactory = new ZipArtifactFolderViewFactory(zipArtifactCache);
+        ArtifactFolder artifactFolder = new ArtifactFolder(JOB_IDENTIFIER, folder, "dir");
+
+        ModelAndView modelAndView = folderViewFactory.createView(JOB_IDENTIFIER, artifactFolder);
+        assertThat(modelAndView.getView(), is(instanceOf(StreamingZipView.class)));
+        assertThat(((StreamingZipView) modelAndView.getView()).getArtifactFolder(), is(artifactFolder));
+    }
+
     private ZipArtifactCache cacheAlreadyCreated() {
-        return new ZipArtifactCache(null, null) {
+        return new ZipArtifactCache(null, new SystemEnvironment()) {
+            @Override
+            public boolean isOnDiskCacheEnabled() {
+                return true;
+            }
+
             @Override
             public boolean cacheCreated(ArtifactFolder artifactFolder) {
                 return true;
@@ -77,7 +104,12 @@ public class ZipArtifactFolderViewFactoryTest {
     }
 
     private ZipArtifactCache cacheNotCreated() {
-        return new ZipArtifactCache(null, null) {
+        return new ZipArtifactCache(null, new SystemEnvironment()) {
+            @Override
+            public boolean isOnDiskCacheEnabled() {
+                return true;
+            }
+
             @Override
             public boolean cacheCreated(ArtifactFolder artifactFolder) {
                 return false;
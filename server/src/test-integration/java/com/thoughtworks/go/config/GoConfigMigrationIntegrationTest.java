@@ -117,6 +117,21 @@ public class GoConfigMigrationIntegrationTest {
                 ConfigElementImplementationRegistryMother.withNoPlugins());
         String newContent = configMigration.upgradeIfNecessary(ConfigFileFixture.VERSION_0);
         assertThat(newContent).isEqualTo(configMigration.upgradeIfNecessary(newContent));
+        assertThat(configMigration.upgradeIfNecessary(newContent)).isSameAs(newContent);
+    }
+
+    @Test
+    public void shouldUpgradeThroughAllVersionsInOnePassTheSameAsOneVersionAtATime() {
+        GoConfigMigration configMigration = new GoConfigMigration(new TimeProvider(),
+                ConfigElementImplementationRegistryMother.withNoPlugins());
+        String oneVersionAtATime = ConfigFileFixture.VERSION_0;
+        for (int version = 0; version < GoConfigSchema.currentSchemaVersion(); version++) {
+            oneVersionAtATime = configMigration.upgrade(oneVersionAtATime, version, version + 1);
+        }
+
+        String onePass = configMigration.upgrade(ConfigFileFixture.VERSION_0, 0, GoConfigSchema.currentSchemaVersion());
+
+        assertThat(onePass).isEqualTo(oneVersionAtATime);
     }
 
     @Test
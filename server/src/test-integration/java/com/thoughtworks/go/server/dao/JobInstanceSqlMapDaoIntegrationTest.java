@@ -169,6 +169,19 @@ public class JobInstanceSqlMapDaoIntegrationTest {
         assertThat(actual.getTransitions(), is(expected.getTransitions()));
     }
 
+    @Test
+    public void shouldDeleteTheIntermediateTransitionsOfTheGivenJobsOnly() throws Exception {
+        JobInstance archived = jobInstanceDao.save(stageId, JobInstanceMother.completed(JOB_NAME, JobResult.Passed));
+        JobInstance rescheduled = jobInstanceDao.save(stageId, JobInstanceMother.completed(OTHER_JOB_NAME, JobResult.Passed));
+        jobInstanceDao.ignore(rescheduled);
+
+        jobInstanceDao.deleteIntermediateTransitionsOfJobs(Collections.singletonList(archived.getId()));
+
+        assertThat(jobInstanceDao.buildByIdWithTransitions(archived.getId()).getTransitions().stream().map(JobStateTransition::getCurrentState).collect(toList()),
+                is(Arrays.asList(JobState.Scheduled, JobState.Building, JobState.Completed)));
+        assertThat(jobInstanceDao.buildByIdWithTransitions(rescheduled.getId()).getTransitions().size(), is(rescheduled.getTransitions().size()));
+    }
+
     @Test
     public void shouldGetCompletedBuildAsMostRecentBuildByPipelineLabelAndStageCounter() throws Exception {
         JobInstance expected = JobInstanceMother.completed(JOB_NAME, JobResult.Unknown);
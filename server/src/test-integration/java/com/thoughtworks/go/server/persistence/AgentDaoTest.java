@@ -16,14 +16,11 @@
 package com.thoughtworks.go.server.persistence;
 
 import com.thoughtworks.go.config.Agent;
-import com.thoughtworks.go.domain.AgentConfigStatus;
-import com.thoughtworks.go.domain.AgentInstance;
 import com.thoughtworks.go.domain.exception.UnregisteredAgentException;
 import com.thoughtworks.go.listener.DatabaseEntityChangeListener;
 import com.thoughtworks.go.remote.AgentIdentifier;
 import com.thoughtworks.go.server.cache.GoCache;
 import com.thoughtworks.go.server.dao.DatabaseAccessHelper;
-import com.thoughtworks.go.util.SystemEnvironment;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -35,12 +32,14 @@ import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Fail.fail;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -315,50 +314,74 @@ public class AgentDaoTest {
     })
     class Bulk {
         @Test
-        public void shouldBulkUpdateAttributes() {
-            Agent agent1 = new Agent("uuid", "localhost", "127.0.0.1", "cookie");
-            agent1.setResources("r1,r2");
-            agent1.setEnvironments("e1,e2,e3");
-
-            AgentInstance agentInstance1 = AgentInstance.createFromAgent(agent1, new SystemEnvironment(), null);
-
+        public void shouldBulkUpdateAttributesOfRegisteredAgentsAndSavePendingAgents() {
+            Agent agent1 = new Agent("uuid1", "localhost1", "127.0.0.1", "cookie1");
             Agent agent2 = new Agent("uuid2", "localhost2", "127.0.0.2", "cookie2");
-            agent2.setResources("r1");
-
             Agent agent3 = new Agent("uuid3", "localhost3", "127.0.0.3", "cookie3");
             agent3.setResources("r1");
-            agent3.setEnvironments("e1,e3");
-            AgentInstance agentInstance3 = AgentInstance.createFromAgent(agent3, new SystemEnvironment(), null);
-
             agentDao.saveOrUpdate(agent1);
             agentDao.saveOrUpdate(agent2);
             agentDao.saveOrUpdate(agent3);
+            DatabaseEntityChangeListener<Agent> mockListener = registerMockListener();
 
-            HashMap<String, AgentConfigStatus> agentToStatusMap = new HashMap<>();
-            agentToStatusMap.put(agent1.getUuid(), agentInstance1.getStatus().getConfigStatus());
-            agentToStatusMap.put(agent3.getUuid(), agentInstance3.getStatus().getConfigStatus());
+            agent1.setResources("r2");
+            agent1.setEnvironments("e1");
+            agent2.setResources("r2");
+            agent2.setEnvironments("e1");
+            agent3.disable();
+            Agent pending = new Agent("uuid4", "localhost4", "127.0.0.4", "cookie4");
+
+            agentDao.bulkUpdateAttributes(asList(agent1, agent2, agent3), singletonList(pending), EnumSet.allOf(AgentDao.Attribute.class));
+
+            assertThat(agentDao.getAgentByUUIDFromCacheOrDB("uuid1").getResources(), is("r2"));
+            assertThat(agentDao.getAgentByUUIDFromCacheOrDB("uuid2").getEnvironments(), is("e1"));
+            assertThat(agentDao.getAgentByUUIDFromCacheOrDB("uuid3").getResources(), is("r1"));
+            assertThat(agentDao.getAgentByUUIDFromCacheOrDB("uuid3").isDisabled(), is(true));
+            assertThat(agentDao.getAgentByUUIDFromCacheOrDB("uuid4").getCookie(), is("cookie4"));
+            verify(mockListener, times(1)).bulkEntitiesChanged(argThat(agents -> agents.size() == 4));
+            verify(mockListener, never()).entityChanged(any(Agent.class));
+        }
 
-            agent1.addResources(asList("r3", "r4"));
-            agent3.addResources(asList("r3", "r4"));
+        @Test
+        public void shouldWriteOnlyTheChangedAttributes() {
+            Agent agent = new Agent("uuid1", "localhost1", "127.0.0.1", "cookie1");
+            agent.setResources("r1");
+            agentDao.saveOrUpdate(agent);
+
+            Agent staleCopy = new Agent("uuid1", "localhost1", "127.0.0.1", "cookie1");
+            staleCopy.setEnvironments("e1");
+            staleCopy.disable();
+            DatabaseEntityChangeListener<Agent> mockListener = registerMockListener();
 
-            agent1.removeResources(asList("r1", "r2"));
-            agent3.removeResources(asList("r1", "r2"));
+            agentDao.bulkUpdateAttributes(singletonList(staleCopy), emptyList(), EnumSet.of(AgentDao.Attribute.ENVIRONMENTS));
 
-            agent1.addEnvironments(asList("e2", "e4"));
-            agent3.addEnvironments(asList("e2", "e4"));
+            Agent updated = agentDao.getAgentByUUIDFromCacheOrDB("uuid1");
+            assertThat(updated.getEnvironments(), is("e1"));
+            assertThat(updated.getResources(), is("r1"));
+            assertThat(updated.isDisabled(), is(false));
+            verify(mockListener).bulkEntitiesChanged(argThat(agents -> agents.size() == 1
+                    && "e1".equals(agents.get(0).getEnvironments())
+                    && "r1".equals(agents.get(0).getResources())
+                    && !agents.get(0).isDisabled()));
+        }
+
+        @Test
+        public void shouldWorkOnMoreAgentsThanFitInOneStatement() {
+            List<String> uuids = new ArrayList<>();
+            for (int i = 0; i < AgentDao.MAX_UUIDS_PER_STATEMENT + 10; i++) {
+                uuids.add("uuid" + i);
+            }
+            agentDao.bulkUpdateAttributes(emptyList(), uuids.stream().map(uuid -> new Agent(uuid, "host", "127.0.0.1", "cookie-" + uuid)).collect(toList()), EnumSet.noneOf(AgentDao.Attribute.class));
 
-            agent1.removeEnvironments(asList("e1", "e3"));
-            agent3.removeEnvironments(asList("e1", "e3"));
+            agentDao.disableAgents(uuids);
 
-            agentDao.bulkUpdateAgents(asList(agent1, agent3));
+            List<Agent> agents = agentDao.getAgentsByUUIDs(uuids);
+            assertThat(agents.size(), is(uuids.size()));
+            assertThat(agents.stream().allMatch(Agent::isDisabled), is(true));
 
-            assertThat(agentDao.getAgentByUUIDFromCacheOrDB(agent1.getUuid()).getResources(), is("r3,r4"));
-            assertThat(agentDao.getAgentByUUIDFromCacheOrDB(agent2.getUuid()).getResources(), is("r1"));
-            assertThat(agentDao.getAgentByUUIDFromCacheOrDB(agent3.getUuid()).getResources(), is("r3,r4"));
+            agentDao.bulkSoftDelete(uuids);
 
-            assertThat(agentDao.getAgentByUUIDFromCacheOrDB(agent1.getUuid()).getEnvironments(), is("e2,e4"));
-            assertThat(agentDao.getAgentByUUIDFromCacheOrDB(agent2.getUuid()).getEnvironments(), is(emptyString()));
-            assertThat(agentDao.getAgentByUUIDFromCacheOrDB(agent3.getUuid()).getEnvironments(), is("e2,e4"));
+            assertThat(agentDao.getAgentsByUUIDs(uuids), is(emptyList()));
         }
 
         @Test
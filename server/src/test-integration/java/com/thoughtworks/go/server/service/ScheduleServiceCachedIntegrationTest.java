@@ -79,6 +79,8 @@ public class ScheduleServiceCachedIntegrationTest {
     @Autowired private PipelineLockService pipelineLockService;
     @Autowired private ServerHealthService serverHealthService;
     @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JobStatusUpdateBuffer jobStatusUpdateBuffer;
+    @Autowired private StageStatusAggregator stageStatusAggregator;
     @Autowired private AgentService agentService;
     @Autowired private TransactionSynchronizationManager synchronizationManager;
     @Rule
@@ -169,7 +171,7 @@ public class ScheduleServiceCachedIntegrationTest {
         ScheduleService service = new ScheduleService(goConfigService, pipelineService, stageService, schedulingChecker, pipelineDao,
                 stageDao, stageOrderService, securityService, pipelineScheduleQueue, jobInstanceService, jobInstanceDao, agentAssignment, environmentConfigService,
                 pipelineLockService, serverHealthService, transactionTemplate, agentService, synchronizationManager, null, null, null, null, schedulingPerformanceLogger,
-                null,null
+                null,null, jobStatusUpdateBuffer, stageStatusAggregator
         );
 
         Pipeline assigned = preCondition.createPipelineWithFirstStageAssigned();
@@ -20,7 +20,10 @@ import com.thoughtworks.go.config.EnvironmentVariablesConfig;
 import com.thoughtworks.go.config.GoConfigDao;
 import com.thoughtworks.go.domain.*;
 import com.thoughtworks.go.fixture.PipelineWithMultipleStages;
+import com.thoughtworks.go.presentation.pipelinehistory.JobHistoryItem;
+import com.thoughtworks.go.presentation.pipelinehistory.PipelineInstanceModel;
 import com.thoughtworks.go.server.dao.DatabaseAccessHelper;
+import com.thoughtworks.go.server.dao.PipelineDao;
 import com.thoughtworks.go.server.dao.StageDao;
 import com.thoughtworks.go.server.newsecurity.SessionUtilsHelper;
 import com.thoughtworks.go.server.persistence.MaterialRepository;
@@ -67,6 +70,8 @@ public class ScheduleStageTest {
     @Autowired
     private StageDao stageDao;
     @Autowired
+    private PipelineDao pipelineDao;
+    @Autowired
     private MaterialRepository materialRepository;
     @Autowired
     private TransactionTemplate transactionTemplate;
@@ -89,6 +94,24 @@ public class ScheduleStageTest {
         fixture.onTearDown();
     }
 
+    @Test
+    public void shouldShowAJobWhichCompletedWithoutChangingTheStateOfItsStageInThePipelineHistory() throws Exception {
+        Pipeline pipeline = fixture.createPipelineWithFirstStageAssigned();
+        Stage stage = pipeline.getStages().byName(fixture.devStage);
+        complete(stage.getJobInstances().getByName(fixture.JOB_FOR_DEV_STAGE).getIdentifier());
+        pipelineDao.findPipelineHistoryByNameAndCounter(pipeline.getName(), pipeline.getCounter());//priming the cache
+
+        complete(stage.getJobInstances().getByName(fixture.DEV_STAGE_SECOND_JOB).getIdentifier());
+
+        assertThat(stageDao.stageById(stage.getId()).getState(), is(StageState.Building));
+        PipelineInstanceModel history = pipelineDao.findPipelineHistoryByNameAndCounter(pipeline.getName(), pipeline.getCounter());
+        JobHistoryItem secondJob = history.getStageHistory().byName(fixture.devStage).getBuildHistory().stream()
+                .filter(job -> job.getName().equals(fixture.DEV_STAGE_SECOND_JOB))
+                .findFirst().get();
+        assertThat(secondJob.getState(), is(JobState.Completed));
+        assertThat(secondJob.getResult(), is(JobResult.Passed));
+    }
+
     @Test
     public void shouldRerunStageUsingPipelineCounter() throws Exception {
         Pipeline pipeline = fixture.createdPipelineWithAllStagesPassed();
@@ -346,4 +369,10 @@ public class ScheduleStageTest {
             }
         };
     }
+
+    private void complete(JobIdentifier identifier) throws Exception {
+        scheduleService.updateJobStatus(identifier, JobState.Building);
+        scheduleService.jobCompleting(identifier, JobResult.Passed, "uuid");
+        scheduleService.updateJobStatus(identifier, JobState.Completed);
+    }
 }
@@ -94,6 +94,7 @@ public class DatabaseAccessHelper extends HibernateDaoSupport {
     private String md5 = "md5-test";
     private InstanceFactory instanceFactory;
     private JobAgentMetadataDao jobAgentMetadataDao;
+    private JobDurationStatistics jobDurationStatistics;
 
     @Deprecated // Should not be creating a new spring context for every test
     public DatabaseAccessHelper() throws AmbiguousTableNameException {
@@ -112,6 +113,7 @@ public class DatabaseAccessHelper extends HibernateDaoSupport {
         this.goCache = (GoCache) context.getBean("goCache");
         this.instanceFactory = (InstanceFactory) context.getBean("instanceFactory");
         this.jobAgentMetadataDao = (JobAgentMetadataDao) context.getBean("jobAgentMetadataDao");
+        this.jobDurationStatistics = context.getBean(JobDurationStatistics.class);
         setSessionFactory((SessionFactory) context.getBean("sessionFactory"));
         return context;
     }
@@ -136,7 +138,8 @@ public class DatabaseAccessHelper extends HibernateDaoSupport {
                                 GoCache goCache,
                                 PipelineService pipelineService, InstanceFactory instanceFactory,
                                 JobAgentMetadataDao jobAgentMetadataDao,
-                                AgentDao agentDao) throws AmbiguousTableNameException {
+                                AgentDao agentDao,
+                                JobDurationStatistics jobDurationStatistics) throws AmbiguousTableNameException {
         this.dataSource = dataSource;
         this.sqlMapClient = sqlMapClient;
         this.stageDao = stageDao;
@@ -151,6 +154,7 @@ public class DatabaseAccessHelper extends HibernateDaoSupport {
         this.pipelineDao = (PipelineSqlMapDao) pipelineDao;
         this.materialRepository = materialRepository;
         this.agentDao = agentDao;
+        this.jobDurationStatistics = jobDurationStatistics;
         setSessionFactory(sessionFactory);
         initialize(dataSource);
     }
@@ -202,6 +206,9 @@ public class DatabaseAccessHelper extends HibernateDaoSupport {
     public void onTearDown() throws Exception {
         databaseTester.onTearDown();
         goCache.clear();
+        if (jobDurationStatistics != null) {
+            jobDurationStatistics.clear();
+        }
     }
 
     public TransactionTemplate txTemplate() {
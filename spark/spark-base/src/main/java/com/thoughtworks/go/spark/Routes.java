@@ -180,6 +180,14 @@ public class Routes {
         public static String modification(String fingerprint) {
             return BASE.replaceAll(":fingerprint", fingerprint);
         }
+
+        public static String previous(String fingerprint, long before) {
+            return modification(fingerprint) + "?before=" + before;
+        }
+
+        public static String next(String fingerprint, long after) {
+            return modification(fingerprint) + "?after=" + after;
+        }
     }
 
     public static class MaterialNotify {
@@ -825,6 +833,14 @@ public class Routes {
         public static final String forAgent(String uuid) {
             return BASE.replace(":uuid", uuid);
         }
+
+        public static String previous(String uuid, long before) {
+            return forAgent(uuid) + "?before=" + before;
+        }
+
+        public static String next(String uuid, long after) {
+            return forAgent(uuid) + "?after=" + after;
+        }
     }
 
     public static class PipelineActivity {